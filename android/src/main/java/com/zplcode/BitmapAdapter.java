@@ -0,0 +1,85 @@
+package com.zplcode;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+/**
+ * Conversion entre {@link Bitmap} y {@link PixelImage}.
+ *
+ * Los pixeles se leen y escriben con una sola llamada a getPixels/setPixels,
+ * el resto del proceso trabaja sobre el int[] de la imagen.
+ */
+public final class BitmapAdapter {
+
+  private BitmapAdapter() {
+  }
+
+  /* Copia los pixeles del bitmap a una nueva imagen. */
+  public static PixelImage toPixelImage(Bitmap bitmap) {
+    if (null == bitmap) {
+      throw new IllegalArgumentException("bitmap arg cannot be null");
+    }
+
+    final int width = bitmap.getWidth();
+    final int height = bitmap.getHeight();
+    final int[] argb = new int[width * height];
+    bitmap.getPixels(argb, 0, width, 0, 0, width, height);
+    return new PixelImage(width, height, argb);
+  }
+
+  /**
+   * Como toPixelImage(bitmap), con los pixeles en un arreglo del pool (puede
+   * ser mas largo que width * height). Se devuelve con
+   * pool.release(image.getPixels()) cuando ya no se usa la imagen.
+   */
+  public static PixelImage toPixelImage(Bitmap bitmap, ArrayPool pool) {
+    if (null == bitmap) {
+      throw new IllegalArgumentException("bitmap arg cannot be null");
+    }
+
+    final int width = bitmap.getWidth();
+    final int height = bitmap.getHeight();
+    final int[] argb = pool.obtainInts(width * height);
+    bitmap.getPixels(argb, 0, width, 0, 0, width, height);
+    return new PixelImage(width, height, argb);
+  }
+
+  /* Escribe los pixeles de la imagen en un nuevo bitmap ARGB_8888. */
+  public static Bitmap toBitmap(PixelImage image) {
+    final int width = image.getWidth();
+    final int height = image.getHeight();
+    final Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    bitmap.setPixels(image.getPixels(), 0, width, 0, 0, width, height);
+    return bitmap;
+  }
+
+  /* Escala el bitmap, si las dimensiones no son validas regresa el mismo bitmap. */
+  public static Bitmap scale(Bitmap bitmap, int w, int h) {
+    if (w > 0 && h > 0) {
+      return Bitmap.createScaledBitmap(bitmap, w, h, true);
+    } else {
+      return bitmap;
+    }
+  }
+
+  /**
+   * Como scale(bitmap, w, h), dibujando en un bitmap del pool con el mismo
+   * filtro bilineal de createScaledBitmap. Si ya tiene ese tamano regresa el
+   * mismo bitmap.
+   */
+  public static Bitmap scale(Bitmap bitmap, int w, int h, BitmapPool pool) {
+    if (w <= 0 || h <= 0 || (w == bitmap.getWidth() && h == bitmap.getHeight())) {
+      return bitmap;
+    }
+    final Bitmap scaled = pool.get(w, h);
+    final Canvas canvas = new Canvas(scaled);
+    canvas.drawBitmap(bitmap,
+      new Rect(0, 0, bitmap.getWidth(), bitmap.getHeight()),
+      new Rect(0, 0, w, h),
+      new Paint(Paint.FILTER_BITMAP_FLAG));
+    canvas.setBitmap(null);
+    return scaled;
+  }
+}
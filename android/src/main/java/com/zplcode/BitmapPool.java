@@ -0,0 +1,176 @@
+package com.zplcode;
+
+import android.graphics.Bitmap;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * Bitmaps ARGB_8888 mutables para decodificar (inBitmap) y escalar sin
+ * crear uno nuevo por imagen.
+ *
+ * Se agrupan por clase de tamano (potencias de 2 de getAllocationByteCount)
+ * y se les cambia el tamano con reconfigure. Lo que no cabe en maxBytes se
+ * recicla.
+ *
+ * Solo las decodificaciones con BitmapFactory reusan bitmaps: ImageDecoder
+ * (content:// y archivos desde Android 9) no tiene inBitmap y siempre crea
+ * uno nuevo. El escalado si usa el pool en todos los casos.
+ */
+public final class BitmapPool {
+
+  public static final long DEFAULT_MAX_BYTES = 24L << 20;
+
+  public static final BitmapPool DEFAULT = new BitmapPool(DEFAULT_MAX_BYTES);
+
+  private static final int CLASSES = 31;
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private final ArrayDeque<Bitmap>[] buckets = new ArrayDeque[CLASSES];
+
+  // Bytes de bitmaps nuevos, por hilo (para ConversionMetrics).
+  private final ThreadLocal<long[]> allocated = new ThreadLocal<long[]>() {
+    @Override
+    protected long[] initialValue() {
+      return new long[1];
+    }
+  };
+
+  private long maxBytes;
+  private long size;
+  private long hits;
+  private long misses;
+
+  public BitmapPool(long maxBytes) {
+    this.maxBytes = maxBytes;
+    for (int i = 0; i < CLASSES; i++) {
+      buckets[i] = new ArrayDeque<>();
+    }
+  }
+
+  /* Bytes de un bitmap ARGB_8888. */
+  private static long getByteCount(int width, int height) {
+    return (long) width * height * 4;
+  }
+
+  /**
+   * Un bitmap del pool con lugar para width x height, o null. Se devuelve
+   * sin cambiar de tamano: sirve de inBitmap.
+   */
+  @Nullable
+  public Bitmap obtain(int width, int height) {
+    final long bytes = getByteCount(width, height);
+    if (bytes <= 0 || bytes > Integer.MAX_VALUE) {
+      return null;
+    }
+    // Todo lo de la clase c tiene al menos 2^c bytes; en la anterior se
+    // busca uno que alcance.
+    final int from = 64 - Long.numberOfLeadingZeros(bytes - 1);
+    synchronized (this) {
+      for (int c = Math.max(from - 1, 0); c < Math.min(from + 2, CLASSES); c++) {
+        final Bitmap bitmap = c < from ? pollFitting(buckets[c], bytes) : buckets[c].poll();
+        if (bitmap != null) {
+          size -= bitmap.getAllocationByteCount();
+          hits++;
+          return bitmap;
+        }
+      }
+      misses++;
+    }
+    return null;
+  }
+
+  @Nullable
+  private static Bitmap pollFitting(ArrayDeque<Bitmap> bucket, long bytes) {
+    final Iterator<Bitmap> iterator = bucket.iterator();
+    while (iterator.hasNext()) {
+      final Bitmap bitmap = iterator.next();
+      if (bitmap.getAllocationByteCount() >= bytes) {
+        iterator.remove();
+        return bitmap;
+      }
+    }
+    return null;
+  }
+
+  /* Bitmap transparente de width x height, del pool o nuevo. */
+  public Bitmap get(int width, int height) {
+    final Bitmap bitmap = obtain(width, height);
+    if (bitmap == null) {
+      addAllocatedBytes(getByteCount(width, height));
+      return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
+    bitmap.reconfigure(width, height, Bitmap.Config.ARGB_8888);
+    bitmap.setHasAlpha(true);
+    bitmap.eraseColor(0);
+    return bitmap;
+  }
+
+  /**
+   * Devuelve el bitmap al pool; si no se puede reusar (inmutable, otro
+   * formato) o no cabe, se recicla. Despues no se debe usar.
+   */
+  public void put(@Nullable Bitmap bitmap) {
+    if (bitmap == null || bitmap.isRecycled()) {
+      return;
+    }
+    if (bitmap.isMutable() && bitmap.getConfig() == Bitmap.Config.ARGB_8888) {
+      final int bytes = bitmap.getAllocationByteCount();
+      synchronized (this) {
+        if (size + bytes <= maxBytes) {
+          buckets[31 - Integer.numberOfLeadingZeros(bytes)].add(bitmap);
+          size += bytes;
+          return;
+        }
+      }
+    }
+    bitmap.recycle();
+  }
+
+  /* Recicla todos los bitmaps, por ejemplo cuando la app pasa a segundo plano. */
+  public void clear() {
+    final ArrayDeque<Bitmap> released = new ArrayDeque<>();
+    synchronized (this) {
+      for (ArrayDeque<Bitmap> bucket : buckets) {
+        released.addAll(bucket);
+        bucket.clear();
+      }
+      size = 0;
+    }
+    for (Bitmap bitmap : released) {
+      bitmap.recycle();
+    }
+  }
+
+  public synchronized void setMaxBytes(long maxBytes) {
+    this.maxBytes = maxBytes;
+    if (size > maxBytes) {
+      clear();
+    }
+  }
+
+  /* Bytes guardados en el pool. */
+  public synchronized long getSize() {
+    return size;
+  }
+
+  /* Cuenta un bitmap que se creo fuera del pool (por ejemplo al decodificar). */
+  void addAllocatedBytes(long bytes) {
+    allocated.get()[0] += bytes;
+  }
+
+  /* Bytes de bitmaps nuevos en el hilo actual desde que empezo. */
+  public long getThreadAllocatedBytes() {
+    return allocated.get()[0];
+  }
+
+  public synchronized long getHitCount() {
+    return hits;
+  }
+
+  public synchronized long getMissCount() {
+    return misses;
+  }
+}
@@ -0,0 +1,66 @@
+package com.zplcode;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothSocket;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.UUID;
+
+/**
+ * Impresora Bluetooth clasica por el perfil de puerto serie (SPP).
+ *
+ * La app tiene que tener el dispositivo emparejado y el permiso
+ * BLUETOOTH_CONNECT (Android 12+) o BLUETOOTH.
+ */
+public final class BluetoothPrinterConnection implements PrinterConnection {
+
+  public static final UUID SPP_UUID = UUID.fromString("00001101-0000-1000-8000-00805F9B34FB");
+
+  /* Bloques chicos: el buffer de RFCOMM de muchas impresoras es de pocos KB. */
+  public static final int DEFAULT_CHUNK_SIZE = 4 * 1024;
+
+  public final String address;
+
+  private final BluetoothSocket socket;
+
+  public BluetoothPrinterConnection(String address) throws IOException {
+    final BluetoothAdapter adapter = BluetoothAdapter.getDefaultAdapter();
+    if (adapter == null || !adapter.isEnabled()) {
+      throw new IOException("Bluetooth is not available");
+    }
+    if (!BluetoothAdapter.checkBluetoothAddress(address)) {
+      throw new IllegalArgumentException("Invalid Bluetooth address: " + address);
+    }
+
+    this.address = address;
+
+    final BluetoothDevice device = adapter.getRemoteDevice(address);
+    this.socket = device.createInsecureRfcommSocketToServiceRecord(SPP_UUID);
+
+    // La busqueda de dispositivos hace lenta la conexion.
+    adapter.cancelDiscovery();
+    try {
+      socket.connect();
+    } catch (IOException e) {
+      socket.close();
+      throw e;
+    }
+  }
+
+  @Override
+  public OutputStream getOutputStream() throws IOException {
+    return socket.getOutputStream();
+  }
+
+  @Override
+  public String getName() {
+    return address;
+  }
+
+  @Override
+  public void close() throws IOException {
+    socket.close();
+  }
+}
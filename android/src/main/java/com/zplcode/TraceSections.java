@@ -0,0 +1,33 @@
+package com.zplcode;
+
+import android.os.Trace;
+
+/**
+ * Etapas de ConversionMetrics como secciones de android.os.Trace, para
+ * verlas en Perfetto / systrace ("ZplCode deflate", ...).
+ */
+public final class TraceSections implements ConversionMetrics.Tracer {
+
+  public static final TraceSections INSTANCE = new TraceSections();
+
+  private static final String[] NAMES = new String[ConversionMetrics.STAGES.length];
+
+  static {
+    for (int i = 0; i < NAMES.length; i++) {
+      NAMES[i] = "ZplCode " + ConversionMetrics.STAGES[i];
+    }
+  }
+
+  private TraceSections() {
+  }
+
+  @Override
+  public void begin(int stage) {
+    Trace.beginSection(NAMES[stage]);
+  }
+
+  @Override
+  public void end(int stage) {
+    Trace.endSection();
+  }
+}
@@ -0,0 +1,167 @@
+package com.zplcode;
+
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Imagenes por url con un solo pedido por conversion.
+ *
+ * getVersion da la version para la llave del cache con un GET, condicional
+ * (If-None-Match / If-Modified-Since) si la url ya se descargo antes. Si la
+ * imagen cambio, los bytes quedan en el hilo y fetch los usa en vez de
+ * volver a descargarla.
+ */
+public final class UrlImages {
+
+  public static final int CONNECT_TIMEOUT_MS = 10000;
+  public static final int READ_TIMEOUT_MS = 30000;
+
+  /* Urls de las que se recuerda ETag/Last-Modified. */
+  private static final int MAX_VERSIONS = 256;
+
+  private static final class Version {
+    final String etag;
+    final String lastModified;
+
+    Version(String etag, String lastModified) {
+      this.etag = etag;
+      this.lastModified = lastModified;
+    }
+
+    @Override
+    public String toString() {
+      return etag != null ? etag : lastModified;
+    }
+  }
+
+  /* Bytes que bajo getVersion, para la conversion que sigue en el mismo hilo. */
+  private static final class Fetched {
+    final String url;
+    final byte[] data;
+
+    Fetched(String url, byte[] data) {
+      this.url = url;
+      this.data = data;
+    }
+  }
+
+  private static final Map<String, Version> VERSIONS = new LinkedHashMap<String, Version>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Version> eldest) {
+      return size() > MAX_VERSIONS;
+    }
+  };
+
+  private static final ThreadLocal<Fetched> FETCHED = new ThreadLocal<>();
+
+  private UrlImages() {
+  }
+
+  /**
+   * ETag o Last-Modified de la url. Un 304 no trae el cuerpo; con un 200 la
+   * imagen queda para el fetch siguiente de este hilo.
+   * @return null si el servidor no manda ninguno o no respondio 200/304
+   */
+  @Nullable
+  public static String getVersion(String url) throws IOException {
+    final Version known;
+    synchronized (VERSIONS) {
+      known = VERSIONS.get(url);
+    }
+
+    final HttpURLConnection connection = open(url);
+    try {
+      if (known != null) {
+        if (known.etag != null) {
+          connection.setRequestProperty("If-None-Match", known.etag);
+        } else {
+          connection.setRequestProperty("If-Modified-Since", known.lastModified);
+        }
+      }
+
+      final int code = connection.getResponseCode();
+      if (code == HttpURLConnection.HTTP_NOT_MODIFIED && known != null) {
+        return known.toString();
+      }
+      if (code != HttpURLConnection.HTTP_OK) {
+        return null;
+      }
+
+      final byte[] data = read(connection);
+      FETCHED.set(new Fetched(url, data));
+      final Version version = remember(url, connection);
+      return version != null ? version.toString() : null;
+
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  /* Bytes de la url: los que dejo getVersion en este hilo o una descarga nueva. */
+  public static byte[] fetch(String url) throws IOException {
+    final Fetched fetched = FETCHED.get();
+    if (fetched != null) {
+      FETCHED.remove();
+      if (fetched.url.equals(url)) {
+        return fetched.data;
+      }
+    }
+
+    final HttpURLConnection connection = open(url);
+    try {
+      final byte[] data = read(connection);
+      remember(url, connection);
+      return data;
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  /* Suelta lo que bajo getVersion si no se va a convertir (estaba en el cache). */
+  public static void discard() {
+    FETCHED.remove();
+  }
+
+  private static HttpURLConnection open(String url) throws IOException {
+    final HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+    connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+    connection.setReadTimeout(READ_TIMEOUT_MS);
+    connection.setDoInput(true);
+    return connection;
+  }
+
+  private static byte[] read(HttpURLConnection connection) throws IOException {
+    try (InputStream input = connection.getInputStream()) {
+      final int contentLength = connection.getContentLength();
+      final ByteArrayOutputStream out = new ByteArrayOutputStream(contentLength > 0 ? contentLength : 16 * 1024);
+      final byte[] buffer = new byte[8192];
+      int n;
+      while ((n = input.read(buffer)) != -1) {
+        out.write(buffer, 0, n);
+      }
+      return out.toByteArray();
+    }
+  }
+
+  @Nullable
+  private static Version remember(String url, HttpURLConnection connection) {
+    final String etag = connection.getHeaderField("ETag");
+    final String lastModified = connection.getHeaderField("Last-Modified");
+    final Version version = etag != null || lastModified != null ? new Version(etag, lastModified) : null;
+    synchronized (VERSIONS) {
+      if (version != null) {
+        VERSIONS.put(url, version);
+      } else {
+        VERSIONS.remove(url);
+      }
+    }
+    return version;
+  }
+}
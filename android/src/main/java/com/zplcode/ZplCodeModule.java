@@ -1,36 +1,121 @@
 package com.zplcode;
 
+import android.content.ComponentCallbacks2;
 import android.content.ContentResolver;
 import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.content.res.Configuration;
+import android.database.Cursor;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.ImageDecoder;
 import android.net.Uri;
 import android.os.Build;
+import android.os.Trace;
+import android.provider.DocumentsContract;
 import android.provider.MediaStore;
+import android.provider.OpenableColumns;
 import android.util.Base64;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
+import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableType;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.module.annotations.ReactModule;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
 
 @ReactModule(name = ZplCodeModule.NAME)
 public class ZplCodeModule extends ReactContextBaseJavaModule {
   public static final String NAME = "ZplCode";
 
+  /* ZPL ya convertido, compartido por todas las instancias del modulo. */
+  public static final ZplCache CACHE = new ZplCache();
+
+  /* Cuadros ya codificados de las imagenes con tileSize. */
+  public static final ZplCache TILES = new ZplCache();
+
+  /* Pool de imagesToZpl, se crea con el primer lote. */
+  private static ExecutorService batchExecutor;
+
+  /* Vista previa: 4x6 a 203 dpi si el ZPL no trae ^PW/^LL. Guarda los ~DG. */
+  private static final ZplRenderer PREVIEW = new ZplRenderer(812, 1218);
+
+  /* Evento con el avance de los trabajos de impresion. */
+  public static final String PRINT_EVENT = "ZplCodePrintJob";
+
+  /* Cola de impresion, se crea con el primer trabajo. */
+  private PrintQueue printQueue;
+  private final Map<Long, Promise> printPromises = new HashMap<>();
+
+  /* Metricas de las ultimas conversiones, para getMetrics. */
+  public static final ConversionStats STATS = new ConversionStats();
+
+  /*
+   * configureMetrics: medir todas las conversiones y mandarlas a Trace.
+   * Apagado por omision; metrics: true mide solo esa imagen.
+   */
+  private static volatile boolean metricsEnabled = false;
+  private static volatile boolean traceEnabled = false;
+
+  /* Buffer de buildZpl / buildZplBatch, se reusa entre llamadas. */
+  private static final ZplDocument DOCUMENT = new ZplDocument();
+
+  /* Suelta los pools cuando la app pasa a segundo plano o falta memoria. */
+  private final ComponentCallbacks2 memoryCallbacks = new ComponentCallbacks2() {
+    @Override
+    public void onTrimMemory(int level) {
+      if (level >= TRIM_MEMORY_UI_HIDDEN) {
+        releaseMemory();
+      }
+    }
+
+    @Override
+    public void onLowMemory() {
+      releaseMemory();
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration configuration) {
+    }
+  };
+
   public ZplCodeModule(ReactApplicationContext reactContext) {
     super(reactContext);
+    reactContext.registerComponentCallbacks(memoryCallbacks);
+  }
+
+  @Override
+  public void invalidate() {
+    getReactApplicationContext().unregisterComponentCallbacks(memoryCallbacks);
+    super.invalidate();
   }
 
   @Override
@@ -47,61 +132,1212 @@ public class ZplCodeModule extends ReactContextBaseJavaModule {
     Promise promise
   ) {
     try {
-      // Obtener propiedades de la ReadableMap
-      final Bitmap bitmap = getBitmapFromProps(getReactApplicationContext(), props);
-      final PixelImage image = new PixelImage(bitmap);
+      promise.resolve(imageToZpl(getReactApplicationContext(), props));
+    } catch (Exception e) {
+      promise.reject(e.getMessage(), e);
+    }
+  }
+
+  /* Como imageToZpl; resuelve { zpl, metrics } con los tiempos de esta conversion. */
+  @ReactMethod
+  public void imageToZplWithMetrics(ReadableMap props, Promise promise) {
+    try {
+      final ConversionMetrics metrics = newMetrics(true);
+      final WritableMap result = Arguments.createMap();
+      result.putString("zpl", imageToZpl(getReactApplicationContext(), props, true, metrics));
+      result.putMap("metrics", toMap(metrics));
+      promise.resolve(result);
+    } catch (Exception e) {
+      promise.reject(e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Convierte varias imagenes en un pool de hilos. Resuelve un arreglo en el
+   * mismo orden de entrada con { zpl } o { error } por cada imagen (y
+   * metrics si la imagen lo pide).
+   */
+  @ReactMethod
+  public void imagesToZpl(
+    ReadableArray items,
+    final Promise promise
+  ) {
+    final int count = items.size();
+    if (count == 0) {
+      promise.resolve(Arguments.createArray());
+      return;
+    }
+
+    final ReadableMap[] props = new ReadableMap[count];
+    for (int i = 0; i < count; i++) {
+      props[i] = items.getMap(i);
+    }
 
-      //Extrae las propiedades de ancho y alto, con valores predeterminados basados en las dimensiones de la imagen.
-      final int maxWidth = props.hasKey("width")
-        ? props.getInt("width")
-        : image.getWidth();
+    final String[] results = new String[count];
+    final String[] errors = new String[count];
+    final ConversionMetrics[] metrics = new ConversionMetrics[count];
+    final AtomicInteger pending = new AtomicInteger(count);
+    final Context context = getReactApplicationContext();
 
-      final int maxHeight = props.hasKey("height")
-        ? props.getInt("height")
-        : (image.getHeight() * maxWidth) / image.getWidth();
+    final ExecutorService executor = getBatchExecutor();
+    for (int i = 0; i < count; i++) {
+      final int index = i;
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            // Ya hay una imagen por hilo, no se reparte cada una en franjas.
+            metrics[index] = newMetrics(isMetricsRequested(props[index]));
+            results[index] = imageToZpl(context, props[index], false, metrics[index]);
+          } catch (Exception e) {
+            Log.w("ZplCodeModule", "imagesToZpl: " + index, e);
+            errors[index] = e.getMessage() != null ? e.getMessage() : e.toString();
+          }
 
-      final int actualWidth = image.getWidth();
-      final int actualHeight = image.getHeight();
+          // El ultimo en terminar arma la respuesta.
+          if (pending.decrementAndGet() == 0) {
+            final WritableArray array = Arguments.createArray();
+            for (int j = 0; j < count; j++) {
+              final WritableMap item = Arguments.createMap();
+              if (errors[j] != null) {
+                item.putString("error", errors[j]);
+              } else {
+                item.putString("zpl", results[j]);
+                if (isMetricsRequested(props[j])) {
+                  item.putMap("metrics", toMap(metrics[j]));
+                }
+              }
+              array.pushMap(item);
+            }
+            promise.resolve(array);
+          }
+        }
+      });
+    }
+  }
+
+  /* Un hilo por nucleo; los hilos se liberan si no hay trabajo. */
+  private static synchronized ExecutorService getBatchExecutor() {
+    if (batchExecutor == null) {
+      final int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+      final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+        threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+        new ThreadFactory() {
+          private final AtomicInteger number = new AtomicInteger();
+
+          @Override
+          public Thread newThread(Runnable runnable) {
+            final Thread thread = new Thread(runnable, "zpl-batch-" + number.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+      executor.allowCoreThreadTimeOut(true);
+      batchExecutor = executor;
+    }
+    return batchExecutor;
+  }
 
-      // # Resize
-      // Then compute the dimensions we would ideally like to decode to.
-      final int desiredWidth = PixelImage.getResizedDimension(maxWidth, maxHeight, actualWidth, actualHeight);
+  public static String imageToZpl(Context context, ReadableMap props) throws IOException {
+    return imageToZpl(context, props, true);
+  }
 
-      final int desiredHeight = PixelImage.getResizedDimension(maxHeight, maxWidth, actualHeight, actualWidth);
+  /**
+   * @param parallel valor de la propiedad parallel cuando no viene en props
+   */
+  public static String imageToZpl(Context context, ReadableMap props, boolean parallel) throws IOException {
+    return imageToZpl(context, props, parallel, newMetrics(false));
+  }
 
-      PixelImage newImage = image.newScale(desiredWidth, desiredHeight);
+  /**
+   * @param metrics recibe los tiempos y tamanos de la conversion, que tambien
+   *                se suman a STATS; null para no medir
+   */
+  public static String imageToZpl(Context context, ReadableMap props, boolean parallel,
+                                  @Nullable ConversionMetrics metrics) throws IOException {
+    return imageToZpl(context, props, parallel, getCacheKey(context, props), metrics);
+  }
 
-      // # Filter
-      final boolean isDither = props.hasKey("dither") && props.getBoolean("dither");
-      if (isDither) {
-        newImage.apply(GrayScale.DEFAULT);
-        newImage = newImage.newTransform(new FloydSteinbergDithering());
+  private static String imageToZpl(Context context, ReadableMap props, boolean parallel,
+                                   @Nullable String cacheKey,
+                                   @Nullable ConversionMetrics metrics) throws IOException {
+    final boolean traced = beginTrace("ZplCode imageToZpl");
+    try {
+      final long allocated = beginMetrics(metrics);
+      final String zpl = convertImage(context, props, parallel, cacheKey, metrics);
+      endMetrics(metrics, allocated);
+      return zpl;
+    } finally {
+      endTrace(traced);
+    }
+  }
+
+  private static String convertImage(Context context, ReadableMap props, boolean parallel,
+                                     @Nullable String cacheKey,
+                                     @Nullable ConversionMetrics metrics) throws IOException {
+    // # Cache
+    if (cacheKey != null) {
+      final String cached = CACHE.get(cacheKey);
+      if (cached != null) {
+        UrlImages.discard();
+        if (metrics != null) {
+          metrics.setCacheHit(true);
+        }
+        return cached;
       }
+    }
+
+    final ZplLibGraphics graphics = createGraphics(context, props, parallel, metrics);
+    final ReadableMap download = getDownload(props);
+
+    final String zpl;
+    try {
+      zpl = download != null
+        ? graphics.getCachedZplCode(GraphicRegistry.DEFAULT, download.getString("printer"), true)
+        : graphics.getZplCode(true);
+    } finally {
+      ArrayPool.DEFAULT.release(graphics.pixels.getPixels());
+    }
+
+    if (cacheKey != null) {
+      CACHE.put(cacheKey, zpl);
+    }
+    return zpl;
+  }
+
+  /**
+   * Escribe el ZPL de la imagen en out. Si va al cache se arma igual que en
+   * imageToZpl; si no, se escribe mientras se convierte, sin pasar por un
+   * String.
+   */
+  public static void writeImageZpl(Context context, ReadableMap props, PrinterOutputStream out) throws IOException {
+    writeImageZpl(context, props, out, null);
+  }
 
-      // # Zpl
-      final ZplLibGraphics graphics = new ZplLibGraphics(newImage, 127);
+  /**
+   * @param downloads junta los graficos que se descargan (con download) para
+   *                  marcarlos cuando la etiqueta llegue a la impresora; con
+   *                  null quedan pendientes hasta markGraphicsSent
+   */
+  public static void writeImageZpl(Context context, ReadableMap props, PrinterOutputStream out,
+                                   @Nullable GraphicRegistry.Downloads downloads) throws IOException {
+    final ConversionMetrics metrics = newMetrics(false);
+    final String cacheKey = getCacheKey(context, props);
+    if (cacheKey != null) {
+      out.write(imageToZpl(context, props, true, cacheKey, metrics));
+      return;
+    }
 
-      // Calculate offsets
-      final int xOffset = props.hasKey("x") ? props.getInt("x") : (maxWidth - desiredWidth) / 2;
-      final int yOffset = props.hasKey("y") ? props.getInt("y") : (maxHeight - desiredHeight) / 2;
+    final boolean traced = beginTrace("ZplCode writeImageZpl");
+    try {
+      final long allocated = beginMetrics(metrics);
+      final ZplLibGraphics graphics = createGraphics(context, props, true, metrics);
+      final ReadableMap download = getDownload(props);
+      try {
+        if (download != null && downloads != null) {
+          graphics.writeCachedZplCode(out, downloads, download.getString("printer"), true);
+        } else if (download != null) {
+          final GraphicRegistry.Downloads returned = GraphicRegistry.DEFAULT.newDownloads();
+          graphics.writeCachedZplCode(out, returned, download.getString("printer"), true);
+          returned.pending();
+        } else {
+          graphics.writeZplCode(out, true);
+        }
+      } finally {
+        ArrayPool.DEFAULT.release(graphics.pixels.getPixels());
+      }
+      endMetrics(metrics, allocated);
+    } finally {
+      endTrace(traced);
+    }
+  }
 
-      graphics.setPoint(xOffset, yOffset);
+  /**
+   * Metricas para una conversion, null si no se miden.
+   * @param requested se devuelven con el resultado, se miden aunque no esten activas
+   */
+  @Nullable
+  private static ConversionMetrics newMetrics(boolean requested) {
+    if (!metricsEnabled && !requested && !traceEnabled) {
+      return null;
+    }
+    return new ConversionMetrics(traceEnabled ? TraceSections.INSTANCE : null);
+  }
 
-      final String zpl = graphics.getZplCode(true);
+  /* metrics: true en un elemento de imagesToZpl. */
+  private static boolean isMetricsRequested(ReadableMap props) {
+    return props.hasKey("metrics") && props.getBoolean("metrics");
+  }
 
-      promise.resolve(zpl);
+  /* @return bytes reservados hasta ahora en el hilo, para sacar la diferencia al final */
+  private static long beginMetrics(@Nullable ConversionMetrics metrics) {
+    if (metrics == null) {
+      return 0;
+    }
+    metrics.begin();
+    return ArrayPool.DEFAULT.getThreadAllocatedBytes() + BitmapPool.DEFAULT.getThreadAllocatedBytes();
+  }
 
+  private static void endMetrics(@Nullable ConversionMetrics metrics, long allocated) {
+    if (metrics == null) {
+      return;
+    }
+    metrics.end();
+    metrics.addAllocatedBytes(ArrayPool.DEFAULT.getThreadAllocatedBytes()
+      + BitmapPool.DEFAULT.getThreadAllocatedBytes() - allocated);
+    if (metricsEnabled) {
+      STATS.record(metrics);
+    }
+  }
+
+  private static boolean beginTrace(String section) {
+    if (!traceEnabled) {
+      return false;
+    }
+    Trace.beginSection(section);
+    return true;
+  }
+
+  private static void endTrace(boolean traced) {
+    if (traced) {
+      Trace.endSection();
+    }
+  }
+
+  @Nullable
+  private static ReadableMap getDownload(ReadableMap props) {
+    return props.hasKey("download") && !props.isNull("download") ? props.getMap("download") : null;
+  }
+
+  /**
+   * Imagen decodificada, escalada y con el pipeline, posicion, codificacion
+   * y almacenamiento de props.
+   *
+   * Los pixeles salen de ArrayPool.DEFAULT; quien termina con el grafico
+   * puede devolverlos con ArrayPool.DEFAULT.release(graphics.pixels.getPixels()).
+   */
+  public static ZplLibGraphics createGraphics(Context context, ReadableMap props, boolean parallel) throws IOException {
+    return createGraphics(context, props, parallel, null);
+  }
+
+  /**
+   * @param metrics mide decodificar, escalar, copiar los pixeles y el umbral,
+   *                y queda en el grafico para el resto; null para no medir
+   */
+  public static ZplLibGraphics createGraphics(Context context, ReadableMap props, boolean parallel,
+                                              @Nullable ConversionMetrics metrics) throws IOException {
+    // Obtener propiedades de la ReadableMap
+    // Se decodifica ya reducida; outWidth/outHeight quedan con el tamano original.
+    final BitmapFactory.Options options = new BitmapFactory.Options();
+    start(metrics, ConversionMetrics.DECODE);
+    final Bitmap bitmap;
+    try {
+      bitmap = getBitmapFromProps(context, props, options);
+    } finally {
+      stop(metrics);
+    }
+
+    final int actualWidth = options.outWidth;
+    final int actualHeight = options.outHeight;
+
+    //Extrae las propiedades de ancho y alto, con valores predeterminados basados en las dimensiones de la imagen.
+    final int maxWidth = getMaxWidth(props, actualWidth);
+    final int maxHeight = getMaxHeight(props, maxWidth, actualWidth, actualHeight);
+
+    // # Resize
+    // Then compute the dimensions we would ideally like to decode to.
+    final int desiredWidth = PixelImage.getResizedDimension(maxWidth, maxHeight, actualWidth, actualHeight);
+
+    final int desiredHeight = PixelImage.getResizedDimension(maxHeight, maxWidth, actualHeight, actualWidth);
+
+    // Los pixeles se copian una sola vez, ya escalados, y los bitmaps vuelven al pool.
+    start(metrics, ConversionMetrics.SCALE);
+    final Bitmap scaled;
+    try {
+      scaled = BitmapAdapter.scale(bitmap, desiredWidth, desiredHeight, BitmapPool.DEFAULT);
+    } finally {
+      stop(metrics);
+    }
+    final PixelImage newImage;
+    start(metrics, ConversionMetrics.PIXELS);
+    try {
+      newImage = BitmapAdapter.toPixelImage(scaled, ArrayPool.DEFAULT);
+    } finally {
+      stop(metrics);
+      if (scaled != bitmap) {
+        BitmapPool.DEFAULT.put(scaled);
+      }
+      BitmapPool.DEFAULT.put(bitmap);
+    }
+
+    // Imagenes grandes se procesan en varios hilos, salvo parallel: false.
+    final ForkJoinPool pool = (props.hasKey("parallel") ? props.getBoolean("parallel") : parallel)
+      ? Stripes.getDefaultPool()
+      : null;
+
+    // # Filter
+    // Grises, dither y raster se hacen en una sola pasada.
+    final RowDither dither = getDitherFromProps(props);
+    final AdaptiveThreshold adaptive = getAdaptiveThresholdFromProps(props);
+    final RasterPipeline pipeline;
+    if (adaptive != null) {
+      if (dither != null) {
+        throw new IllegalArgumentException("threshold '" + adaptive.method + "' cannot be combined with dither");
+      }
+      pipeline = new RasterPipeline(GrayScale.DEFAULT, adaptive);
+    } else {
+      start(metrics, ConversionMetrics.THRESHOLD);
+      final int threshold;
+      try {
+        threshold = getThresholdFromProps(props, newImage, pool);
+      } finally {
+        stop(metrics);
+      }
+      pipeline = dither != null
+        ? new RasterPipeline(GrayScale.DEFAULT, dither, threshold)
+        : new RasterPipeline(threshold);
+    }
+
+    // # Zpl
+    // Con tileSize solo se vuelven a codificar los cuadros que cambiaron.
+    final ZplLibGraphics graphics = props.hasKey("tileSize")
+      ? new TiledZplGraphics(newImage, pipeline, props.getInt("tileSize"), props.getInt("tileSize"), TILES)
+      : new ZplLibGraphics(newImage, pipeline);
+
+    // Calculate offsets
+    final int xOffset = props.hasKey("x") ? props.getInt("x") : (maxWidth - desiredWidth) / 2;
+    final int yOffset = props.hasKey("y") ? props.getInt("y") : (maxHeight - desiredHeight) / 2;
+
+    graphics.setPoint(xOffset, yOffset);
+
+    // Z64 (por defecto), B64, ACS o auto
+    if (props.hasKey("encoding")) {
+      graphics.setEncoding(props.getString("encoding"));
+    }
+
+    // Nivel 1 (rapido) a 9 (mas chico) y estrategia de zlib para Z64
+    if (props.hasKey("compressionLevel") || props.hasKey("compressionStrategy")) {
+      graphics.setCompression(
+        props.hasKey("compressionLevel") ? props.getInt("compressionLevel") : Deflater.DEFAULT_COMPRESSION,
+        props.hasKey("compressionStrategy")
+          ? Deflaters.strategyForName(props.getString("compressionStrategy"))
+          : Deflater.DEFAULT_STRATEGY);
+    }
+
+    graphics.setPool(pool);
+    graphics.setMetrics(metrics);
+
+    // ~DG una sola vez por impresora, despues solo ^XG
+    final ReadableMap download = getDownload(props);
+    if (download != null) {
+      final String device = download.hasKey("device") ? download.getString("device") : "R";
+      final String command = download.hasKey("command")
+        ? download.getString("command")
+        : ZplLibGraphics.DOWNLOAD_DG;
+      graphics.setStorage(device.charAt(0), command);
+    }
+
+    return graphics;
+  }
+
+  private static void start(@Nullable ConversionMetrics metrics, int stage) {
+    if (metrics != null) {
+      metrics.start(stage);
+    }
+  }
+
+  private static void stop(@Nullable ConversionMetrics metrics) {
+    if (metrics != null) {
+      metrics.stop();
+    }
+  }
+
+  private static int getMaxWidth(ReadableMap props, int actualWidth) {
+    return props.hasKey("width")
+      ? props.getInt("width")
+      : actualWidth;
+  }
+
+  private static int getMaxHeight(ReadableMap props, int maxWidth, int actualWidth, int actualHeight) {
+    return props.hasKey("height")
+      ? props.getInt("height")
+      : (actualHeight * maxWidth) / actualWidth;
+  }
+
+  /**
+   * Mayor potencia de 2 que reduce la imagen sin quedar por debajo del tamano
+   * que se va a imprimir.
+   * @return 1 si no hay width (se imprime al tamano original)
+   */
+  public static int getSampleSize(ReadableMap props, int actualWidth, int actualHeight) {
+    if (props == null || !props.hasKey("width") || actualWidth <= 0 || actualHeight <= 0) {
+      return 1;
+    }
+
+    final int maxWidth = getMaxWidth(props, actualWidth);
+    final int maxHeight = getMaxHeight(props, maxWidth, actualWidth, actualHeight);
+    final int desiredWidth = PixelImage.getResizedDimension(maxWidth, maxHeight, actualWidth, actualHeight);
+    final int desiredHeight = PixelImage.getResizedDimension(maxHeight, maxWidth, actualHeight, actualWidth);
+
+    if (desiredWidth <= 0 || desiredHeight <= 0) {
+      return 1;
+    }
+
+    int sample = 1;
+    while (actualWidth / (sample * 2) >= desiredWidth && actualHeight / (sample * 2) >= desiredHeight) {
+      sample *= 2;
+    }
+    return sample;
+  }
+
+  /**
+   * Llave del cache: identidad de la imagen mas los parametros de conversion.
+   * null si no se debe usar el cache (cache: false, download, o no se puede
+   * saber si la imagen cambio).
+   */
+  @Nullable
+  public static String getCacheKey(Context context, ReadableMap props) {
+    if (props.hasKey("cache") && !props.getBoolean("cache")) {
+      return null;
+    }
+
+    // Con download el resultado depende de lo ya enviado a la impresora.
+    if (props.hasKey("download") && !props.isNull("download")) {
+      return null;
+    }
+
+    final String source = getSourceKey(context, props);
+    if (source == null) {
+      return null;
+    }
+
+    final TreeMap<String, Object> params = new TreeMap<>(props.toHashMap());
+    params.remove("uri");
+    params.remove("base64");
+    // No cambian el ZPL que sale.
+    params.remove("parallel");
+    params.remove("cache");
+    params.remove("metrics");
+    return source + "|" + params;
+  }
+
+  /**
+   * Identidad de la imagen: hash del base64, archivo o content:// + fecha y
+   * tamano, o url + ETag/Last-Modified (ver UrlImages.getVersion).
+   */
+  @Nullable
+  public static String getSourceKey(Context context, ReadableMap props) {
+    final String uri = props.hasKey("uri") ? props.getString("uri") : null;
+    if (uri == null) {
+      final String base64 = props.hasKey("base64") ? props.getString("base64") : null;
+      return base64 != null ? "base64:" + ZplCache.sha1Hex(base64) : null;
+    }
+
+    if (uri.startsWith("data:")) {
+      return "data:" + ZplCache.sha1Hex(uri);
+    }
+
+    try {
+      if (uri.startsWith("https://") || uri.startsWith("http://")) {
+        final String version = UrlImages.getVersion(uri);
+        return version != null ? uri + "@" + version : null;
+      }
+
+      if (uri.startsWith("content://")) {
+        return getContentKey(context, uri);
+      }
+
+      final File file = new File(uri.startsWith("file://") ? Uri.parse(uri).getPath() : uri);
+      return file.isFile() ? "file:" + file.getPath() + "@" + file.lastModified() + ":" + file.length() : null;
+
+    } catch (IOException e) {
+      Log.w("ZplCodeModule", "getSourceKey: " + uri, e);
+      return null;
+    }
+  }
+
+  /**
+   * content:// + tamano y fecha de modificacion del proveedor (_size y
+   * date_modified o last_modified). Sin fecha solo queda el largo del
+   * archivo, como ultimo recurso.
+   */
+  @Nullable
+  private static String getContentKey(Context context, String uri) throws IOException {
+    final Uri parsed = Uri.parse(uri);
+    long size = -1;
+    long modified = -1;
+    try (Cursor cursor = context.getContentResolver().query(parsed, null, null, null, null)) {
+      if (cursor != null && cursor.moveToFirst()) {
+        size = getLong(cursor, OpenableColumns.SIZE);
+        modified = getLong(cursor, MediaStore.MediaColumns.DATE_MODIFIED);
+        if (modified < 0) {
+          modified = getLong(cursor, DocumentsContract.Document.COLUMN_LAST_MODIFIED);
+        }
+      }
+    } catch (RuntimeException e) {
+      // Algunos proveedores no aceptan query; queda el largo del archivo.
+      Log.w("ZplCodeModule", "getContentKey: " + uri, e);
+    }
+
+    if (size < 0) {
+      try (AssetFileDescriptor fd = context.getContentResolver().openAssetFileDescriptor(parsed, "r")) {
+        if (fd == null) {
+          return null;
+        }
+        size = fd.getLength();
+      }
+    }
+    return modified >= 0 ? uri + "@" + modified + ":" + size : uri + "@" + size;
+  }
+
+  /* -1 si el cursor no tiene la columna o es null. */
+  private static long getLong(Cursor cursor, String column) {
+    final int index = cursor.getColumnIndex(column);
+    return index >= 0 && !cursor.isNull(index) ? cursor.getLong(index) : -1;
+  }
+
+  /**
+   * maxBytes: limite en memoria, disk: guardar tambien en el cache de la app,
+   * diskMaxBytes: limite en disco.
+   */
+  @ReactMethod
+  public void configureCache(ReadableMap options, Promise promise) {
+    try {
+      if (options.hasKey("maxBytes")) {
+        CACHE.setMaxBytes((long) options.getDouble("maxBytes"));
+      }
+
+      if (options.hasKey("disk")) {
+        final long diskMaxBytes = options.hasKey("diskMaxBytes")
+          ? (long) options.getDouble("diskMaxBytes")
+          : ZplCache.DEFAULT_DISK_MAX_BYTES;
+        final File dir = options.getBoolean("disk")
+          ? new File(getReactApplicationContext().getCacheDir(), "zplcode")
+          : null;
+        CACHE.setDisk(dir, diskMaxBytes);
+      }
+
+      promise.resolve(null);
     } catch (Exception e) {
       promise.reject(e.getMessage(), e);
     }
   }
 
+  @ReactMethod
+  public void getCacheStats(Promise promise) {
+    final WritableMap stats = Arguments.createMap();
+    stats.putDouble("hits", CACHE.getHitCount());
+    stats.putDouble("diskHits", CACHE.getDiskHitCount());
+    stats.putDouble("misses", CACHE.getMissCount());
+    stats.putDouble("evictions", CACHE.getEvictionCount());
+    stats.putDouble("entries", CACHE.getEntryCount());
+    stats.putDouble("bytes", CACHE.getSize());
+    stats.putDouble("maxBytes", CACHE.getMaxBytes());
+    promise.resolve(stats);
+  }
+
+  /**
+   * Percentiles (p50/p95/p99) de cada etapa en las ultimas conversiones y
+   * totales desde el inicio o resetMetrics.
+   */
+  @ReactMethod
+  public void getMetrics(Promise promise) {
+    final WritableMap result = Arguments.createMap();
+    result.putDouble("conversions", STATS.getConversionCount());
+    result.putDouble("cacheHits", STATS.getCacheHitCount());
+    result.putDouble("graphicReuses", STATS.getGraphicReuseCount());
+    result.putDouble("encodedTiles", STATS.getEncodedTileCount());
+    result.putDouble("reusedTiles", STATS.getReusedTileCount());
+    result.putDouble("rasterBytes", STATS.getRasterBytesTotal());
+    result.putDouble("outputBytes", STATS.getOutputBytesTotal());
+    result.putDouble("allocatedBytes", STATS.getAllocatedBytesTotal());
+    result.putDouble("compressionRatio", STATS.getCompressionRatio());
+    result.putMap("totalNanos", toMap(STATS.getTotal()));
+
+    final WritableMap stages = Arguments.createMap();
+    for (int i = 0; i < ConversionMetrics.STAGES.length; i++) {
+      stages.putMap(ConversionMetrics.STAGES[i], toMap(STATS.getStage(i)));
+    }
+    result.putMap("stageNanos", stages);
+    result.putMap("outputBytesPerConversion", toMap(STATS.getOutputBytes()));
+    result.putMap("allocatedBytesPerConversion", toMap(STATS.getAllocatedBytes()));
+    promise.resolve(result);
+  }
+
+  @ReactMethod
+  public void resetMetrics(Promise promise) {
+    STATS.clear();
+    promise.resolve(null);
+  }
+
+  /**
+   * enabled: medir todas las conversiones para getMetrics (si es false solo
+   * las que piden metrics), trace: secciones de android.os.Trace por etapa.
+   */
+  @ReactMethod
+  public void configureMetrics(ReadableMap options, Promise promise) {
+    if (options.hasKey("enabled")) {
+      metricsEnabled = options.getBoolean("enabled");
+    }
+    if (options.hasKey("trace")) {
+      traceEnabled = options.getBoolean("trace");
+    }
+    promise.resolve(null);
+  }
+
+  private static WritableMap toMap(ConversionMetrics metrics) {
+    final WritableMap result = Arguments.createMap();
+    result.putDouble("totalNanos", metrics.getTotalNanos());
+    final WritableMap stages = Arguments.createMap();
+    for (int i = 0; i < ConversionMetrics.STAGES.length; i++) {
+      stages.putDouble(ConversionMetrics.STAGES[i], metrics.getNanos(i));
+    }
+    result.putMap("stageNanos", stages);
+    result.putDouble("rasterBytes", metrics.getRasterBytes());
+    result.putDouble("compressedBytes", metrics.getCompressedBytes());
+    result.putDouble("outputBytes", metrics.getOutputBytes());
+    result.putDouble("compressionRatio", metrics.getCompressionRatio());
+    result.putDouble("allocatedBytes", metrics.getAllocatedBytes());
+    result.putBoolean("cacheHit", metrics.isCacheHit());
+    result.putBoolean("graphicReused", metrics.isGraphicReused());
+    result.putInt("encodedTiles", metrics.getEncodedTiles());
+    result.putInt("reusedTiles", metrics.getReusedTiles());
+    return result;
+  }
+
+  /* samples: valores en la ventana, p50/p95/p99 de esos valores. */
+  private static WritableMap toMap(RollingHistogram histogram) {
+    final long[] percentiles = histogram.getPercentiles(50, 95, 99);
+    final WritableMap result = Arguments.createMap();
+    result.putInt("samples", histogram.getSize());
+    result.putDouble("p50", percentiles[0]);
+    result.putDouble("p95", percentiles[1]);
+    result.putDouble("p99", percentiles[2]);
+    return result;
+  }
+
+  /*
+   * Suelta los bitmaps y buffers que se reusan entre conversiones. Los
+   * bitmaps de ImageDecoder (Android 9+) nunca estan en el pool, ver BitmapPool.
+   */
+  @ReactMethod
+  public void releaseMemory(Promise promise) {
+    releaseMemory();
+    promise.resolve(null);
+  }
+
+  private void releaseMemory() {
+    BitmapPool.DEFAULT.clear();
+    ArrayPool.DEFAULT.clear();
+    synchronized (this) {
+      if (printQueue != null) {
+        printQueue.clearBuffers();
+      }
+    }
+  }
+
+  @ReactMethod
+  public void clearCache(Promise promise) {
+    CACHE.clear();
+    CACHE.resetStats();
+    TILES.clear();
+    TILES.resetStats();
+    promise.resolve(null);
+  }
+
+
+  /**
+   * Arma la etiqueta completa con los elementos de Zpl.Builder en una sola
+   * llamada: comandos ya escritos o [tipo, ...valores] (ver appendElement).
+   */
+  @ReactMethod
+  public void buildZpl(ReadableArray elements, boolean prefixAndSuffix, Promise promise) {
+    try {
+      synchronized (DOCUMENT) {
+        try {
+          DOCUMENT.startLabel(prefixAndSuffix);
+          appendElements(getReactApplicationContext(), DOCUMENT, elements, null);
+          promise.resolve(DOCUMENT.endLabel().toString());
+        } finally {
+          DOCUMENT.clear();
+        }
+      }
+    } catch (Exception e) {
+      promise.reject(e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Varias etiquetas (cada una un arreglo de elementos) en un solo texto,
+   * separadas por un salto de linea.
+   */
+  @ReactMethod
+  public void buildZplBatch(ReadableArray labels, boolean prefixAndSuffix, Promise promise) {
+    try {
+      final Context context = getReactApplicationContext();
+      synchronized (DOCUMENT) {
+        try {
+          for (int i = 0; i < labels.size(); i++) {
+            DOCUMENT.startLabel(prefixAndSuffix);
+            appendElements(context, DOCUMENT, labels.getArray(i), null);
+            DOCUMENT.endLabel();
+          }
+          promise.resolve(DOCUMENT.toString());
+        } finally {
+          DOCUMENT.clear();
+        }
+      }
+    } catch (Exception e) {
+      promise.reject(e.getMessage(), e);
+    }
+  }
+
+  /**
+   * @param out con out las imagenes se escriben directo ahi (ver print);
+   *            null para dejar todo en el documento
+   */
+  public static void appendElements(Context context, ZplDocument document, ReadableArray elements,
+                                    @Nullable PrinterOutputStream out) throws IOException {
+    appendElements(context, document, elements, out, null);
+  }
+
+  /* downloads: ver writeImageZpl. */
+  public static void appendElements(Context context, ZplDocument document, ReadableArray elements,
+                                    @Nullable PrinterOutputStream out,
+                                    @Nullable GraphicRegistry.Downloads downloads) throws IOException {
+    for (int i = 0; i < elements.size(); i++) {
+      switch (elements.getType(i)) {
+        case String:
+          document.raw(elements.getString(i));
+          break;
+        case Array:
+          appendElement(context, document, elements.getArray(i), out, downloads);
+          break;
+        case Number:
+          // Como lo escribe JS: sin .0 si es entero
+          final double number = elements.getDouble(i);
+          document.raw(number == (long) number ? Long.toString((long) number) : Double.toString(number));
+          break;
+        case Boolean:
+          document.raw(String.valueOf(elements.getBoolean(i)));
+          break;
+        case Null:
+          document.raw("");
+          break;
+        default:
+          throw new IllegalArgumentException("Elemento no soportado en la posicion " + i);
+      }
+    }
+  }
+
+  /**
+   * T: texto, B: bloque de texto, C: Code 128, Q: QR, R: rectangulo,
+   * I: imagen (se convierte aca con imageToZpl). Los valores llegan ya
+   * traducidos a ZPL por Zpl.Builder.
+   */
+  private static void appendElement(Context context, ZplDocument document, ReadableArray element,
+                                    @Nullable PrinterOutputStream out,
+                                    @Nullable GraphicRegistry.Downloads downloads) throws IOException {
+    final String type = element.getString(0);
+    switch (type) {
+      case "T":
+        document.text(element.getInt(1), element.getInt(2), element.getString(3), getChar(element, 4),
+          element.getInt(5), element.getInt(6), element.getString(7));
+        break;
+      case "B":
+        document.textBlock(element.getInt(1), element.getInt(2), getChar(element, 3), element.getInt(4),
+          element.getInt(5), element.getInt(6), element.getInt(7), getChar(element, 8), element.getString(9));
+        break;
+      case "C":
+        document.barcode128(element.getInt(1), element.getInt(2), element.getInt(3), getChar(element, 4),
+          element.getInt(5), getChar(element, 6), element.getString(7));
+        break;
+      case "Q":
+        document.qrcode(element.getInt(1), element.getInt(2), element.getInt(3), element.getInt(4),
+          getChar(element, 5), element.getString(6), element.getString(7));
+        break;
+      case "R":
+        document.rectangle(element.getInt(1), element.getInt(2), element.getInt(3), element.getInt(4),
+          element.getInt(5));
+        break;
+      case "I":
+        if (out != null) {
+          document.writeElementTo(out);
+          writeImageZpl(context, element.getMap(1), out, downloads);
+        } else {
+          document.raw(imageToZpl(context, element.getMap(1)));
+        }
+        break;
+      default:
+        throw new IllegalArgumentException("Elemento desconocido: " + type);
+    }
+  }
+
+  /**
+   * Convierte e imprime sin volver a JS: el ZPL se escribe directo al
+   * socket de la impresora. Pasa por la cola como enqueuePrint y resuelve
+   * al terminar con los tiempos del trabajo y los bytes enviados.
+   */
+  @ReactMethod
+  public void print(ReadableMap printer, ReadableArray labels, boolean prefixAndSuffix, Promise promise) {
+    try {
+      submitPrint(printer, labels, prefixAndSuffix, 0, promise);
+    } catch (Exception e) {
+      promise.reject(e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Encola un trabajo y resuelve su id enseguida; el avance llega con el
+   * evento PRINT_EVENT. options: { priority } (mayor sale antes).
+   *
+   * printer: { type: 'tcp', host, port } o { type: 'bluetooth', address },
+   * con timeout (ms) y chunkSize opcionales.
+   */
+  @ReactMethod
+  public void enqueuePrint(ReadableMap printer, ReadableArray labels, boolean prefixAndSuffix,
+                           ReadableMap options, Promise promise) {
+    try {
+      final int priority = options.hasKey("priority") ? options.getInt("priority") : 0;
+      promise.resolve((double) submitPrint(printer, labels, prefixAndSuffix, priority, null).id);
+    } catch (Exception e) {
+      promise.reject(e.getMessage(), e);
+    }
+  }
+
+  @ReactMethod
+  public void cancelPrintJob(double id, Promise promise) {
+    promise.resolve(getPrintQueue().cancel((long) id));
+  }
+
+  /*
+   * maxJobs: trabajos en cola, prefetch: etiquetas convertidas por
+   * adelantado, maxBufferSize: bytes por etiqueta convertida por adelantado.
+   */
+  @ReactMethod
+  public void configurePrintQueue(ReadableMap options, Promise promise) {
+    final PrintQueue queue = getPrintQueue();
+    if (options.hasKey("maxJobs")) {
+      queue.setMaxJobs(options.getInt("maxJobs"));
+    }
+    if (options.hasKey("prefetch")) {
+      queue.setPrefetch(options.getInt("prefetch"));
+    }
+    if (options.hasKey("maxBufferSize")) {
+      queue.setMaxBufferSize(options.getInt("maxBufferSize"));
+    }
+    promise.resolve(null);
+  }
+
+  // Requeridos por NativeEventEmitter.
+  @ReactMethod
+  public void addListener(String eventName) {
+  }
+
+  @ReactMethod
+  public void removeListeners(double count) {
+  }
+
+  private PrintQueue.Job submitPrint(ReadableMap printer, ReadableArray labels, boolean prefixAndSuffix,
+                                     int priority, @Nullable Promise promise) {
+    final Context context = getReactApplicationContext();
+
+    // Cada etiqueta se lee en un solo hilo de conversion.
+    final List<PrintQueue.Label> items = new ArrayList<>(labels.size());
+    for (int i = 0; i < labels.size(); i++) {
+      items.add(createLabel(context, labels.getArray(i), prefixAndSuffix));
+    }
+
+    final PrintQueue queue = getPrintQueue();
+    synchronized (printPromises) {
+      final PrintQueue.Job job = queue.submit(getPrinterName(printer), createConnector(printer), items, priority);
+      if (promise != null) {
+        printPromises.put(job.id, promise);
+      }
+      return job;
+    }
+  }
+
+  private static PrintQueue.Label createLabel(final Context context, final ReadableArray elements,
+                                              final boolean prefixAndSuffix) {
+    // Los ~DG de la etiqueta se marcan recien cuando la impresora la recibio.
+    final GraphicRegistry.Downloads downloads = GraphicRegistry.DEFAULT.newDownloads();
+    return new PrintQueue.Label() {
+      @Override
+      public void writeTo(PrinterOutputStream out) throws IOException {
+        downloads.clear();
+        final ZplDocument document = new ZplDocument();
+        document.startLabel(prefixAndSuffix);
+        appendElements(context, document, elements, out, downloads);
+        document.endLabel().writeTo(out);
+      }
+
+      @Override
+      public void onSent(boolean sent) {
+        if (sent) {
+          downloads.sent();
+        } else {
+          downloads.failed();
+        }
+      }
+    };
+  }
+
+  private static PrintQueue.Connector createConnector(final ReadableMap printer) {
+    final int chunkSize = getChunkSize(printer);
+    return new PrintQueue.Connector() {
+      @Override
+      public PrinterConnection open() throws IOException {
+        return openPrinter(printer);
+      }
+
+      @Override
+      public int getChunkSize() {
+        return chunkSize;
+      }
+    };
+  }
+
+  private synchronized PrintQueue getPrintQueue() {
+    if (printQueue == null) {
+      printQueue = new PrintQueue(getBatchExecutor(), new PrintQueue.Listener() {
+        @Override
+        public void onJobStarted(PrintQueue.Job job) {
+          emitPrintEvent(job, "started", null);
+        }
+
+        @Override
+        public void onLabelSent(PrintQueue.Job job) {
+          emitPrintEvent(job, "progress", null);
+        }
+
+        @Override
+        public void onJobFinished(PrintQueue.Job job, Exception error) {
+          final String state = job.isCancelled() ? "cancelled" : (error != null ? "failed" : "done");
+          final Promise promise;
+          synchronized (printPromises) {
+            promise = printPromises.remove(job.id);
+          }
+          if (promise != null) {
+            if (error != null) {
+              promise.reject(error.getMessage(), error);
+            } else if (job.isCancelled()) {
+              promise.reject("cancelled", "Print job " + job.id + " was cancelled");
+            } else {
+              promise.resolve(getJobTimes(job));
+            }
+          }
+          if (error != null) {
+            Log.w("ZplCodeModule", "print job " + job.id, error);
+          }
+          emitPrintEvent(job, state, error);
+        }
+      });
+    }
+    return printQueue;
+  }
+
+  /**
+   * { id, state, sent, total }; al terminar tambien los tiempos y error.
+   * state: started, progress, done, failed o cancelled.
+   */
+  private void emitPrintEvent(PrintQueue.Job job, String state, @Nullable Exception error) {
+    final ReactApplicationContext context = getReactApplicationContext();
+    if (!context.hasActiveReactInstance()) {
+      return;
+    }
+
+    final WritableMap event = "started".equals(state) || "progress".equals(state)
+      ? Arguments.createMap()
+      : getJobTimes(job);
+    event.putDouble("id", job.id);
+    event.putString("state", state);
+    event.putInt("sent", job.getSentCount());
+    event.putInt("total", job.getLabelCount());
+    if (error != null) {
+      event.putString("error", error.getMessage() != null ? error.getMessage() : error.toString());
+    }
+    context.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class).emit(PRINT_EVENT, event);
+  }
+
+  private static WritableMap getJobTimes(PrintQueue.Job job) {
+    final WritableMap result = Arguments.createMap();
+    result.putDouble("waitMs", job.getWaitNanos() / 1e6);
+    result.putDouble("connectMs", job.getConnectNanos() / 1e6);
+    result.putDouble("convertMs", job.getConvertNanos() / 1e6);
+    result.putDouble("sendMs", job.getSendNanos() / 1e6);
+    result.putDouble("totalMs", job.getTotalNanos() / 1e6);
+    result.putDouble("bytes", job.getBytes());
+    result.putInt("labels", job.getSentCount());
+    return result;
+  }
+
+  /* Los trabajos de una misma impresora van por la misma conexion. */
+  private static String getPrinterName(ReadableMap printer) {
+    final String type = printer.hasKey("type") ? printer.getString("type") : "tcp";
+    if ("bluetooth".equals(type)) {
+      return printer.getString("address");
+    }
+    return printer.getString("host") + ":"
+      + (printer.hasKey("port") ? printer.getInt("port") : PrinterConnection.DEFAULT_PORT);
+  }
+
+  public static PrinterConnection openPrinter(ReadableMap printer) throws IOException {
+    final String type = printer.hasKey("type") ? printer.getString("type") : "tcp";
+    if ("bluetooth".equals(type)) {
+      return new BluetoothPrinterConnection(printer.getString("address"));
+    }
+    if ("tcp".equals(type)) {
+      return new TcpPrinterConnection(
+        printer.getString("host"),
+        printer.hasKey("port") ? printer.getInt("port") : PrinterConnection.DEFAULT_PORT,
+        printer.hasKey("timeout") ? printer.getInt("timeout") : 10000);
+    }
+    throw new IllegalArgumentException("Unknown printer type: " + type);
+  }
+
+  private static int getChunkSize(ReadableMap printer) {
+    if (printer.hasKey("chunkSize")) {
+      return printer.getInt("chunkSize");
+    }
+    return "bluetooth".equals(printer.hasKey("type") ? printer.getString("type") : null)
+      ? BluetoothPrinterConnection.DEFAULT_CHUNK_SIZE
+      : PrinterOutputStream.DEFAULT_CHUNK_SIZE;
+  }
+
+  /* Primer caracter, 0 si viene vacio. */
+  private static char getChar(ReadableArray array, int index) {
+    final String value = array.getString(index);
+    return value == null || value.isEmpty() ? 0 : value.charAt(0);
+  }
+
+  /**
+   * Pinta el ZPL sin impresora y resuelve un PNG como data URI.
+   * widthDots/heightDots: tamano de la etiqueta si el ZPL no trae ^PW/^LL.
+   */
+  @ReactMethod
+  public void renderZpl(String zpl, ReadableMap options, Promise promise) {
+    try {
+      final int width = options.hasKey("widthDots") ? options.getInt("widthDots") : PREVIEW.width;
+      final int height = options.hasKey("heightDots") ? options.getInt("heightDots") : PREVIEW.height;
+
+      final MonoRaster raster;
+      synchronized (PREVIEW) {
+        raster = PREVIEW.render(zpl, width, height);
+      }
+
+      final Bitmap bitmap = BitmapAdapter.toBitmap(raster.toPixelImage());
+      final ByteArrayOutputStream png = new ByteArrayOutputStream();
+      try {
+        bitmap.compress(Bitmap.CompressFormat.PNG, 100, png);
+      } finally {
+        bitmap.recycle();
+      }
+      promise.resolve("data:image/png;base64," + Base64.encodeToString(png.toByteArray(), Base64.NO_WRAP));
+    } catch (Exception e) {
+      promise.reject(e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Olvida los graficos descargados a la impresora (por ejemplo despues de
+   * reiniciarla), la siguiente imagen se vuelve a descargar.
+   * @param printer null para olvidar todas
+   */
+  @ReactMethod
+  public void forgetDownloadedGraphics(@Nullable String printer) {
+    if (printer == null) {
+      GraphicRegistry.DEFAULT.clear();
+    } else {
+      GraphicRegistry.DEFAULT.forget(printer);
+    }
+  }
+
+  /**
+   * Marca como enviados los graficos que toZpl descargo en texto que ya
+   * llego a la impresora.
+   * @param paths R:NOMBRE.GRF de los ~DG/~DY enviados
+   */
+  @ReactMethod
+  public void markGraphicsSent(String printer, ReadableArray paths, Promise promise) {
+    final List<String> list = new ArrayList<>(paths.size());
+    for (int i = 0; i < paths.size(); i++) {
+      list.add(paths.getString(i));
+    }
+    promise.resolve(GraphicRegistry.DEFAULT.markPendingSent(printer, list));
+  }
+
+  /**
+   * dither: true usa Floyd-Steinberg, o el nombre de un dither
+   * ("atkinson", "bayer4", ...). false o ausente no aplica dither.
+   */
+  @Nullable
+  public static RowDither getDitherFromProps(ReadableMap props) {
+    if (!props.hasKey("dither") || props.isNull("dither")) {
+      return null;
+    }
+
+    if (props.getType("dither") == ReadableType.String) {
+      return Dithering.forName(props.getString("dither"));
+    }
+
+    return Dithering.forFlag(props.getBoolean("dither"));
+  }
+
+  /**
+   * threshold: numero 0..255 (gris <= threshold es negro), "auto" usa Otsu
+   * sobre una muestra de uno de cada thresholdSampling x thresholdSampling
+   * pixeles. Ausente es 127.
+   */
+  public static int getThresholdFromProps(ReadableMap props, PixelImage image, @Nullable ForkJoinPool pool) {
+    if (!props.hasKey("threshold") || props.isNull("threshold")) {
+      return 127;
+    }
+
+    if (props.getType("threshold") == ReadableType.String) {
+      final String threshold = props.getString("threshold");
+      if (!"auto".equals(threshold)) {
+        throw new IllegalArgumentException("Unknown threshold '" + threshold + "'");
+      }
+      final int step = props.hasKey("thresholdSampling")
+        ? props.getInt("thresholdSampling")
+        : PixelImage.THRESHOLD_SAMPLE_STEP;
+      return image.calculeThreshold(step, pool);
+    }
+
+    return props.getInt("threshold");
+  }
+
+  /**
+   * threshold: "bradley" o "sauvola" compara cada pixel con el promedio de
+   * una ventana de thresholdWindow pixeles (por omision 1/8 de la imagen).
+   * @return null si threshold no es adaptativo
+   */
+  @Nullable
+  public static AdaptiveThreshold getAdaptiveThresholdFromProps(ReadableMap props) {
+    if (!props.hasKey("threshold") || props.getType("threshold") != ReadableType.String) {
+      return null;
+    }
+
+    return AdaptiveThreshold.forName(
+      props.getString("threshold"),
+      props.hasKey("thresholdWindow") ? props.getInt("thresholdWindow") : 0);
+  }
 
   @NonNull
   public static Bitmap getBitmapFromProps(Context context, ReadableMap props) throws IOException {
+    return getBitmapFromProps(context, props, new BitmapFactory.Options());
+  }
+
+  /**
+   * Decodifica la imagen reducida con inSampleSize segun width/height de props.
+   * @param options recibe el tamano original en outWidth/outHeight y el
+   * muestreo usado en inSampleSize
+   */
+  public static Bitmap getBitmapFromProps(Context context, ReadableMap props, BitmapFactory.Options options) throws IOException {
     String uri = props.hasKey("uri") ? props.getString("uri") : null;
     if (uri != null) {
-      Bitmap bitmap = getBitmapFromUri(context, uri);
+      Bitmap bitmap = getBitmapFromUri(context, uri, props, options);
       if (bitmap == null) {
         throw new IOException("Image '" + uri + "' not found");
       }
@@ -110,7 +1346,7 @@ public class ZplCodeModule extends ReactContextBaseJavaModule {
 
     String base64 = props.hasKey("base64") ? props.getString("base64") : null;
     if (base64 != null) {
-      Bitmap bitmap = getBitmapFromBase64(base64);
+      Bitmap bitmap = getBitmapFromBase64(base64, props, options);
       if (bitmap == null) {
         throw new IOException("Could not decode the image");
       }
@@ -121,89 +1357,187 @@ public class ZplCodeModule extends ReactContextBaseJavaModule {
   }
 
   public static Bitmap getBitmapFromUri(Context context, String uri) throws IOException {
+    return getBitmapFromUri(context, uri, null, new BitmapFactory.Options());
+  }
+
+  public static Bitmap getBitmapFromUri(Context context, String uri,
+                                        @Nullable ReadableMap props,
+                                        BitmapFactory.Options options) throws IOException {
     Log.d("ZplCodeModule", "getBitmapFromUri: " + uri);
 
     // "data:image/jpeg;base64,...............";
     if (uri.startsWith("data:")) {
       // Obtener la parte de los datos base64 después de la coma
       String imageDataBytes = uri.substring(uri.indexOf(",") + 1);
-      return getBitmapFromBase64(imageDataBytes);
+      return getBitmapFromBase64(imageDataBytes, props, options);
     }
 
     // Si es una URL
     if (uri.startsWith("https://") || uri.startsWith("http://")) {
-      return getBitmapFromUrl(uri);
+      return getBitmapFromUrl(uri, props, options);
     }
 
     // Si es una ruta de archivo es un contenedor
     if (uri.startsWith("content://")) {
-      return getBitmapFromHardware(context, Uri.parse(uri));
+      return getBitmapFromHardware(context, Uri.parse(uri), props, options);
     }
 
     // Si es una ruta de archivo local
     if (uri.startsWith("file://")) {
-      return getBitmapFromHardware(context, Uri.parse(uri));
+      return getBitmapFromHardware(context, Uri.parse(uri), props, options);
     }
 
     // Si es una ruta de archivo local
     //return BitmapFactory.decodeFile(uri);
-    return getBitmapFromHardware(context, Uri.parse("file://" + uri));
+    return getBitmapFromHardware(context, Uri.parse("file://" + uri), props, options);
   }
 
   public static Bitmap getBitmapFromHardware(Context context, Uri uri) throws IOException {
+    return getBitmapFromHardware(context, uri, null, new BitmapFactory.Options());
+  }
+
+  /**
+   * Lee primero el tamano y decodifica ya reducida, en memoria de software
+   * para poder leer los pixeles sin copiar el bitmap.
+   */
+  public static Bitmap getBitmapFromHardware(Context context, Uri uri,
+                                             @Nullable final ReadableMap props,
+                                             final BitmapFactory.Options options) throws IOException {
     Log.d("ZplCodeModule", "getBitmapFromHardware: " + uri);
 
-    Bitmap originalBitmap;
     ContentResolver resolver = context.getContentResolver();
     if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
-      originalBitmap = ImageDecoder.decodeBitmap(ImageDecoder.createSource(resolver, uri));
-    } else {
-      originalBitmap = MediaStore.Images.Media.getBitmap(resolver, uri);
+      final Bitmap bitmap = ImageDecoder.decodeBitmap(ImageDecoder.createSource(resolver, uri),
+        new ImageDecoder.OnHeaderDecodedListener() {
+          @Override
+          public void onHeaderDecoded(ImageDecoder decoder, ImageDecoder.ImageInfo info, ImageDecoder.Source source) {
+            options.outWidth = info.getSize().getWidth();
+            options.outHeight = info.getSize().getHeight();
+            options.inSampleSize = getSampleSize(props, options.outWidth, options.outHeight);
+            decoder.setTargetSampleSize(options.inSampleSize);
+            decoder.setAllocator(ImageDecoder.ALLOCATOR_SOFTWARE);
+          }
+        });
+      BitmapPool.DEFAULT.addAllocatedBytes(bitmap.getAllocationByteCount());
+      return bitmap;
     }
 
-    // Verifica si el Bitmap es mutable
-    if (!originalBitmap.isMutable()) {
-      // Create a mutable copy with the same width, height, and ARGB_8888 configuration
-      Bitmap mutableBitmap = originalBitmap.copy(Bitmap.Config.ARGB_8888, true);
-      // Make sure to recycle the original bitmap if you no longer need it
-      originalBitmap.recycle();
-
-      return mutableBitmap;
+    // Primera lectura: solo el tamano.
+    options.inJustDecodeBounds = true;
+    try (InputStream input = resolver.openInputStream(uri)) {
+      if (input == null) {
+        return null;
+      }
+      BitmapFactory.decodeStream(input, null, options);
     }
 
-    return originalBitmap;
+    final int actualWidth = options.outWidth;
+    final int actualHeight = options.outHeight;
+    options.inJustDecodeBounds = false;
+    options.inSampleSize = getSampleSize(props, actualWidth, actualHeight);
+    setInBitmap(options, actualWidth, actualHeight);
+
+    Bitmap bitmap;
+    try (InputStream input = resolver.openInputStream(uri)) {
+      if (input == null) {
+        releaseInBitmap(options, null);
+        return null;
+      }
+      bitmap = BitmapFactory.decodeStream(input, null, options);
+    } catch (IllegalArgumentException e) {
+      // No se pudo decodificar sobre el bitmap del pool, se vuelve a leer.
+      releaseInBitmap(options, null);
+      try (InputStream input = resolver.openInputStream(uri)) {
+        bitmap = input != null ? BitmapFactory.decodeStream(input, null, options) : null;
+      }
+    }
+    releaseInBitmap(options, bitmap);
+    options.outWidth = actualWidth;
+    options.outHeight = actualHeight;
+    return bitmap;
   }
 
   // Método para obtener un Bitmap de una url
   public static Bitmap getBitmapFromUrl(String url) throws IOException {
-    Log.d("ZplCodeModule", "getBitmapFromUrl: " + url);
-    // Si es una URL
-    URL src = new URL(url);
-    HttpURLConnection connection = null;
-
-    try {
-      connection = (HttpURLConnection) src.openConnection();
-      connection.setDoInput(true);
-      connection.connect();
-
-      try (InputStream input = connection.getInputStream()) {
-        return BitmapFactory.decodeStream(input);
-      }
+    return getBitmapFromUrl(url, null, new BitmapFactory.Options());
+  }
 
-    } finally {
-      if (connection != null) {
-        connection.disconnect();
-      }
-    }
+  /*
+   * Descarga la imagen una sola vez (o usa la que ya bajo getCacheKey) y la
+   * decodifica desde memoria.
+   */
+  public static Bitmap getBitmapFromUrl(String url,
+                                        @Nullable ReadableMap props,
+                                        BitmapFactory.Options options) throws IOException {
+    Log.d("ZplCodeModule", "getBitmapFromUrl: " + url);
+    return decodeByteArray(UrlImages.fetch(url), props, options);
   }
 
   // Método para convertir una cadena Base64 a un objeto Bitmap
   public static Bitmap getBitmapFromBase64(String base64String) {
+    return getBitmapFromBase64(base64String, null, new BitmapFactory.Options());
+  }
+
+  public static Bitmap getBitmapFromBase64(String base64String,
+                                           @Nullable ReadableMap props,
+                                           BitmapFactory.Options options) {
     Log.d("ZplCodeModule", "getBitmapFromBase64");
     // Decodificar los datos base64 a un array de bytes
     byte[] decodedBytes = Base64.decode(base64String, Base64.DEFAULT);
     // Convertir el array de bytes a un objeto Bitmap
-    return BitmapFactory.decodeByteArray(decodedBytes, 0, decodedBytes.length);
+    return decodeByteArray(decodedBytes, props, options);
+  }
+
+  /* Lee el tamano y decodifica reducida desde el arreglo. */
+  private static Bitmap decodeByteArray(byte[] data, @Nullable ReadableMap props, BitmapFactory.Options options) {
+    options.inJustDecodeBounds = true;
+    BitmapFactory.decodeByteArray(data, 0, data.length, options);
+
+    final int actualWidth = options.outWidth;
+    final int actualHeight = options.outHeight;
+    options.inJustDecodeBounds = false;
+    options.inSampleSize = getSampleSize(props, actualWidth, actualHeight);
+    setInBitmap(options, actualWidth, actualHeight);
+
+    Bitmap bitmap;
+    try {
+      bitmap = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+    } catch (IllegalArgumentException e) {
+      // No se pudo decodificar sobre el bitmap del pool, va en uno nuevo.
+      releaseInBitmap(options, null);
+      bitmap = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+    }
+    releaseInBitmap(options, bitmap);
+    options.outWidth = actualWidth;
+    options.outHeight = actualHeight;
+    return bitmap;
+  }
+
+  /**
+   * Pone en inBitmap un bitmap de BitmapPool.DEFAULT con lugar para la
+   * imagen reducida por inSampleSize (se redondea hacia arriba).
+   */
+  private static void setInBitmap(BitmapFactory.Options options, int actualWidth, int actualHeight) {
+    if (options.inBitmap != null || actualWidth <= 0 || actualHeight <= 0) {
+      return;
+    }
+    final int sampleSize = Math.max(1, options.inSampleSize);
+    options.inMutable = true;
+    options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+    options.inBitmap = BitmapPool.DEFAULT.obtain(
+      (actualWidth + sampleSize - 1) / sampleSize,
+      (actualHeight + sampleSize - 1) / sampleSize);
+  }
+
+  /* Devuelve inBitmap al pool si la imagen no se decodifico sobre el. */
+  private static void releaseInBitmap(BitmapFactory.Options options, @Nullable Bitmap decoded) {
+    if (options.inBitmap != null && options.inBitmap != decoded) {
+      BitmapPool.DEFAULT.put(options.inBitmap);
+    }
+    if (decoded != null && decoded != options.inBitmap) {
+      BitmapPool.DEFAULT.addAllocatedBytes(decoded.getAllocationByteCount());
+    }
+    options.inBitmap = null;
   }
 
 }
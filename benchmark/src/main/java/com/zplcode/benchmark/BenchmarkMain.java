@@ -0,0 +1,74 @@
+package com.zplcode.benchmark;
+
+import com.zplcode.PixelImage;
+
+import org.openjdk.jmh.results.BenchmarkResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Corre JMH con los argumentos de la linea de comandos y al final imprime
+ * cada resultado en ns/pixel y bytes por operacion (con -prof gc).
+ */
+public final class BenchmarkMain {
+
+  private static final String ALLOC_NORM = "gc.alloc.rate.norm";
+
+  private BenchmarkMain() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    final Collection<RunResult> results = new Runner(new CommandLineOptions(args)).run();
+
+    final Map<String, Long> pixels = new HashMap<>();
+    System.out.println();
+    System.out.println(String.format(Locale.US, "%-68s %14s %10s %14s",
+      "Benchmark", "ns/op", "ns/pixel", "B/op"));
+
+    for (RunResult run : results) {
+      final BenchmarkResult result = run.getAggregatedResult();
+      final String image = run.getParams().getParam("image");
+      final String dpi = run.getParams().getParam("dpi");
+
+      final long count = image != null && dpi != null
+        ? getPixelCount(pixels, image, Integer.parseInt(dpi))
+        : 0;
+      final double nsPerOp = result.getPrimaryResult().getScore();
+      final Result alloc = result.getSecondaryResults().get(ALLOC_NORM);
+
+      System.out.println(String.format(Locale.US, "%-68s %14.1f %10s %14s",
+        getLabel(run),
+        nsPerOp,
+        count > 0 ? String.format(Locale.US, "%.3f", nsPerOp / count) : "-",
+        alloc != null ? String.format(Locale.US, "%.0f", alloc.getScore()) : "-"));
+    }
+  }
+
+  private static String getLabel(RunResult run) {
+    final String name = run.getParams().getBenchmark();
+    final StringBuilder label = new StringBuilder(name.substring(name.lastIndexOf('.', name.lastIndexOf('.') - 1) + 1));
+    for (String key : run.getParams().getParamsKeys()) {
+      label.append(' ').append(run.getParams().getParam(key));
+    }
+    return label.toString();
+  }
+
+  private static long getPixelCount(Map<String, Long> cache, String image, int dpi) throws IOException {
+    final String key = image + "@" + dpi;
+    Long count = cache.get(key);
+    if (count == null) {
+      final PixelImage pixels = Corpus.load(image, dpi);
+      count = (long) pixels.getWidth() * pixels.getHeight();
+      cache.put(key, count);
+    }
+    return count;
+  }
+}
@@ -0,0 +1,156 @@
+package com.zplcode.benchmark;
+
+import com.zplcode.BufferedImageAdapter;
+import com.zplcode.PixelImage;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Imagenes de prueba para los benchmarks.
+ *
+ * Todas ocupan el ancho de una etiqueta de 4 pulgadas a la resolucion de la
+ * impresora (203, 300 o 600 dpi). Las sinteticas usan una semilla fija; las
+ * reales salen de assets/label.png y example/src/logo.jpg.
+ */
+public final class Corpus {
+
+  /* Texto y figuras en negro sobre blanco, casi todo blanco. */
+  public static final String LOGO = "logo";
+  /* Degradados con ruido, todos los tonos de gris. */
+  public static final String PHOTO = "photo";
+  /* Barras verticales de ancho variable. */
+  public static final String BARCODE = "barcode";
+  /* assets/label.png */
+  public static final String LABEL = "label";
+  /* example/src/logo.jpg */
+  public static final String EXAMPLE_LOGO = "example-logo";
+
+  public static final int LABEL_INCHES = 4;
+
+  private Corpus() {
+  }
+
+  public static int getWidth(int dpi) {
+    return LABEL_INCHES * dpi;
+  }
+
+  public static PixelImage load(String name, int dpi) throws IOException {
+    final int width = getWidth(dpi);
+
+    if (LOGO.equals(name)) {
+      return logo(width, width / 2);
+    } else if (PHOTO.equals(name)) {
+      return photo(width, width * 3 / 2);
+    } else if (BARCODE.equals(name)) {
+      return barcode(width, width / 4);
+    } else if (LABEL.equals(name)) {
+      return resource("corpus/label.png", width);
+    } else if (EXAMPLE_LOGO.equals(name)) {
+      return resource("corpus/logo.jpg", width);
+    }
+    throw new IllegalArgumentException("Unknown corpus image '" + name + "'");
+  }
+
+  static PixelImage logo(int width, int height) {
+    final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    final Graphics2D g = image.createGraphics();
+    final Random random = new Random(1);
+    try {
+      g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+      g.setColor(Color.WHITE);
+      g.fillRect(0, 0, width, height);
+      g.setColor(Color.BLACK);
+
+      final int unit = Math.max(1, width / 40);
+      g.fillOval(unit, unit, height - 2 * unit, height - 2 * unit);
+      g.setColor(Color.WHITE);
+      g.fillOval(3 * unit, 3 * unit, height - 6 * unit, height - 6 * unit);
+      g.setColor(Color.BLACK);
+
+      // Renglones de "texto": bloques cortos de altura fija.
+      for (int line = 0; line < 6; line++) {
+        int x = height + unit;
+        final int y = unit * 2 + line * unit * 3;
+        while (x < width - unit) {
+          final int w = unit / 2 + random.nextInt(unit * 2);
+          g.fillRect(x, y, Math.min(w, width - unit - x), unit * 2);
+          x += w + unit / 2;
+        }
+      }
+    } finally {
+      g.dispose();
+    }
+    return BufferedImageAdapter.toPixelImage(image);
+  }
+
+  static PixelImage photo(int width, int height) {
+    final int[] argb = new int[width * height];
+    final Random random = new Random(2);
+
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        final double v = 128
+          + 80 * Math.sin(x * 6.0 / width) * Math.cos(y * 4.0 / height)
+          + 40 * Math.sin((x + y) * 20.0 / width)
+          + random.nextGaussian() * 12;
+        final int gray = Math.max(0, Math.min(255, (int) v));
+        argb[y * width + x] = 0xff000000 | (gray << 16) | ((gray * 7 / 8) << 8) | (gray * 3 / 4);
+      }
+    }
+    return new PixelImage(width, height, argb);
+  }
+
+  static PixelImage barcode(int width, int height) {
+    final int[] argb = new int[width * height];
+    final Random random = new Random(3);
+    final int module = Math.max(1, width / 200);
+
+    // Una fila de barras, repetida en todas las filas.
+    final int[] row = new int[width];
+    boolean black = true;
+    for (int x = module * 10; x < width - module * 10; ) {
+      final int bar = module * (1 + random.nextInt(4));
+      for (int i = x; i < Math.min(x + bar, width); i++) {
+        row[i] = black ? 0xff000000 : 0xffffffff;
+      }
+      x += bar;
+      black = !black;
+    }
+    for (int x = 0; x < width; x++) {
+      if (row[x] == 0) {
+        row[x] = 0xffffffff;
+      }
+    }
+
+    for (int y = 0; y < height; y++) {
+      System.arraycopy(row, 0, argb, y * width, width);
+    }
+    return new PixelImage(width, height, argb);
+  }
+
+  static PixelImage resource(String path, int width) throws IOException {
+    final BufferedImage source;
+    try (InputStream in = Corpus.class.getClassLoader().getResourceAsStream(path)) {
+      if (in == null) {
+        throw new IOException("Missing corpus image " + path);
+      }
+      source = ImageIO.read(in);
+    }
+
+    final int height = Math.max(1, source.getHeight() * width / source.getWidth());
+    return BufferedImageAdapter.toPixelImage(BufferedImageAdapter.scale(source, width, height));
+  }
+
+  /* Copia para los benchmarks que modifican la imagen. */
+  public static PixelImage copy(PixelImage image) {
+    return new PixelImage(image.getWidth(), image.getHeight(), image.getPixels().clone());
+  }
+}
@@ -0,0 +1,60 @@
+package com.zplcode.benchmark;
+
+import com.zplcode.Dithering;
+import com.zplcode.GrayScale;
+import com.zplcode.PixelImage;
+import com.zplcode.RasterPipeline;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Grises + dither + raster en una pasada (RasterPipeline) con cada kernel.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DitheringBenchmarks {
+
+  @Param({
+    Dithering.FLOYD_STEINBERG, Dithering.FLOYD_STEINBERG_SERPENTINE, Dithering.ATKINSON,
+    Dithering.JARVIS_JUDICE_NINKE, Dithering.STUCKI, Dithering.SIERRA, Dithering.SIERRA_LITE,
+    Dithering.BAYER2, Dithering.BAYER4, Dithering.BAYER8
+  })
+  public String dither;
+
+  @Param({ Corpus.PHOTO, Corpus.EXAMPLE_LOGO })
+  public String image;
+
+  @Param({ "300" })
+  public int dpi;
+
+  PixelImage pixels;
+  RasterPipeline pipeline;
+
+  @Setup
+  public void setup() throws IOException {
+    pixels = Corpus.load(image, dpi);
+    pipeline = new RasterPipeline(GrayScale.DEFAULT, Dithering.forName(dither), 127);
+  }
+
+  @Benchmark
+  public byte[] getRasterBytes() {
+    return pipeline.getRasterBytes(pixels);
+  }
+}
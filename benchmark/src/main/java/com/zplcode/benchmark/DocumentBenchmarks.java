@@ -0,0 +1,125 @@
+package com.zplcode.benchmark;
+
+import com.zplcode.ZplDocument;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Un manifiesto de etiquetas de envio (texto, Code 128, QR, recuadro):
+ * ZplDocument contra el armado por elemento con el formatField de JS
+ * (una expresion regular por caracter).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DocumentBenchmarks {
+
+  private static final Pattern LETTER = Pattern.compile("^[a-zA-Z]$");
+  private static final Pattern NUMBER = Pattern.compile("^[0-9]$");
+  private static final Pattern SPACE = Pattern.compile("^\\s$");
+
+  @Param({ "100", "1000" })
+  public int labels;
+
+  String[] names;
+  String[] codes;
+  ZplDocument document;
+
+  @Setup
+  public void setup() {
+    names = new String[labels];
+    codes = new String[labels];
+    for (int i = 0; i < labels; i++) {
+      names[i] = "Order " + (1000000 + i) + ", ACME S.A. - Av. Principal #" + i;
+      codes[i] = "https://example.com/track/" + (1234567890L + i);
+    }
+    document = new ZplDocument();
+  }
+
+  @Benchmark
+  public String document() {
+    try {
+      for (int i = 0; i < labels; i++) {
+        document.startLabel(true)
+          .text(50, 50, null, '0', 30, 30, names[i])
+          .barcode128(50, 100, 2, 'N', 100, 'Y', codes[i].substring(26))
+          .qrcode(500, 100, 50, 4, 'M', "A", codes[i])
+          .rectangle(40, 40, 720, 400, 3)
+          .endLabel();
+      }
+      return document.toString();
+    } finally {
+      document.clear();
+    }
+  }
+
+  @Benchmark
+  public String perElement() {
+    final List<String> labels = new ArrayList<String>();
+    for (int i = 0; i < this.labels; i++) {
+      final List<String> elements = new ArrayList<String>();
+      elements.add("^FO50,50");
+      elements.add("^A0N,30,30");
+      elements.add("^FH\\^FD" + formatField(names[i]) + "^FS");
+      elements.add("^FO50,100");
+      elements.add("^BY2");
+      elements.add("^BCN,100,Y,N,N");
+      elements.add("^FH\\^FD" + formatField(codes[i].substring(26)) + "^FS");
+      elements.add("^FO500,100^BQN,50,4");
+      elements.add("^FH\\^FDMA," + formatField(codes[i]) + "^FS");
+      elements.add("^FO40,40");
+      elements.add("^GB720,400,3^FS");
+      labels.add("^XA\n" + join(elements) + "\n^XZ");
+    }
+    return join(labels);
+  }
+
+  private static String formatField(String text) {
+    final List<String> sb = new ArrayList<String>();
+    for (int i = 0; i < text.length(); i++) {
+      final String character = String.valueOf(text.charAt(i));
+      if (LETTER.matcher(character).matches() || NUMBER.matcher(character).matches()
+        || SPACE.matcher(character).matches()) {
+        sb.add(character);
+      } else {
+        final String hex = Integer.toHexString(text.charAt(i)).toUpperCase();
+        sb.add("\\");
+        sb.add(hex.length() < 2 ? "0" + hex : hex);
+      }
+    }
+    return join(sb, "");
+  }
+
+  private static String join(List<String> values) {
+    return join(values, "\n");
+  }
+
+  private static String join(List<String> values, String separator) {
+    final StringBuilder out = new StringBuilder();
+    for (int i = 0; i < values.size(); i++) {
+      if (i > 0) {
+        out.append(separator);
+      }
+      out.append(values.get(i));
+    }
+    return out.toString();
+  }
+}
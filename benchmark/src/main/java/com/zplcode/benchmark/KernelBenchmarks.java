@@ -0,0 +1,128 @@
+package com.zplcode.benchmark;
+
+import com.zplcode.Filter;
+import com.zplcode.GrayScale;
+import com.zplcode.Pixel;
+import com.zplcode.PixelImage;
+import com.zplcode.RasterKernels;
+import com.zplcode.vector.VectorGrayScale;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Grises y umbral pixel por pixel contra los kernels por rango y la
+ * Vector API.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1, jvmArgsAppend = { "--add-modules", "jdk.incubator.vector" })
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class KernelBenchmarks {
+
+  @Param({ Corpus.PHOTO, Corpus.LABEL })
+  public String image;
+
+  @Param({ "203", "300", "600" })
+  public int dpi;
+
+  Filter filter = GrayScale.DEFAULT;
+  int[] argb;
+  int[] out;
+  byte[] gray;
+  int[] luminance;
+  byte[] raster;
+  int width;
+  int height;
+
+  @Setup
+  public void setup() throws IOException {
+    final PixelImage pixels = Corpus.load(image, dpi);
+    width = pixels.getWidth();
+    height = pixels.getHeight();
+    argb = pixels.getPixels();
+    out = new int[argb.length];
+    gray = new byte[argb.length];
+    luminance = new int[width];
+    raster = new byte[pixels.getBytesPerRow() * height];
+  }
+
+  @Benchmark
+  public int[] grayScalePerPixel() {
+    for (int i = 0; i < argb.length; i++) {
+      out[i] = filter.pixel(argb[i]);
+    }
+    return out;
+  }
+
+  @Benchmark
+  public int[] grayScaleRange() {
+    GrayScale.DEFAULT.applyRange(argb, out, 0, argb.length);
+    return out;
+  }
+
+  @Benchmark
+  public int[] grayScaleVector() {
+    VectorGrayScale.applyRange(GrayScale.DEFAULT, argb, out, 0, argb.length);
+    return out;
+  }
+
+  @Benchmark
+  public byte[] luminanceRange() {
+    GrayScale.DEFAULT.applyRange(argb, gray, 0, argb.length);
+    return gray;
+  }
+
+  @Benchmark
+  public byte[] luminanceVector() {
+    VectorGrayScale.applyRange(GrayScale.DEFAULT, argb, gray, 0, argb.length);
+    return gray;
+  }
+
+  /* Empaquetado con Pixel.zeroOrOne por pixel, como antes de RasterKernels. */
+  @Benchmark
+  public byte[] thresholdPerPixel() {
+    int offset = 0;
+    for (int y = 0; y < height; y++) {
+      final int row = y * width;
+      int Byte = 0;
+      int bits = 0;
+      for (int x = 0; x < width; x++) {
+        Byte |= Pixel.zeroOrOne(argb[row + x], 127) << (7 - bits);
+        if (++bits == 8) {
+          raster[offset++] = (byte) Byte;
+          Byte = 0;
+          bits = 0;
+        }
+      }
+      if (bits > 0) {
+        raster[offset++] = (byte) Byte;
+      }
+    }
+    return raster;
+  }
+
+  @Benchmark
+  public byte[] thresholdRange() {
+    final int bytesPerRow = (width + 7) / 8;
+    for (int y = 0; y < height; y++) {
+      RasterKernels.gray(argb, y * width, luminance, 0, width);
+      RasterKernels.packBits(luminance, 127, raster, y * bytesPerRow, width);
+    }
+    return raster;
+  }
+}
@@ -0,0 +1,67 @@
+package com.zplcode.benchmark;
+
+import com.zplcode.Dithering;
+import com.zplcode.GrayScale;
+import com.zplcode.PixelImage;
+import com.zplcode.RasterPipeline;
+import com.zplcode.ZplLibGraphics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * getZplCode de principio a fin, como lo llama ZplCodeModule (sin decodificar
+ * ni escalar la imagen).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PipelineBenchmarks {
+
+  @Param({ Corpus.LOGO, Corpus.PHOTO, Corpus.BARCODE, Corpus.LABEL, Corpus.EXAMPLE_LOGO })
+  public String image;
+
+  @Param({ "203", "300", "600" })
+  public int dpi;
+
+  /* "none" o un nombre de Dithering */
+  @Param({ "none", Dithering.FLOYD_STEINBERG })
+  public String dither;
+
+  @Param({ ZplLibGraphics.ENCODING_Z64 })
+  public String encoding;
+
+  ZplLibGraphics graphics;
+
+  @Setup
+  public void setup() throws IOException {
+    final PixelImage pixels = Corpus.load(image, dpi);
+    final RasterPipeline pipeline = "none".equals(dither)
+      ? new RasterPipeline(127)
+      : new RasterPipeline(GrayScale.DEFAULT, Dithering.forName(dither), 127);
+
+    graphics = new ZplLibGraphics(pixels, pipeline);
+    graphics.setPoint(0, 0);
+    graphics.setEncoding(encoding);
+  }
+
+  @Benchmark
+  public String getZplCode() throws IOException {
+    return graphics.getZplCode(true);
+  }
+}
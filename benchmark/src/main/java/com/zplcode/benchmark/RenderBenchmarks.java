@@ -0,0 +1,73 @@
+package com.zplcode.benchmark;
+
+import com.zplcode.MonoRaster;
+import com.zplcode.PixelImage;
+import com.zplcode.ZplLibGraphics;
+import com.zplcode.ZplRenderer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ZplRenderer con una etiqueta de 4x6: la imagen en un ^GFA mas texto,
+ * Code 128 y QR como los escribe el builder de JS.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RenderBenchmarks {
+
+  @Param({ Corpus.LABEL, Corpus.LOGO })
+  public String image;
+
+  @Param({ "203", "300", "600" })
+  public int dpi;
+
+  @Param({ ZplLibGraphics.ENCODING_Z64, ZplLibGraphics.ENCODING_ACS })
+  public String encoding;
+
+  ZplRenderer renderer;
+  String zpl;
+
+  @Setup
+  public void setup() throws IOException {
+    final PixelImage pixels = Corpus.load(image, dpi);
+    final ZplLibGraphics graphics = new ZplLibGraphics(pixels, 127);
+    graphics.setEncoding(encoding);
+
+    final int width = Corpus.getWidth(dpi);
+    final int height = 6 * dpi;
+    final int font = dpi / 7;
+    final int bottom = Math.max(pixels.getHeight(), height / 2);
+    zpl = "^XA\n^LL" + height + "\n^PW" + width + "\n"
+      + graphics.getZplCode(true) + "\n"
+      + "^FO" + dpi / 4 + "," + bottom + "^A0N," + font + "," + font
+      + "^FH\\^FDOrder 1234567\\2C ACME^FS\n"
+      + "^FO" + dpi / 4 + "," + (bottom + font * 2) + "^BY" + Math.max(2, dpi / 100)
+      + "^BCN," + dpi / 2 + ",Y,N,N^FH\\^FD1234567890AB^FS\n"
+      + "^FO" + width / 2 + "," + (bottom + font * 2) + "^BQN,2," + Math.max(2, dpi / 50)
+      + "^FH\\^FDQA,https://example.com/track/1234567890^FS\n"
+      + "^XZ";
+    renderer = new ZplRenderer(width, height);
+  }
+
+  @Benchmark
+  public MonoRaster render() {
+    return renderer.render(zpl);
+  }
+}
@@ -0,0 +1,118 @@
+package com.zplcode.benchmark;
+
+import com.zplcode.FloydSteinbergDithering;
+import com.zplcode.GrayScale;
+import com.zplcode.PixelImage;
+import com.zplcode.ZplLibGraphics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cada etapa del pipeline por separado, sobre todo el corpus.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class StageBenchmarks {
+
+  @Param({ Corpus.LOGO, Corpus.PHOTO, Corpus.BARCODE, Corpus.LABEL, Corpus.EXAMPLE_LOGO })
+  public String image;
+
+  @Param({ "203", "300", "600" })
+  public int dpi;
+
+  PixelImage pixels;
+  PixelImage gray;
+  byte[] raster;
+  ZplLibGraphics graphics;
+  String z64;
+
+  @Setup
+  public void setup() throws IOException {
+    pixels = Corpus.load(image, dpi);
+    gray = Corpus.copy(pixels);
+    gray.apply(GrayScale.DEFAULT);
+    raster = pixels.getRasterBytes(127);
+    graphics = new ZplLibGraphics(pixels, 127);
+
+    // Datos de un campo :Z64: para la CRC.
+    final String zpl = graphics.getZplCode(true);
+    z64 = zpl.substring(zpl.indexOf(":Z64:") + 5, zpl.lastIndexOf(':'));
+  }
+
+  /*
+   * Imagen nueva en cada invocacion para las etapas que la modifican. La copia
+   * no cuenta en el tiempo pero si en los bytes por operacion.
+   */
+  @State(Scope.Thread)
+  public static class Copy {
+    PixelImage image;
+
+    @Setup(Level.Invocation)
+    public void setup(StageBenchmarks stage) {
+      image = Corpus.copy(stage.gray);
+    }
+  }
+
+  @Benchmark
+  public void grayScale(Blackhole bh) {
+    final int[] argb = pixels.getPixels();
+    final int end = pixels.getWidth() * pixels.getHeight();
+    for (int i = 0; i < end; i++) {
+      bh.consume(GrayScale.DEFAULT.pixel(argb[i]));
+    }
+  }
+
+  @Benchmark
+  public PixelImage floydSteinberg(Copy copy) {
+    return new FloydSteinbergDithering().apply(copy.image);
+  }
+
+  @Benchmark
+  public PixelImage floydSteinbergLuminance(Copy copy) {
+    return new FloydSteinbergDithering(true).apply(copy.image);
+  }
+
+  @Benchmark
+  public int calculeThreshold() {
+    return pixels.calculeThreshold();
+  }
+
+  @Benchmark
+  public int calculeThresholdSampled() {
+    return pixels.calculeThreshold(PixelImage.THRESHOLD_SAMPLE_STEP, null);
+  }
+
+  @Benchmark
+  public byte[] getRasterBytes() {
+    return pixels.getRasterBytes(127);
+  }
+
+  @Benchmark
+  public byte[] deflate() throws IOException {
+    return graphics.deflate(raster);
+  }
+
+  @Benchmark
+  public String crc() {
+    return ZplLibGraphics.getCRCHexString(z64);
+  }
+}
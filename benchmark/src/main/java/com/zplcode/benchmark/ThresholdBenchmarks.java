@@ -0,0 +1,69 @@
+package com.zplcode.benchmark;
+
+import com.zplcode.AdaptiveThreshold;
+import com.zplcode.GrayScale;
+import com.zplcode.PixelImage;
+import com.zplcode.RasterPipeline;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Raster con umbral fijo, Otsu (auto) o adaptativo, como en imageToZpl.
+ *
+ * window es el lado de la ventana de bradley/sauvola (0 = 1/8 de la imagen);
+ * con -p window=15,101,0 se ve que el costo no depende de ella.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ThresholdBenchmarks {
+
+  @Param({ "127", "auto", AdaptiveThreshold.BRADLEY, AdaptiveThreshold.SAUVOLA })
+  public String threshold;
+
+  @Param({ "0" })
+  public int window;
+
+  @Param({ Corpus.PHOTO, Corpus.LABEL })
+  public String image;
+
+  @Param({ "203", "300", "600" })
+  public int dpi;
+
+  PixelImage pixels;
+
+  @Setup
+  public void setup() throws IOException {
+    pixels = Corpus.load(image, dpi);
+  }
+
+  @Benchmark
+  public byte[] getRasterBytes() {
+    final AdaptiveThreshold adaptive = AdaptiveThreshold.forName(threshold, window);
+    final RasterPipeline pipeline;
+    if (adaptive != null) {
+      pipeline = new RasterPipeline(GrayScale.DEFAULT, adaptive);
+    } else if ("auto".equals(threshold)) {
+      pipeline = new RasterPipeline(pixels.calculeThreshold(PixelImage.THRESHOLD_SAMPLE_STEP, null));
+    } else {
+      pipeline = new RasterPipeline(Integer.parseInt(threshold));
+    }
+    return pipeline.getRasterBytes(pixels);
+  }
+}
@@ -0,0 +1,87 @@
+package com.zplcode.benchmark;
+
+import com.zplcode.PixelImage;
+import com.zplcode.RasterPipeline;
+import com.zplcode.TiledZplGraphics;
+import com.zplcode.ZplCache;
+import com.zplcode.ZplLibGraphics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plantilla con un numero de serie distinto en cada etiqueta: el ^GFA
+ * completo contra TiledZplGraphics con los cuadros del fondo en el cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TileBenchmarks {
+
+  @Param({ Corpus.LABEL, Corpus.PHOTO })
+  public String image;
+
+  @Param({ "203", "300", "600" })
+  public int dpi;
+
+  @Param({ "64" })
+  public int tileSize;
+
+  PixelImage pixels;
+  RasterPipeline pipeline;
+  ZplCache tiles;
+  int serial;
+
+  @Setup
+  public void setup() throws IOException {
+    pixels = Corpus.copy(Corpus.load(image, dpi));
+    pipeline = new RasterPipeline(127);
+    tiles = new ZplCache();
+    new TiledZplGraphics(pixels, pipeline, tileSize, tileSize, tiles).getZplCode(true);
+  }
+
+  @Benchmark
+  public String full() throws IOException {
+    stamp();
+    return new ZplLibGraphics(pixels, pipeline).getZplCode(true);
+  }
+
+  @Benchmark
+  public String tiled() throws IOException {
+    stamp();
+    return new TiledZplGraphics(pixels, pipeline, tileSize, tileSize, tiles).getZplCode(true);
+  }
+
+  /* "Numero de serie": barras de 1/2 pulgada x 1/8 con el patron de serial. */
+  private void stamp() {
+    final int width = pixels.getWidth();
+    final int[] argb = pixels.getPixels();
+    final int boxWidth = dpi / 2;
+    final int boxHeight = dpi / 8;
+    final int left = width - boxWidth - dpi / 4;
+    final int top = dpi / 4;
+    final int value = ++serial;
+
+    for (int y = 0; y < boxHeight; y++) {
+      for (int x = 0; x < boxWidth; x++) {
+        final boolean black = ((value >>> ((x * 32) / boxWidth)) & 1) != 0;
+        argb[(top + y) * width + left + x] = black ? 0xff000000 : 0xffffffff;
+      }
+    }
+  }
+}
@@ -0,0 +1,57 @@
+package com.zplcode;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * Conversion entre {@link BufferedImage} y {@link PixelImage}, para usar el
+ * convertidor en la JVM (por ejemplo en un servidor).
+ *
+ * Es el equivalente de BitmapAdapter en Android.
+ */
+public final class BufferedImageAdapter {
+
+  private BufferedImageAdapter() {
+  }
+
+  /* Copia los pixeles de la imagen, en cualquier formato, a ARGB. */
+  public static PixelImage toPixelImage(BufferedImage image) {
+    if (null == image) {
+      throw new IllegalArgumentException("image arg cannot be null");
+    }
+
+    final int width = image.getWidth();
+    final int height = image.getHeight();
+    final int[] argb = image.getRGB(0, 0, width, height, null, 0, width);
+    return new PixelImage(width, height, argb);
+  }
+
+  /* Copia los pixeles de la imagen a un nuevo BufferedImage TYPE_INT_ARGB. */
+  public static BufferedImage toBufferedImage(PixelImage image) {
+    final int width = image.getWidth();
+    final int height = image.getHeight();
+    final BufferedImage bufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    final int[] data = ((DataBufferInt) bufferedImage.getRaster().getDataBuffer()).getData();
+    System.arraycopy(image.getPixels(), 0, data, 0, width * height);
+    return bufferedImage;
+  }
+
+  /* Escala la imagen, si las dimensiones no son validas regresa la misma imagen. */
+  public static BufferedImage scale(BufferedImage image, int w, int h) {
+    if (w <= 0 || h <= 0) {
+      return image;
+    }
+
+    final BufferedImage scaled = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+    final Graphics2D g = scaled.createGraphics();
+    try {
+      g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+      g.drawImage(image, 0, 0, w, h, null);
+    } finally {
+      g.dispose();
+    }
+    return scaled;
+  }
+}
@@ -0,0 +1,268 @@
+package com.zplcode;
+
+/**
+ * Umbral adaptativo (local): cada pixel se compara con el promedio de una
+ * ventana cuadrada a su alrededor, asi la iluminacion desigual no deja
+ * manchas negras.
+ *
+ * - Bradley: negro si gris <= promedio * (1 - sensitivity).
+ * - Sauvola: negro si gris <= promedio * (1 + sensitivity * (desviacion / 128 - 1)).
+ *
+ * Las sumas salen de una tabla de areas sumadas que se arma mientras se
+ * recorre la imagen: sumas por columna de las filas de la ventana mas una
+ * suma acumulada por fila. El costo por pixel no depende del tamano de la
+ * ventana y solo se guardan las filas de la ventana.
+ */
+public final class AdaptiveThreshold implements Transform {
+
+  public static final String BRADLEY = "bradley";
+  public static final String SAUVOLA = "sauvola";
+
+  /* Porcentaje bajo el promedio de Bradley y k de Sauvola. */
+  public static final double BRADLEY_SENSITIVITY = 0.15;
+  public static final double SAUVOLA_SENSITIVITY = 0.34;
+
+  /* Ventana por omision: 1/8 del lado mayor de la imagen. */
+  public static final int WINDOW_DIVISOR = 8;
+
+  public final String method;
+  public final int windowSize;
+  public final double sensitivity;
+
+  /**
+   * @param method BRADLEY o SAUVOLA
+   * @param windowSize lado de la ventana en pixeles, 0 para 1/8 de la imagen
+   * @param sensitivity 0.15 (Bradley), 0.34 (Sauvola)
+   */
+  public AdaptiveThreshold(String method, int windowSize, double sensitivity) {
+    if (!BRADLEY.equals(method) && !SAUVOLA.equals(method)) {
+      throw new IllegalArgumentException("Unknown adaptive threshold '" + method + "'");
+    } else if (windowSize < 0) {
+      throw new IllegalArgumentException("windowSize must be >= 0: " + windowSize);
+    } else if (!(sensitivity >= 0 && sensitivity < 1)) {
+      throw new IllegalArgumentException("sensitivity must be in [0, 1): " + sensitivity);
+    }
+    this.method = method;
+    this.windowSize = windowSize;
+    this.sensitivity = sensitivity;
+  }
+
+  /**
+   * @param windowSize lado de la ventana en pixeles, 0 para 1/8 de la imagen
+   */
+  public AdaptiveThreshold(String method, int windowSize) {
+    this(method, windowSize, SAUVOLA.equals(method) ? SAUVOLA_SENSITIVITY : BRADLEY_SENSITIVITY);
+  }
+
+  /**
+   * Umbral adaptativo por nombre, por ejemplo el valor de la opcion threshold
+   * de imageToZpl.
+   * @param name bradley o sauvola
+   * @return null si no es un umbral adaptativo
+   */
+  public static AdaptiveThreshold forName(String name, int windowSize) {
+    if (BRADLEY.equals(name) || SAUVOLA.equals(name)) {
+      return new AdaptiveThreshold(name, windowSize);
+    }
+    return null;
+  }
+
+  /**
+   * Radio de la ventana para una imagen: la mitad del lado, al menos 1.
+   */
+  public int getRadius(int width, int height) {
+    final int size = windowSize > 0 ? windowSize : Math.max(width, height) / WINDOW_DIVISOR;
+    return Math.max(1, size / 2);
+  }
+
+  /**
+   * Binariza la imagen con los grises de GrayScale.DEFAULT y escribe el
+   * resultado como pixeles opacos blanco o negro.
+   */
+  @Override
+  public PixelImage apply(PixelImage image) {
+    final int width = image.getWidth();
+    final int height = image.getHeight();
+    final int[] pixels = image.getPixels();
+    final int[] row = new int[width];
+    final Window window = newWindow(image, GrayScale.DEFAULT);
+
+    for (int y = 0; y < height; y++) {
+      window.nextRow(row);
+      final int offset = y * width;
+      for (int x = 0; x < width; x++) {
+        final int v = row[x];
+        pixels[offset + x] = Pixel.toRGB(v, v, v, 255);
+      }
+    }
+    return image;
+  }
+
+  /**
+   * Pasada fila por fila sobre la imagen, sin modificarla.
+   * @param grayScale grises de la imagen
+   */
+  public Window newWindow(PixelImage image, GrayScale grayScale) {
+    return new Window(image, grayScale);
+  }
+
+  /**
+   * Filas de la ventana y sumas por columna de una pasada. Los pixeles con
+   * alfa menor a 128 cuentan como blanco.
+   */
+  public final class Window {
+
+    private final int[] pixels;
+    private final GrayScale grayScale;
+    private final int width;
+    private final int height;
+    private final int radius;
+    private final boolean sauvola;
+
+    // Grises de las filas y - radius .. y + radius; la fila k va en rows[k % rows.length].
+    private final int[][] rows;
+    private final int[] alpha;
+
+    // Suma (y suma de cuadrados) de cada columna sobre las filas de la ventana.
+    private final int[] columnSum;
+    private final long[] columnSquares;
+
+    // Suma acumulada de columnSum en la fila actual: prefix[x] = sum(columnSum[0..x)).
+    private final long[] prefix;
+    private final long[] prefixSquares;
+
+    // Bradley en punto fijo: (1 - sensitivity) * 2^16.
+    private final long factor;
+    // Sauvola: 1 - k y k / 128.
+    private final double below;
+    private final double scale;
+
+    private int y;
+
+    Window(PixelImage image, GrayScale grayScale) {
+      this.pixels = image.getPixels();
+      this.grayScale = grayScale;
+      this.width = image.getWidth();
+      this.height = image.getHeight();
+      this.radius = getRadius(width, height);
+      this.sauvola = SAUVOLA.equals(method);
+      this.rows = new int[Math.min(2 * radius + 1, height)][width];
+      this.alpha = new int[width];
+      this.columnSum = new int[width];
+      this.prefix = new long[width + 1];
+      this.columnSquares = sauvola ? new long[width] : null;
+      this.prefixSquares = sauvola ? new long[width + 1] : null;
+      this.factor = Math.round((1 - sensitivity) * 65536);
+      this.below = 1 - sensitivity;
+      this.scale = sensitivity / 128;
+
+      // Filas 0 .. radius - 1; la fila radius entra en el primer nextRow.
+      for (int k = 0; k < radius && k < height; k++) {
+        addRow(k);
+      }
+    }
+
+    /**
+     * Binariza la siguiente fila.
+     * @param dst width valores 0 (negro) o 255
+     */
+    public void nextRow(int[] dst) {
+      // Sale la fila y - radius - 1 y entra y + radius (comparten lugar en rows).
+      final int out = y - radius - 1;
+      if (out >= 0) {
+        removeRow(out);
+      }
+      if (y + radius < height) {
+        addRow(y + radius);
+      }
+
+      long sum = 0;
+      long squares = 0;
+      for (int x = 0; x < width; x++) {
+        sum += columnSum[x];
+        prefix[x + 1] = sum;
+      }
+      if (sauvola) {
+        for (int x = 0; x < width; x++) {
+          squares += columnSquares[x];
+          prefixSquares[x + 1] = squares;
+        }
+      }
+
+      final int[] current = rows[y % rows.length];
+      final int windowRows = Math.min(height - 1, y + radius) - Math.max(0, y - radius) + 1;
+
+      // Bordes con la ventana recortada, en medio la ventana completa.
+      final int left = Math.min(radius, width);
+      final int right = Math.max(left, width - radius);
+      for (int x = 0; x < left; x++) {
+        dst[x] = binarizeEdge(current[x], x, windowRows);
+      }
+      final long count = (long) (2 * radius + 1) * windowRows;
+      for (int x = left; x < right; x++) {
+        dst[x] = binarize(current[x], x - radius, x + radius + 1, count);
+      }
+      for (int x = right; x < width; x++) {
+        dst[x] = binarizeEdge(current[x], x, windowRows);
+      }
+      y++;
+    }
+
+    /* Cerca del borde: la ventana se recorta a la imagen. */
+    private int binarizeEdge(int v, int x, int windowRows) {
+      final int from = Math.max(0, x - radius);
+      final int to = Math.min(width, x + radius + 1);
+      return binarize(v, from, to, (long) (to - from) * windowRows);
+    }
+
+    /* 0 si v es negro para la ventana de columnas [from, to). */
+    private int binarize(int v, int from, int to, long count) {
+      final long sum = prefix[to] - prefix[from];
+
+      if (!sauvola) {
+        // v <= (sum / count) * (1 - sensitivity). Sin ramas: el resultado
+        // depende del ruido y el salto casi nunca se predice.
+        return (int) ((sum * factor - ((v * count) << 16)) >> 63) & 0xFF;
+      }
+
+      // v <= m * (1 - k) + m * k * s / 128, con m = sum / count y s la
+      // desviacion. Multiplicado por count y elevado al cuadrado, sin
+      // raiz ni divisiones: a <= b * s  <=>  max(a, 0)^2 * count^2 <= b^2 * (squares * count - sum^2)
+      final double n = count;
+      final double total = sum;
+      final double a = Math.max(0, v * n - total * below) * n;
+      final double b = total * scale;
+      final double variance = Math.max(0, (prefixSquares[to] - prefixSquares[from]) * n - total * total);
+      return a * a <= b * b * variance ? 0 : 255;
+    }
+
+    private void addRow(int k) {
+      final int[] row = rows[k % rows.length];
+      grayScale.applyRange(pixels, k * width, row, alpha, width);
+
+      for (int x = 0; x < width; x++) {
+        // Transparente (alfa < 128): blanco, como Pixel.gray.
+        final int v = row[x] | (((alpha[x] - 128) >> 31) & 0xFF);
+        row[x] = v;
+        columnSum[x] += v;
+      }
+      if (sauvola) {
+        for (int x = 0; x < width; x++) {
+          columnSquares[x] += row[x] * row[x];
+        }
+      }
+    }
+
+    private void removeRow(int k) {
+      final int[] row = rows[k % rows.length];
+      for (int x = 0; x < width; x++) {
+        columnSum[x] -= row[x];
+      }
+      if (sauvola) {
+        for (int x = 0; x < width; x++) {
+          columnSquares[x] -= row[x] * row[x];
+        }
+      }
+    }
+  }
+}
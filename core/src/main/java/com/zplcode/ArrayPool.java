@@ -0,0 +1,151 @@
+package com.zplcode;
+
+import java.util.ArrayDeque;
+
+/**
+ * Arreglos reutilizables entre conversiones, por clase de tamano (potencias
+ * de 2): pixeles, raster y buffers de salida.
+ *
+ * obtain devuelve un arreglo de al menos el largo pedido, con contenido
+ * viejo; el que lo usa tiene que respetar su propio largo. release lo
+ * devuelve al pool mientras no pase de maxBytes. Los arreglos chicos no se
+ * guardan, es mas barato crearlos.
+ */
+public final class ArrayPool {
+
+  public static final long DEFAULT_MAX_BYTES = 32L << 20;
+
+  public static final ArrayPool DEFAULT = new ArrayPool(DEFAULT_MAX_BYTES);
+
+  /* No guarda nada: cada obtain crea un arreglo. */
+  public static final ArrayPool NONE = new ArrayPool(0);
+
+  /* Bytes del arreglo mas chico que se guarda. */
+  private static final int MIN_POOLED_BYTES = 4 * 1024;
+  private static final int CLASSES = 31;
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private final ArrayDeque<int[]>[] ints = new ArrayDeque[CLASSES];
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private final ArrayDeque<byte[]>[] bytes = new ArrayDeque[CLASSES];
+
+  // Bytes que obtain tuvo que reservar, por hilo (para ConversionMetrics).
+  private final ThreadLocal<long[]> allocated = new ThreadLocal<long[]>() {
+    @Override
+    protected long[] initialValue() {
+      return new long[1];
+    }
+  };
+
+  private long maxBytes;
+  private long size;
+  private long hits;
+  private long misses;
+
+  public ArrayPool(long maxBytes) {
+    this.maxBytes = maxBytes;
+    for (int i = 0; i < CLASSES; i++) {
+      ints[i] = new ArrayDeque<>();
+      bytes[i] = new ArrayDeque<>();
+    }
+  }
+
+  /* Clase de tamano: el exponente de la potencia de 2 que alcanza length. */
+  private static int sizeClass(int length) {
+    return length <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(length - 1);
+  }
+
+  public int[] obtainInts(int length) {
+    if (length * 4L < MIN_POOLED_BYTES) {
+      allocated.get()[0] += length * 4L;
+      return new int[length];
+    }
+    final int sizeClass = sizeClass(length);
+    synchronized (this) {
+      final int[] array = ints[sizeClass].poll();
+      if (array != null) {
+        size -= array.length * 4L;
+        hits++;
+        return array;
+      }
+      misses++;
+    }
+    allocated.get()[0] += (1L << sizeClass) * 4;
+    return new int[1 << sizeClass];
+  }
+
+  public byte[] obtainBytes(int length) {
+    if (length < MIN_POOLED_BYTES) {
+      allocated.get()[0] += length;
+      return new byte[length];
+    }
+    final int sizeClass = sizeClass(length);
+    synchronized (this) {
+      final byte[] array = bytes[sizeClass].poll();
+      if (array != null) {
+        size -= array.length;
+        hits++;
+        return array;
+      }
+      misses++;
+    }
+    allocated.get()[0] += 1L << sizeClass;
+    return new byte[1 << sizeClass];
+  }
+
+  public void release(int[] array) {
+    if (array != null && array.length * 4L >= MIN_POOLED_BYTES && Integer.bitCount(array.length) == 1) {
+      synchronized (this) {
+        if (size + array.length * 4L <= maxBytes) {
+          ints[sizeClass(array.length)].add(array);
+          size += array.length * 4L;
+        }
+      }
+    }
+  }
+
+  public void release(byte[] array) {
+    if (array != null && array.length >= MIN_POOLED_BYTES && Integer.bitCount(array.length) == 1) {
+      synchronized (this) {
+        if (size + array.length <= maxBytes) {
+          bytes[sizeClass(array.length)].add(array);
+          size += array.length;
+        }
+      }
+    }
+  }
+
+  /* Suelta todos los arreglos, por ejemplo cuando la app pasa a segundo plano. */
+  public synchronized void clear() {
+    for (int i = 0; i < CLASSES; i++) {
+      ints[i].clear();
+      bytes[i].clear();
+    }
+    size = 0;
+  }
+
+  public synchronized void setMaxBytes(long maxBytes) {
+    this.maxBytes = maxBytes;
+    if (size > maxBytes) {
+      clear();
+    }
+  }
+
+  /* Bytes guardados en el pool. */
+  public synchronized long getSize() {
+    return size;
+  }
+
+  /* Bytes que obtain reservo (sin reusar) en el hilo actual desde que empezo. */
+  public long getThreadAllocatedBytes() {
+    return allocated.get()[0];
+  }
+
+  public synchronized long getHitCount() {
+    return hits;
+  }
+
+  public synchronized long getMissCount() {
+    return misses;
+  }
+}
@@ -0,0 +1,174 @@
+package com.zplcode;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Escribe el raster como hex ASCII con la compresion de Zebra (ACS).
+ *
+ * Recibe las filas empaquetadas y por cada una escribe:
+ *  - ':' si es igual a la fila anterior
+ *  - ',' en lugar de los ceros al final de la fila, '!' en lugar de las F
+ *  - las repeticiones con su cuenta: G..Y = 1..19, g..z = 20..400
+ *
+ * finish() no cierra el stream de salida.
+ */
+public class AsciiHexOutputStream extends FilterOutputStream {
+
+  private static final byte[] HEX = "0123456789ABCDEF".getBytes();
+
+  /* Mayor cuenta que se puede escribir con un solo prefijo (z + Y). */
+  private static final int MAX_RUN = 419;
+
+  private final int bytesPerRow;
+  private byte[] row;
+  private byte[] previous;
+  private boolean hasPrevious;
+  private int position;
+
+  private final byte[] hex;
+  private final byte[] line;
+  private int lineLength;
+
+  private boolean finished;
+
+  /**
+   * @param bytesPerRow bytes de cada fila del raster
+   */
+  public AsciiHexOutputStream(OutputStream out, int bytesPerRow) {
+    super(out);
+    if (bytesPerRow <= 0) {
+      throw new IllegalArgumentException("bytesPerRow must be positive");
+    }
+    this.bytesPerRow = bytesPerRow;
+    this.row = new byte[bytesPerRow];
+    this.previous = new byte[bytesPerRow];
+    this.hex = new byte[bytesPerRow * 2];
+    // Nunca crece: cada corrida ocupa a lo mas lo mismo que sin comprimir.
+    this.line = new byte[bytesPerRow * 2 + 1];
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    if (finished) {
+      throw new IOException("write after finish");
+    }
+
+    row[position++] = (byte) b;
+    if (position == bytesPerRow) {
+      encodeRow();
+    }
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    if (finished) {
+      throw new IOException("write after finish");
+    }
+
+    final int end = off + len;
+    while (off < end) {
+      final int n = Math.min(end - off, bytesPerRow - position);
+      System.arraycopy(b, off, row, position, n);
+      position += n;
+      off += n;
+      if (position == bytesPerRow) {
+        encodeRow();
+      }
+    }
+  }
+
+  /* Completa con ceros una fila incompleta. */
+  public void finish() throws IOException {
+    if (finished) {
+      return;
+    }
+    if (position > 0) {
+      Arrays.fill(row, position, bytesPerRow, (byte) 0);
+      encodeRow();
+    }
+    finished = true;
+  }
+
+  @Override
+  public void flush() throws IOException {
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    finish();
+    super.close();
+  }
+
+  private void encodeRow() throws IOException {
+    position = 0;
+    lineLength = 0;
+
+    if (hasPrevious && Arrays.equals(row, previous)) {
+      out.write(':');
+      return;
+    }
+
+    for (int i = 0; i < bytesPerRow; i++) {
+      hex[i * 2] = HEX[(row[i] >> 4) & 0xF];
+      hex[i * 2 + 1] = HEX[row[i] & 0xF];
+    }
+
+    // Ceros o unos hasta el final de la fila.
+    int end = hex.length;
+    final byte last = hex[end - 1];
+    int start = end;
+    while (start > 0 && hex[start - 1] == last) {
+      start--;
+    }
+    final boolean fill = (last == '0' || last == 'F') && end - start >= 2;
+    if (fill) {
+      end = start;
+    }
+
+    int i = 0;
+    while (i < end) {
+      final byte c = hex[i];
+      int j = i + 1;
+      while (j < end && hex[j] == c) {
+        j++;
+      }
+      writeRun(c, j - i);
+      i = j;
+    }
+
+    if (fill) {
+      line[lineLength++] = (byte) (last == '0' ? ',' : '!');
+    }
+    out.write(line, 0, lineLength);
+
+    final byte[] swap = previous;
+    previous = row;
+    row = swap;
+    hasPrevious = true;
+  }
+
+  private void writeRun(byte c, int count) {
+    if (count < 3) {
+      while (count-- > 0) {
+        line[lineLength++] = c;
+      }
+      return;
+    }
+
+    while (count > 0) {
+      final int n = Math.min(count, MAX_RUN);
+      if (n >= 20) {
+        line[lineLength++] = (byte) ('g' + n / 20 - 1);
+      }
+      if (n % 20 > 0) {
+        line[lineLength++] = (byte) ('G' + n % 20 - 1);
+      }
+      line[lineLength++] = c;
+      count -= n;
+    }
+  }
+}
@@ -0,0 +1,160 @@
+package com.zplcode;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Codifica en Base64 lo que se escribe y lo pasa al stream de salida.
+ *
+ * Usa el mismo formato que android.util.Base64.DEFAULT: lineas de 76
+ * caracteres terminadas en '\n', incluida la ultima. Lleva la CRC-16 del
+ * texto generado, que es la que se agrega al final de un campo :Z64:/:B64:.
+ *
+ * finish() escribe el ultimo bloque sin cerrar el stream de salida.
+ */
+public class Base64OutputStream extends FilterOutputStream {
+
+  private static final byte[] ALPHABET =
+    "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes();
+
+  /* Grupos de 4 caracteres por linea (76 caracteres). */
+  private static final int LINE_GROUPS = 19;
+
+  private final Crc16 crc = new Crc16();
+  private final byte[] buffer = new byte[4096];
+  private int position;
+
+  // Bytes pendientes de completar un grupo de 3.
+  private final byte[] tail = new byte[3];
+  private int tailLength;
+
+  private int lineGroups;
+  private long count;
+  private boolean finished;
+
+  private ConversionMetrics metrics;
+
+  public Base64OutputStream(OutputStream out) {
+    super(out);
+  }
+
+  /* Mide la CRC como su propia etapa, null para no medir. */
+  public void setMetrics(ConversionMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    tail[tailLength++] = (byte) b;
+    if (tailLength == 3) {
+      encodeGroup(tail[0], tail[1], tail[2]);
+      tailLength = 0;
+    }
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    if (finished) {
+      throw new IOException("write after finish");
+    }
+
+    final int end = off + len;
+    while (off < end && tailLength != 0) {
+      write(b[off++]);
+    }
+
+    while (end - off >= 3) {
+      encodeGroup(b[off], b[off + 1], b[off + 2]);
+      off += 3;
+    }
+
+    while (off < end) {
+      write(b[off++]);
+    }
+  }
+
+  private void encodeGroup(byte b0, byte b1, byte b2) throws IOException {
+    if (position + 5 > buffer.length) {
+      flushBuffer();
+    }
+
+    final int bits = ((b0 & 0xff) << 16) | ((b1 & 0xff) << 8) | (b2 & 0xff);
+    buffer[position++] = ALPHABET[(bits >> 18) & 0x3f];
+    buffer[position++] = ALPHABET[(bits >> 12) & 0x3f];
+    buffer[position++] = ALPHABET[(bits >> 6) & 0x3f];
+    buffer[position++] = ALPHABET[bits & 0x3f];
+
+    if (++lineGroups == LINE_GROUPS) {
+      buffer[position++] = '\n';
+      lineGroups = 0;
+    }
+  }
+
+  /* Escribe el ultimo grupo con relleno '=' y el salto de linea final. */
+  public void finish() throws IOException {
+    if (finished) {
+      return;
+    }
+    finished = true;
+
+    if (position + 5 > buffer.length) {
+      flushBuffer();
+    }
+
+    if (tailLength > 0) {
+      final int b0 = tail[0] & 0xff;
+      final int b1 = tailLength > 1 ? tail[1] & 0xff : 0;
+      final int bits = (b0 << 16) | (b1 << 8);
+
+      buffer[position++] = ALPHABET[(bits >> 18) & 0x3f];
+      buffer[position++] = ALPHABET[(bits >> 12) & 0x3f];
+      buffer[position++] = tailLength > 1 ? ALPHABET[(bits >> 6) & 0x3f] : (byte) '=';
+      buffer[position++] = '=';
+      buffer[position++] = '\n';
+      tailLength = 0;
+
+    } else if (lineGroups > 0) {
+      buffer[position++] = '\n';
+    }
+
+    flushBuffer();
+  }
+
+  private void flushBuffer() throws IOException {
+    if (position > 0) {
+      if (metrics != null) {
+        metrics.start(ConversionMetrics.CRC);
+        crc.update(buffer, 0, position);
+        metrics.stop();
+      } else {
+        crc.update(buffer, 0, position);
+      }
+      out.write(buffer, 0, position);
+      count += position;
+      position = 0;
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    flushBuffer();
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    finish();
+    super.close();
+  }
+
+  /* CRC-16 del texto enviado al stream de salida, completa despues de finish(). */
+  public Crc16 getCrc() {
+    return crc;
+  }
+
+  /* Caracteres escritos al stream de salida. */
+  public long getCount() {
+    return count;
+  }
+}
@@ -0,0 +1,116 @@
+package com.zplcode;
+
+/**
+ * Fuente de 5x7 para el texto del renderer, escalada al alto y ancho del
+ * ^A/^CF. No son las fuentes de Zebra: sirve para ver donde cae el texto y
+ * cuanto ocupa, no para comparar pixel a pixel.
+ */
+public final class BitmapFont {
+
+  /* Celda de un caracter: 5 columnas de glifo + 1 de espacio, 7 filas + 1. */
+  private static final int CELL_COLUMNS = 6;
+  private static final int CELL_ROWS = 8;
+
+  // ASCII 32..126, 5 columnas por caracter; el bit 0 es la fila de arriba.
+  private static final byte[] GLYPHS = {
+    0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x5F, 0x00, 0x00, 0x00, 0x07, 0x00, 0x07, 0x00,
+    0x14, 0x7F, 0x14, 0x7F, 0x14, 0x24, 0x2A, 0x7F, 0x2A, 0x12, 0x23, 0x13, 0x08, 0x64, 0x62,
+    0x36, 0x49, 0x56, 0x20, 0x50, 0x00, 0x00, 0x07, 0x00, 0x00, 0x00, 0x1C, 0x22, 0x41, 0x00,
+    0x00, 0x41, 0x22, 0x1C, 0x00, 0x2A, 0x1C, 0x7F, 0x1C, 0x2A, 0x08, 0x08, 0x3E, 0x08, 0x08,
+    0x00, 0x50, 0x30, 0x00, 0x00, 0x08, 0x08, 0x08, 0x08, 0x08, 0x00, 0x60, 0x60, 0x00, 0x00,
+    0x20, 0x10, 0x08, 0x04, 0x02, 0x3E, 0x51, 0x49, 0x45, 0x3E, 0x00, 0x42, 0x7F, 0x40, 0x00,
+    0x42, 0x61, 0x51, 0x49, 0x46, 0x21, 0x41, 0x45, 0x4B, 0x31, 0x18, 0x14, 0x12, 0x7F, 0x10,
+    0x27, 0x45, 0x45, 0x45, 0x39, 0x3C, 0x4A, 0x49, 0x49, 0x30, 0x01, 0x71, 0x09, 0x05, 0x03,
+    0x36, 0x49, 0x49, 0x49, 0x36, 0x06, 0x49, 0x49, 0x29, 0x1E, 0x00, 0x36, 0x36, 0x00, 0x00,
+    0x00, 0x56, 0x36, 0x00, 0x00, 0x08, 0x14, 0x22, 0x41, 0x00, 0x14, 0x14, 0x14, 0x14, 0x14,
+    0x00, 0x41, 0x22, 0x14, 0x08, 0x02, 0x01, 0x51, 0x09, 0x06, 0x32, 0x49, 0x79, 0x41, 0x3E,
+    0x7E, 0x11, 0x11, 0x11, 0x7E, 0x7F, 0x49, 0x49, 0x49, 0x36, 0x3E, 0x41, 0x41, 0x41, 0x22,
+    0x7F, 0x41, 0x41, 0x22, 0x1C, 0x7F, 0x49, 0x49, 0x49, 0x41, 0x7F, 0x09, 0x09, 0x09, 0x01,
+    0x3E, 0x41, 0x49, 0x49, 0x7A, 0x7F, 0x08, 0x08, 0x08, 0x7F, 0x00, 0x41, 0x7F, 0x41, 0x00,
+    0x20, 0x40, 0x41, 0x3F, 0x01, 0x7F, 0x08, 0x14, 0x22, 0x41, 0x7F, 0x40, 0x40, 0x40, 0x40,
+    0x7F, 0x02, 0x0C, 0x02, 0x7F, 0x7F, 0x04, 0x08, 0x10, 0x7F, 0x3E, 0x41, 0x41, 0x41, 0x3E,
+    0x7F, 0x09, 0x09, 0x09, 0x06, 0x3E, 0x41, 0x51, 0x21, 0x5E, 0x7F, 0x09, 0x19, 0x29, 0x46,
+    0x26, 0x49, 0x49, 0x49, 0x32, 0x01, 0x01, 0x7F, 0x01, 0x01, 0x3F, 0x40, 0x40, 0x40, 0x3F,
+    0x1F, 0x20, 0x40, 0x20, 0x1F, 0x3F, 0x40, 0x38, 0x40, 0x3F, 0x63, 0x14, 0x08, 0x14, 0x63,
+    0x07, 0x08, 0x70, 0x08, 0x07, 0x61, 0x51, 0x49, 0x45, 0x43, 0x00, 0x7F, 0x41, 0x41, 0x00,
+    0x02, 0x04, 0x08, 0x10, 0x20, 0x00, 0x41, 0x41, 0x7F, 0x00, 0x04, 0x02, 0x01, 0x02, 0x04,
+    0x40, 0x40, 0x40, 0x40, 0x40, 0x00, 0x01, 0x02, 0x04, 0x00, 0x20, 0x54, 0x54, 0x54, 0x78,
+    0x7F, 0x48, 0x44, 0x44, 0x38, 0x38, 0x44, 0x44, 0x44, 0x20, 0x38, 0x44, 0x44, 0x48, 0x7F,
+    0x38, 0x54, 0x54, 0x54, 0x18, 0x08, 0x7E, 0x09, 0x01, 0x02, 0x0C, 0x52, 0x52, 0x52, 0x3E,
+    0x7F, 0x08, 0x04, 0x04, 0x78, 0x00, 0x44, 0x7D, 0x40, 0x00, 0x20, 0x40, 0x44, 0x3D, 0x00,
+    0x7F, 0x10, 0x28, 0x44, 0x00, 0x00, 0x41, 0x7F, 0x40, 0x00, 0x7C, 0x04, 0x18, 0x04, 0x78,
+    0x7C, 0x08, 0x04, 0x04, 0x78, 0x38, 0x44, 0x44, 0x44, 0x38, 0x7C, 0x14, 0x14, 0x14, 0x08,
+    0x08, 0x14, 0x14, 0x18, 0x7C, 0x7C, 0x08, 0x04, 0x04, 0x08, 0x48, 0x54, 0x54, 0x54, 0x20,
+    0x04, 0x3F, 0x44, 0x40, 0x20, 0x3C, 0x40, 0x40, 0x20, 0x7C, 0x1C, 0x20, 0x40, 0x20, 0x1C,
+    0x3C, 0x40, 0x30, 0x40, 0x3C, 0x44, 0x28, 0x10, 0x28, 0x44, 0x0C, 0x50, 0x50, 0x50, 0x3C,
+    0x44, 0x64, 0x54, 0x4C, 0x44, 0x00, 0x08, 0x36, 0x41, 0x00, 0x00, 0x00, 0x7F, 0x00, 0x00,
+    0x00, 0x41, 0x36, 0x08, 0x00, 0x02, 0x01, 0x02, 0x04, 0x02,
+  };
+
+  // Caracteres que no estan en la tabla: un rectangulo.
+  private static final byte[] MISSING = { 0x7F, 0x41, 0x41, 0x41, 0x7F };
+
+  private BitmapFont() {
+  }
+
+  /**
+   * Avance de cada caracter en puntos. La fuente 0 de Zebra es proporcional
+   * y sus caracteres miden en promedio ~0.6 del ancho pedido; las de mapa de
+   * bits (A..H) usan la celda completa mas un espacio.
+   * @param font nombre de la fuente (0, A..H)
+   * @param width ancho del ^A/^CF
+   */
+  public static int getAdvance(char font, int width) {
+    if (font == '0') {
+      return Math.max(1, width * 6 / 10);
+    }
+    return width + Math.max(1, width / 5);
+  }
+
+  public static int getTextWidth(CharSequence text, int advance) {
+    return text.length() * advance;
+  }
+
+  /**
+   * Pinta el texto con la esquina superior izquierda en (x, y).
+   * @param advance ancho de cada caracter (getAdvance)
+   * @param height alto de los caracteres
+   */
+  public static void drawText(MonoRaster raster, CharSequence text, int x, int y,
+                              int advance, int height, int mode) {
+    for (int i = 0; i < text.length(); i++) {
+      drawGlyph(raster, text.charAt(i), x + i * advance, y, advance, height, mode);
+    }
+  }
+
+  /* Cada punto del glifo se estira a su parte de la celda, por columnas. */
+  private static void drawGlyph(MonoRaster raster, char c, int x, int y,
+                                int advance, int height, int mode) {
+    if (c == ' ') {
+      return;
+    }
+    final byte[] glyphs = c >= 32 && c <= 126 ? GLYPHS : MISSING;
+    final int offset = glyphs == GLYPHS ? (c - 32) * 5 : 0;
+
+    for (int column = 0; column < 5; column++) {
+      final int bits = glyphs[offset + column];
+      final int x0 = x + column * advance / CELL_COLUMNS;
+      final int x1 = x + (column + 1) * advance / CELL_COLUMNS;
+      int row = 0;
+      while (row < 7) {
+        if ((bits & (1 << row)) == 0) {
+          row++;
+          continue;
+        }
+        int end = row + 1;
+        while (end < 7 && (bits & (1 << end)) != 0) {
+          end++;
+        }
+        final int y0 = y + row * height / CELL_ROWS;
+        final int y1 = y + end * height / CELL_ROWS;
+        raster.fillRect(x0, y0, x1 - x0, y1 - y0, mode);
+        row = end;
+      }
+    }
+  }
+}
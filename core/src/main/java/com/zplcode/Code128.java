@@ -0,0 +1,219 @@
+package com.zplcode;
+
+/**
+ * Code 128 del ^BC: los codigos de invocacion de Zebra en el modo N y la
+ * seleccion automatica de subconjuntos en el modo A.
+ *
+ *  >9 >: >;  inicio en A, B o C (al principio del campo)
+ *  >7 >6 >5  cambio a A, B o C
+ *  >8        FNC1
+ *  >>        el caracter '>'
+ */
+public final class Code128 {
+
+  private static final int CODE_C = 99;
+  private static final int CODE_B = 100;
+  private static final int CODE_A = 101;
+  private static final int FNC1 = 102;
+  private static final int START_A = 103;
+  private static final int START_B = 104;
+  private static final int START_C = 105;
+  private static final int STOP = 106;
+
+  private static final int SET_A = 0;
+  private static final int SET_B = 1;
+  private static final int SET_C = 2;
+
+  /* Anchos de barra, espacio, barra... de cada simbolo; suman 11 (13 el de parada). */
+  private static final String PATTERNS =
+    "212222222122222221121223121322131222122213122312132212221213"
+      + "221312231212112232122132122231113222123122123221223211221132"
+      + "221231213212223112312131311222321122321221312212322112322211"
+      + "212123212321232121111323131123131321112313132113132311211313"
+      + "231113231311112133112331132131113123113321133121313121211331"
+      + "231131213113213311213131311123311321331121312113312311332111"
+      + "314111221411431111111224111422121124121421141122141221112214"
+      + "112412122114122411142112142211241211221114413111241112134111"
+      + "111242121142121241114212124112124211411212421112421211212141"
+      + "214121412121111143111341131141114113114311411113411311113141"
+      + "114131311141411131211412211214211232";
+  private static final String STOP_PATTERN = "2331112";
+
+  private Code128() {
+  }
+
+  /**
+   * Simbolos del codigo, con el de inicio, el verificador y el de parada.
+   * @param mode N (sin seleccion automatica) o A (automatica)
+   */
+  public static int[] encode(String data, char mode) {
+    final int[] codes = new int[data.length() * 2 + 4];
+    int count = 0;
+
+    if (mode == 'A') {
+      // C para corridas de 4 digitos o mas (o todo el campo si son solo digitos).
+      int set = -1;
+      int i = 0;
+      final int length = data.length();
+      while (i < length) {
+        int digits = 0;
+        while (i + digits < length && isDigit(data.charAt(i + digits))) {
+          digits++;
+        }
+        if (digits >= 4 || digits >= 2 && digits == length) {
+          final int pairs = digits / 2;
+          count = switchTo(codes, count, set, SET_C);
+          set = SET_C;
+          for (int k = 0; k < pairs; k++, i += 2) {
+            codes[count++] = (data.charAt(i) - '0') * 10 + data.charAt(i + 1) - '0';
+          }
+          continue;
+        }
+        final char c = data.charAt(i++);
+        final int target = c < 32 ? SET_A : set == SET_A && c < 96 ? SET_A : SET_B;
+        if (set != target) {
+          count = switchTo(codes, count, set, target);
+          set = target;
+        }
+        codes[count++] = valueOf(c, set);
+      }
+      if (set < 0) {
+        codes[count++] = START_B;
+      }
+    } else {
+      int i = 0;
+      int set = SET_B;
+      if (data.startsWith(">9")) {
+        set = SET_A;
+        i = 2;
+      } else if (data.startsWith(">;")) {
+        set = SET_C;
+        i = 2;
+      } else if (data.startsWith(">:")) {
+        i = 2;
+      }
+      codes[count++] = START_A + set;
+
+      final int length = data.length();
+      while (i < length) {
+        char c = data.charAt(i);
+        if (c == '>' && i + 1 < length) {
+          final char next = data.charAt(i + 1);
+          final int target = next == '7' ? SET_A : next == '6' ? SET_B : next == '5' ? SET_C : -1;
+          if (target >= 0) {
+            if (target != set) {
+              count = switchTo(codes, count, set, target);
+              set = target;
+            }
+            i += 2;
+            continue;
+          } else if (next == '8') {
+            codes[count++] = FNC1;
+            i += 2;
+            continue;
+          } else if (next == '>') {
+            i++;
+          }
+        }
+
+        if (set == SET_C) {
+          if (i + 1 < length && isDigit(c) && isDigit(data.charAt(i + 1))) {
+            codes[count++] = (c - '0') * 10 + data.charAt(i + 1) - '0';
+            i += 2;
+            continue;
+          }
+          // Digito suelto o no numerico: sigue en B.
+          count = switchTo(codes, count, set, SET_B);
+          set = SET_B;
+        }
+        if (set == SET_B && c < 32) {
+          count = switchTo(codes, count, set, SET_A);
+          set = SET_A;
+        } else if (set == SET_A && c >= 96) {
+          count = switchTo(codes, count, set, SET_B);
+          set = SET_B;
+        }
+        codes[count++] = valueOf(c, set);
+        i++;
+      }
+    }
+
+    int sum = codes[0];
+    for (int k = 1; k < count; k++) {
+      sum += k * codes[k];
+    }
+    codes[count++] = sum % 103;
+    codes[count++] = STOP;
+
+    final int[] result = new int[count];
+    System.arraycopy(codes, 0, result, 0, count);
+    return result;
+  }
+
+  /**
+   * Texto legible del campo: sin los codigos de invocacion.
+   */
+  public static String getText(String data, char mode) {
+    if (mode == 'A') {
+      return data;
+    }
+    final StringBuilder text = new StringBuilder(data.length());
+    for (int i = 0; i < data.length(); i++) {
+      final char c = data.charAt(i);
+      if (c == '>' && i + 1 < data.length()) {
+        if (data.charAt(++i) == '>') {
+          text.append('>');
+        }
+        continue;
+      }
+      text.append(c);
+    }
+    return text.toString();
+  }
+
+  /* Ancho en modulos. */
+  public static int getWidth(int[] codes) {
+    return (codes.length - 1) * 11 + 13;
+  }
+
+  /**
+   * Pinta las barras desde (x, y).
+   * @param moduleWidth ancho de la barra mas angosta (^BY)
+   */
+  public static void draw(MonoRaster raster, int[] codes, int x, int y, int moduleWidth,
+                          int height, int mode) {
+    for (int code : codes) {
+      final int length = code == STOP ? STOP_PATTERN.length() : 6;
+      for (int k = 0; k < length; k++) {
+        final int modules = (code == STOP ? STOP_PATTERN.charAt(k) : PATTERNS.charAt(code * 6 + k)) - '0';
+        // Las posiciones pares son barras.
+        if (k % 2 == 0) {
+          raster.fillRect(x, y, modules * moduleWidth, height, mode);
+        }
+        x += modules * moduleWidth;
+      }
+    }
+  }
+
+  /* Escribe el inicio (si aun no hay) o el cambio de subconjunto. */
+  private static int switchTo(int[] codes, int count, int from, int to) {
+    if (from < 0) {
+      codes[count++] = START_A + to;
+    } else if (from != to) {
+      codes[count++] = to == SET_A ? CODE_A : to == SET_B ? CODE_B : CODE_C;
+    }
+    return count;
+  }
+
+  /* Fuera de ASCII (necesitaria FNC4) se escribe '?'. */
+  private static int valueOf(char c, int set) {
+    if (set == SET_A) {
+      return c < 32 ? c + 64 : c < 96 ? c - 32 : '?' - 32;
+    }
+    return c >= 32 && c < 128 ? c - 32 : '?' - 32;
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+}
@@ -0,0 +1,207 @@
+package com.zplcode;
+
+/**
+ * Tiempos y tamanos de una conversion, por etapa.
+ *
+ * Cada etapa cuenta su tiempo exclusivo: si dentro de una empieza otra (por
+ * ejemplo el Base64 que escribe el deflate), la de afuera se pausa hasta que
+ * la de adentro termina. Un objeto es de un solo hilo; para las franjas en
+ * paralelo se usa newChild() y merge().
+ */
+public final class ConversionMetrics {
+
+  /* Etapas, en el orden de STAGES. */
+  public static final int DECODE = 0;
+  public static final int SCALE = 1;
+  public static final int PIXELS = 2;
+  public static final int THRESHOLD = 3;
+  public static final int GRAY_SCALE = 4;
+  public static final int DITHER = 5;
+  public static final int PACK = 6;
+  public static final int DEFLATE = 7;
+  public static final int BASE64 = 8;
+  public static final int CRC = 9;
+  public static final int HEX = 10;
+  public static final int WRITE = 11;
+
+  public static final String[] STAGES = {
+    "decode", "scale", "pixels", "threshold", "grayScale", "dither", "pack",
+    "deflate", "base64", "crc", "hex", "write"
+  };
+
+  /* Recibe el inicio y fin de cada etapa, por ejemplo para android.os.Trace. */
+  public interface Tracer {
+    void begin(int stage);
+
+    void end(int stage);
+  }
+
+  private final long[] nanos = new long[STAGES.length];
+  private final Tracer tracer;
+
+  // Etapas abiertas; solo la de arriba acumula tiempo.
+  private final int[] stack = new int[16];
+  private int depth;
+  private long mark;
+
+  private long startNanos;
+  private long totalNanos;
+
+  private long rasterBytes;
+  private long compressedBytes;
+  private long outputBytes;
+  private long allocatedBytes;
+
+  private boolean cacheHit;
+  private boolean graphicReused;
+  private int encodedTiles;
+  private int reusedTiles;
+
+  public ConversionMetrics() {
+    this(null);
+  }
+
+  /**
+   * @param tracer null para solo medir
+   */
+  public ConversionMetrics(Tracer tracer) {
+    this.tracer = tracer;
+  }
+
+  /* Para medir en otro hilo; se junta con merge(). */
+  public ConversionMetrics newChild() {
+    return new ConversionMetrics(tracer);
+  }
+
+  /* Marca el inicio de la conversion completa. */
+  public void begin() {
+    startNanos = System.nanoTime();
+  }
+
+  /* Marca el fin de la conversion completa. */
+  public void end() {
+    totalNanos = System.nanoTime() - startNanos;
+  }
+
+  public void start(int stage) {
+    final long now = System.nanoTime();
+    if (depth > 0) {
+      nanos[stack[depth - 1]] += now - mark;
+    }
+    stack[depth++] = stage;
+    mark = now;
+    if (tracer != null) {
+      tracer.begin(stage);
+    }
+  }
+
+  /* Termina la ultima etapa que empezo. */
+  public void stop() {
+    final int stage = stack[--depth];
+    if (tracer != null) {
+      tracer.end(stage);
+    }
+    final long now = System.nanoTime();
+    nanos[stage] += now - mark;
+    mark = now;
+  }
+
+  /* Suma los tiempos y tamanos de una medicion hecha en otro hilo. */
+  public void merge(ConversionMetrics other) {
+    synchronized (this) {
+      for (int i = 0; i < nanos.length; i++) {
+        nanos[i] += other.nanos[i];
+      }
+      rasterBytes += other.rasterBytes;
+      compressedBytes += other.compressedBytes;
+      outputBytes += other.outputBytes;
+      allocatedBytes += other.allocatedBytes;
+    }
+  }
+
+  /* Tiempo de la etapa, sumado entre hilos si se hizo en paralelo. */
+  public synchronized long getNanos(int stage) {
+    return nanos[stage];
+  }
+
+  /* Tiempo de pared desde begin() hasta end(). */
+  public long getTotalNanos() {
+    return totalNanos;
+  }
+
+  public synchronized void addRasterBytes(long bytes) {
+    rasterBytes += bytes;
+  }
+
+  public synchronized void addCompressedBytes(long bytes) {
+    compressedBytes += bytes;
+  }
+
+  public synchronized void addOutputBytes(long bytes) {
+    outputBytes += bytes;
+  }
+
+  public synchronized void addAllocatedBytes(long bytes) {
+    allocatedBytes += bytes;
+  }
+
+  /* Bytes del raster de 1 bit que se codificaron. */
+  public synchronized long getRasterBytes() {
+    return rasterBytes;
+  }
+
+  /* Salida de zlib (Z64), antes del Base64. */
+  public synchronized long getCompressedBytes() {
+    return compressedBytes;
+  }
+
+  /* Caracteres de datos escritos (Z64, B64 o hex). */
+  public synchronized long getOutputBytes() {
+    return outputBytes;
+  }
+
+  /**
+   * Bytes que se tuvieron que reservar porque no habia nada que reusar en
+   * los pools. Es una estimacion: no cuenta objetos chicos ni los internos
+   * de Android.
+   */
+  public synchronized long getAllocatedBytes() {
+    return allocatedBytes;
+  }
+
+  /* rasterBytes / outputBytes, 0 si no se codifico nada. */
+  public synchronized double getCompressionRatio() {
+    return outputBytes > 0 ? (double) rasterBytes / outputBytes : 0;
+  }
+
+  public void setCacheHit(boolean cacheHit) {
+    this.cacheHit = cacheHit;
+  }
+
+  /* El ZPL salio del cache sin convertir. */
+  public boolean isCacheHit() {
+    return cacheHit;
+  }
+
+  public void setGraphicReused(boolean graphicReused) {
+    this.graphicReused = graphicReused;
+  }
+
+  /* El grafico ya estaba en la impresora y solo se escribio ^XG. */
+  public boolean isGraphicReused() {
+    return graphicReused;
+  }
+
+  public void setTiles(int encodedTiles, int reusedTiles) {
+    this.encodedTiles = encodedTiles;
+    this.reusedTiles = reusedTiles;
+  }
+
+  public int getEncodedTiles() {
+    return encodedTiles;
+  }
+
+  public int getReusedTiles() {
+    return reusedTiles;
+  }
+}
@@ -0,0 +1,147 @@
+package com.zplcode;
+
+/**
+ * Acumula las ConversionMetrics de muchas conversiones: percentiles de cada
+ * etapa en las ultimas conversiones y totales desde el inicio.
+ */
+public final class ConversionStats {
+
+  public static final int DEFAULT_WINDOW = 1024;
+
+  private final RollingHistogram[] stages = new RollingHistogram[ConversionMetrics.STAGES.length];
+  private final RollingHistogram total;
+  private final RollingHistogram outputBytes;
+  private final RollingHistogram allocatedBytes;
+
+  private long conversions;
+  private long cacheHits;
+  private long graphicReuses;
+  private long encodedTiles;
+  private long reusedTiles;
+  private long rasterBytesTotal;
+  private long outputBytesTotal;
+  private long allocatedBytesTotal;
+
+  public ConversionStats() {
+    this(DEFAULT_WINDOW);
+  }
+
+  /**
+   * @param window conversiones que entran en los percentiles
+   */
+  public ConversionStats(int window) {
+    for (int i = 0; i < stages.length; i++) {
+      stages[i] = new RollingHistogram(window);
+    }
+    total = new RollingHistogram(window);
+    outputBytes = new RollingHistogram(window);
+    allocatedBytes = new RollingHistogram(window);
+  }
+
+  /**
+   * Las etapas que no se hicieron (en 0, por ejemplo todas con un acierto
+   * del cache) no entran en sus percentiles.
+   */
+  public void record(ConversionMetrics metrics) {
+    for (int i = 0; i < stages.length; i++) {
+      final long nanos = metrics.getNanos(i);
+      if (nanos > 0) {
+        stages[i].record(nanos);
+      }
+    }
+    total.record(metrics.getTotalNanos());
+    if (!metrics.isCacheHit()) {
+      outputBytes.record(metrics.getOutputBytes());
+      allocatedBytes.record(metrics.getAllocatedBytes());
+    }
+
+    synchronized (this) {
+      conversions++;
+      if (metrics.isCacheHit()) {
+        cacheHits++;
+      }
+      if (metrics.isGraphicReused()) {
+        graphicReuses++;
+      }
+      encodedTiles += metrics.getEncodedTiles();
+      reusedTiles += metrics.getReusedTiles();
+      rasterBytesTotal += metrics.getRasterBytes();
+      outputBytesTotal += metrics.getOutputBytes();
+      allocatedBytesTotal += metrics.getAllocatedBytes();
+    }
+  }
+
+  /* Nanosegundos de la etapa (ConversionMetrics.DECODE ...). */
+  public RollingHistogram getStage(int stage) {
+    return stages[stage];
+  }
+
+  /* Nanosegundos de la conversion completa, incluidos los aciertos del cache. */
+  public RollingHistogram getTotal() {
+    return total;
+  }
+
+  public RollingHistogram getOutputBytes() {
+    return outputBytes;
+  }
+
+  public RollingHistogram getAllocatedBytes() {
+    return allocatedBytes;
+  }
+
+  public synchronized long getConversionCount() {
+    return conversions;
+  }
+
+  public synchronized long getCacheHitCount() {
+    return cacheHits;
+  }
+
+  public synchronized long getGraphicReuseCount() {
+    return graphicReuses;
+  }
+
+  public synchronized long getEncodedTileCount() {
+    return encodedTiles;
+  }
+
+  public synchronized long getReusedTileCount() {
+    return reusedTiles;
+  }
+
+  public synchronized long getRasterBytesTotal() {
+    return rasterBytesTotal;
+  }
+
+  public synchronized long getOutputBytesTotal() {
+    return outputBytesTotal;
+  }
+
+  public synchronized long getAllocatedBytesTotal() {
+    return allocatedBytesTotal;
+  }
+
+  /* Raster / datos escritos de todas las conversiones, 0 si no hubo. */
+  public synchronized double getCompressionRatio() {
+    return outputBytesTotal > 0 ? (double) rasterBytesTotal / outputBytesTotal : 0;
+  }
+
+  public void clear() {
+    for (RollingHistogram stage : stages) {
+      stage.clear();
+    }
+    total.clear();
+    outputBytes.clear();
+    allocatedBytes.clear();
+    synchronized (this) {
+      conversions = 0;
+      cacheHits = 0;
+      graphicReuses = 0;
+      encodedTiles = 0;
+      reusedTiles = 0;
+      rasterBytesTotal = 0;
+      outputBytesTotal = 0;
+      allocatedBytesTotal = 0;
+    }
+  }
+}
@@ -0,0 +1,97 @@
+package com.zplcode;
+
+import java.nio.ByteBuffer;
+
+/**
+ *  16 bit Cylcic Redundancy Check (CRC-CCIIT 0xFFFF) incremental, la
+ *  misma que {@link ZplLibGraphics#getCRCHexString(String)}.
+ *
+ *  1 + x + x^5 + x^12 + x^16 is irreducible polynomial.
+ *
+ *  Usa tablas slice-by-4: TABLES[k][b] es la CRC del byte b seguido de k
+ *  bytes en cero, asi cada bloque de 4 bytes se resuelve con 4 consultas.
+ */
+public final class Crc16 {
+
+  private static final int POLYNOMIAL = 0x1021;    // 0001 0000 0010 0001  (0, 5, 12)
+
+  private static final int[][] TABLES = new int[4][256];
+
+  static {
+    for (int b = 0; b < 256; b++) {
+      int crc = b << 8;
+      for (int i = 0; i < 8; i++) {
+        crc = (crc & 0x8000) != 0 ? (crc << 1) ^ POLYNOMIAL : crc << 1;
+      }
+      TABLES[0][b] = crc & 0xffff;
+    }
+
+    for (int k = 1; k < TABLES.length; k++) {
+      for (int b = 0; b < 256; b++) {
+        final int prev = TABLES[k - 1][b];
+        TABLES[k][b] = ((prev << 8) ^ TABLES[0][prev >> 8]) & 0xffff;
+      }
+    }
+  }
+
+  private int crc = 0x0000;           // initial value
+
+  public void update(int b) {
+    crc = ((crc << 8) ^ TABLES[0][((crc >> 8) ^ b) & 0xff]) & 0xffff;
+  }
+
+  public void update(byte[] bytes, int off, int len) {
+    final int[] t0 = TABLES[0];
+    final int[] t1 = TABLES[1];
+    final int[] t2 = TABLES[2];
+    final int[] t3 = TABLES[3];
+    final int end = off + len;
+    int c = crc;
+
+    while (end - off >= 4) {
+      c = t3[((c >> 8) ^ bytes[off]) & 0xff]
+        ^ t2[(c ^ bytes[off + 1]) & 0xff]
+        ^ t1[bytes[off + 2] & 0xff]
+        ^ t0[bytes[off + 3] & 0xff];
+      off += 4;
+    }
+
+    while (off < end) {
+      c = ((c << 8) ^ t0[((c >> 8) ^ bytes[off++]) & 0xff]) & 0xffff;
+    }
+
+    crc = c;
+  }
+
+  /* Consume los bytes restantes del buffer. */
+  public void update(ByteBuffer buffer) {
+    if (buffer.hasArray()) {
+      final int position = buffer.position();
+      update(buffer.array(), buffer.arrayOffset() + position, buffer.remaining());
+      buffer.position(buffer.limit());
+    } else {
+      while (buffer.hasRemaining()) {
+        update(buffer.get());
+      }
+    }
+  }
+
+  /* Los caracteres se toman como bytes (ASCII). */
+  public void update(CharSequence chars) {
+    for (int i = 0; i < chars.length(); i++) {
+      update((byte) chars.charAt(i));
+    }
+  }
+
+  public int getValue() {
+    return crc;
+  }
+
+  public void reset() {
+    crc = 0x0000;
+  }
+
+  public String toHexString() {
+    return Integer.toHexString(crc);
+  }
+}
@@ -0,0 +1,75 @@
+package com.zplcode;
+
+import java.util.zip.Deflater;
+
+/**
+ * Un Deflater (zlib) por hilo, reutilizado entre imagenes.
+ *
+ * Crear un Deflater reserva la memoria nativa de zlib; aqui se hace una vez
+ * por hilo y entre imagenes solo se llama reset(). Si el del hilo ya esta en
+ * uso se crea uno temporal.
+ */
+public final class Deflaters {
+
+  private static final ThreadLocal<Deflater> CACHE = new ThreadLocal<>();
+
+  private Deflaters() {
+  }
+
+  /**
+   * @param level Deflater.DEFAULT_COMPRESSION o 0 (sin comprimir) a 9
+   * @param strategy Deflater.DEFAULT_STRATEGY, FILTERED o HUFFMAN_ONLY
+   * @return un Deflater listo para un nuevo stream; devolverlo con release()
+   */
+  public static Deflater obtain(int level, int strategy) {
+    checkLevel(level);
+    checkStrategy(strategy);
+
+    Deflater deflater = CACHE.get();
+    if (deflater != null) {
+      CACHE.set(null);
+    } else {
+      deflater = new Deflater(level);
+    }
+    deflater.setLevel(level);
+    deflater.setStrategy(strategy);
+    return deflater;
+  }
+
+  /* Limpia el Deflater y lo deja para el siguiente uso en este hilo. */
+  public static void release(Deflater deflater) {
+    deflater.reset();
+    if (CACHE.get() == null) {
+      CACHE.set(deflater);
+    } else {
+      deflater.end();
+    }
+  }
+
+  public static void checkLevel(int level) {
+    if (level != Deflater.DEFAULT_COMPRESSION && (level < 0 || level > 9)) {
+      throw new IllegalArgumentException("Invalid compression level " + level);
+    }
+  }
+
+  public static void checkStrategy(int strategy) {
+    if (strategy != Deflater.DEFAULT_STRATEGY && strategy != Deflater.FILTERED
+      && strategy != Deflater.HUFFMAN_ONLY) {
+      throw new IllegalArgumentException("Invalid compression strategy " + strategy);
+    }
+  }
+
+  /**
+   * @param name "default", "filtered" o "huffman-only"
+   */
+  public static int strategyForName(String name) {
+    if ("default".equals(name)) {
+      return Deflater.DEFAULT_STRATEGY;
+    } else if ("filtered".equals(name)) {
+      return Deflater.FILTERED;
+    } else if ("huffman-only".equals(name)) {
+      return Deflater.HUFFMAN_ONLY;
+    }
+    throw new IllegalArgumentException("Unknown compression strategy '" + name + "'");
+  }
+}
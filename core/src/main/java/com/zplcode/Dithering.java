@@ -0,0 +1,103 @@
+package com.zplcode;
+
+/**
+ * Aplica un {@link RowDither} a una imagen y resuelve los dither por nombre.
+ */
+public final class Dithering {
+
+  public static final String FLOYD_STEINBERG = "floyd-steinberg";
+  public static final String FLOYD_STEINBERG_SERPENTINE = "floyd-steinberg-serpentine";
+  public static final String ATKINSON = "atkinson";
+  public static final String JARVIS_JUDICE_NINKE = "jarvis-judice-ninke";
+  public static final String STUCKI = "stucki";
+  public static final String SIERRA = "sierra";
+  public static final String SIERRA_LITE = "sierra-lite";
+  public static final String BAYER2 = "bayer2";
+  public static final String BAYER4 = "bayer4";
+  public static final String BAYER8 = "bayer8";
+
+  private Dithering() {
+  }
+
+  /**
+   * Dither por nombre, por ejemplo el valor de la opcion dither de imageToZpl.
+   * @param name floyd-steinberg, atkinson, bayer4...
+   * @return dither para el plano de luminancia
+   */
+  public static RowDither forName(String name) {
+    switch (name) {
+      case FLOYD_STEINBERG:
+        return new FloydSteinbergDithering(true);
+      case FLOYD_STEINBERG_SERPENTINE:
+        return new ErrorDiffusionDithering(ErrorDiffusionDithering.FLOYD_STEINBERG, true);
+      case ATKINSON:
+        return new ErrorDiffusionDithering(ErrorDiffusionDithering.ATKINSON);
+      case JARVIS_JUDICE_NINKE:
+        return new ErrorDiffusionDithering(ErrorDiffusionDithering.JARVIS_JUDICE_NINKE);
+      case STUCKI:
+        return new ErrorDiffusionDithering(ErrorDiffusionDithering.STUCKI);
+      case SIERRA:
+        return new ErrorDiffusionDithering(ErrorDiffusionDithering.SIERRA);
+      case SIERRA_LITE:
+        return new ErrorDiffusionDithering(ErrorDiffusionDithering.SIERRA_LITE);
+      case BAYER2:
+        return new OrderedDithering(2);
+      case BAYER4:
+        return new OrderedDithering(4);
+      case BAYER8:
+        return new OrderedDithering(8);
+      default:
+        throw new IllegalArgumentException("Unknown dither '" + name + "'");
+    }
+  }
+
+  /**
+   * La opcion dither booleana de antes de los nombres: true es Floyd-Steinberg.
+   * @return null si es false
+   */
+  public static RowDither forFlag(boolean dither) {
+    return dither ? forName(FLOYD_STEINBERG) : null;
+  }
+
+  /**
+   * Convierte la imagen a un plano de luminancia, lo binariza con una ventana
+   * de filas y escribe el resultado como pixeles opacos blanco o negro.
+   */
+  public static PixelImage apply(RowDither dither, PixelImage image) {
+    final int width = image.getWidth();
+    final int height = image.getHeight();
+    final int[] pixels = image.getPixels();
+    final int span = dither.getRowSpan();
+    final int[][] rows = new int[span][width];
+
+    for (int i = 0; i < span && i < height; i++) {
+      loadRow(pixels, i * width, rows[i], width);
+    }
+
+    for (int y = 0; y < height; y++) {
+      dither.ditherRow(rows, Math.min(span, height - y), width, y);
+
+      final int[] done = rows[0];
+      final int row = y * width;
+      for (int x = 0; x < width; x++) {
+        final int v = done[x];
+        pixels[row + x] = Pixel.toRGB(v, v, v, 255);
+      }
+
+      // La fila terminada se reutiliza para la siguiente que entra a la ventana.
+      System.arraycopy(rows, 1, rows, 0, span - 1);
+      rows[span - 1] = done;
+      if (y + span < height) {
+        loadRow(pixels, (y + span) * width, done, width);
+      }
+    }
+
+    return image;
+  }
+
+  private static void loadRow(int[] pixels, int offset, int[] row, int width) {
+    for (int x = 0; x < width; x++) {
+      row[x] = Pixel.red(GrayScale.DEFAULT.pixel(pixels[offset + x]));
+    }
+  }
+}
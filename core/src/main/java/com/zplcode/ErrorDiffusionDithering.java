@@ -0,0 +1,161 @@
+package com.zplcode;
+
+/**
+ * Difusion de error sobre un plano de luminancia usando una tabla de pesos.
+ *
+ * Cada vecino recibe floor(error * peso / divisor) y se recorta a 0..255 al
+ * momento, igual que {@link FloydSteinbergDithering}. En modo serpentine las
+ * filas impares se recorren de derecha a izquierda con la tabla reflejada.
+ */
+public final class ErrorDiffusionDithering implements Transform, RowDither {
+
+  /**
+   * Tabla de difusion: {dx, dy, peso} relativo al pixel actual.
+   */
+  public static final class Kernel {
+
+    public final String name;
+    public final int divisor;
+
+    final int[] dx;
+    final int[] dy;
+    final int span;
+
+    // share[tap][error + 128] = floor(error * peso / divisor)
+    final int[][] share;
+
+    public Kernel(String name, int divisor, int[][] taps) {
+      this.name = name;
+      this.divisor = divisor;
+      this.dx = new int[taps.length];
+      this.dy = new int[taps.length];
+      this.share = new int[taps.length][256];
+
+      int maxDy = 0;
+      for (int i = 0; i < taps.length; i++) {
+        final int[] tap = taps[i];
+        if (tap[1] < 0 || (tap[1] == 0 && tap[0] <= 0)) {
+          throw new IllegalArgumentException("tap " + i + " points to a pixel already visited");
+        }
+
+        dx[i] = tap[0];
+        dy[i] = tap[1];
+        maxDy = Math.max(maxDy, tap[1]);
+
+        // El error de un pixel binarizado va de -127 a 127.
+        for (int error = -128; error < 128; error++) {
+          share[i][error + 128] = floorDiv(error * tap[2], divisor);
+        }
+      }
+      this.span = maxDy + 1;
+    }
+
+    @Override
+    public String toString() {
+      return "Kernel(" + name + ")";
+    }
+  }
+
+  public static final Kernel FLOYD_STEINBERG = new Kernel("floyd-steinberg", 16, new int[][]{
+    {1, 0, 7},
+    {-1, 1, 3}, {0, 1, 5}, {1, 1, 1},
+  });
+
+  public static final Kernel ATKINSON = new Kernel("atkinson", 8, new int[][]{
+    {1, 0, 1}, {2, 0, 1},
+    {-1, 1, 1}, {0, 1, 1}, {1, 1, 1},
+    {0, 2, 1},
+  });
+
+  public static final Kernel JARVIS_JUDICE_NINKE = new Kernel("jarvis-judice-ninke", 48, new int[][]{
+    {1, 0, 7}, {2, 0, 5},
+    {-2, 1, 3}, {-1, 1, 5}, {0, 1, 7}, {1, 1, 5}, {2, 1, 3},
+    {-2, 2, 1}, {-1, 2, 3}, {0, 2, 5}, {1, 2, 3}, {2, 2, 1},
+  });
+
+  public static final Kernel STUCKI = new Kernel("stucki", 42, new int[][]{
+    {1, 0, 8}, {2, 0, 4},
+    {-2, 1, 2}, {-1, 1, 4}, {0, 1, 8}, {1, 1, 4}, {2, 1, 2},
+    {-2, 2, 1}, {-1, 2, 2}, {0, 2, 4}, {1, 2, 2}, {2, 2, 1},
+  });
+
+  public static final Kernel SIERRA = new Kernel("sierra", 32, new int[][]{
+    {1, 0, 5}, {2, 0, 3},
+    {-2, 1, 2}, {-1, 1, 4}, {0, 1, 5}, {1, 1, 4}, {2, 1, 2},
+    {-1, 2, 2}, {0, 2, 3}, {1, 2, 2},
+  });
+
+  public static final Kernel SIERRA_LITE = new Kernel("sierra-lite", 4, new int[][]{
+    {1, 0, 2},
+    {-1, 1, 1}, {0, 1, 1},
+  });
+
+  public final Kernel kernel;
+  public final boolean serpentine;
+
+  public ErrorDiffusionDithering(Kernel kernel, boolean serpentine) {
+    if (null == kernel) {
+      throw new IllegalArgumentException("kernel arg cannot be null");
+    }
+    this.kernel = kernel;
+    this.serpentine = serpentine;
+  }
+
+  public ErrorDiffusionDithering(Kernel kernel) {
+    this(kernel, false);
+  }
+
+  @Override
+  public PixelImage apply(PixelImage image) {
+    return Dithering.apply(this, image);
+  }
+
+  @Override
+  public int getRowSpan() {
+    return kernel.span;
+  }
+
+  @Override
+  public void ditherRow(int[][] rows, int count, int width, int y) {
+    final int[] dx = kernel.dx;
+    final int[] dy = kernel.dy;
+    final int[][] share = kernel.share;
+    final int taps = dx.length;
+    final int[] current = rows[0];
+
+    final boolean reverse = serpentine && (y & 1) == 1;
+    final int start = reverse ? width - 1 : 0;
+    final int step = reverse ? -1 : 1;
+
+    for (int i = 0, x = start; i < width; i++, x += step) {
+      final int oldValue = current[x];
+      final int newValue = (oldValue < 128) ? 0 : 255;
+      current[x] = newValue;
+
+      final int error = oldValue - newValue;
+      if (error == 0) {
+        continue;
+      }
+
+      for (int t = 0; t < taps; t++) {
+        if (dy[t] >= count) {
+          continue;
+        }
+
+        final int nx = x + dx[t] * step;
+        if (nx < 0 || nx >= width) {
+          continue;
+        }
+
+        final int[] row = rows[dy[t]];
+        final int value = row[nx] + share[t][error + 128];
+        row[nx] = value < 0 ? 0 : (value > 255 ? 255 : value);
+      }
+    }
+  }
+
+  private static int floorDiv(int a, int b) {
+    final int q = a / b;
+    return (a % b != 0 && ((a < 0) != (b < 0))) ? q - 1 : q;
+  }
+}
@@ -0,0 +1,156 @@
+package com.zplcode;
+
+/**
+ * Floyd-Steinberg.
+ *
+ * Por omision difunde el error en double sobre los cuatro canales ARGB. En
+ * modo luminancia trabaja sobre un solo plano de 8 bits con error entero en
+ * dieciseisavos y dos filas en memoria; sobre una imagen gris opaca da
+ * exactamente el mismo resultado.
+ */
+public final class FloydSteinbergDithering implements Transform, RowDither {
+
+  public final boolean luminance;
+
+  public FloydSteinbergDithering() {
+    this(false);
+  }
+
+  public FloydSteinbergDithering(boolean luminance) {
+    this.luminance = luminance;
+  }
+
+  @Override
+  public PixelImage apply(PixelImage image) {
+    if (luminance) {
+      return Dithering.apply(this, image);
+    }
+
+    final int width = image.getWidth();
+    final int height = image.getHeight();
+    final int[] pixels = image.getPixels();
+
+    final double factor1 = 7 / 16.0;
+    final double factor2 = 3 / 16.0;
+    final double factor3 = 5 / 16.0;
+    final double factor4 = 1 / 16.0;
+
+    for (int y = 0; y < height; y++) {
+      final int row = y * width;
+
+      for (int x = 0; x < width; x++) {
+        final int index = row + x;
+        final int oldColor = pixels[index];
+
+        final int oldRed = Pixel.red(oldColor);
+        final int oldGreen = Pixel.green(oldColor);
+        final int oldBlue = Pixel.blue(oldColor);
+        final int oldAlpha = Pixel.alpha(oldColor);
+
+        final int newRed = (oldRed < 128) ? 0 : 255;
+        final int newGreen = (oldGreen < 128) ? 0 : 255;
+        final int newBlue = (oldBlue < 128) ? 0 : 255;
+        final int newAlpha = (oldAlpha < 128) ? 0 : 255;
+
+        final int newColor = Pixel.toRGB(newRed, newGreen, newBlue, newAlpha);
+        pixels[index] = newColor;
+
+        final int errorRed = oldRed - newRed;
+        final int errorGreen = oldGreen - newGreen;
+        final int errorBlue = oldBlue - newBlue;
+        final int errorAlpha = oldAlpha - newAlpha;
+
+        if (x < width - 1) {
+          distributeError(pixels, index + 1, errorRed, errorGreen, errorBlue, errorAlpha, factor1);
+        }
+
+        if (x > 0 && y < height - 1) {
+          distributeError(pixels, index + width - 1, errorRed, errorGreen, errorBlue, errorAlpha, factor2);
+        }
+
+        if (y < height - 1) {
+          distributeError(pixels, index + width, errorRed, errorGreen, errorBlue, errorAlpha, factor3);
+        }
+
+        if (x < width - 1 && y < height - 1) {
+          distributeError(pixels, index + width + 1, errorRed, errorGreen, errorBlue, errorAlpha, factor4);
+        }
+      }
+    }
+
+    return image;
+  }
+
+  private static void distributeError(
+    int[] pixels,
+    int index,
+    int errorRed,
+    int errorGreen,
+    int errorBlue,
+    int errorAlpha,
+    double factor
+  ) {
+    final int currentColor = pixels[index];
+
+    int newRed = (int) (Pixel.red(currentColor) + errorRed * factor);
+    int newGreen = (int) (Pixel.green(currentColor) + errorGreen * factor);
+    int newBlue = (int) (Pixel.blue(currentColor) + errorBlue * factor);
+    int newAlpha = (int) (Pixel.alpha(currentColor) + errorAlpha * factor);
+
+    newRed = Math.min(255, Math.max(0, newRed));
+    newGreen = Math.min(255, Math.max(0, newGreen));
+    newBlue = Math.min(255, Math.max(0, newBlue));
+    newAlpha = Math.min(255, Math.max(0, newAlpha));
+
+    pixels[index] = Pixel.toRGB(newRed, newGreen, newBlue, newAlpha);
+  }
+
+  @Override
+  public int getRowSpan() {
+    return 2;
+  }
+
+  /**
+   * (int) (v + e * k / 16.0) es v + floor(e * k / 16) mientras el resultado
+   * no sea negativo, y si lo es el clamp lo deja en 0 en ambos casos; por eso
+   * basta con (e * k) >> 4.
+   */
+  @Override
+  public void ditherRow(int[][] rows, int count, int width, int y) {
+    final int[] current = rows[0];
+    final int[] next = count > 1 ? rows[1] : null;
+    final int last = width - 1;
+
+    for (int x = 0; x < width; x++) {
+      final int oldValue = current[x];
+      final int newValue = (oldValue < 128) ? 0 : 255;
+      current[x] = newValue;
+
+      final int error = oldValue - newValue;
+      if (error == 0) {
+        continue;
+      }
+
+      if (x < last) {
+        current[x + 1] = clamp(current[x + 1] + ((error * 7) >> 4));
+      }
+
+      if (next != null) {
+        if (x > 0) {
+          next[x - 1] = clamp(next[x - 1] + ((error * 3) >> 4));
+        }
+
+        next[x] = clamp(next[x] + ((error * 5) >> 4));
+
+        if (x < last) {
+          next[x + 1] = clamp(next[x + 1] + (error >> 4));
+        }
+      }
+    }
+  }
+
+  private static int clamp(int value) {
+    return value < 0 ? 0 : (value > 255 ? 255 : value);
+  }
+
+}
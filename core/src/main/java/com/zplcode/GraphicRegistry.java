@@ -0,0 +1,173 @@
+package com.zplcode;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Graficos que ya se descargaron a cada impresora con ~DG/~DY.
+ *
+ * Se guarda del lado del host; si la impresora se reinicia (R: es RAM) hay
+ * que llamar forget(printer) para que se vuelvan a descargar.
+ *
+ * El nombre del grafico tiene solo 8 caracteres, asi que junto a cada uno
+ * se guarda una huella mas ancha del raster: si otro raster cae en el mismo
+ * nombre no se toma como enviado y se vuelve a descargar.
+ *
+ * Los graficos de un texto que se devuelve (toZpl) quedan pendientes: la
+ * libreria no sabe si llego a la impresora, quien lo manda llama
+ * markPendingSent con los que si llegaron.
+ */
+public final class GraphicRegistry {
+
+  public static final GraphicRegistry DEFAULT = new GraphicRegistry();
+
+  /* Pendientes que se recuerdan por impresora; los mas viejos se olvidan. */
+  static final int MAX_PENDING = 256;
+
+  // impresora -> R:NOMBRE.GRF -> huella
+  private final Map<String, Map<String, Long>> sent = new HashMap<>();
+  private final Map<String, Map<String, Long>> pending = new HashMap<>();
+
+  /**
+   * Marca el grafico como enviado. Solo despues de que la impresora lo
+   * recibio; mientras tanto se junta en un Downloads.
+   * @param printer identificador de la impresora (ip, mac...)
+   * @param path R:NOMBRE.GRF
+   * @param fingerprint ZplLibGraphics.getGraphicFingerprint del raster
+   * @return true si no se habia enviado antes
+   */
+  public synchronized boolean markSent(String printer, String path, long fingerprint) {
+    Map<String, Long> paths = sent.get(printer);
+    if (paths == null) {
+      paths = new HashMap<>();
+      sent.put(printer, paths);
+    }
+    final Long previous = paths.put(path, fingerprint);
+    return previous == null || previous != fingerprint;
+  }
+
+  public synchronized boolean isSent(String printer, String path, long fingerprint) {
+    final Map<String, Long> paths = sent.get(printer);
+    final Long value = paths != null ? paths.get(path) : null;
+    return value != null && value == fingerprint;
+  }
+
+  /* Por ejemplo si el envio a la impresora fallo. */
+  public synchronized void unmark(String printer, String path) {
+    final Map<String, Long> paths = sent.get(printer);
+    if (paths != null) {
+      paths.remove(path);
+    }
+  }
+
+  public synchronized void addPending(String printer, String path, long fingerprint) {
+    Map<String, Long> paths = pending.get(printer);
+    if (paths == null) {
+      paths = new LinkedHashMap<String, Long>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+          return size() > MAX_PENDING;
+        }
+      };
+      pending.put(printer, paths);
+    }
+    paths.remove(path);
+    paths.put(path, fingerprint);
+  }
+
+  /**
+   * Marca como enviados los graficos pendientes que llegaron a la impresora.
+   * Los que no estan pendientes se ignoran: sin la huella no se pueden marcar.
+   * @param paths R:NOMBRE.GRF
+   * @return cuantos se marcaron
+   */
+  public synchronized int markPendingSent(String printer, Collection<String> paths) {
+    final Map<String, Long> waiting = pending.get(printer);
+    if (waiting == null) {
+      return 0;
+    }
+    int marked = 0;
+    for (String path : paths) {
+      final Long fingerprint = waiting.remove(path);
+      if (fingerprint != null) {
+        markSent(printer, path, fingerprint);
+        marked++;
+      }
+    }
+    if (waiting.isEmpty()) {
+      pending.remove(printer);
+    }
+    return marked;
+  }
+
+  public synchronized void forget(String printer) {
+    sent.remove(printer);
+    pending.remove(printer);
+  }
+
+  public synchronized void clear() {
+    sent.clear();
+    pending.clear();
+  }
+
+  public Downloads newDownloads() {
+    return new Downloads();
+  }
+
+  /**
+   * Graficos que una etiqueta descargo y todavia no llegaron a la impresora.
+   * sent() los marca cuando termino el envio; failed() los desmarca, porque
+   * un ~DG cortado puede dejar a medias un grafico que ya estaba marcado.
+   * pending() los deja para markPendingSent si el texto se devuelve.
+   */
+  public final class Downloads {
+    private final List<String> printers = new ArrayList<>();
+    private final List<String> paths = new ArrayList<>();
+    private final List<Long> fingerprints = new ArrayList<>();
+
+    public GraphicRegistry getRegistry() {
+      return GraphicRegistry.this;
+    }
+
+    public void add(String printer, String path, long fingerprint) {
+      printers.add(printer);
+      paths.add(path);
+      fingerprints.add(fingerprint);
+    }
+
+    public boolean isEmpty() {
+      return paths.isEmpty();
+    }
+
+    public void sent() {
+      for (int i = 0; i < paths.size(); i++) {
+        markSent(printers.get(i), paths.get(i), fingerprints.get(i));
+      }
+      clear();
+    }
+
+    public void pending() {
+      for (int i = 0; i < paths.size(); i++) {
+        addPending(printers.get(i), paths.get(i), fingerprints.get(i));
+      }
+      clear();
+    }
+
+    public void failed() {
+      for (int i = 0; i < paths.size(); i++) {
+        unmark(printers.get(i), paths.get(i));
+      }
+      clear();
+    }
+
+    public void clear() {
+      printers.clear();
+      paths.clear();
+      fingerprints.clear();
+    }
+  }
+}
@@ -0,0 +1,131 @@
+package com.zplcode;
+
+/*
+  Filtro: Escala de grises
+  -  50    50    50   dark gray
+  - 120   120   120   medium gray
+  - 200   200   200   light gray
+  - 250   200   200   not gray, reddish
+  -   0     0     0   black (a sort of gray)
+  - 255   255   255   white (ditto)
+  */
+public class GrayScale implements Filter {
+
+  public final int r;
+  public final int g;
+  public final int b;
+
+  public static final GrayScale DEFAULT = new GrayScale(30, 59, 11);
+  public static final GrayScale DARK_GRAY = new GrayScale(50, 50, 50);
+  public static final GrayScale MEDIUM_GRAY = new GrayScale(120, 120, 120);
+  public static final GrayScale LIGHT_GRAY = new GrayScale(200, 200, 200);
+
+  public GrayScale(int r, int g, int b) {
+    this.r = r;
+    this.g = g;
+    this.b = b;
+  }
+
+  @Override
+  public String toString() {
+    return "GrayScale(r:"+r+" g:"+g+" b:"+b+")";
+  }
+
+  @Override
+  public int pixel(int argb){
+    final int alpha = Pixel.alpha(argb);
+
+    // Si el píxel es transparente, establecerlo como blanco
+    if (alpha == 0) {
+      return 0xffffffff; // blanco
+    }
+
+    final int rg = (int) (Pixel.red(argb) * this.r);
+    final int gg = (int) (Pixel.green(argb) * this.g);
+    final int bg = (int) (Pixel.blue(argb) * this.b);
+    int totalColor = (rg + gg + bg) / 100;
+
+    if (totalColor > 255) {
+      totalColor = 255;
+    } else if (totalColor < 0) {
+      totalColor = 0;
+    }
+
+    final int gray = totalColor;
+
+    return Pixel.toRGB(gray, gray, gray, alpha);
+  }
+
+  /*
+   * (x * DIV_100) >>> DIV_SHIFT == x / 100 para 0 <= x <= MAX_SUM; arriba de
+   * MAX_SUM el gris ya es 255.
+   */
+  private static final int MAX_SUM = 25600;
+  private static final int DIV_100 = 5243;
+  private static final int DIV_SHIFT = 19;
+
+  /*
+   * min(255, max(0, sum) / 100) con mascaras en lugar de Math.min/max: C2 no
+   * vectoriza el ciclo con min/max y pesos que no son constantes.
+   */
+  private static int toGray(int sum) {
+    final int positive = sum & ~(sum >> 31);
+    final int over = positive - MAX_SUM;
+    final int value = ((MAX_SUM + (over & (over >> 31))) * DIV_100) >>> DIV_SHIFT;
+    final int extra = value - 255;
+    return 255 + (extra & (extra >> 31));
+  }
+
+  /**
+   * pixel() sobre src[off..off+len) hacia dst[off..off+len), sin llamadas
+   * virtuales ni ramas. src y dst pueden ser el mismo arreglo.
+   */
+  public void applyRange(int[] src, int[] dst, int off, int len) {
+    final int r = this.r, g = this.g, b = this.b;
+    final int end = off + len;
+
+    for (int i = off; i < end; i++) {
+      final int argb = src[i];
+      final int sum = ((argb >> 16) & 0xFF) * r + ((argb >> 8) & 0xFF) * g + (argb & 0xFF) * b;
+      final int gray = toGray(sum);
+      // -1 si alfa == 0: blanco opaco
+      final int transparent = ((argb >>> 24) - 1) >> 31;
+      dst[i] = (argb & 0xFF000000) | (gray * 0x010101) | transparent;
+    }
+  }
+
+  /**
+   * Solo el gris (0..255) de pixel() sobre src[off..off+len) hacia
+   * dst[off..off+len); los pixeles transparentes quedan en 255.
+   */
+  public void applyRange(int[] src, byte[] dst, int off, int len) {
+    final int r = this.r, g = this.g, b = this.b;
+    final int end = off + len;
+
+    for (int i = off; i < end; i++) {
+      final int argb = src[i];
+      final int sum = ((argb >> 16) & 0xFF) * r + ((argb >> 8) & 0xFF) * g + (argb & 0xFF) * b;
+      final int gray = toGray(sum);
+      final int transparent = ((argb >>> 24) - 1) >> 31;
+      dst[i] = (byte) (gray | (transparent & 0xFF));
+    }
+  }
+
+  /**
+   * Planos de gris y alfa de pixel() para len pixeles desde src[srcOff].
+   * Los transparentes quedan en blanco opaco (255, 255).
+   */
+  public void applyRange(int[] src, int srcOff, int[] gray, int[] alpha, int len) {
+    final int r = this.r, g = this.g, b = this.b;
+
+    for (int i = 0; i < len; i++) {
+      final int argb = src[srcOff + i];
+      final int sum = ((argb >> 16) & 0xFF) * r + ((argb >> 8) & 0xFF) * g + (argb & 0xFF) * b;
+      final int value = toGray(sum);
+      final int transparent = (((argb >>> 24) - 1) >> 31) & 0xFF;
+      gray[i] = value | transparent;
+      alpha[i] = (argb >>> 24) | transparent;
+    }
+  }
+
+}
@@ -0,0 +1,191 @@
+package com.zplcode;
+
+import java.util.Arrays;
+
+/**
+ * Imagen de 1 bit empaquetada como el raster de un ^GFA: 8 pixeles por
+ * byte empezando por el bit mas alto, 1 = negro.
+ */
+public final class MonoRaster {
+
+  /* Como se pinta: negro, blanco o invirtiendo lo que ya hay (^FR). */
+  public static final int BLACK = 0;
+  public static final int WHITE = 1;
+  public static final int REVERSE = 2;
+
+  private final int width;
+  private final int height;
+  private final int bytesPerRow;
+  private final byte[] bits;
+
+  public MonoRaster(int width, int height) {
+    if (width <= 0 || height <= 0) {
+      throw new IllegalArgumentException("bad size " + width + "x" + height);
+    }
+    this.width = width;
+    this.height = height;
+    this.bytesPerRow = (width + 7) / 8;
+    this.bits = new byte[bytesPerRow * height];
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  public int getBytesPerRow() {
+    return bytesPerRow;
+  }
+
+  /**
+   * Buffer que respalda la imagen (sin copiar), igual que
+   * PixelImage.getRasterBytes.
+   */
+  public byte[] getRasterBytes() {
+    return bits;
+  }
+
+  public boolean isBlack(int x, int y) {
+    return (bits[y * bytesPerRow + (x >> 3)] & (0x80 >>> (x & 7))) != 0;
+  }
+
+  public void clear() {
+    Arrays.fill(bits, (byte) 0);
+  }
+
+  /**
+   * Pinta un rectangulo, recortado a la imagen. Las columnas de en medio se
+   * pintan por bytes.
+   * @param mode BLACK, WHITE o REVERSE
+   */
+  public void fillRect(int x, int y, int w, int h, int mode) {
+    int x0 = Math.max(0, x);
+    int y0 = Math.max(0, y);
+    final int x1 = Math.min(width, x + w);
+    final int y1 = Math.min(height, y + h);
+    if (x0 >= x1 || y0 >= y1) {
+      return;
+    }
+
+    final int firstByte = x0 >> 3;
+    final int lastByte = (x1 - 1) >> 3;
+    final int firstMask = 0xFF >>> (x0 & 7);
+    final int lastMask = 0xFF << (7 - ((x1 - 1) & 7)) & 0xFF;
+
+    for (int row = y0; row < y1; row++) {
+      final int offset = row * bytesPerRow;
+      if (firstByte == lastByte) {
+        apply(offset + firstByte, firstMask & lastMask, mode);
+        continue;
+      }
+      apply(offset + firstByte, firstMask, mode);
+      for (int i = firstByte + 1; i < lastByte; i++) {
+        apply(offset + i, 0xFF, mode);
+      }
+      apply(offset + lastByte, lastMask, mode);
+    }
+  }
+
+  /**
+   * Pinta los pixeles negros de otro raster en (x, y), cada uno como un
+   * cuadro de scaleX x scaleY. Los blancos no pintan nada, como en un ^GF.
+   * @param src raster empaquetado de srcBytesPerRow bytes por fila
+   */
+  public void drawRaster(byte[] src, int srcBytesPerRow, int srcWidth, int srcHeight,
+                         int x, int y, int scaleX, int scaleY, int mode) {
+    if (scaleX == 1 && scaleY == 1) {
+      drawRaster(src, srcBytesPerRow, srcWidth, srcHeight, x, y, mode);
+      return;
+    }
+
+    for (int row = 0; row < srcHeight; row++) {
+      final int offset = row * srcBytesPerRow;
+      int col = 0;
+      while (col < srcWidth) {
+        if ((src[offset + (col >> 3)] & (0x80 >>> (col & 7))) == 0) {
+          col++;
+          continue;
+        }
+        // Corrida de negros en la fila.
+        int end = col + 1;
+        while (end < srcWidth && (src[offset + (end >> 3)] & (0x80 >>> (end & 7))) != 0) {
+          end++;
+        }
+        fillRect(x + col * scaleX, y + row * scaleY, (end - col) * scaleX, scaleY, mode);
+        col = end;
+      }
+    }
+  }
+
+  /* Sin escala: cada fila se corre de bits y se combina por bytes. */
+  private void drawRaster(byte[] src, int srcBytesPerRow, int srcWidth, int srcHeight,
+                          int x, int y, int mode) {
+    final int shift = x & 7;
+
+    for (int row = 0; row < srcHeight; row++) {
+      final int dstY = y + row;
+      if (dstY < 0 || dstY >= height) {
+        continue;
+      }
+      final int srcOffset = row * srcBytesPerRow;
+      final int dstOffset = dstY * bytesPerRow;
+
+      for (int i = 0; i < srcBytesPerRow; i++) {
+        int value = src[srcOffset + i] & 0xFF;
+        // Los bits de relleno despues de srcWidth no se pintan.
+        final int remaining = srcWidth - i * 8;
+        if (remaining < 8) {
+          value &= 0xFF << (8 - remaining) & 0xFF;
+        }
+        if (value == 0) {
+          continue;
+        }
+
+        // x + i * 8 puede caer a la mitad de un byte: se parte en dos.
+        final int dstByte = (x + i * 8) >> 3;
+        if (dstByte >= 0 && dstByte < bytesPerRow) {
+          apply(dstOffset + dstByte, (value >>> shift) & edgeMask(dstByte), mode);
+        }
+        if (shift != 0 && dstByte + 1 >= 0 && dstByte + 1 < bytesPerRow) {
+          apply(dstOffset + dstByte + 1, (value << (8 - shift)) & edgeMask(dstByte + 1), mode);
+        }
+      }
+    }
+  }
+
+  /* Bits del byte que caen dentro del ancho de la imagen. */
+  private int edgeMask(int index) {
+    final int remaining = width - index * 8;
+    return remaining >= 8 ? 0xFF : 0xFF << (8 - remaining) & 0xFF;
+  }
+
+  private void apply(int index, int mask, int mode) {
+    if (mode == BLACK) {
+      bits[index] |= mask;
+    } else if (mode == WHITE) {
+      bits[index] &= ~mask;
+    } else {
+      bits[index] ^= mask;
+    }
+  }
+
+  /**
+   * Pixeles ARGB opacos: negro o blanco.
+   */
+  public PixelImage toPixelImage() {
+    final int[] argb = new int[width * height];
+    for (int y = 0; y < height; y++) {
+      final int offset = y * bytesPerRow;
+      final int row = y * width;
+      for (int x = 0; x < width; x++) {
+        argb[row + x] = (bits[offset + (x >> 3)] & (0x80 >>> (x & 7))) != 0
+          ? 0xff000000
+          : 0xffffffff;
+      }
+    }
+    return new PixelImage(width, height, argb);
+  }
+}
@@ -0,0 +1,74 @@
+package com.zplcode;
+
+/**
+ * Dither ordenado con matriz de Bayer.
+ *
+ * No guarda estado entre pixeles: cada pixel se compara con el umbral de
+ * su posicion en la matriz, asi que las filas se pueden procesar en
+ * cualquier orden.
+ */
+public final class OrderedDithering implements Transform, RowDither {
+
+  public final int size;
+
+  // thresholds[(y % size) * size + (x % size)]
+  private final int[] thresholds;
+
+  /**
+   * @param size 2, 4 u 8
+   */
+  public OrderedDithering(int size) {
+    if (size != 2 && size != 4 && size != 8) {
+      throw new IllegalArgumentException("Bayer matrix size must be 2, 4 or 8: " + size);
+    }
+    this.size = size;
+    this.thresholds = new int[size * size];
+
+    final int[] matrix = bayer(size);
+    final int cells = size * size;
+    for (int i = 0; i < cells; i++) {
+      thresholds[i] = ((2 * matrix[i] + 1) * 255) / (2 * cells);
+    }
+  }
+
+  @Override
+  public PixelImage apply(PixelImage image) {
+    return Dithering.apply(this, image);
+  }
+
+  @Override
+  public int getRowSpan() {
+    return 1;
+  }
+
+  @Override
+  public void ditherRow(int[][] rows, int count, int width, int y) {
+    final int[] current = rows[0];
+    final int mask = size - 1;
+    final int offset = (y & mask) * size;
+
+    for (int x = 0; x < width; x++) {
+      current[x] = current[x] > thresholds[offset + (x & mask)] ? 255 : 0;
+    }
+  }
+
+  /* Matriz de Bayer recursiva: M(2n) = [4M, 4M+2; 4M+3, 4M+1]. */
+  private static int[] bayer(int size) {
+    int[] matrix = {0};
+    for (int n = 1; n < size; n *= 2) {
+      final int[] next = new int[4 * n * n];
+      final int width = 2 * n;
+      for (int y = 0; y < n; y++) {
+        for (int x = 0; x < n; x++) {
+          final int v = 4 * matrix[y * n + x];
+          next[y * width + x] = v;
+          next[y * width + x + n] = v + 2;
+          next[(y + n) * width + x] = v + 3;
+          next[(y + n) * width + x + n] = v + 1;
+        }
+      }
+      matrix = next;
+    }
+    return matrix;
+  }
+}
@@ -0,0 +1,306 @@
+package com.zplcode;
+
+import java.util.concurrent.ForkJoinPool;
+
+public class PixelImage {
+
+  /* Pixeles ARGB en orden de filas: argb[y * width + x] */
+  private final int[] argb;
+  private final int width;
+  private final int height;
+
+  public PixelImage(int width, int height, int[] argb) {
+    if (null == argb) {
+      throw new IllegalArgumentException("argb arg cannot be null");
+    } else if (width <= 0 || height <= 0 || argb.length < width * height) {
+      throw new IllegalArgumentException(
+        "argb length " + argb.length + " does not fit " + width + "x" + height);
+    } else {
+      this.argb = argb;
+      this.width = width;
+      this.height = height;
+    }
+  }
+
+  public PixelImage(int width, int height) {
+    this(width, height, new int[width * height]);
+  }
+
+  public int getArgb(int x, int y) {
+    return argb[y * width + x];
+  }
+
+  public void setArgb(int x, int y, int argb) {
+    this.argb[y * width + x] = argb;
+  }
+
+  public int getHeight() {
+    return this.height;
+  }
+
+  public int getWidth() {
+    return this.width;
+  }
+
+  /**
+   * Buffer de pixeles que respalda la imagen (sin copiar).
+   * @return argb[y * width + x]
+   */
+  public int[] getPixels() {
+    return argb;
+  }
+
+  /* Aplica un dither a la imagen */
+  public PixelImage newTransform(Transform transform) {
+    return transform.apply(this);
+  }
+
+  /* Aplica un filtro a la imagen. */
+  public void apply(Filter filter) {
+    apply(filter, null);
+  }
+
+  /**
+   * Aplica un filtro a la imagen por franjas de filas en el pool.
+   * El filtro debe poder usarse desde varios hilos.
+   * @param pool null para hacerlo en el hilo actual
+   */
+  public void apply(final Filter filter, ForkJoinPool pool) {
+    final int[] pixels = this.argb;
+    final int stripeRows = Stripes.getStripeRows(pool, width, height);
+
+    Stripes.run(pool, height, stripeRows, new Stripes.Task() {
+      @Override
+      public void run(int stripe, int fromRow, int toRow) {
+        // Los grises van en bloque, sin una llamada por pixel.
+        if (filter instanceof GrayScale) {
+          ((GrayScale) filter).applyRange(pixels, pixels, fromRow * width, (toRow - fromRow) * width);
+          return;
+        }
+
+        final int end = toRow * width;
+        for (int i = fromRow * width; i < end; i++) {
+          pixels[i] = filter.pixel(pixels[i]);
+        }
+      }
+    });
+  }
+
+  /*
+   * Distancia en pixeles (en x y en y) entre las muestras del histograma para
+   * el umbral automatico: 1 de cada 16 pixeles.
+   */
+  public static final int THRESHOLD_SAMPLE_STEP = 4;
+
+  /**
+   * Otsu's Method.Utiliza el método de Otsu, que es un enfoque bien establecido y
+   ampliamente utilizado para determinar el umbral óptimo en imágenes
+   binarias.
+   *
+   * Calcula el limite para entre los pixeles blanco y negros.
+   * @return
+   */
+  public int calculeThreshold() {
+    return calculeThreshold(1, null);
+  }
+
+  /**
+   * Otsu's Method, cada franja arma su propio histograma y al final se suman.
+   * @param pool null para hacerlo en el hilo actual
+   */
+  public int calculeThreshold(ForkJoinPool pool) {
+    return calculeThreshold(1, pool);
+  }
+
+  /**
+   * Otsu's Method sobre una muestra de los pixeles.
+   * @param step 1 usa todos los pixeles, n toma uno de cada n x n
+   * @param pool null para hacerlo en el hilo actual
+   */
+  public int calculeThreshold(int step, ForkJoinPool pool) {
+    final int[] histogram = getHistogram(step, pool);
+
+    int totalPixels = 0;
+    for (int i = 0; i < 256; i++) {
+      totalPixels += histogram[i];
+    }
+
+    return calculeThreshold(histogram, totalPixels);
+  }
+
+  /**
+   * Histograma de Pixel.gray con una fila de cada sampleStep y, en esa fila,
+   * una columna de cada sampleStep. La primera columna se corre en cada fila de
+   * muestra para no alinearse con patrones verticales (barras, dither).
+   * @param sampleStep 1 usa todos los pixeles
+   * @param pool null para hacerlo en el hilo actual
+   * @return 256 intensidades
+   */
+  public int[] getHistogram(int sampleStep, ForkJoinPool pool) {
+    if (sampleStep < 1) {
+      throw new IllegalArgumentException("step must be >= 1: " + sampleStep);
+    }
+    // Al menos una fila y una columna de muestra.
+    final int step = Math.min(sampleStep, Math.min(width, height));
+
+    // Get the histogram of pixel intensities
+    final int[] pixels = this.argb;
+    // Por franja solo cuentan los pixeles de muestra.
+    final int stripeRows = Stripes.getStripeRows(pool, Math.max(1, width / (step * step)), height);
+    final int[][] partials = new int[Stripes.getStripeCount(height, stripeRows)][256];
+
+    Stripes.run(pool, height, stripeRows, new Stripes.Task() {
+      @Override
+      public void run(int stripe, int fromRow, int toRow) {
+        final int[] histogram = partials[stripe];
+        // Filas de muestra: step / 2, step / 2 + step, ...
+        final int first = step / 2;
+        int y = fromRow <= first
+          ? first
+          : first + (fromRow - first + step - 1) / step * step;
+        for (; y < toRow; y += step) {
+          final int row = y * width;
+          final int end = row + width;
+          for (int i = row + (y / step) % step; i < end; i += step) {
+            histogram[Pixel.gray(pixels[i])]++;
+          }
+        }
+      }
+    });
+
+    final int[] histogram = new int[256];
+    for (int[] partial : partials) {
+      for (int i = 0; i < 256; i++) {
+        histogram[i] += partial[i];
+      }
+    }
+    return histogram;
+  }
+
+  /**
+   * Otsu's Method sobre un histograma de grises.
+   * @param histogram 256 intensidades
+   * @param totalPixels pixeles contados en el histograma
+   */
+  public static int calculeThreshold(int[] histogram, int totalPixels) {
+    // Calculate the sum of intensities and sum of squared intensities
+    // En long: i * histogram[i] no cabe en int en imagenes grandes.
+    long sum = 0;
+    for (int i = 0; i < 256; i++) {
+      sum += (long) i * histogram[i];
+    }
+
+    double maxVariance = 0.0;
+    int threshold = 0;
+
+    long sumForeground = 0;
+    long sumBackground = 0;
+    long countForeground = 0;
+    long countBackground = 0;
+    final double total = (double) totalPixels * totalPixels;
+
+    // Iterate through intensities to find the optimal threshold
+    for (int i = 0; i < 256; i++) {
+      countBackground += histogram[i];
+      if (countBackground == 0) {
+        continue;
+      }
+
+      countForeground = totalPixels - countBackground;
+      if (countForeground <= 0) {
+        break;
+      }
+
+      sumBackground += (long) i * histogram[i];
+      sumForeground = sum - sumBackground;
+
+      final double meanBackground = (double) sumBackground / countBackground;
+      final double meanForeground = (double) sumForeground / countForeground;
+
+      // Calculate between-class variance
+      final double betweenVariance = (double) countBackground * countForeground *
+        Math.pow(meanBackground - meanForeground, 2) / total;
+
+      // Update if the variance is greater than the current maximum
+      if (betweenVariance > maxVariance) {
+        maxVariance = betweenVariance;
+        threshold = i;
+      }
+    }
+
+    return threshold;
+  }
+
+  /**
+   * Bytes por fila del raster monocromo (8 pixeles por byte).
+   */
+  public int getBytesPerRow() {
+    return (width + 7) / 8;
+  }
+
+  /**
+   * transform RGB image in raster format.
+   * @param threshold 127
+   * @return raster byte array
+   */
+  public byte[] getRasterBytes(int threshold) {
+    return getRasterBytes(threshold, null);
+  }
+
+  /**
+   * transform RGB image in raster format, por franjas de filas. Cada fila
+   * empaquetada va a su posicion fija en el arreglo de salida.
+   * @param threshold 127
+   * @param pool null para hacerlo en el hilo actual
+   * @return raster byte array
+   */
+  public byte[] getRasterBytes(final int threshold, ForkJoinPool pool) {
+    final byte[] raster = new byte[getBytesPerRow() * height];
+
+    Stripes.run(pool, height, Stripes.getStripeRows(pool, width, height), new Stripes.Task() {
+      @Override
+      public void run(int stripe, int fromRow, int toRow) {
+        packRows(threshold, raster, fromRow, toRow);
+      }
+    });
+    return raster;
+  }
+
+  private void packRows(int threshold, byte[] raster, int fromRow, int toRow) {
+    final int bytesPerRow = getBytesPerRow();
+    final int[] gray = new int[width];
+
+    for (int y = fromRow; y < toRow; y++) {
+      // Obtenemos un blanco o un negro de cada pixel de la fila.
+      RasterKernels.gray(argb, y * width, gray, 0, width);
+      RasterKernels.packBits(gray, threshold, raster, y * bytesPerRow, width);
+    }
+  }
+
+  public static int getResizedDimension(int maxPrimary, int maxSecondary, int actualPrimary,
+                                        int actualSecondary) {
+
+    // If no dominant value at all, just return the actual.
+    if ((maxPrimary == 0) && (maxSecondary == 0)) {
+      return actualPrimary;
+    }
+
+    // If primary is unspecified, scale primary to match secondary's scaling ratio.
+    if (maxPrimary == 0) {
+      double ratio = (double) maxSecondary / (double) actualSecondary;
+      return (int) (actualPrimary * ratio);
+    }
+
+    if (maxSecondary == 0) {
+      return maxPrimary;
+    }
+
+    double ratio = (double) actualSecondary / (double) actualPrimary;
+    int resized = maxPrimary;
+
+    if ((resized * ratio) > maxSecondary) {
+      resized = (int) (maxSecondary / ratio);
+    }
+    return resized;
+  }
+}
@@ -0,0 +1,68 @@
+package com.zplcode;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Como ByteArrayOutputStream, con el buffer tomado de un ArrayPool. Al
+ * crecer pasa a un arreglo de la siguiente clase y devuelve el anterior.
+ * release() devuelve el buffer; despues no se puede usar.
+ */
+public final class PooledOutputStream extends OutputStream {
+
+  private final ArrayPool pool;
+  private byte[] buffer;
+  private int count;
+
+  public PooledOutputStream(ArrayPool pool, int capacity) {
+    this.pool = pool;
+    this.buffer = pool.obtainBytes(Math.max(capacity, 64));
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > buffer.length) {
+      final byte[] grown = pool.obtainBytes(Math.max(capacity, buffer.length * 2));
+      System.arraycopy(buffer, 0, grown, 0, count);
+      pool.release(buffer);
+      buffer = grown;
+    }
+  }
+
+  @Override
+  public void write(int b) {
+    ensureCapacity(count + 1);
+    buffer[count++] = (byte) b;
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) {
+    ensureCapacity(count + len);
+    System.arraycopy(b, off, buffer, count, len);
+    count += len;
+  }
+
+  public void writeTo(OutputStream out) throws IOException {
+    out.write(buffer, 0, count);
+  }
+
+  public int size() {
+    return count;
+  }
+
+  public void reset() {
+    count = 0;
+  }
+
+  public String toString(String charsetName) throws UnsupportedEncodingException {
+    return new String(buffer, 0, count, charsetName);
+  }
+
+  public void release() {
+    if (buffer != null) {
+      pool.release(buffer);
+      buffer = null;
+      count = 0;
+    }
+  }
+}
@@ -0,0 +1,720 @@
+package com.zplcode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Cola de impresion con conversion y envio en paralelo.
+ *
+ * Cada impresora tiene un hilo que manda las etiquetas en orden: primero
+ * los trabajos de mayor prioridad, y entre iguales el orden de llegada.
+ * Mientras manda una etiqueta, los hilos de conversion ya arman las
+ * siguientes (hasta prefetch, aunque sean de otro trabajo) en buffers que
+ * se reusan, asi la impresora no queda esperando el dither de la proxima
+ * imagen.
+ *
+ * Cada buffer junta hasta maxBufferSize bytes. Si la etiqueta es mas
+ * grande, su conversion espera a que le toque y sigue escribiendo directo
+ * en la conexion, al ritmo de la impresora; con prefetch 0 todas las
+ * etiquetas se mandan asi, sin juntar nada en memoria.
+ *
+ * La conexion se abre con el primer trabajo y se mantiene mientras haya
+ * etiquetas para esa impresora.
+ */
+public final class PrintQueue {
+
+  public static final int DEFAULT_MAX_JOBS = 100;
+  public static final int DEFAULT_PREFETCH = 2;
+  public static final int DEFAULT_MAX_BUFFER_SIZE = 1 << 20;
+
+  /* Buffers de etiquetas que se conservan para reusar, y su tamano maximo. */
+  private static final int MAX_POOLED_BUFFERS = 8;
+  private static final int MAX_POOLED_BUFFER_SIZE = 4 << 20;
+
+  /* Una etiqueta: la conversion se hace al escribir su ZPL. */
+  public interface Label {
+    void writeTo(PrinterOutputStream out) throws IOException;
+
+    /**
+     * Desde el hilo de la impresora, una vez por etiqueta que se mando a
+     * convertir (aunque writeTo no se haya llegado a llamar).
+     * @param sent true si la impresora recibio todo lo escrito; false si
+     *             el envio fallo o la etiqueta se descarto
+     */
+    void onSent(boolean sent);
+  }
+
+  public interface Connector {
+    PrinterConnection open() throws IOException;
+
+    /* Bytes por escritura a la impresora (ver PrinterOutputStream). */
+    int getChunkSize();
+  }
+
+  /* Se llama desde el hilo de la impresora (o el de cancel). */
+  public interface Listener {
+    void onJobStarted(Job job);
+
+    void onLabelSent(Job job);
+
+    /**
+     * @param error null si termino bien o se cancelo (isCancelled)
+     */
+    void onJobFinished(Job job, Exception error);
+  }
+
+  /* Mayor prioridad primero, despues orden de llegada. */
+  private static final Comparator<Job> ORDER = new Comparator<Job>() {
+    @Override
+    public int compare(Job a, Job b) {
+      if (a.priority != b.priority) {
+        return a.priority > b.priority ? -1 : 1;
+      }
+      return a.id < b.id ? -1 : (a.id == b.id ? 0 : 1);
+    }
+  };
+
+  public static final class Job {
+    public final long id;
+    public final String printer;
+    public final int priority;
+
+    final List<Label> labels;
+    final Connector connector;
+
+    // Estado, con el lock de la cola salvo los contadores de tiempo.
+    private int scheduled;
+    private int outstanding;
+    private boolean started;
+    private boolean finished;
+    private volatile boolean cancelled;
+    private volatile Exception error;
+    private volatile int sent;
+
+    private final long queuedNanos = System.nanoTime();
+    private volatile long startedNanos;
+    private volatile long finishedNanos;
+    private volatile long connectNanos;
+    private volatile long sendNanos;
+    private volatile long bytes;
+    private long convertNanos;
+
+    Job(long id, String printer, int priority, List<Label> labels, Connector connector) {
+      this.id = id;
+      this.printer = printer;
+      this.priority = priority;
+      this.labels = labels;
+      this.connector = connector;
+    }
+
+    public int getLabelCount() {
+      return labels.size();
+    }
+
+    public int getSentCount() {
+      return sent;
+    }
+
+    public boolean isCancelled() {
+      return cancelled;
+    }
+
+    public long getConnectNanos() {
+      return connectNanos;
+    }
+
+    /* Suma de la conversion de cada etiqueta (se solapa con el envio). */
+    public synchronized long getConvertNanos() {
+      return convertNanos;
+    }
+
+    public long getSendNanos() {
+      return sendNanos;
+    }
+
+    /* Desde que se encolo hasta que termino. */
+    public long getTotalNanos() {
+      return (finishedNanos != 0 ? finishedNanos : System.nanoTime()) - queuedNanos;
+    }
+
+    public long getWaitNanos() {
+      return (startedNanos != 0 ? startedNanos : System.nanoTime()) - queuedNanos;
+    }
+
+    public long getBytes() {
+      return bytes;
+    }
+
+    private synchronized void addConvertNanos(long nanos) {
+      convertNanos += nanos;
+    }
+  }
+
+  /* Etiqueta convertida (o convirtiendose) esperando su turno. */
+  private static final class Converted {
+    final Job job;
+    final Label label;
+    final LabelBuffer buffer;
+    Future<Void> future;
+
+    // Solo si la conversion termino bien; si no puede haber bytes a medias.
+    boolean reusable;
+
+    Converted(Job job, Label label, LabelBuffer buffer) {
+      this.job = job;
+      this.label = label;
+      this.buffer = buffer;
+    }
+  }
+
+  /**
+   * ZPL de una etiqueta convertida por adelantado. Hasta limit bytes se
+   * juntan en memoria; despues la conversion espera en write hasta que el
+   * hilo de la impresora llama attach y sigue escribiendo en la conexion.
+   */
+  private static final class LabelBuffer extends OutputStream {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 * 1024);
+    final PrinterOutputStream out = new PrinterOutputStream(this, 8 * 1024);
+
+    private int limit;
+    private OutputStream direct;
+    private boolean overflow;
+    private boolean done;
+    private boolean aborted;
+    private long size;
+    // Lo mas que llego a juntar, para no guardar en el pool buffers enormes.
+    private int peak;
+
+    synchronized void reset(int limit) {
+      bytes.reset();
+      this.limit = limit;
+      direct = null;
+      overflow = false;
+      done = false;
+      aborted = false;
+      size = 0;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    /* Desde la conversion; PrinterOutputStream escribe de a bloques. */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      final OutputStream target;
+      synchronized (this) {
+        if (direct == null && bytes.size() + len <= limit) {
+          bytes.write(b, off, len);
+          size += len;
+          peak = Math.max(peak, bytes.size());
+          return;
+        }
+        overflow = true;
+        notifyAll();
+        while (direct == null && !aborted) {
+          try {
+            wait();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for the printer");
+          }
+        }
+        if (aborted) {
+          throw new IOException("Label discarded");
+        }
+        target = direct;
+        size += len;
+      }
+      target.write(b, off, len);
+    }
+
+    /* Desde la conversion, cuando termina bien o mal. */
+    synchronized void finish() {
+      done = true;
+      notifyAll();
+    }
+
+    /**
+     * Desde el hilo de la impresora.
+     * @return true si la conversion termino; false si se paso de limit y
+     *         espera attach
+     */
+    synchronized boolean await() throws InterruptedException {
+      while (!done && !overflow) {
+        wait();
+      }
+      return done && !overflow;
+    }
+
+    /* Manda lo que se junto y deja a la conversion escribir en out. */
+    synchronized void attach(OutputStream out) throws IOException {
+      bytes.writeTo(out);
+      bytes.reset();
+      direct = out;
+      notifyAll();
+    }
+
+    /* La conversion que espera attach falla en vez de quedar trabada. */
+    synchronized void abort() {
+      aborted = true;
+      notifyAll();
+    }
+
+    synchronized long getSize() {
+      return size;
+    }
+  }
+
+  private final ExecutorService converters;
+  private final Listener listener;
+
+  private final Map<String, Printer> printers = new HashMap<>();
+  private final Map<Long, Job> jobs = new HashMap<>();
+  private final ArrayDeque<LabelBuffer> buffers = new ArrayDeque<>();
+
+  private int maxJobs = DEFAULT_MAX_JOBS;
+  private int prefetch = DEFAULT_PREFETCH;
+  private int maxBufferSize = DEFAULT_MAX_BUFFER_SIZE;
+  private long nextId = 1;
+
+  /**
+   * @param converters hilos para convertir las etiquetas
+   */
+  public PrintQueue(ExecutorService converters, Listener listener) {
+    this.converters = converters;
+    this.listener = listener;
+  }
+
+  /* Trabajos encolados o imprimiendose; si ya hay tantos submit los rechaza. */
+  public synchronized void setMaxJobs(int maxJobs) {
+    this.maxJobs = Math.max(1, maxJobs);
+  }
+
+  /**
+   * Etiquetas que se convierten por adelantado en cada impresora. Con 0 cada
+   * etiqueta se convierte cuando le toca, escribiendo directo en la conexion.
+   */
+  public synchronized void setPrefetch(int prefetch) {
+    this.prefetch = Math.max(0, prefetch);
+  }
+
+  /* Bytes de una etiqueta que se juntan antes de mandarla; las mas grandes se mandan mientras se convierten. */
+  public synchronized void setMaxBufferSize(int maxBufferSize) {
+    this.maxBufferSize = Math.max(0, maxBufferSize);
+  }
+
+  /**
+   * Si la cola esta llena el trabajo termina enseguida con
+   * RejectedExecutionException, avisado por el listener (desde otro hilo)
+   * como cualquier trabajo que falla.
+   *
+   * @param printer identifica la impresora: sus trabajos se mandan en orden
+   *                por una sola conexion
+   */
+  public Job submit(String printer, Connector connector, List<Label> labels, int priority) {
+    if (labels.isEmpty()) {
+      throw new IllegalArgumentException("A print job needs at least one label");
+    }
+
+    final Job job;
+    final Printer target;
+    final List<Job> done;
+    synchronized (this) {
+      if (jobs.size() >= maxJobs) {
+        return reject(new Job(nextId++, printer, priority, new ArrayList<Label>(labels), connector));
+      }
+
+      job = new Job(nextId++, printer, priority, new ArrayList<Label>(labels), connector);
+      jobs.put(job.id, job);
+
+      Printer existing = printers.get(printer);
+      if (existing == null) {
+        existing = new Printer(printer);
+        printers.put(printer, existing);
+      }
+      target = existing;
+      target.pending.add(job);
+
+      // Empieza a convertir ya si hay lugar en la ventana.
+      done = target.fillWindow();
+
+      if (!target.running) {
+        target.running = true;
+        final Thread thread = new Thread(target, "zpl-print-" + printer);
+        thread.setDaemon(true);
+        thread.start();
+      }
+    }
+    target.notifyFinished(done);
+    return job;
+  }
+
+  /**
+   * Un trabajo en espera se saca de la cola; uno que se esta imprimiendo
+   * termina la etiqueta en curso y descarta el resto.
+   * @return false si el trabajo ya termino o no existe
+   */
+  public boolean cancel(long id) {
+    final Job job;
+    synchronized (this) {
+      job = jobs.get(id);
+      if (job == null || job.cancelled) {
+        return false;
+      }
+      job.cancelled = true;
+
+      final Printer printer = printers.get(job.printer);
+      if (printer == null || !printer.pending.remove(job)) {
+        return true;
+      }
+      finish(job);
+    }
+    listener.onJobFinished(job, null);
+    return true;
+  }
+
+  public synchronized int getJobCount() {
+    return jobs.size();
+  }
+
+  public synchronized int getPendingCount(String printer) {
+    final Printer target = printers.get(printer);
+    return target != null ? target.pending.size() : 0;
+  }
+
+  /* Suelta los buffers de etiquetas que no se estan usando. */
+  public synchronized void clearBuffers() {
+    buffers.clear();
+  }
+
+  /* Con el lock de la cola. */
+  private Job reject(final Job job) {
+    job.error = new RejectedExecutionException("Print queue is full (" + maxJobs + " jobs)");
+    job.finished = true;
+    job.finishedNanos = System.nanoTime();
+    converters.execute(new Runnable() {
+      @Override
+      public void run() {
+        listener.onJobFinished(job, job.error);
+      }
+    });
+    return job;
+  }
+
+  private void finish(Job job) {
+    job.finished = true;
+    job.finishedNanos = System.nanoTime();
+    jobs.remove(job.id);
+  }
+
+  /* Con el lock de la cola. */
+  private LabelBuffer obtainBuffer() {
+    LabelBuffer buffer = buffers.poll();
+    if (buffer == null) {
+      buffer = new LabelBuffer();
+    }
+    buffer.reset(prefetch > 0 ? maxBufferSize : 0);
+    return buffer;
+  }
+
+  private synchronized void releaseBuffer(LabelBuffer buffer) {
+    if (buffer.peak <= MAX_POOLED_BUFFER_SIZE && buffers.size() < MAX_POOLED_BUFFERS) {
+      buffer.bytes.reset();
+      buffers.add(buffer);
+    }
+  }
+
+  private final class Printer implements Runnable {
+    final String name;
+    final PriorityQueue<Job> pending = new PriorityQueue<>(11, ORDER);
+
+    // Etiquetas mandadas a convertir, en el orden en que se envian.
+    final ArrayDeque<Converted> window = new ArrayDeque<>();
+    Job current;
+    boolean running;
+
+    // La etiqueta que se esta mandando, fuera de window.
+    Converted sending;
+
+    PrinterConnection connection;
+    PrinterOutputStream out;
+
+    Printer(String name) {
+      this.name = name;
+    }
+
+    /* Con el lock de la cola. Devuelve los trabajos que terminaron sin etiquetas pendientes. */
+    List<Job> fillWindow() {
+      List<Job> done = null;
+      // Con prefetch 0 se convierte una sola etiqueta a la vez, cuando no se esta mandando otra.
+      final int size = prefetch > 0 ? prefetch : (sending == null ? 1 : 0);
+      while (window.size() < size) {
+        if (current != null && (current.cancelled || current.error != null)) {
+          current.scheduled = current.labels.size();
+        }
+        if (current == null || current.scheduled == current.labels.size()) {
+          if (current != null && current.outstanding == 0 && !current.finished) {
+            finish(current);
+            if (done == null) {
+              done = new ArrayList<>();
+            }
+            done.add(current);
+          }
+          current = pending.poll();
+          if (current == null) {
+            break;
+          }
+          continue;
+        }
+
+        final Job job = current;
+        final Label label = job.labels.get(job.scheduled++);
+        job.outstanding++;
+
+        final Converted item = new Converted(job, label, obtainBuffer());
+        item.future = converters.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            try {
+              if (job.cancelled || job.error != null) {
+                return null;
+              }
+              final long start = System.nanoTime();
+              label.writeTo(item.buffer.out);
+              item.buffer.out.flush();
+              job.addConvertNanos(System.nanoTime() - start);
+              return null;
+            } finally {
+              item.buffer.finish();
+            }
+          }
+        });
+        window.add(item);
+      }
+      return done;
+    }
+
+    @Override
+    public void run() {
+      Throwable failure = null;
+      try {
+        sendAll();
+      } catch (RuntimeException | Error e) {
+        failure = e;
+        throw e;
+      } finally {
+        // sendAll solo vuelve normalmente despues de running = false.
+        abandon(failure);
+      }
+    }
+
+    private void sendAll() {
+      for (;;) {
+        final Converted item;
+        final List<Job> done;
+        synchronized (PrintQueue.this) {
+          item = window.poll();
+          sending = item;
+          done = fillWindow();
+          if (item == null && window.isEmpty() && current == null) {
+            running = false;
+            printers.remove(name);
+          }
+        }
+
+        notifyFinished(done);
+        if (item == null) {
+          if (!running) {
+            closeConnection();
+            return;
+          }
+          continue;
+        }
+
+        send(item);
+        synchronized (PrintQueue.this) {
+          sending = null;
+        }
+        if (item.reusable) {
+          releaseBuffer(item.buffer);
+        }
+
+        final boolean last;
+        synchronized (PrintQueue.this) {
+          final Job job = item.job;
+          job.outstanding--;
+          last = job.outstanding == 0 && !job.finished
+            && (job.scheduled == job.labels.size() || job.cancelled || job.error != null)
+            && job != current;
+          if (last) {
+            finish(job);
+          }
+        }
+        if (last) {
+          listener.onJobFinished(item.job, item.job.cancelled ? null : item.job.error);
+        }
+      }
+    }
+
+    /**
+     * Si el hilo murio con una excepcion (por ejemplo OutOfMemoryError),
+     * termina con error todos sus trabajos y saca la impresora, asi el
+     * siguiente submit arranca otro hilo en vez de quedar encolado.
+     */
+    private void abandon(Throwable failure) {
+      final List<Job> failed = new ArrayList<>();
+      final List<Converted> dropped;
+      synchronized (PrintQueue.this) {
+        if (!running) {
+          return;
+        }
+        dropped = new ArrayList<>(window);
+        running = false;
+        if (printers.get(name) == this) {
+          printers.remove(name);
+        }
+
+        final Exception error = new IllegalStateException("Print thread for " + name + " stopped", failure);
+        if (sending != null) {
+          sending.buffer.abort();
+          addFailed(failed, sending.job, error);
+          sending = null;
+        }
+        for (Converted item : window) {
+          item.future.cancel(false);
+          item.buffer.abort();
+          addFailed(failed, item.job, error);
+        }
+        window.clear();
+        if (current != null) {
+          addFailed(failed, current, error);
+          current = null;
+        }
+        for (Job job = pending.poll(); job != null; job = pending.poll()) {
+          addFailed(failed, job, error);
+        }
+      }
+
+      closeConnection();
+      for (Converted item : dropped) {
+        item.label.onSent(false);
+      }
+      notifyFinished(failed);
+    }
+
+    /* Con el lock de la cola. */
+    private void addFailed(List<Job> failed, Job job, Exception error) {
+      if (!job.finished) {
+        if (job.error == null) {
+          job.error = error;
+        }
+        finish(job);
+        failed.add(job);
+      }
+    }
+
+    /*
+     * Una etiqueta que entro en el buffer se manda de una vez; una mas grande
+     * se manda mientras se termina de convertir (en su hilo de conversion),
+     * y el envio incluye ese tiempo.
+     */
+    private void send(Converted item) {
+      final Job job = item.job;
+      boolean sent = false;
+      boolean streaming = false;
+      try {
+        final boolean converted = item.buffer.await();
+        if (converted) {
+          item.future.get();
+          item.reusable = true;
+        }
+        if (job.cancelled || job.error != null) {
+          return;
+        }
+
+        if (!job.started) {
+          job.started = true;
+          job.startedNanos = System.nanoTime();
+          listener.onJobStarted(job);
+        }
+
+        if (connection == null) {
+          final long start = System.nanoTime();
+          connection = job.connector.open();
+          out = new PrinterOutputStream(connection.getOutputStream(), job.connector.getChunkSize());
+          job.connectNanos += System.nanoTime() - start;
+        }
+
+        final long start = System.nanoTime();
+        streaming = !converted;
+        item.buffer.attach(out);
+        if (streaming) {
+          item.future.get();
+          item.reusable = true;
+        }
+        out.flush();
+        job.sendNanos += System.nanoTime() - start;
+        job.bytes += item.buffer.getSize();
+        job.sent++;
+        sent = true;
+        item.label.onSent(true);
+        listener.onLabelSent(job);
+
+      } catch (ExecutionException e) {
+        job.error = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        if (streaming) {
+          // La etiqueta quedo a medias en la impresora.
+          closeConnection();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        job.error = e;
+      } catch (IOException | RuntimeException e) {
+        // La conexion queda en un estado desconocido: el siguiente trabajo abre otra.
+        job.error = e;
+        closeConnection();
+      } finally {
+        if (!sent) {
+          item.buffer.abort();
+          item.label.onSent(false);
+        }
+      }
+    }
+
+    private void notifyFinished(List<Job> done) {
+      if (done != null) {
+        for (Job job : done) {
+          listener.onJobFinished(job, job.cancelled ? null : job.error);
+        }
+      }
+    }
+
+    private void closeConnection() {
+      if (connection != null) {
+        try {
+          connection.close();
+        } catch (IOException e) {
+          // Ya se mando todo lo que se pudo.
+        }
+        connection = null;
+        out = null;
+      }
+    }
+  }
+}
@@ -0,0 +1,21 @@
+package com.zplcode;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Conexion abierta con una impresora (TCP 9100, Bluetooth SPP...).
+ *
+ * close() espera a que lo escrito salga antes de cerrar, en lo posible.
+ */
+public interface PrinterConnection extends Closeable {
+
+  /* Puerto raw de las Zebra. */
+  int DEFAULT_PORT = 9100;
+
+  OutputStream getOutputStream() throws IOException;
+
+  /* Identificador de la impresora para GraphicRegistry (ip:puerto, mac...). */
+  String getName();
+}
@@ -0,0 +1,115 @@
+package com.zplcode;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Salida hacia la impresora en bloques de tamano fijo.
+ *
+ * Lo que se escribe se junta en un solo buffer de chunkSize bytes y se
+ * manda cuando se llena. El stream de la impresora es bloqueante: si la
+ * impresora no lee (ventana TCP llena, creditos de RFCOMM) la escritura
+ * espera, y si se escribe mientras se convierte, la conversion tambien.
+ * En PrintQueue eso pasa con prefetch 0 o con etiquetas mas grandes que
+ * maxBufferSize; las demas se juntan antes en el buffer de la etiqueta.
+ *
+ * Cuenta los bytes enviados y el tiempo esperando al stream de la
+ * impresora, para separar envio de conversion.
+ */
+public class PrinterOutputStream extends FilterOutputStream {
+
+  public static final int DEFAULT_CHUNK_SIZE = 16 * 1024;
+
+  private final byte[] buffer;
+  private int position;
+
+  private long count;
+  private long sendNanos;
+
+  public PrinterOutputStream(OutputStream out) {
+    this(out, DEFAULT_CHUNK_SIZE);
+  }
+
+  public PrinterOutputStream(OutputStream out, int chunkSize) {
+    super(out);
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("chunkSize: " + chunkSize);
+    }
+    this.buffer = new byte[chunkSize];
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    if (position == buffer.length) {
+      writeChunk();
+    }
+    buffer[position++] = (byte) b;
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    while (len > 0) {
+      if (position == buffer.length) {
+        writeChunk();
+      }
+      final int n = Math.min(len, buffer.length - position);
+      System.arraycopy(b, off, buffer, position, n);
+      position += n;
+      off += n;
+      len -= n;
+    }
+  }
+
+  /* Texto ASCII/UTF-8 del documento, sin pasar por un String intermedio de bytes. */
+  public void write(CharSequence text) throws IOException {
+    final int length = text.length();
+    for (int i = 0; i < length; i++) {
+      final char c = text.charAt(i);
+      if (c < 0x80) {
+        write(c);
+      } else {
+        final int end = Character.isHighSurrogate(c) && i + 1 < length ? i + 2 : i + 1;
+        final byte[] bytes = text.subSequence(i, end).toString().getBytes("UTF-8");
+        write(bytes, 0, bytes.length);
+        i = end - 1;
+      }
+    }
+  }
+
+  private void writeChunk() throws IOException {
+    if (position > 0) {
+      final long start = System.nanoTime();
+      out.write(buffer, 0, position);
+      sendNanos += System.nanoTime() - start;
+      count += position;
+      position = 0;
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    writeChunk();
+    final long start = System.nanoTime();
+    out.flush();
+    sendNanos += System.nanoTime() - start;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      flush();
+    } finally {
+      out.close();
+    }
+  }
+
+  /* Bytes entregados a la impresora (sin lo que sigue en el buffer). */
+  public long getCount() {
+    return count;
+  }
+
+  public long getSendNanos() {
+    return sendNanos;
+  }
+}
@@ -0,0 +1,553 @@
+package com.zplcode;
+
+import java.util.Arrays;
+
+/**
+ * Codigo QR (modelo 2) para el ^BQ del renderer: un solo segmento numerico,
+ * alfanumerico o de bytes, la version mas chica en la que cabe y la mascara
+ * con menor penalizacion, como hace la impresora.
+ *
+ * Basado en el generador de referencia de Project Nayuki (MIT).
+ */
+public final class QrCode {
+
+  /* Niveles de correccion de errores como en el ^FD del ^BQ. */
+  public static final char LOW = 'L';
+  public static final char MEDIUM = 'M';
+  public static final char QUARTILE = 'Q';
+  public static final char HIGH = 'H';
+
+  private static final String LEVELS = "LMQH";
+  // Bits del nivel en el formato: L = 01, M = 00, Q = 11, H = 10.
+  private static final int[] FORMAT_BITS = { 1, 0, 3, 2 };
+
+  private static final String ALPHANUMERIC = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ $%*+-./:";
+
+  private static final int MODE_NUMERIC = 1;
+  private static final int MODE_ALPHANUMERIC = 2;
+  private static final int MODE_BYTE = 4;
+
+  // Por nivel y version (la posicion 0 no se usa).
+  private static final byte[][] ECC_CODEWORDS_PER_BLOCK = {
+    { -1, 7, 10, 15, 20, 26, 18, 20, 24, 30, 18, 20, 24, 26, 30, 22, 24, 28, 30, 28, 28,
+      28, 28, 30, 30, 26, 28, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30 },
+    { -1, 10, 16, 26, 18, 24, 16, 18, 22, 22, 26, 30, 22, 22, 24, 24, 28, 28, 26, 26, 26,
+      26, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28 },
+    { -1, 13, 22, 18, 26, 18, 24, 18, 22, 20, 24, 28, 26, 24, 20, 30, 24, 28, 28, 26, 30,
+      28, 30, 30, 30, 30, 28, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30 },
+    { -1, 17, 28, 22, 16, 22, 28, 26, 26, 24, 28, 24, 28, 22, 24, 24, 30, 28, 28, 26, 28,
+      30, 24, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30 },
+  };
+
+  private static final byte[][] NUM_ERROR_CORRECTION_BLOCKS = {
+    { -1, 1, 1, 1, 1, 1, 2, 2, 2, 2, 4, 4, 4, 4, 4, 6, 6, 6, 6, 7, 8,
+      8, 9, 9, 10, 12, 12, 12, 13, 14, 15, 16, 17, 18, 19, 19, 20, 21, 22, 24, 25 },
+    { -1, 1, 1, 1, 2, 2, 4, 4, 4, 5, 5, 5, 8, 9, 9, 10, 10, 11, 13, 14, 16,
+      17, 17, 18, 20, 21, 23, 25, 26, 28, 29, 31, 33, 35, 37, 38, 40, 43, 45, 47, 49 },
+    { -1, 1, 1, 2, 2, 4, 4, 6, 6, 8, 8, 8, 10, 12, 16, 12, 17, 16, 18, 21, 20,
+      23, 23, 25, 27, 29, 34, 34, 35, 38, 40, 43, 45, 48, 51, 53, 56, 59, 62, 65, 68 },
+    { -1, 1, 1, 2, 4, 4, 4, 5, 6, 8, 8, 11, 11, 16, 16, 18, 16, 19, 21, 25, 25,
+      25, 34, 30, 32, 35, 37, 40, 42, 45, 48, 51, 54, 57, 60, 63, 66, 70, 74, 77, 81 },
+  };
+
+  // Penalizaciones de la seleccion de mascara.
+  private static final int PENALTY_N1 = 3;
+  private static final int PENALTY_N2 = 3;
+  private static final int PENALTY_N3 = 40;
+  private static final int PENALTY_N4 = 10;
+
+  public final int version;
+  public final int size;
+
+  private final int level;
+  private final boolean[][] modules;
+  private final boolean[][] isFunction;
+
+  /**
+   * @param data bytes del texto (cada char del String es un byte, como sale de ^FH)
+   * @param errorCorrection L, M, Q o H
+   */
+  public static QrCode encode(String data, char errorCorrection) {
+    final int level = LEVELS.indexOf(Character.toUpperCase(errorCorrection));
+    if (level < 0) {
+      throw new IllegalArgumentException("Unknown error correction level '" + errorCorrection + "'");
+    }
+
+    final int mode = getMode(data);
+    final int length = data.length();
+    for (int version = 1; version <= 40; version++) {
+      final int capacity = getNumDataCodewords(version, level) * 8;
+      final int used = 4 + getCharCountBits(mode, version) + getDataBits(mode, length);
+      if (used <= capacity) {
+        return new QrCode(version, level, encodeData(data, mode, version, capacity / 8));
+      }
+    }
+    throw new IllegalArgumentException("Data too long for a QR code: " + length + " characters");
+  }
+
+  private QrCode(int version, int level, byte[] dataCodewords) {
+    this.version = version;
+    this.size = version * 4 + 17;
+    this.level = level;
+    this.modules = new boolean[size][size];
+    this.isFunction = new boolean[size][size];
+
+    drawFunctionPatterns();
+    drawCodewords(addEccAndInterleave(dataCodewords));
+
+    int best = 0;
+    int minPenalty = Integer.MAX_VALUE;
+    for (int mask = 0; mask < 8; mask++) {
+      applyMask(mask);
+      drawFormatBits(mask);
+      final int penalty = getPenaltyScore();
+      if (penalty < minPenalty) {
+        best = mask;
+        minPenalty = penalty;
+      }
+      // La mascara es un xor: aplicarla otra vez la quita.
+      applyMask(mask);
+    }
+    applyMask(best);
+    drawFormatBits(best);
+  }
+
+  /* true si el modulo es negro. */
+  public boolean get(int x, int y) {
+    return modules[y][x];
+  }
+
+  /**
+   * Pinta el codigo con cada modulo de magnification x magnification, sin
+   * zona de silencio.
+   */
+  public void draw(MonoRaster raster, int x, int y, int magnification, int mode) {
+    for (int row = 0; row < size; row++) {
+      int col = 0;
+      while (col < size) {
+        if (!modules[row][col]) {
+          col++;
+          continue;
+        }
+        int end = col + 1;
+        while (end < size && modules[row][end]) {
+          end++;
+        }
+        raster.fillRect(x + col * magnification, y + row * magnification,
+          (end - col) * magnification, magnification, mode);
+        col = end;
+      }
+    }
+  }
+
+  /* ----- Datos ----- */
+
+  private static int getMode(String data) {
+    boolean numeric = true;
+    boolean alphanumeric = true;
+    for (int i = 0; i < data.length(); i++) {
+      final char c = data.charAt(i);
+      numeric &= c >= '0' && c <= '9';
+      alphanumeric &= ALPHANUMERIC.indexOf(c) >= 0;
+    }
+    return numeric ? MODE_NUMERIC : alphanumeric ? MODE_ALPHANUMERIC : MODE_BYTE;
+  }
+
+  private static int getCharCountBits(int mode, int version) {
+    final int range = version <= 9 ? 0 : version <= 26 ? 1 : 2;
+    if (mode == MODE_NUMERIC) {
+      return 10 + range * 2;
+    } else if (mode == MODE_ALPHANUMERIC) {
+      return 9 + range * 2;
+    }
+    return range == 0 ? 8 : 16;
+  }
+
+  private static int getDataBits(int mode, int length) {
+    if (mode == MODE_NUMERIC) {
+      return length / 3 * 10 + (length % 3 == 0 ? 0 : length % 3 * 3 + 1);
+    } else if (mode == MODE_ALPHANUMERIC) {
+      return length / 2 * 11 + length % 2 * 6;
+    }
+    return length * 8;
+  }
+
+  private static byte[] encodeData(String data, int mode, int version, int dataCodewords) {
+    final BitBuffer bits = new BitBuffer(dataCodewords);
+    final int length = data.length();
+    bits.append(mode, 4);
+    bits.append(length, getCharCountBits(mode, version));
+
+    if (mode == MODE_NUMERIC) {
+      for (int i = 0; i < length; i += 3) {
+        final int n = Math.min(3, length - i);
+        bits.append(Integer.parseInt(data.substring(i, i + n)), n * 3 + 1);
+      }
+    } else if (mode == MODE_ALPHANUMERIC) {
+      int i = 0;
+      for (; i + 2 <= length; i += 2) {
+        bits.append(ALPHANUMERIC.indexOf(data.charAt(i)) * 45 + ALPHANUMERIC.indexOf(data.charAt(i + 1)), 11);
+      }
+      if (i < length) {
+        bits.append(ALPHANUMERIC.indexOf(data.charAt(i)), 6);
+      }
+    } else {
+      for (int i = 0; i < length; i++) {
+        bits.append(data.charAt(i) & 0xFF, 8);
+      }
+    }
+
+    // Terminador, relleno hasta el byte y bytes de relleno 0xEC 0x11.
+    final int capacity = dataCodewords * 8;
+    bits.append(0, Math.min(4, capacity - bits.length));
+    bits.append(0, (8 - bits.length % 8) % 8);
+    for (int pad = 0xEC; bits.length < capacity; pad ^= 0xEC ^ 0x11) {
+      bits.append(pad, 8);
+    }
+    return bits.data;
+  }
+
+  /* Bits de los datos, del mas alto al mas bajo de cada byte. */
+  private static final class BitBuffer {
+    final byte[] data;
+    int length;
+
+    BitBuffer(int bytes) {
+      this.data = new byte[bytes];
+    }
+
+    void append(int value, int count) {
+      for (int i = count - 1; i >= 0; i--, length++) {
+        data[length >>> 3] |= ((value >>> i) & 1) << (7 - (length & 7));
+      }
+    }
+  }
+
+  /* ----- Correccion de errores ----- */
+
+  private byte[] addEccAndInterleave(byte[] data) {
+    final int numBlocks = NUM_ERROR_CORRECTION_BLOCKS[level][version];
+    final int blockEccLength = ECC_CODEWORDS_PER_BLOCK[level][version];
+    final int rawCodewords = getNumRawDataModules(version) / 8;
+    final int numShortBlocks = numBlocks - rawCodewords % numBlocks;
+    final int shortBlockLength = rawCodewords / numBlocks;
+
+    final byte[][] blocks = new byte[numBlocks][];
+    final byte[] divisor = reedSolomonComputeDivisor(blockEccLength);
+    for (int i = 0, k = 0; i < numBlocks; i++) {
+      final byte[] block = Arrays.copyOfRange(data, k,
+        k + shortBlockLength - blockEccLength + (i < numShortBlocks ? 0 : 1));
+      k += block.length;
+      final byte[] ecc = reedSolomonComputeRemainder(block, divisor);
+      blocks[i] = Arrays.copyOf(block, shortBlockLength + 1);
+      System.arraycopy(ecc, 0, blocks[i], shortBlockLength + 1 - blockEccLength, ecc.length);
+    }
+
+    // Intercala los bloques; los cortos no tienen la ultima posicion de datos.
+    final byte[] result = new byte[rawCodewords];
+    for (int i = 0, k = 0; i < shortBlockLength + 1; i++) {
+      for (int j = 0; j < numBlocks; j++) {
+        if (i != shortBlockLength - blockEccLength || j >= numShortBlocks) {
+          result[k++] = blocks[j][i];
+        }
+      }
+    }
+    return result;
+  }
+
+  private static byte[] reedSolomonComputeDivisor(int degree) {
+    final byte[] result = new byte[degree];
+    result[degree - 1] = 1;
+    int root = 1;
+    for (int i = 0; i < degree; i++) {
+      for (int j = 0; j < degree; j++) {
+        result[j] = (byte) reedSolomonMultiply(result[j] & 0xFF, root);
+        if (j + 1 < degree) {
+          result[j] ^= result[j + 1];
+        }
+      }
+      root = reedSolomonMultiply(root, 0x02);
+    }
+    return result;
+  }
+
+  private static byte[] reedSolomonComputeRemainder(byte[] data, byte[] divisor) {
+    final byte[] result = new byte[divisor.length];
+    for (byte b : data) {
+      final int factor = (b ^ result[0]) & 0xFF;
+      System.arraycopy(result, 1, result, 0, result.length - 1);
+      result[result.length - 1] = 0;
+      for (int i = 0; i < result.length; i++) {
+        result[i] ^= reedSolomonMultiply(divisor[i] & 0xFF, factor);
+      }
+    }
+    return result;
+  }
+
+  /* Producto en GF(2^8) con el polinomio 0x11D. */
+  private static int reedSolomonMultiply(int x, int y) {
+    int z = 0;
+    for (int i = 7; i >= 0; i--) {
+      z = (z << 1) ^ ((z >>> 7) * 0x11D);
+      z ^= ((y >>> i) & 1) * x;
+    }
+    return z;
+  }
+
+  private static int getNumRawDataModules(int version) {
+    int result = (16 * version + 128) * version + 64;
+    if (version >= 2) {
+      final int numAlign = version / 7 + 2;
+      result -= (25 * numAlign - 10) * numAlign - 55;
+      if (version >= 7) {
+        result -= 36;
+      }
+    }
+    return result;
+  }
+
+  private static int getNumDataCodewords(int version, int level) {
+    return getNumRawDataModules(version) / 8
+      - ECC_CODEWORDS_PER_BLOCK[level][version] * NUM_ERROR_CORRECTION_BLOCKS[level][version];
+  }
+
+  /* ----- Modulos ----- */
+
+  private void drawFunctionPatterns() {
+    // Lineas de sincronizacion.
+    for (int i = 0; i < size; i++) {
+      setFunctionModule(6, i, i % 2 == 0);
+      setFunctionModule(i, 6, i % 2 == 0);
+    }
+
+    drawFinderPattern(3, 3);
+    drawFinderPattern(size - 4, 3);
+    drawFinderPattern(3, size - 4);
+
+    final int[] positions = getAlignmentPatternPositions();
+    final int n = positions.length;
+    for (int i = 0; i < n; i++) {
+      for (int j = 0; j < n; j++) {
+        // Las esquinas de los patrones de busqueda no llevan.
+        if (!(i == 0 && j == 0 || i == 0 && j == n - 1 || i == n - 1 && j == 0)) {
+          drawAlignmentPattern(positions[i], positions[j]);
+        }
+      }
+    }
+
+    // Reserva el lugar del formato; los bits reales van despues de la mascara.
+    drawFormatBits(0);
+    drawVersion();
+  }
+
+  private void drawFormatBits(int mask) {
+    final int data = FORMAT_BITS[level] << 3 | mask;
+    int rem = data;
+    for (int i = 0; i < 10; i++) {
+      rem = (rem << 1) ^ ((rem >>> 9) * 0x537);
+    }
+    final int bits = (data << 10 | rem) ^ 0x5412;
+
+    // Junto al patron de arriba a la izquierda.
+    for (int i = 0; i <= 5; i++) {
+      setFunctionModule(8, i, getBit(bits, i));
+    }
+    setFunctionModule(8, 7, getBit(bits, 6));
+    setFunctionModule(8, 8, getBit(bits, 7));
+    setFunctionModule(7, 8, getBit(bits, 8));
+    for (int i = 9; i < 15; i++) {
+      setFunctionModule(14 - i, 8, getBit(bits, i));
+    }
+
+    // La copia junto a los otros dos.
+    for (int i = 0; i < 8; i++) {
+      setFunctionModule(size - 1 - i, 8, getBit(bits, i));
+    }
+    for (int i = 8; i < 15; i++) {
+      setFunctionModule(8, size - 15 + i, getBit(bits, i));
+    }
+    setFunctionModule(8, size - 8, true);
+  }
+
+  private void drawVersion() {
+    if (version < 7) {
+      return;
+    }
+    int rem = version;
+    for (int i = 0; i < 12; i++) {
+      rem = (rem << 1) ^ ((rem >>> 11) * 0x1F25);
+    }
+    final int bits = version << 12 | rem;
+
+    for (int i = 0; i < 18; i++) {
+      final boolean bit = getBit(bits, i);
+      final int a = size - 11 + i % 3;
+      final int b = i / 3;
+      setFunctionModule(a, b, bit);
+      setFunctionModule(b, a, bit);
+    }
+  }
+
+  private void drawFinderPattern(int x, int y) {
+    for (int dy = -4; dy <= 4; dy++) {
+      for (int dx = -4; dx <= 4; dx++) {
+        final int distance = Math.max(Math.abs(dx), Math.abs(dy));
+        final int xx = x + dx;
+        final int yy = y + dy;
+        if (0 <= xx && xx < size && 0 <= yy && yy < size) {
+          setFunctionModule(xx, yy, distance != 2 && distance != 4);
+        }
+      }
+    }
+  }
+
+  private void drawAlignmentPattern(int x, int y) {
+    for (int dy = -2; dy <= 2; dy++) {
+      for (int dx = -2; dx <= 2; dx++) {
+        setFunctionModule(x + dx, y + dy, Math.max(Math.abs(dx), Math.abs(dy)) != 1);
+      }
+    }
+  }
+
+  private int[] getAlignmentPatternPositions() {
+    if (version == 1) {
+      return new int[0];
+    }
+    final int n = version / 7 + 2;
+    final int step = version == 32 ? 26 : (version * 4 + n * 2 + 1) / (n * 2 - 2) * 2;
+    final int[] result = new int[n];
+    result[0] = 6;
+    for (int i = n - 1, position = size - 7; i >= 1; i--, position -= step) {
+      result[i] = position;
+    }
+    return result;
+  }
+
+  private void setFunctionModule(int x, int y, boolean dark) {
+    modules[y][x] = dark;
+    isFunction[y][x] = true;
+  }
+
+  /* Zigzag de dos columnas desde abajo a la derecha, saltando la columna 6. */
+  private void drawCodewords(byte[] data) {
+    int i = 0;
+    final int bits = data.length * 8;
+    for (int right = size - 1; right >= 1; right -= 2) {
+      if (right == 6) {
+        right = 5;
+      }
+      final boolean upward = ((right + 1) & 2) == 0;
+      for (int vertical = 0; vertical < size; vertical++) {
+        final int y = upward ? size - 1 - vertical : vertical;
+        for (int j = 0; j < 2; j++) {
+          final int x = right - j;
+          if (!isFunction[y][x] && i < bits) {
+            modules[y][x] = getBit(data[i >>> 3], 7 - (i & 7));
+            i++;
+          }
+        }
+      }
+    }
+  }
+
+  private void applyMask(int mask) {
+    for (int y = 0; y < size; y++) {
+      for (int x = 0; x < size; x++) {
+        final boolean invert;
+        switch (mask) {
+          case 0: invert = (x + y) % 2 == 0; break;
+          case 1: invert = y % 2 == 0; break;
+          case 2: invert = x % 3 == 0; break;
+          case 3: invert = (x + y) % 3 == 0; break;
+          case 4: invert = (x / 3 + y / 2) % 2 == 0; break;
+          case 5: invert = x * y % 2 + x * y % 3 == 0; break;
+          case 6: invert = (x * y % 2 + x * y % 3) % 2 == 0; break;
+          default: invert = ((x + y) % 2 + x * y % 3) % 2 == 0; break;
+        }
+        modules[y][x] ^= invert & !isFunction[y][x];
+      }
+    }
+  }
+
+  private int getPenaltyScore() {
+    int result = 0;
+    final int[] history = new int[7];
+
+    // Corridas del mismo color y patrones parecidos al de busqueda, por filas y columnas.
+    for (int pass = 0; pass < 2; pass++) {
+      for (int a = 0; a < size; a++) {
+        boolean runColor = false;
+        int run = 0;
+        Arrays.fill(history, 0);
+        for (int b = 0; b < size; b++) {
+          final boolean color = pass == 0 ? modules[a][b] : modules[b][a];
+          if (color == runColor) {
+            run++;
+            if (run == 5) {
+              result += PENALTY_N1;
+            } else if (run > 5) {
+              result++;
+            }
+          } else {
+            addHistory(run, history);
+            if (!runColor) {
+              result += countFinderPatterns(history) * PENALTY_N3;
+            }
+            runColor = color;
+            run = 1;
+          }
+        }
+        if (runColor) {
+          addHistory(run, history);
+          run = 0;
+        }
+        addHistory(run + size, history);
+        result += countFinderPatterns(history) * PENALTY_N3;
+      }
+    }
+
+    // Bloques de 2x2 del mismo color.
+    for (int y = 0; y < size - 1; y++) {
+      for (int x = 0; x < size - 1; x++) {
+        final boolean color = modules[y][x];
+        if (color == modules[y][x + 1] && color == modules[y + 1][x] && color == modules[y + 1][x + 1]) {
+          result += PENALTY_N2;
+        }
+      }
+    }
+
+    // Proporcion de negros lejos del 50%.
+    int dark = 0;
+    for (boolean[] row : modules) {
+      for (boolean color : row) {
+        if (color) {
+          dark++;
+        }
+      }
+    }
+    final int total = size * size;
+    final int k = (Math.abs(dark * 20 - total * 10) + total - 1) / total - 1;
+    result += k * PENALTY_N4;
+    return result;
+  }
+
+  private void addHistory(int run, int[] history) {
+    // La primera corrida cuenta el borde blanco.
+    if (history[0] == 0) {
+      run += size;
+    }
+    System.arraycopy(history, 0, history, 1, history.length - 1);
+    history[0] = run;
+  }
+
+  private static int countFinderPatterns(int[] history) {
+    final int n = history[1];
+    final boolean core = n > 0 && history[2] == n && history[3] == n * 3 && history[4] == n && history[5] == n;
+    return (core && history[0] >= n * 4 && history[6] >= n ? 1 : 0)
+      + (core && history[6] >= n * 4 && history[0] >= n ? 1 : 0);
+  }
+
+  private static boolean getBit(int x, int i) {
+    return ((x >>> i) & 1) != 0;
+  }
+}
@@ -0,0 +1,77 @@
+package com.zplcode;
+
+/**
+ * Luminancia y umbral a 1 bit sobre rangos de pixeles.
+ *
+ * Los ciclos no tienen llamadas virtuales ni ramas para que el JIT (o ART)
+ * los pueda vectorizar. El resultado es exactamente el de Pixel.gray y
+ * Pixel.zeroOrOne pixel por pixel.
+ */
+public final class RasterKernels {
+
+  private RasterKernels() {
+  }
+
+  /**
+   * Pixel.gray de cada pixel: luminancia, 255 si el alfa es menor a 128.
+   */
+  public static void gray(int[] src, int srcOff, int[] dst, int dstOff, int len) {
+    for (int i = 0; i < len; i++) {
+      final int argb = src[srcOff + i];
+      final int luminance = (int) (0.2989 * ((argb >> 16) & 0xFF)
+        + 0.5870 * ((argb >> 8) & 0xFF)
+        + 0.1140 * (argb & 0xFF));
+      // -1 si es transparente
+      final int transparent = (((argb >>> 24) - 128) >> 31);
+      dst[dstOff + i] = luminance | (transparent & 0xFF);
+    }
+  }
+
+  /**
+   * Pixel.gray de los pixeles (gris, gris, gris, alfa) que produce un
+   * GrayScale, a partir de sus planos de gris y alfa.
+   */
+  public static void gray(int[] gray, int[] alpha, int[] dst, int len) {
+    for (int i = 0; i < len; i++) {
+      final int value = gray[i];
+      final int luminance = (int) (0.2989 * value + 0.5870 * value + 0.1140 * value);
+      final int transparent = ((alpha[i] - 128) >> 31);
+      dst[i] = luminance | (transparent & 0xFF);
+    }
+  }
+
+  /**
+   * Empaqueta gray[i] <= threshold (negro = 1), 8 pixeles por byte empezando
+   * por el bit mas alto; el ultimo byte se completa con ceros.
+   * @return bytes escritos
+   */
+  public static int packBits(int[] gray, int threshold, byte[] dst, int dstOff, int len) {
+    final int full = len >> 3;
+    final int t = threshold + 1;
+
+    for (int j = 0; j < full; j++) {
+      final int i = j << 3;
+      dst[dstOff + j] = (byte) (
+        (((gray[i] - t) >>> 31) << 7)
+          | (((gray[i + 1] - t) >>> 31) << 6)
+          | (((gray[i + 2] - t) >>> 31) << 5)
+          | (((gray[i + 3] - t) >>> 31) << 4)
+          | (((gray[i + 4] - t) >>> 31) << 3)
+          | (((gray[i + 5] - t) >>> 31) << 2)
+          | (((gray[i + 6] - t) >>> 31) << 1)
+          | ((gray[i + 7] - t) >>> 31));
+    }
+
+    final int rest = len & 7;
+    if (rest == 0) {
+      return full;
+    }
+
+    int Byte = 0;
+    for (int k = 0; k < rest; k++) {
+      Byte |= ((gray[(full << 3) + k] - t) >>> 31) << (7 - k);
+    }
+    dst[dstOff + full] = (byte) Byte;
+    return full + 1;
+  }
+}
@@ -0,0 +1,320 @@
+package com.zplcode;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Escala de grises, dither y empaquetado a 1 bit en una sola pasada.
+ *
+ * La imagen se recorre fila por fila: solo se guardan las filas que usa el
+ * dither (la actual y las que reciben error) y cada fila se empaqueta en
+ * cuanto termina. Con Floyd-Steinberg el resultado es el mismo que el de
+ * apply(GrayScale) + FloydSteinbergDithering + getRasterBytes, sin modificar
+ * la imagen. Con un AdaptiveThreshold se guardan las filas de su ventana.
+ */
+public final class RasterPipeline {
+
+  public final GrayScale grayScale;
+  public final RowDither dither;
+  public final AdaptiveThreshold adaptive;
+  public final int threshold;
+
+  /**
+   * @param grayScale filtro de grises, null para usar los pixeles tal cual
+   * @param dither dither sobre los grises, null para solo aplicar el umbral
+   * @param threshold 127
+   */
+  public RasterPipeline(GrayScale grayScale, RowDither dither, int threshold) {
+    if (dither != null && grayScale == null) {
+      throw new IllegalArgumentException("dither requires a GrayScale filter");
+    }
+    this.grayScale = grayScale;
+    this.dither = dither;
+    this.adaptive = null;
+    this.threshold = threshold;
+  }
+
+  /**
+   * Umbral adaptativo en lugar de dither y umbral fijo.
+   * @param grayScale filtro de grises
+   */
+  public RasterPipeline(GrayScale grayScale, AdaptiveThreshold adaptive) {
+    if (grayScale == null || adaptive == null) {
+      throw new IllegalArgumentException("adaptive threshold requires a GrayScale filter");
+    }
+    this.grayScale = grayScale;
+    this.dither = null;
+    this.adaptive = adaptive;
+    this.threshold = 127;
+  }
+
+  /**
+   * @param dither aplica Floyd-Steinberg sobre los grises
+   */
+  public RasterPipeline(GrayScale grayScale, boolean dither, int threshold) {
+    this(grayScale, dither ? new FloydSteinbergDithering(true) : null, threshold);
+  }
+
+  /* Solo umbral, equivalente a PixelImage.getRasterBytes(threshold). */
+  public RasterPipeline(int threshold) {
+    this(null, (RowDither) null, threshold);
+  }
+
+  /**
+   * transform RGB image in raster format.
+   * @return raster byte array
+   */
+  public byte[] getRasterBytes(PixelImage image) {
+    return getRasterBytes(image, null);
+  }
+
+  /**
+   * Sin dither, o con un dither de una sola fila (Bayer), las filas no
+   * dependen entre si y se empaquetan por franjas en el pool. La difusion de
+   * error siempre corre en el hilo actual.
+   * @param pool null para hacerlo en el hilo actual
+   * @return raster byte array
+   */
+  public byte[] getRasterBytes(final PixelImage image, ForkJoinPool pool) {
+    return getRasterBytes(image, pool, new byte[image.getBytesPerRow() * image.getHeight()]);
+  }
+
+  /**
+   * Como getRasterBytes(image, pool), en un arreglo del llamador (por
+   * ejemplo de un ArrayPool). Solo se escriben los primeros
+   * bytesPerRow * height bytes.
+   * @return raster
+   */
+  public byte[] getRasterBytes(final PixelImage image, ForkJoinPool pool, final byte[] raster) {
+    return getRasterBytes(image, pool, raster, null);
+  }
+
+  /**
+   * Como getRasterBytes(image, pool, raster), midiendo grises, dither y
+   * empaquetado en metrics (cada franja en su hilo, luego se suman).
+   * @param metrics null para no medir
+   */
+  public byte[] getRasterBytes(final PixelImage image, ForkJoinPool pool, final byte[] raster,
+                               final ConversionMetrics metrics) {
+    final int bytesPerRow = image.getBytesPerRow();
+    if (raster.length < bytesPerRow * image.getHeight()) {
+      throw new IllegalArgumentException("raster length " + raster.length + " does not fit "
+        + image.getWidth() + "x" + image.getHeight());
+    }
+    final int stripeRows = isRowIndependent()
+      ? Stripes.getStripeRows(pool, image.getWidth(), image.getHeight())
+      : image.getHeight();
+
+    Stripes.run(pool, image.getHeight(), stripeRows, new Stripes.Task() {
+      @Override
+      public void run(int stripe, int fromRow, int toRow) {
+        final ConversionMetrics local = metrics != null ? metrics.newChild() : null;
+        final Encoder encoder = new Encoder(image, 0, image.getWidth(), fromRow, local);
+        for (int y = fromRow; y < toRow; y++) {
+          encoder.nextRow(raster, y * bytesPerRow);
+        }
+        if (local != null) {
+          metrics.merge(local);
+        }
+      }
+    });
+    return raster;
+  }
+
+  /**
+   * Raster de un rectangulo de la imagen, igual a esas filas y columnas de
+   * getRasterBytes(image). Solo si isRowIndependent().
+   * @param x columna izquierda, multiplo de 8
+   * @return (width + 7) / 8 bytes por fila
+   */
+  public byte[] getRasterBytes(PixelImage image, int x, int y, int width, int height) {
+    return getRasterBytes(image, x, y, width, height, null);
+  }
+
+  /**
+   * @param metrics null para no medir
+   */
+  public byte[] getRasterBytes(PixelImage image, int x, int y, int width, int height,
+                               ConversionMetrics metrics) {
+    if (!isRowIndependent()) {
+      throw new IllegalStateException("a region can only be encoded without error diffusion");
+    } else if (x < 0 || y < 0 || width <= 0 || height <= 0 || (x & 7) != 0
+      || x + width > image.getWidth() || y + height > image.getHeight()) {
+      throw new IllegalArgumentException("bad region " + x + "," + y + " " + width + "x" + height);
+    }
+
+    final int bytesPerRow = (width + 7) / 8;
+    final byte[] raster = new byte[bytesPerRow * height];
+    final Encoder encoder = new Encoder(image, x, width, y, metrics);
+    for (int row = 0; row < height; row++) {
+      encoder.nextRow(raster, row * bytesPerRow);
+    }
+    return raster;
+  }
+
+  /* Cada fila se puede empaquetar sin conocer las anteriores. */
+  public boolean isRowIndependent() {
+    return adaptive == null && (dither == null || dither.getRowSpan() == 1);
+  }
+
+  /**
+   * Escribe el raster fila por fila, sin armar el arreglo completo.
+   * @param out destino de las filas empaquetadas
+   */
+  public void writeRaster(PixelImage image, OutputStream out) throws IOException {
+    writeRaster(image, out, null);
+  }
+
+  /**
+   * @param metrics null para no medir
+   */
+  public void writeRaster(PixelImage image, OutputStream out, ConversionMetrics metrics) throws IOException {
+    final byte[] line = new byte[image.getBytesPerRow()];
+    final Encoder encoder = new Encoder(image, 0, image.getWidth(), 0, metrics);
+
+    for (int y = 0; y < image.getHeight(); y++) {
+      encoder.nextRow(line, 0);
+      out.write(line, 0, line.length);
+    }
+  }
+
+  /* Estado de una sola pasada sobre la imagen. */
+  private final class Encoder {
+
+    private final int[] pixels;
+    // Columnas left .. left + width de filas de stride pixeles.
+    private final int stride;
+    private final int left;
+    private final int width;
+    private final int height;
+    private final int span;
+
+    // Ventana de filas, gris y alfa por separado.
+    private int[][] gray;
+    private int[][] alpha;
+
+    // Gris de Pixel.gray de la fila que se va a empaquetar.
+    private final int[] luminance;
+    private final int[] rowGray;
+    private final int[] rowAlpha;
+
+    private final AdaptiveThreshold.Window window;
+    private final ConversionMetrics metrics;
+
+    private int y;
+
+    Encoder(PixelImage image, int left, int width, int fromRow, ConversionMetrics metrics) {
+      this.metrics = metrics;
+      this.pixels = image.getPixels();
+      this.stride = image.getWidth();
+      this.left = left;
+      this.width = width;
+      this.height = image.getHeight();
+      this.span = dither != null ? dither.getRowSpan() : 0;
+      this.y = fromRow;
+      this.luminance = new int[width];
+      if (adaptive != null) {
+        start(ConversionMetrics.THRESHOLD);
+        this.window = adaptive.newWindow(image, grayScale);
+        stop();
+      } else {
+        this.window = null;
+      }
+
+      if (dither != null) {
+        gray = new int[span][width];
+        alpha = new int[span][width];
+        start(ConversionMetrics.GRAY_SCALE);
+        for (int i = 0; i < span && fromRow + i < height; i++) {
+          loadRow(fromRow + i, gray[i], alpha[i]);
+        }
+        stop();
+        rowGray = null;
+        rowAlpha = null;
+      } else if (grayScale != null && adaptive == null) {
+        rowGray = new int[width];
+        rowAlpha = new int[width];
+      } else {
+        rowGray = null;
+        rowAlpha = null;
+      }
+    }
+
+    /* Empaqueta la siguiente fila en dst a partir de offset. */
+    void nextRow(byte[] dst, int offset) {
+      if (window != null) {
+        // 0 o 255, los transparentes ya son blanco.
+        start(ConversionMetrics.THRESHOLD);
+        window.nextRow(luminance);
+        stop();
+        start(ConversionMetrics.PACK);
+        RasterKernels.packBits(luminance, threshold, dst, offset, width);
+        stop();
+      } else if (dither != null) {
+        ditherRow(dst, offset);
+      } else {
+        thresholdRow(dst, offset);
+      }
+      y++;
+    }
+
+    private void thresholdRow(byte[] dst, int offset) {
+      start(ConversionMetrics.GRAY_SCALE);
+      if (grayScale != null) {
+        grayScale.applyRange(pixels, y * stride + left, rowGray, rowAlpha, width);
+        RasterKernels.gray(rowGray, rowAlpha, luminance, width);
+      } else {
+        RasterKernels.gray(pixels, y * stride + left, luminance, 0, width);
+      }
+      stop();
+      start(ConversionMetrics.PACK);
+      RasterKernels.packBits(luminance, threshold, dst, offset, width);
+      stop();
+    }
+
+    private void ditherRow(byte[] dst, int offset) {
+      final int count = Math.min(span, height - y);
+      start(ConversionMetrics.DITHER);
+      dither.ditherRow(gray, count, width, y);
+      dither.ditherRow(alpha, count, width, y);
+      stop();
+
+      final int[] grayRow = gray[0];
+      final int[] alphaRow = alpha[0];
+
+      // Los planos ya son 0 o 255.
+      start(ConversionMetrics.PACK);
+      RasterKernels.gray(grayRow, alphaRow, luminance, width);
+      RasterKernels.packBits(luminance, threshold, dst, offset, width);
+      stop();
+
+      // La fila terminada se reutiliza para la siguiente que entra a la ventana.
+      System.arraycopy(gray, 1, gray, 0, span - 1);
+      System.arraycopy(alpha, 1, alpha, 0, span - 1);
+      gray[span - 1] = grayRow;
+      alpha[span - 1] = alphaRow;
+      if (y + span < height) {
+        start(ConversionMetrics.GRAY_SCALE);
+        loadRow(y + span, grayRow, alphaRow);
+        stop();
+      }
+    }
+
+    private void loadRow(int y, int[] grayRow, int[] alphaRow) {
+      grayScale.applyRange(pixels, y * stride + left, grayRow, alphaRow, width);
+    }
+
+    private void start(int stage) {
+      if (metrics != null) {
+        metrics.start(stage);
+      }
+    }
+
+    private void stop() {
+      if (metrics != null) {
+        metrics.stop();
+      }
+    }
+  }
+}
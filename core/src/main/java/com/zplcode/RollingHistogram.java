@@ -0,0 +1,73 @@
+package com.zplcode;
+
+import java.util.Arrays;
+
+/**
+ * Los ultimos valores registrados (por ejemplo nanosegundos de una etapa),
+ * para sacar percentiles de las conversiones recientes.
+ */
+public final class RollingHistogram {
+
+  private final long[] values;
+  private int next;
+  private int size;
+  private long count;
+
+  /**
+   * @param window cuantos valores se guardan
+   */
+  public RollingHistogram(int window) {
+    if (window <= 0) {
+      throw new IllegalArgumentException("window must be positive");
+    }
+    this.values = new long[window];
+  }
+
+  public synchronized void record(long value) {
+    values[next] = value;
+    next = (next + 1) % values.length;
+    if (size < values.length) {
+      size++;
+    }
+    count++;
+  }
+
+  /**
+   * Percentiles de los valores de la ventana (rango mas cercano).
+   * @param percentiles entre 0 y 100, por ejemplo 50, 95, 99
+   * @return un valor por percentil, 0 si no hay valores
+   */
+  public long[] getPercentiles(double... percentiles) {
+    final long[] sorted;
+    synchronized (this) {
+      sorted = Arrays.copyOf(values, size);
+    }
+    Arrays.sort(sorted);
+
+    final long[] result = new long[percentiles.length];
+    if (sorted.length == 0) {
+      return result;
+    }
+    for (int i = 0; i < percentiles.length; i++) {
+      final int rank = (int) Math.ceil(percentiles[i] / 100 * sorted.length);
+      result[i] = sorted[Math.min(sorted.length - 1, Math.max(0, rank - 1))];
+    }
+    return result;
+  }
+
+  /* Valores en la ventana. */
+  public synchronized int getSize() {
+    return size;
+  }
+
+  /* Valores registrados desde el inicio o el ultimo clear(). */
+  public synchronized long getCount() {
+    return count;
+  }
+
+  public synchronized void clear() {
+    next = 0;
+    size = 0;
+    count = 0;
+  }
+}
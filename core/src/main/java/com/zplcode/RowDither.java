@@ -0,0 +1,16 @@
+package com.zplcode;
+
+/**
+ * Dither sobre un plano de luminancia, fila por fila.
+ *
+ * rows[0] es la fila que se binariza: trae valores de 0 a 255 y sale con 0
+ * o 255. rows[1..count-1] son las filas siguientes, ya cargadas, que reciben
+ * el error. count es menor a getRowSpan() al llegar al final de la imagen.
+ */
+public interface RowDither {
+
+  /* Filas que necesita la ventana: la actual mas las que reciben error. */
+  int getRowSpan();
+
+  void ditherRow(int[][] rows, int count, int width, int y);
+}
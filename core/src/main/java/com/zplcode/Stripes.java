@@ -0,0 +1,87 @@
+package com.zplcode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Divide una imagen en franjas de filas y las procesa en un ForkJoinPool.
+ *
+ * Las franjas son fijas para un ancho y alto dados, asi que cada una puede
+ * escribir en su propio acumulador (por ejemplo un histograma parcial) o en
+ * un rango conocido de un arreglo de salida.
+ */
+public final class Stripes {
+
+  /* Pixeles minimos por franja, con menos no vale la pena dividir. */
+  public static final int MIN_STRIPE_PIXELS = 1 << 16;
+
+  public interface Task {
+    void run(int stripe, int fromRow, int toRow);
+  }
+
+  private static ForkJoinPool defaultPool;
+
+  private Stripes() {
+  }
+
+  /* Pool compartido con un hilo por nucleo. */
+  public static synchronized ForkJoinPool getDefaultPool() {
+    if (defaultPool == null) {
+      defaultPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+    return defaultPool;
+  }
+
+  /**
+   * Filas por franja: unas cuatro franjas por hilo, sin bajar de
+   * MIN_STRIPE_PIXELS. Sin pool es una sola franja con toda la imagen.
+   */
+  public static int getStripeRows(ForkJoinPool pool, int width, int height) {
+    if (pool == null || pool.getParallelism() < 2) {
+      return Math.max(1, height);
+    }
+
+    final int minRows = (MIN_STRIPE_PIXELS + width - 1) / Math.max(1, width);
+    final int stripes = pool.getParallelism() * 4;
+    return Math.max(1, Math.max(minRows, (height + stripes - 1) / stripes));
+  }
+
+  public static int getStripeCount(int height, int stripeRows) {
+    return (height + stripeRows - 1) / stripeRows;
+  }
+
+  /**
+   * Ejecuta task sobre cada franja y espera a que terminen todas. Con una
+   * sola franja corre en el hilo actual.
+   */
+  public static void run(ForkJoinPool pool, final int height, final int stripeRows, final Task task) {
+    final int count = getStripeCount(height, stripeRows);
+
+    if (pool == null || count < 2) {
+      for (int i = 0; i < count; i++) {
+        task.run(i, i * stripeRows, Math.min(height, (i + 1) * stripeRows));
+      }
+      return;
+    }
+
+    pool.invoke(new RecursiveAction() {
+      @Override
+      protected void compute() {
+        final List<ForkJoinTask<?>> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+          final int stripe = i;
+          tasks.add(new RecursiveAction() {
+            @Override
+            protected void compute() {
+              task.run(stripe, stripe * stripeRows, Math.min(height, (stripe + 1) * stripeRows));
+            }
+          });
+        }
+        invokeAll(tasks);
+      }
+    });
+  }
+}
@@ -0,0 +1,147 @@
+package com.zplcode;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Impresora en red por el puerto raw (9100 por omision).
+ */
+public final class TcpPrinterConnection implements PrinterConnection {
+
+  public final String host;
+  public final int port;
+
+  /*
+   * setSoTimeout solo corta las lecturas: una escritura trabada (la impresora
+   * no lee y se lleno el buffer) se corta cerrando el socket desde aca.
+   */
+  private static ScheduledThreadPoolExecutor watchdog;
+
+  private final Socket socket;
+  private final int timeout;
+  private OutputStream out;
+
+  /**
+   * @param timeout milisegundos para conectar y para cada llamada a write
+   *                (por ejemplo un bloque de PrinterOutputStream); si una
+   *                escritura tarda mas se cierra el socket y falla con
+   *                SocketTimeoutException. 0 sin limite
+   */
+  public TcpPrinterConnection(String host, int port, int timeout) throws IOException {
+    this.host = host;
+    this.port = port;
+    this.socket = new Socket();
+    this.timeout = timeout;
+    try {
+      socket.connect(new InetSocketAddress(host, port), timeout);
+      socket.setSoTimeout(timeout);
+      socket.setKeepAlive(true);
+    } catch (IOException e) {
+      socket.close();
+      throw e;
+    }
+  }
+
+  @Override
+  public synchronized OutputStream getOutputStream() throws IOException {
+    if (out == null) {
+      out = timeout > 0 ? new WatchdogOutputStream(socket.getOutputStream()) : socket.getOutputStream();
+    }
+    return out;
+  }
+
+  @Override
+  public String getName() {
+    return host + ":" + port;
+  }
+
+  /* Cierra primero la salida para que la impresora reciba todo y el FIN. */
+  @Override
+  public void close() throws IOException {
+    try {
+      if (!socket.isClosed() && socket.isConnected()) {
+        socket.shutdownOutput();
+      }
+    } finally {
+      socket.close();
+    }
+  }
+
+  private static synchronized ScheduledThreadPoolExecutor getWatchdog() {
+    if (watchdog == null) {
+      watchdog = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          final Thread thread = new Thread(r, "zpl-tcp-watchdog");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+      watchdog.setRemoveOnCancelPolicy(true);
+    }
+    return watchdog;
+  }
+
+  /* Cada write tiene timeout milisegundos; si no termina se cierra el socket. */
+  private final class WatchdogOutputStream extends OutputStream {
+    private final OutputStream out;
+    private volatile boolean expired;
+
+    private final Runnable expire = new Runnable() {
+      @Override
+      public void run() {
+        expired = true;
+        try {
+          socket.close();
+        } catch (IOException e) {
+          // La escritura trabada falla igual.
+        }
+      }
+    };
+
+    WatchdogOutputStream(OutputStream out) {
+      this.out = out;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      final ScheduledFuture<?> task = getWatchdog().schedule(expire, timeout, TimeUnit.MILLISECONDS);
+      try {
+        out.write(b, off, len);
+      } catch (IOException e) {
+        throw expired ? timedOut(e) : e;
+      } finally {
+        task.cancel(false);
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.close();
+    }
+
+    private IOException timedOut(IOException cause) {
+      final SocketTimeoutException e = new SocketTimeoutException(
+        "Write to " + getName() + " timed out after " + timeout + " ms");
+      e.initCause(cause);
+      return e;
+    }
+  }
+}
@@ -0,0 +1,258 @@
+package com.zplcode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+
+/**
+ * El grafico partido en cuadros, cada uno en su propio ^FO^GFA^FS.
+ *
+ * Pensado para plantillas: la misma imagen de fondo con un pedazo que cambia
+ * en cada etiqueta (un numero de serie). Cada cuadro se busca en el cache
+ * por un hash de su contenido, asi solo se vuelven a empaquetar, comprimir y
+ * codificar los cuadros que cambiaron. Los cuadros en blanco no se escriben: en ZPL el
+ * blanco de un ^GF no pinta nada.
+ */
+public class TiledZplGraphics extends ZplLibGraphics {
+
+  /* Lado por omision de los cuadros en pixeles. */
+  public static final int TILE_SIZE = 64;
+
+  public final int tileWidth;
+  public final int tileHeight;
+  public final ZplCache tiles;
+
+  // Cuadros de la ultima llamada a writeZplCode.
+  private int encodedTiles;
+  private int reusedTiles;
+  private int blankTiles;
+
+  /**
+   * @param tileWidth ancho de los cuadros, multiplo de 8 (un byte del raster)
+   * @param tileHeight alto de los cuadros
+   * @param tiles datos ya codificados de cada cuadro, compartido entre imagenes
+   */
+  public TiledZplGraphics(PixelImage pixels, RasterPipeline pipeline,
+                          int tileWidth, int tileHeight, ZplCache tiles) {
+    super(pixels, pipeline);
+    if (tileWidth <= 0 || tileWidth % 8 != 0) {
+      throw new IllegalArgumentException("tileWidth must be a positive multiple of 8: " + tileWidth);
+    } else if (tileHeight <= 0) {
+      throw new IllegalArgumentException("tileHeight must be > 0: " + tileHeight);
+    } else if (tiles == null) {
+      throw new IllegalArgumentException("tiles cache cannot be null");
+    }
+    this.tileWidth = tileWidth;
+    this.tileHeight = tileHeight;
+    this.tiles = tiles;
+  }
+
+  public TiledZplGraphics(PixelImage pixels, RasterPipeline pipeline, ZplCache tiles) {
+    this(pixels, pipeline, TILE_SIZE, TILE_SIZE, tiles);
+  }
+
+  /**
+   * Escribe un ^FO^GFA^FS por cada cuadro que no esta en blanco, a partir de
+   * setPoint (0,0 si no hay).
+   *
+   * Con solo umbral (sin dither) cada cuadro se busca por el hash de sus
+   * pixeles y solo se empaquetan los que cambiaron. Con dither el raster
+   * se arma completo (el error pasa de un cuadro a otro) y se busca por el
+   * hash del raster de cada cuadro.
+   */
+  @Override
+  public void writeZplCode(OutputStream out, boolean insideFormat) throws IOException {
+    final int height = pixels.getHeight();
+    final int bytesPerRow = pixels.getBytesPerRow();
+
+    final String pixelKey = getPixelKey();
+    final byte[] raster = pixelKey == null
+      ? pipeline.getRasterBytes(pixels, pool, getArrays().obtainBytes(bytesPerRow * height), metrics)
+      : null;
+    try {
+      writeTiles(out, insideFormat, pixelKey, raster);
+      if (metrics != null) {
+        metrics.setTiles(encodedTiles, reusedTiles);
+      }
+    } finally {
+      getArrays().release(raster);
+    }
+  }
+
+  private void writeTiles(OutputStream out, boolean insideFormat, String pixelKey,
+                          byte[] raster) throws IOException {
+    final int width = pixels.getWidth();
+    final int height = pixels.getHeight();
+    final int bytesPerRow = pixels.getBytesPerRow();
+
+    final int left = x != null && y != null ? x : 0;
+    final int top = x != null && y != null ? y : 0;
+    final String settings = encoding + "," + compressionLevel + "," + compressionStrategy;
+
+    // Solo con dither se copia cada cuadro del raster completo.
+    final byte[] tile = raster != null ? new byte[(tileWidth / 8) * tileHeight] : null;
+    final CRC32 crc = new CRC32();
+    final Adler32 adler = new Adler32();
+    encodedTiles = 0;
+    reusedTiles = 0;
+    blankTiles = 0;
+
+    if (!insideFormat) writeAscii(out, "^XA");
+
+    for (int tileY = 0; tileY < height; tileY += tileHeight) {
+      final int rows = Math.min(tileHeight, height - tileY);
+
+      for (int tileX = 0; tileX < width; tileX += tileWidth) {
+        final int columns = Math.min(tileWidth, width - tileX);
+        final int tileBytesPerRow = (columns + 7) / 8;
+        final int length = tileBytesPerRow * rows;
+
+        String data;
+        if (pixelKey != null) {
+          final String key = "p:" + pixelKey + ":" + settings + ":" + columns + "x" + rows
+            + ":" + Long.toHexString(hashPixels(pixels.getPixels(), width, tileX, tileY, columns, rows));
+
+          data = tiles.get(key);
+          if (data == null) {
+            data = encodeTile(pipeline.getRasterBytes(pixels, tileX, tileY, columns, rows, metrics), length,
+              tileBytesPerRow);
+            tiles.put(key, data);
+            if (!data.isEmpty()) {
+              encodedTiles++;
+            }
+          } else if (!data.isEmpty()) {
+            reusedTiles++;
+          }
+        } else {
+          // Copia del cuadro; de paso se ve si esta todo en blanco.
+          int ink = 0;
+          final int from = tileX / 8;
+          for (int row = 0; row < rows; row++) {
+            final int src = (tileY + row) * bytesPerRow + from;
+            final int dst = row * tileBytesPerRow;
+            System.arraycopy(raster, src, tile, dst, tileBytesPerRow);
+            for (int i = dst; i < dst + tileBytesPerRow; i++) {
+              ink |= tile[i];
+            }
+          }
+          if (ink == 0) {
+            blankTiles++;
+            continue;
+          }
+
+          crc.reset();
+          crc.update(tile, 0, length);
+          adler.reset();
+          adler.update(tile, 0, length);
+          final String key = "r:" + settings + ":" + tileBytesPerRow + "x" + rows
+            + ":" + Long.toHexString(crc.getValue()) + "," + Long.toHexString(adler.getValue());
+
+          data = tiles.get(key);
+          if (data == null) {
+            data = encodeTile(tile, length, tileBytesPerRow);
+            tiles.put(key, data);
+            encodedTiles++;
+          } else {
+            reusedTiles++;
+          }
+        }
+
+        // "" es un cuadro en blanco.
+        if (data.isEmpty()) {
+          blankTiles++;
+          continue;
+        }
+
+        writeAscii(out, "^FO" + (left + tileX) + "," + (top + tileY)
+          + "^GFA," + length + "," + length + "," + tileBytesPerRow + ",");
+        writeAscii(out, data);
+        writeAscii(out, "^FS");
+      }
+    }
+
+    if (!insideFormat) writeAscii(out, "^XZ");
+  }
+
+  /**
+   * Datos del ^GFA de un cuadro, "" si esta en blanco.
+   */
+  private String encodeTile(byte[] raster, int length, int bytesPerRow) throws IOException {
+    int ink = 0;
+    for (int i = 0; i < length; i++) {
+      ink |= raster[i];
+    }
+    if (ink == 0) {
+      return "";
+    }
+
+    final ByteArrayOutputStream encoded = new ByteArrayOutputStream(length / 2 + 32);
+    writeData(encoded, raster, length, bytesPerRow);
+    return encoded.toString("US-ASCII");
+  }
+
+  /**
+   * Lo que define el raster de un cuadro a partir de sus pixeles, o null si
+   * depende de los demas cuadros (dither).
+   */
+  private String getPixelKey() {
+    if (pipeline.dither != null || pipeline.adaptive != null) {
+      return null;
+    }
+    return pipeline.threshold + "," + (pipeline.grayScale != null ? pipeline.grayScale.toString() : "argb");
+  }
+
+  private static final long MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+  /**
+   * Hash de 64 bits de los pixeles de un rectangulo. Cuatro acumuladores
+   * independientes para no esperar cada multiplicacion.
+   * @param stride pixeles por fila de la imagen
+   */
+  public static long hashPixels(int[] pixels, int stride, int x, int y, int width, int height) {
+    long h0 = 1;
+    long h1 = 2;
+    long h2 = 3;
+    long h3 = 4;
+
+    for (int row = 0; row < height; row++) {
+      final int offset = (y + row) * stride + x;
+      final int end = offset + width;
+      int i = offset;
+      for (; i + 4 <= end; i += 4) {
+        h0 = Long.rotateLeft((h0 ^ pixels[i]) * MULTIPLIER, 31);
+        h1 = Long.rotateLeft((h1 ^ pixels[i + 1]) * MULTIPLIER, 31);
+        h2 = Long.rotateLeft((h2 ^ pixels[i + 2]) * MULTIPLIER, 31);
+        h3 = Long.rotateLeft((h3 ^ pixels[i + 3]) * MULTIPLIER, 31);
+      }
+      for (; i < end; i++) {
+        h0 = Long.rotateLeft((h0 ^ pixels[i]) * MULTIPLIER, 31);
+      }
+    }
+
+    // Mezcla final de MurmurHash3.
+    long h = h0 ^ Long.rotateLeft(h1, 16) ^ Long.rotateLeft(h2, 32) ^ Long.rotateLeft(h3, 48);
+    h ^= h >>> 33;
+    h *= 0xFF51AFD7ED558CCDL;
+    h ^= h >>> 33;
+    h *= 0xC4CEB9FE1A85EC53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  /* Cuadros comprimidos y codificados en la ultima llamada. */
+  public int getEncodedTileCount() {
+    return encodedTiles;
+  }
+
+  /* Cuadros que ya estaban en el cache en la ultima llamada. */
+  public int getReusedTileCount() {
+    return reusedTiles;
+  }
+
+  /* Cuadros en blanco que no se escribieron en la ultima llamada. */
+  public int getBlankTileCount() {
+    return blankTiles;
+  }
+}
@@ -0,0 +1,59 @@
+package com.zplcode;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Cuenta el tiempo de las escrituras a out como una etapa de
+ * ConversionMetrics, y los bytes que pasan.
+ */
+public final class TimedOutputStream extends FilterOutputStream {
+
+  private final ConversionMetrics metrics;
+  private final int stage;
+  private long count;
+
+  public TimedOutputStream(OutputStream out, ConversionMetrics metrics, int stage) {
+    super(out);
+    this.metrics = metrics;
+    this.stage = stage;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    metrics.start(stage);
+    try {
+      out.write(b);
+      count++;
+    } finally {
+      metrics.stop();
+    }
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    metrics.start(stage);
+    try {
+      out.write(b, off, len);
+      count += len;
+    } finally {
+      metrics.stop();
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    metrics.start(stage);
+    try {
+      out.flush();
+    } finally {
+      metrics.stop();
+    }
+  }
+
+  /* Bytes escritos a out. */
+  public long getCount() {
+    return count;
+  }
+}
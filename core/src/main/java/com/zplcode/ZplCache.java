@@ -0,0 +1,288 @@
+package com.zplcode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache LRU del ZPL ya convertido, limitado por bytes.
+ *
+ * La llave identifica la imagen de origen y los parametros de conversion.
+ * Opcionalmente guarda cada entrada en un directorio (por ejemplo el cache
+ * de la app) que tiene su propio limite; las lecturas y escrituras a disco
+ * se hacen fuera del lock.
+ */
+public final class ZplCache {
+
+  public static final long DEFAULT_MAX_BYTES = 8L * 1024 * 1024;
+  public static final long DEFAULT_DISK_MAX_BYTES = 32L * 1024 * 1024;
+
+  private final LinkedHashMap<String, String> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long maxBytes;
+  private long bytes;
+
+  private File diskDir;
+  private long diskMaxBytes = DEFAULT_DISK_MAX_BYTES;
+  private final Object diskLock = new Object();
+
+  private long hits;
+  private long diskHits;
+  private long misses;
+  private long evictions;
+
+  public ZplCache(long maxBytes) {
+    this.maxBytes = maxBytes;
+  }
+
+  public ZplCache() {
+    this(DEFAULT_MAX_BYTES);
+  }
+
+  /**
+   * @return el ZPL guardado o null
+   */
+  public String get(String key) {
+    final File file;
+    synchronized (this) {
+      final String zpl = entries.get(key);
+      if (zpl != null) {
+        hits++;
+        return zpl;
+      }
+      file = diskDir != null ? getDiskFile(key) : null;
+    }
+
+    final String zpl = file != null ? readDisk(file) : null;
+
+    synchronized (this) {
+      if (zpl != null) {
+        diskHits++;
+        putMemory(key, zpl);
+      } else {
+        misses++;
+      }
+    }
+    return zpl;
+  }
+
+  public void put(String key, String zpl) {
+    final File file;
+    synchronized (this) {
+      putMemory(key, zpl);
+      file = diskDir != null ? getDiskFile(key) : null;
+    }
+
+    if (file != null) {
+      writeDisk(file, zpl);
+    }
+  }
+
+  private void putMemory(String key, String zpl) {
+    final String old = entries.remove(key);
+    if (old != null) {
+      bytes -= sizeOf(key, old);
+    }
+
+    final long size = sizeOf(key, zpl);
+    if (size > maxBytes) {
+      return;
+    }
+
+    entries.put(key, zpl);
+    bytes += size;
+    trimMemory();
+  }
+
+  private void trimMemory() {
+    final Iterator<Map.Entry<String, String>> it = entries.entrySet().iterator();
+    while (bytes > maxBytes && it.hasNext()) {
+      final Map.Entry<String, String> eldest = it.next();
+      bytes -= sizeOf(eldest.getKey(), eldest.getValue());
+      it.remove();
+      evictions++;
+    }
+  }
+
+  public synchronized void setMaxBytes(long maxBytes) {
+    this.maxBytes = maxBytes;
+    trimMemory();
+  }
+
+  /**
+   * @param dir directorio para las entradas, null para no usar disco
+   * @param maxBytes limite del directorio
+   */
+  public synchronized void setDisk(File dir, long maxBytes) {
+    this.diskDir = dir;
+    this.diskMaxBytes = maxBytes;
+  }
+
+  /* Vacia la memoria y el directorio. */
+  public void clear() {
+    final File dir;
+    synchronized (this) {
+      entries.clear();
+      bytes = 0;
+      dir = diskDir;
+    }
+
+    if (dir != null) {
+      synchronized (diskLock) {
+        final File[] files = dir.listFiles();
+        if (files != null) {
+          for (File file : files) {
+            file.delete();
+          }
+        }
+      }
+    }
+  }
+
+  public synchronized void resetStats() {
+    hits = 0;
+    diskHits = 0;
+    misses = 0;
+    evictions = 0;
+  }
+
+  public synchronized long getHitCount() {
+    return hits;
+  }
+
+  public synchronized long getDiskHitCount() {
+    return diskHits;
+  }
+
+  public synchronized long getMissCount() {
+    return misses;
+  }
+
+  public synchronized long getEvictionCount() {
+    return evictions;
+  }
+
+  public synchronized long getSize() {
+    return bytes;
+  }
+
+  public synchronized long getMaxBytes() {
+    return maxBytes;
+  }
+
+  public synchronized int getEntryCount() {
+    return entries.size();
+  }
+
+  /* Los String ocupan 2 bytes por caracter. */
+  private static long sizeOf(String key, String zpl) {
+    return 2L * (key.length() + zpl.length());
+  }
+
+  private File getDiskFile(String key) {
+    return new File(diskDir, sha1Hex(key) + ".zpl");
+  }
+
+  private String readDisk(File file) {
+    synchronized (diskLock) {
+      if (!file.isFile()) {
+        return null;
+      }
+
+      try (InputStream in = new FileInputStream(file)) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
+        final byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+          out.write(buffer, 0, n);
+        }
+        file.setLastModified(System.currentTimeMillis());
+        return out.toString("US-ASCII");
+
+      } catch (IOException e) {
+        file.delete();
+        return null;
+      }
+    }
+  }
+
+  private void writeDisk(File file, String zpl) {
+    synchronized (diskLock) {
+      final File dir = file.getParentFile();
+      if (dir == null || (!dir.isDirectory() && !dir.mkdirs())) {
+        return;
+      }
+
+      final File tmp = new File(dir, file.getName() + ".tmp");
+      try (OutputStream out = new FileOutputStream(tmp)) {
+        out.write(zpl.getBytes("US-ASCII"));
+      } catch (IOException e) {
+        tmp.delete();
+        return;
+      }
+
+      if (!tmp.renameTo(file)) {
+        tmp.delete();
+        return;
+      }
+      trimDisk(dir);
+    }
+  }
+
+  /* Borra los archivos menos usados hasta quedar bajo el limite. */
+  private void trimDisk(File dir) {
+    final File[] files = dir.listFiles();
+    if (files == null) {
+      return;
+    }
+
+    long total = 0;
+    for (File file : files) {
+      total += file.length();
+    }
+    if (total <= diskMaxBytes) {
+      return;
+    }
+
+    Arrays.sort(files, new Comparator<File>() {
+      @Override
+      public int compare(File a, File b) {
+        final long diff = a.lastModified() - b.lastModified();
+        return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+      }
+    });
+
+    for (int i = 0; i < files.length && total > diskMaxBytes; i++) {
+      final long length = files[i].length();
+      if (files[i].delete()) {
+        total -= length;
+      }
+    }
+  }
+
+  public static String sha1Hex(String text) {
+    try {
+      final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+      final byte[] hash = digest.digest(text.getBytes("UTF-8"));
+      final StringBuilder hex = new StringBuilder(hash.length * 2);
+      for (byte b : hash) {
+        hex.append(Character.forDigit((b >> 4) & 0xf, 16));
+        hex.append(Character.forDigit(b & 0xf, 16));
+      }
+      return hex.toString();
+
+    } catch (NoSuchAlgorithmException | IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,256 @@
+package com.zplcode;
+
+import java.io.IOException;
+
+/**
+ * Etiquetas completas armadas del lado nativo, con la misma salida que
+ * Zpl.Builder: cada elemento en su linea, ^XA/^XZ en lineas aparte y el
+ * texto de los campos con ^FH\ (lo que no es letra, digito o espacio va
+ * como \XX).
+ *
+ * Las etiquetas se escriben una tras otra en el mismo buffer; clear() lo
+ * deja listo para reusarse.
+ */
+public final class ZplDocument {
+
+  /* Buffer inicial y lo que se conserva despues de clear(). */
+  public static final int INITIAL_CAPACITY = 4096;
+  public static final int MAX_RETAINED_CAPACITY = 1 << 20;
+
+  private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+  // Caracteres que van sin escapar: [a-zA-Z0-9] y los espacios de \s de JS.
+  private static final boolean[] PLAIN = new boolean[256];
+
+  static {
+    for (char c = 'a'; c <= 'z'; c++) {
+      PLAIN[c] = true;
+      PLAIN[c - 'a' + 'A'] = true;
+    }
+    for (char c = '0'; c <= '9'; c++) {
+      PLAIN[c] = true;
+    }
+    for (char c : new char[] { ' ', '\t', '\n', 0x0B, '\f', '\r', 0xA0 }) {
+      PLAIN[c] = true;
+    }
+  }
+
+  private StringBuilder zpl = new StringBuilder(INITIAL_CAPACITY);
+  private boolean format;
+  private int elements;
+  private int labels;
+
+  /**
+   * Empieza una etiqueta (en una linea nueva si ya hay otra).
+   * @param format true para encerrarla en ^XA ... ^XZ
+   */
+  public ZplDocument startLabel(boolean format) {
+    if (labels > 0) {
+      zpl.append('\n');
+    }
+    if (format) {
+      zpl.append("^XA\n");
+    }
+    this.format = format;
+    this.elements = 0;
+    return this;
+  }
+
+  public ZplDocument endLabel() {
+    if (format) {
+      zpl.append("\n^XZ");
+    }
+    labels++;
+    return this;
+  }
+
+  /* Un comando ya escrito (por ejemplo el ZPL de una imagen). */
+  public ZplDocument raw(CharSequence command) {
+    nextElement().append(command);
+    return this;
+  }
+
+  /* ^CF fuente por omision. */
+  public ZplDocument font(char font, int h, int w) {
+    nextElement().append("^CF").append(font).append(',').append(h).append(',').append(w);
+    return this;
+  }
+
+  /**
+   * ^FOx,y
+   * @param justification valor de Zpl.Builder (RIGHT, AUTO) o null
+   */
+  public ZplDocument point(int x, int y, String justification) {
+    final StringBuilder out = nextElement().append("^FO").append(x).append(',').append(y);
+    if (justification != null && !justification.isEmpty()) {
+      out.append(',').append(justification);
+    }
+    return this;
+  }
+
+  /* ^A del campo, orientacion normal. */
+  public ZplDocument fieldFont(char font, int h, int w) {
+    nextElement().append("^A").append(font).append("N,").append(h).append(',').append(w);
+    return this;
+  }
+
+  /**
+   * ^FH\^FD{prefix}{texto}^FS
+   * @param prefix sin escapar, por ejemplo "MA," del ^BQ
+   */
+  public ZplDocument field(String prefix, CharSequence text) {
+    final StringBuilder out = nextElement().append("^FH\\^FD");
+    if (prefix != null) {
+      out.append(prefix);
+    }
+    appendField(out, text);
+    out.append("^FS");
+    return this;
+  }
+
+  /**
+   * @param font 0 para usar la de ^CF
+   */
+  public ZplDocument text(int x, int y, String justification, char font, int h, int w, CharSequence text) {
+    point(x, y, justification);
+    if (font != 0) {
+      fieldFont(font, h, w);
+    }
+    return field(null, text);
+  }
+
+  /**
+   * ^FB con el interlineado de Zpl.Builder (1).
+   * @param alignment L, C, R o J
+   */
+  public ZplDocument textBlock(int x, int y, char font, int h, int w,
+                               int width, int lines, char alignment, CharSequence text) {
+    point(x, y, null);
+    if (font != 0) {
+      fieldFont(font, h, w);
+    }
+    nextElement().append("^FB").append(width).append(',').append(lines).append(",1,")
+      .append(alignment).append(",0");
+    return field(null, text);
+  }
+
+  /**
+   * @param rotation N, R, I o B
+   * @param interpretation Y o N: linea de texto bajo las barras
+   */
+  public ZplDocument barcode128(int x, int y, int moduleWidth, char rotation, int height,
+                                char interpretation, CharSequence text) {
+    point(x, y, null);
+    nextElement().append("^BY").append(moduleWidth);
+    nextElement().append("^BC").append(rotation).append(',').append(height).append(',')
+      .append(interpretation).append(",N,N");
+    return field(null, text);
+  }
+
+  /**
+   * @param model el valor que escribe Zpl.Builder
+   * @param errorLevel H, Q, M o L
+   * @param characterMode A (automatico) o M
+   */
+  public ZplDocument qrcode(int x, int y, int model, int size, char errorLevel,
+                            String characterMode, CharSequence text) {
+    nextElement().append("^FO").append(x).append(',').append(y)
+      .append("^BQN,").append(model).append(',').append(size);
+    return field(errorLevel + characterMode + ",", text);
+  }
+
+  /* ^GB: rectangulo (o linea con h = 1). */
+  public ZplDocument rectangle(int x, int y, int w, int h, int line) {
+    point(x, y, null);
+    nextElement().append("^GB").append(w).append(',').append(h).append(',').append(line).append("^FS");
+    return this;
+  }
+
+  private StringBuilder nextElement() {
+    if (elements++ > 0) {
+      zpl.append('\n');
+    }
+    return zpl;
+  }
+
+  /**
+   * Escribe el texto como lo hace formatField de JS: letras, digitos y
+   * espacios tal cual, lo demas como \ y su codigo en hex (al menos 2 digitos).
+   */
+  public static void appendField(StringBuilder out, CharSequence text) {
+    final int length = text.length();
+    for (int i = 0; i < length; i++) {
+      final char c = text.charAt(i);
+      if (c < 256) {
+        if (PLAIN[c]) {
+          out.append(c);
+        } else {
+          out.append('\\').append(HEX[c >> 4]).append(HEX[c & 0xF]);
+        }
+      } else if (isJsSpace(c)) {
+        out.append(c);
+      } else {
+        out.append('\\');
+        for (int shift = c > 0xFFF ? 12 : 8; shift >= 0; shift -= 4) {
+          out.append(HEX[(c >> shift) & 0xF]);
+        }
+      }
+    }
+  }
+
+  /* Espacios de \s fuera de Latin-1. */
+  private static boolean isJsSpace(char c) {
+    return c == 0x1680 || (c >= 0x2000 && c <= 0x200A) || c == 0x2028 || c == 0x2029
+      || c == 0x202F || c == 0x205F || c == 0x3000 || c == 0xFEFF;
+  }
+
+  /**
+   * Manda a out lo armado hasta aca y vacia el buffer; la etiqueta sigue
+   * abierta. Asi el documento no junta todo el trabajo en un String; en
+   * PrintQueue out va al buffer de la etiqueta o directo a la impresora
+   * (ver PrinterOutputStream).
+   */
+  public ZplDocument writeTo(PrinterOutputStream out) throws IOException {
+    out.write(zpl);
+    zpl.setLength(0);
+    return this;
+  }
+
+  /**
+   * Como writeTo, con el separador de un elemento nuevo que el llamador
+   * escribe directo en out (por ejemplo el ^GFA de una imagen).
+   */
+  public ZplDocument writeElementTo(PrinterOutputStream out) throws IOException {
+    nextElement();
+    return writeTo(out);
+  }
+
+  public int getLabelCount() {
+    return labels;
+  }
+
+  public int length() {
+    return zpl.length();
+  }
+
+  /**
+   * Vacia el buffer para el siguiente documento. Si crecio mucho (un lote
+   * grande) se suelta para no retener la memoria.
+   */
+  public ZplDocument clear() {
+    if (zpl.capacity() > MAX_RETAINED_CAPACITY) {
+      zpl = new StringBuilder(INITIAL_CAPACITY);
+    } else {
+      zpl.setLength(0);
+    }
+    elements = 0;
+    labels = 0;
+    format = false;
+    return this;
+  }
+
+  @Override
+  public String toString() {
+    return zpl.toString();
+  }
+}
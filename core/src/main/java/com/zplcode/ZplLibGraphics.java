@@ -0,0 +1,521 @@
+package com.zplcode;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+public class ZplLibGraphics {
+
+  /* Comandos para descargar un grafico a la memoria de la impresora. */
+  public static final String DOWNLOAD_DG = "DG";
+  public static final String DOWNLOAD_DY = "DY";
+
+  /* Formatos de los datos del grafico. */
+  public static final String ENCODING_Z64 = "Z64";
+  public static final String ENCODING_B64 = "B64";
+  public static final String ENCODING_ACS = "ACS";
+  /* Prueba todos y usa el mas corto. */
+  public static final String ENCODING_AUTO = "auto";
+
+  private static final String[] AUTO_ENCODINGS = { ENCODING_ACS, ENCODING_Z64, ENCODING_B64 };
+  // ~DY no acepta hex ASCII comprimido.
+  private static final String[] DY_ENCODINGS = { ENCODING_Z64, ENCODING_B64 };
+
+  public final PixelImage pixels;
+
+  public final int threshold;
+  public final RasterPipeline pipeline;
+  protected Integer x;
+  protected Integer y;
+  protected ForkJoinPool pool;
+  protected ArrayPool arrays = ArrayPool.DEFAULT;
+  protected ConversionMetrics metrics;
+  protected char device = 'R';
+  protected String downloadCommand = DOWNLOAD_DG;
+  protected String encoding = ENCODING_Z64;
+  protected int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+  protected int compressionStrategy = Deflater.DEFAULT_STRATEGY;
+
+  public ZplLibGraphics(PixelImage pixels, int threshold) {
+    this(pixels, new RasterPipeline(threshold));
+  }
+
+  public ZplLibGraphics(PixelImage pixels, RasterPipeline pipeline) {
+    this.pixels = pixels;
+    this.pipeline = pipeline;
+    this.threshold = pipeline.threshold;
+  }
+
+  public void setPoint(Integer x, Integer y) {
+    this.x = x;
+    this.y = y;
+  }
+
+  /* Pool para empaquetar el raster por franjas, null para un solo hilo. */
+  public void setPool(ForkJoinPool pool) {
+    this.pool = pool;
+  }
+
+  /* Arreglos para el raster y los buffers de salida, null para no reusarlos. */
+  public void setArrayPool(ArrayPool arrays) {
+    this.arrays = arrays;
+  }
+
+  /* Tiempos por etapa y tamanos de lo que se escribe, null para no medir. */
+  public void setMetrics(ConversionMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * Donde se guarda el grafico en getCachedZplCode.
+   * @param device R (RAM), E (flash), B o A
+   * @param downloadCommand DOWNLOAD_DG o DOWNLOAD_DY
+   */
+  public void setStorage(char device, String downloadCommand) {
+    if ("REBA".indexOf(device) < 0) {
+      throw new IllegalArgumentException("Unknown storage device '" + device + "'");
+    }
+    if (!DOWNLOAD_DG.equals(downloadCommand) && !DOWNLOAD_DY.equals(downloadCommand)) {
+      throw new IllegalArgumentException("Unknown download command '" + downloadCommand + "'");
+    }
+    this.device = device;
+    this.downloadCommand = downloadCommand;
+  }
+
+  /**
+   * Formato de los datos del ^GFA/~DG.
+   * @param encoding ENCODING_Z64 (zlib + Base64), ENCODING_B64 (Base64 sin
+   * comprimir), ENCODING_ACS (hex ASCII comprimido) o ENCODING_AUTO
+   */
+  public void setEncoding(String encoding) {
+    if (!ENCODING_Z64.equals(encoding) && !ENCODING_B64.equals(encoding)
+      && !ENCODING_ACS.equals(encoding) && !ENCODING_AUTO.equals(encoding)) {
+      throw new IllegalArgumentException("Unknown encoding '" + encoding + "'");
+    }
+    this.encoding = encoding;
+  }
+
+  /**
+   * Compresion de Z64 y de deflate().
+   * @param level Deflater.DEFAULT_COMPRESSION, 1 (mas rapido) a 9 (mas chico)
+   * @param strategy Deflater.DEFAULT_STRATEGY, FILTERED o HUFFMAN_ONLY
+   */
+  public void setCompression(int level, int strategy) {
+    Deflaters.checkLevel(level);
+    Deflaters.checkStrategy(strategy);
+    this.compressionLevel = level;
+    this.compressionStrategy = strategy;
+  }
+
+  public String getBodyHeader(boolean insideFormat, int bytesPerRow, int binaryByteCount) {
+    StringBuilder result = new StringBuilder();
+
+    if (!insideFormat) result.append("^XA");
+
+    if (x != null && y != null) {
+      result.append("^FO").append(x).append(",").append(y);
+    }
+
+    result.append("^GFA").append(",");
+    result.append(binaryByteCount).append(",");
+    result.append(binaryByteCount).append(",");
+    result.append(bytesPerRow).append(",");
+
+    return result.toString();
+  }
+
+  /**
+   *  Reads in a sequence of bytes and prints out its 16 bit
+   *  Cylcic Redundancy Check (CRC-CCIIT 0xFFFF).
+   *
+   *  1 + x + x^5 + x^12 + x^16 is irreducible polynomial.
+   *
+   */
+  public static String getCRCHexString(String bytes)
+  {
+    final Crc16 crc = new Crc16();
+    crc.update(bytes);
+    return crc.toHexString();
+  }
+
+
+  /**
+   * Comprime con el algoritmo zlib que es una abstracción
+   * del algoritmo DEFLATE.
+   *
+   * @param data datos a comprimir
+   * @return datos comprimidos
+   *
+   * @throws java.io.IOException
+   */
+  public byte[] deflate(byte[] data) throws IOException {
+    final Deflater deflater = Deflaters.obtain(compressionLevel, compressionStrategy);
+    try {
+      // Un raster de 1 bit suele comprimir mucho, no se reserva todo el tamano.
+      final ByteArrayOutputStream compressedImage = new ByteArrayOutputStream(
+        Math.max(64, data.length / 8));
+
+      final DeflaterOutputStream deflaterOutputStream =
+        new DeflaterOutputStream(compressedImage, deflater, 4096);
+      deflaterOutputStream.write(data, 0, data.length);
+      deflaterOutputStream.finish();
+
+      return compressedImage.toByteArray();
+
+    } finally {
+      Deflaters.release(deflater);
+    }
+  }
+
+  public String getZplCode(boolean insideFormat) throws IOException {
+    final PooledOutputStream zpl = new PooledOutputStream(getArrays(),
+      pixels.getBytesPerRow() * pixels.getHeight() / 2 + 64);
+    try {
+      writeZplCode(zpl, insideFormat);
+      return zpl.toString("US-ASCII");
+    } finally {
+      zpl.release();
+    }
+  }
+
+  /**
+   * Escribe el ^GFA directo al stream: raster -> deflate -> Base64 -> CRC
+   * (o el formato de setEncoding).
+   *
+   * Sin pool las filas se empaquetan y comprimen una por una, asi que la
+   * memoria no depende del tamano de la imagen. El stream no se cierra.
+   */
+  public void writeZplCode(OutputStream out, boolean insideFormat) throws IOException {
+    final int height = pixels.getHeight();
+
+    final int bytesPerRow = pixels.getBytesPerRow();
+    // Cada fila ocupa bytes enteros: con un ancho que no es multiplo de 8
+    // width * height / 8 se queda corto y la impresora corta las ultimas filas.
+    final int binaryByteCount = bytesPerRow * height;
+
+    writeAscii(out, getBodyHeader(insideFormat, bytesPerRow, binaryByteCount));
+    writeData(out, null, 0, bytesPerRow, AUTO_ENCODINGS);
+    if (!insideFormat) writeAscii(out, "^XZ");
+  }
+
+  /**
+   * Como writeCachedZplCode sin marcar nada: quien manda el texto a la
+   * impresora no avisa si llego, asi que el grafico queda pendiente y la
+   * descarga se repite hasta que se llame registry.markPendingSent.
+   */
+  public String getCachedZplCode(GraphicRegistry registry, String printer, boolean insideFormat) throws IOException {
+    final PooledOutputStream zpl = new PooledOutputStream(getArrays(), 256);
+    try {
+      final GraphicRegistry.Downloads downloads = registry.newDownloads();
+      writeCachedZplCode(zpl, downloads, printer, insideFormat);
+      downloads.pending();
+      return zpl.toString("US-ASCII");
+    } finally {
+      zpl.release();
+    }
+  }
+
+  /**
+   * La primera vez que la imagen va a esa impresora la descarga con ~DG/~DY
+   * bajo un nombre derivado de su contenido; despues solo escribe ^XG.
+   *
+   * El grafico no queda marcado como enviado: se agrega a downloads, y quien
+   * lo manda llama downloads.sent() cuando la impresora lo recibio o
+   * downloads.failed() si el envio fallo.
+   *
+   * @param downloads graficos descargados en esta etiqueta
+   * @param printer identificador de la impresora
+   */
+  public void writeCachedZplCode(OutputStream out, GraphicRegistry.Downloads downloads, String printer,
+                                 boolean insideFormat) throws IOException {
+    final int length = pixels.getBytesPerRow() * pixels.getHeight();
+    final byte[] raster = pipeline.getRasterBytes(pixels, pool, getArrays().obtainBytes(length), metrics);
+    final String path;
+    try {
+      start(ConversionMetrics.CRC);
+      final String name = getGraphicName(raster, length, pixels.getBytesPerRow());
+      final long fingerprint = getGraphicFingerprint(raster, length);
+      stop();
+      path = device + ":" + name + ".GRF";
+
+      final boolean download = !downloads.getRegistry().isSent(printer, path, fingerprint);
+      if (metrics != null) {
+        metrics.setGraphicReused(!download);
+      }
+      if (download) {
+        writeDownloadGraphic(out, name, raster, length);
+        downloads.add(printer, path, fingerprint);
+      }
+    } finally {
+      getArrays().release(raster);
+    }
+
+    if (!insideFormat) writeAscii(out, "^XA");
+    if (x != null && y != null) {
+      writeAscii(out, "^FO" + x + "," + y);
+    }
+    writeAscii(out, "^XG" + path + ",1,1^FS");
+    if (!insideFormat) writeAscii(out, "^XZ");
+  }
+
+  /**
+   * ~DGR:NOMBRE.GRF,total,bytesPorFila,:Z64:...
+   * ~DYR:NOMBRE,A,G,total,bytesPorFila,:Z64:...
+   * ~DY solo acepta datos Z64/B64, con ACS se usa Z64.
+   */
+  public void writeDownloadGraphic(OutputStream out, String name, byte[] raster) throws IOException {
+    writeDownloadGraphic(out, name, raster, raster.length);
+  }
+
+  private void writeDownloadGraphic(OutputStream out, String name, byte[] raster, int length) throws IOException {
+    final int bytesPerRow = pixels.getBytesPerRow();
+    final int total = bytesPerRow * pixels.getHeight();
+
+    if (DOWNLOAD_DY.equals(downloadCommand)) {
+      writeAscii(out, "~DY" + device + ":" + name + ",A,G," + total + "," + bytesPerRow + ",");
+    } else {
+      writeAscii(out, "~DG" + device + ":" + name + ".GRF," + total + "," + bytesPerRow + ",");
+    }
+    writeData(out, raster, length, bytesPerRow,
+      DOWNLOAD_DY.equals(downloadCommand) ? DY_ENCODINGS : AUTO_ENCODINGS);
+    writeAscii(out, "\n");
+  }
+
+  /**
+   * Nombre estable para la impresora: 8 caracteres hex de la CRC32 del
+   * raster y su ancho.
+   */
+  public static String getGraphicName(byte[] raster, int bytesPerRow) {
+    return getGraphicName(raster, raster.length, bytesPerRow);
+  }
+
+  /* Con los primeros length bytes de un arreglo mas grande (de un ArrayPool). */
+  public static String getGraphicName(byte[] raster, int length, int bytesPerRow) {
+    final CRC32 crc = new CRC32();
+    crc.update(bytesPerRow >>> 8);
+    crc.update(bytesPerRow);
+    crc.update(raster, 0, length);
+    return String.format(Locale.US, "%08X", crc.getValue());
+  }
+
+  /**
+   * Largo y Adler32 del raster, para GraphicRegistry: dos rasters con el
+   * mismo nombre casi nunca coinciden tambien en esto.
+   */
+  public static long getGraphicFingerprint(byte[] raster, int length) {
+    final Adler32 adler = new Adler32();
+    adler.update(raster, 0, length);
+    return ((long) length << 32) | adler.getValue();
+  }
+
+  /**
+   * Datos de un ^GFA con el formato de setEncoding, para un raster que no es
+   * el de la imagen (por ejemplo un pedazo).
+   * @param bytesPerRow bytes por fila de raster
+   */
+  protected void writeData(OutputStream out, byte[] raster, int bytesPerRow) throws IOException {
+    writeData(out, raster, raster.length, bytesPerRow, AUTO_ENCODINGS);
+  }
+
+  /* Con los primeros length bytes de raster. */
+  protected void writeData(OutputStream out, byte[] raster, int length, int bytesPerRow) throws IOException {
+    writeData(out, raster, length, bytesPerRow, AUTO_ENCODINGS);
+  }
+
+  /**
+   * Datos del grafico en el formato de setEncoding.
+   * @param raster null para empaquetar las filas del pipeline al vuelo
+   * @param length bytes de raster que se usan
+   * @param allowed formatos que acepta el comando; si el elegido no esta se
+   * usa el primero
+   */
+  private void writeData(OutputStream out, byte[] raster, int length, int bytesPerRow,
+                         String[] allowed) throws IOException {
+    if (metrics == null) {
+      writeEncodedData(out, raster, length, bytesPerRow, allowed);
+      return;
+    }
+
+    // Lo que sale a out se cuenta como escritura.
+    final TimedOutputStream timed = new TimedOutputStream(out, metrics, ConversionMetrics.WRITE);
+    writeEncodedData(timed, raster, length, bytesPerRow, allowed);
+    metrics.addRasterBytes(raster != null ? length : (long) bytesPerRow * pixels.getHeight());
+    metrics.addOutputBytes(timed.getCount());
+  }
+
+  private void writeEncodedData(OutputStream out, byte[] raster, int length, int bytesPerRow,
+                                String[] allowed) throws IOException {
+    if (!ENCODING_AUTO.equals(encoding)) {
+      writeData(out, Arrays.asList(allowed).contains(encoding) ? encoding : allowed[0],
+        raster, length, bytesPerRow);
+      return;
+    }
+
+    // Todos los formatos salen del mismo raster; en empate gana el primero.
+    final ArrayPool arrays = getArrays();
+    final byte[] own;
+    if (raster == null) {
+      length = pixels.getBytesPerRow() * pixels.getHeight();
+      own = pipeline.getRasterBytes(pixels, pool, arrays.obtainBytes(length), metrics);
+      raster = own;
+    } else {
+      own = null;
+    }
+
+    PooledOutputStream best = null;
+    try {
+      for (String candidate : allowed) {
+        final PooledOutputStream data = new PooledOutputStream(arrays,
+          best != null ? best.size() : length);
+        writeData(data, candidate, raster, length, bytesPerRow);
+        if (best == null || data.size() < best.size()) {
+          if (best != null) {
+            best.release();
+          }
+          best = data;
+        } else {
+          data.release();
+        }
+      }
+      best.writeTo(out);
+    } finally {
+      if (best != null) {
+        best.release();
+      }
+      arrays.release(own);
+    }
+  }
+
+  private void writeData(OutputStream out, String encoding, byte[] raster, int length,
+                         int bytesPerRow) throws IOException {
+    if (ENCODING_ACS.equals(encoding)) {
+      writeAcs(out, raster, length, bytesPerRow);
+    } else if (ENCODING_B64.equals(encoding)) {
+      writeB64(out, raster, length);
+    } else {
+      writeZ64(out, raster, length);
+    }
+  }
+
+  /**
+   * :Z64:datos:crc
+   * @param raster null para empaquetar las filas del pipeline al vuelo
+   */
+  private void writeZ64(OutputStream out, byte[] raster, int length) throws IOException {
+    writeAscii(out, ":Z64:");
+
+    final Base64OutputStream z64 = new Base64OutputStream(out);
+    z64.setMetrics(metrics);
+    final Deflater deflater = Deflaters.obtain(compressionLevel, compressionStrategy);
+    try {
+      // LZ77 compression
+      final DeflaterOutputStream deflate =
+        new DeflaterOutputStream(timed(z64, ConversionMetrics.BASE64), deflater, 4096);
+      writeRaster(timed(deflate, ConversionMetrics.DEFLATE), raster, length);
+      start(ConversionMetrics.DEFLATE);
+      deflate.finish();
+      stop();
+      start(ConversionMetrics.BASE64);
+      z64.finish();
+      stop();
+      if (metrics != null) {
+        metrics.addCompressedBytes(deflater.getBytesWritten());
+      }
+    } finally {
+      Deflaters.release(deflater);
+    }
+
+    writeAscii(out, ":");
+    writeAscii(out, z64.getCrc().toHexString());
+  }
+
+  /* :B64:datos:crc, sin comprimir. */
+  private void writeB64(OutputStream out, byte[] raster, int length) throws IOException {
+    writeAscii(out, ":B64:");
+
+    final Base64OutputStream b64 = new Base64OutputStream(out);
+    b64.setMetrics(metrics);
+    writeRaster(timed(b64, ConversionMetrics.BASE64), raster, length);
+    start(ConversionMetrics.BASE64);
+    b64.finish();
+    stop();
+
+    writeAscii(out, ":");
+    writeAscii(out, b64.getCrc().toHexString());
+  }
+
+  /* Hex ASCII con la compresion de Zebra, fila por fila. */
+  private void writeAcs(OutputStream out, byte[] raster, int length, int bytesPerRow) throws IOException {
+    final AsciiHexOutputStream acs = new AsciiHexOutputStream(out, bytesPerRow);
+    writeRaster(timed(acs, ConversionMetrics.HEX), raster, length);
+    start(ConversionMetrics.HEX);
+    acs.finish();
+    stop();
+  }
+
+  private void writeRaster(OutputStream out, byte[] raster, int length) throws IOException {
+    if (raster != null) {
+      out.write(raster, 0, length);
+    } else if (pool != null && pipeline.isRowIndependent()) {
+      final ArrayPool arrays = getArrays();
+      length = pixels.getBytesPerRow() * pixels.getHeight();
+      raster = pipeline.getRasterBytes(pixels, pool, arrays.obtainBytes(length), metrics);
+      try {
+        out.write(raster, 0, length);
+      } finally {
+        arrays.release(raster);
+      }
+    } else {
+      pipeline.writeRaster(pixels, out, metrics);
+    }
+  }
+
+  /* Igual que writeZplCode(OutputStream), por ejemplo a un socket o archivo. */
+  public void writeZplCode(WritableByteChannel channel, boolean insideFormat) throws IOException {
+    final OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 8192);
+    writeZplCode(out, insideFormat);
+    out.flush();
+  }
+
+  /* out medido como la etapa stage, o el mismo out si no se mide. */
+  protected OutputStream timed(OutputStream out, int stage) {
+    return metrics != null ? new TimedOutputStream(out, metrics, stage) : out;
+  }
+
+  protected void start(int stage) {
+    if (metrics != null) {
+      metrics.start(stage);
+    }
+  }
+
+  protected void stop() {
+    if (metrics != null) {
+      metrics.stop();
+    }
+  }
+
+  /* El pool de setArrayPool, o uno vacio que no guarda nada. */
+  protected ArrayPool getArrays() {
+    return arrays != null ? arrays : ArrayPool.NONE;
+  }
+
+  protected static void writeAscii(OutputStream out, String text) throws IOException {
+    final byte[] bytes = new byte[text.length()];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) text.charAt(i);
+    }
+    out.write(bytes, 0, bytes.length);
+  }
+
+
+}
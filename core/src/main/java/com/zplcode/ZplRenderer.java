@@ -0,0 +1,747 @@
+package com.zplcode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Interpreta ZPL y lo pinta en un raster de 1 bit: para ver una etiqueta
+ * sin impresora y para comprobar que lo que genera la libreria se imprime
+ * como se espera.
+ *
+ * Soporta lo que escriben ZplLibGraphics, TiledZplGraphics y el builder de
+ * JS:
+ *  - ^PW ^LL ^LH ^FO ^FT ^FS ^FR ^LR
+ *  - ^GB y ^GFA (hex con la compresion ACS, :Z64: y :B64:, con su CRC)
+ *  - ~DG ~DY y ^XG (los graficos descargados quedan entre llamadas a render)
+ *  - ^CF ^A ^FH ^FD ^FB, con una fuente de 5x7 escalada (BitmapFont)
+ *  - ^BY ^BC (Code 128) y ^BQ (QR)
+ *
+ * Solo orientacion normal (N); los demas comandos se ignoran. Los graficos y
+ * las barras quedan exactos; el texto es aproximado.
+ */
+public final class ZplRenderer {
+
+  /* Fuente por omision de la impresora: A de 9x5. */
+  private static final char DEFAULT_FONT = 'A';
+  private static final int DEFAULT_FONT_HEIGHT = 9;
+  private static final int DEFAULT_FONT_WIDTH = 5;
+
+  /* ^BY por omision. */
+  private static final int DEFAULT_MODULE_WIDTH = 2;
+  private static final int DEFAULT_BAR_HEIGHT = 10;
+
+  /* Magnificacion del ^BQ por omision (impresora de 203 dpi). */
+  private static final int DEFAULT_QR_MAGNIFICATION = 2;
+
+  private static final int[] BASE64 = new int[128];
+
+  static {
+    Arrays.fill(BASE64, -1);
+    final String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+    for (int i = 0; i < alphabet.length(); i++) {
+      BASE64[alphabet.charAt(i)] = i;
+    }
+  }
+
+  /* Tamano de la etiqueta si el ZPL no trae ^PW/^LL. */
+  public final int width;
+  public final int height;
+
+  // ~DG/~DY por nombre (R:NOMBRE.GRF).
+  private final Map<String, Graphic> graphics = new HashMap<>();
+
+  private MonoRaster raster;
+
+  // Estado del formato (^XA .. ^XZ).
+  private int homeX;
+  private int homeY;
+  private char defaultFont;
+  private int defaultFontHeight;
+  private int defaultFontWidth;
+  private int moduleWidth;
+  private int barHeight;
+  private boolean reverseAll;
+
+  // Estado del campo (hasta ^FS).
+  private int fieldX;
+  private int fieldY;
+  private boolean typeset;
+  private boolean reverse;
+  private char font;
+  private int fontHeight;
+  private int fontWidth;
+  private char hexEscape;
+  private int blockWidth;
+  private int blockLines;
+  private int blockSpacing;
+  private char blockJustification;
+  private String barcode;
+  private String[] barcodeParams;
+  private String data;
+
+  /**
+   * @param width ancho de la etiqueta en puntos, si el ZPL no trae ^PW
+   * @param height largo de la etiqueta en puntos, si el ZPL no trae ^LL
+   */
+  public ZplRenderer(int width, int height) {
+    if (width <= 0 || height <= 0) {
+      throw new IllegalArgumentException("bad label size " + width + "x" + height);
+    }
+    this.width = width;
+    this.height = height;
+  }
+
+  /**
+   * Pinta el ZPL en una imagen nueva. Si hay varios ^XA..^XZ se pintan
+   * todos en la misma imagen.
+   * @throws IllegalArgumentException si los datos de un ^GF/~DG estan corruptos
+   */
+  public MonoRaster render(String zpl) {
+    return render(zpl, width, height);
+  }
+
+  /**
+   * @param width ancho de la etiqueta en puntos, si el ZPL no trae ^PW
+   * @param height largo de la etiqueta en puntos, si el ZPL no trae ^LL
+   */
+  public MonoRaster render(String zpl, int width, int height) {
+    // La impresora ignora los saltos de linea (el Base64 de Z64 los trae).
+    final List<String> codes = new ArrayList<>();
+    final List<String> params = new ArrayList<>();
+    tokenize(zpl.replace("\r", "").replace("\n", ""), codes, params);
+
+    int labelWidth = width;
+    int labelHeight = height;
+    for (int i = 0; i < codes.size(); i++) {
+      if ("PW".equals(codes.get(i))) {
+        labelWidth = toInt(params.get(i), labelWidth);
+      } else if ("LL".equals(codes.get(i))) {
+        labelHeight = toInt(params.get(i), labelHeight);
+      }
+    }
+
+    raster = new MonoRaster(labelWidth, labelHeight);
+    startFormat();
+    for (int i = 0; i < codes.size(); i++) {
+      execute(codes.get(i), params.get(i));
+    }
+
+    final MonoRaster result = raster;
+    raster = null;
+    return result;
+  }
+
+  /* Olvida los graficos de ~DG/~DY. */
+  public void clearGraphics() {
+    graphics.clear();
+  }
+
+  /**
+   * Separa los comandos: ^ o ~ mas dos letras (^A lleva la fuente pegada) y
+   * sus parametros hasta el siguiente ^ o ~.
+   */
+  private static void tokenize(String zpl, List<String> codes, List<String> params) {
+    final int length = zpl.length();
+    int i = 0;
+    while (i < length) {
+      final char prefix = zpl.charAt(i);
+      if ((prefix != '^' && prefix != '~') || i + 1 >= length) {
+        i++;
+        continue;
+      }
+
+      final char first = Character.toUpperCase(zpl.charAt(i + 1));
+      final String code;
+      int start;
+      if (prefix == '^' && first == 'A') {
+        final boolean downloaded = i + 2 < length && zpl.charAt(i + 2) == '@';
+        code = downloaded ? "A@" : "A";
+        start = i + (downloaded ? 3 : 2);
+      } else if (i + 2 < length) {
+        code = "" + first + Character.toUpperCase(zpl.charAt(i + 2));
+        start = i + 3;
+      } else {
+        break;
+      }
+
+      int end = start;
+      while (end < length && zpl.charAt(end) != '^' && zpl.charAt(end) != '~') {
+        end++;
+      }
+      codes.add(code);
+      params.add(zpl.substring(start, end));
+      i = end;
+    }
+  }
+
+  private void execute(String code, String params) {
+    switch (code) {
+      case "XA":
+        startFormat();
+        break;
+      case "XZ":
+        resetField();
+        break;
+      case "LH": {
+        final String[] p = params.split(",", -1);
+        homeX = toInt(p, 0, homeX);
+        homeY = toInt(p, 1, homeY);
+        break;
+      }
+      case "LR":
+        reverseAll = params.startsWith("Y");
+        break;
+      case "CF": {
+        final String[] p = params.split(",", -1);
+        if (!p[0].isEmpty()) {
+          defaultFont = Character.toUpperCase(p[0].charAt(0));
+        }
+        if (p.length > 1 && !p[1].trim().isEmpty()) {
+          defaultFontHeight = toInt(p, 1, defaultFontHeight);
+          defaultFontWidth = toInt(p, 2, getProportionalWidth(defaultFont, defaultFontHeight));
+        } else {
+          defaultFontWidth = toInt(p, 2, defaultFontWidth);
+        }
+        break;
+      }
+      case "A":
+      case "A@": {
+        final String[] p = params.split(",", -1);
+        font = "A@".equals(code) || p[0].isEmpty() ? '0' : Character.toUpperCase(p[0].charAt(0));
+        fontHeight = toInt(p, 1, defaultFontHeight);
+        fontWidth = toInt(p, 2, getProportionalWidth(font, fontHeight));
+        break;
+      }
+      case "FO":
+      case "FT": {
+        final String[] p = params.split(",", -1);
+        fieldX = homeX + toInt(p, 0, 0);
+        fieldY = homeY + toInt(p, 1, 0);
+        typeset = "FT".equals(code);
+        break;
+      }
+      case "FR":
+        reverse = true;
+        break;
+      case "FH":
+        hexEscape = params.isEmpty() ? '_' : params.charAt(0);
+        break;
+      case "FB": {
+        final String[] p = params.split(",", -1);
+        blockWidth = toInt(p, 0, 0);
+        blockLines = Math.max(1, toInt(p, 1, 1));
+        blockSpacing = toInt(p, 2, 0);
+        blockJustification = p.length > 3 && !p[3].isEmpty() ? Character.toUpperCase(p[3].charAt(0)) : 'L';
+        break;
+      }
+      case "BY": {
+        final String[] p = params.split(",", -1);
+        moduleWidth = Math.max(1, toInt(p, 0, moduleWidth));
+        barHeight = toInt(p, 2, barHeight);
+        break;
+      }
+      case "BC":
+      case "BQ":
+        barcode = code;
+        barcodeParams = params.split(",", -1);
+        break;
+      case "FD":
+      case "FV":
+        data = decodeField(params);
+        break;
+      case "FS":
+        drawField();
+        resetField();
+        break;
+      case "GB":
+        drawBox(params.split(",", -1));
+        break;
+      case "GF":
+        drawGraphicField(params.split(",", 5));
+        break;
+      case "XG":
+        drawStoredGraphic(params.split(",", -1));
+        break;
+      case "DG":
+        storeGraphic(params.split(",", 4), 0);
+        break;
+      case "DY":
+        storeGraphic(params.split(",", 6), 2);
+        break;
+      default:
+        // Comando que no cambia el raster o no soportado.
+        break;
+    }
+  }
+
+  private void startFormat() {
+    homeX = 0;
+    homeY = 0;
+    defaultFont = DEFAULT_FONT;
+    defaultFontHeight = DEFAULT_FONT_HEIGHT;
+    defaultFontWidth = DEFAULT_FONT_WIDTH;
+    moduleWidth = DEFAULT_MODULE_WIDTH;
+    barHeight = DEFAULT_BAR_HEIGHT;
+    reverseAll = false;
+    resetField();
+  }
+
+  private void resetField() {
+    typeset = false;
+    reverse = false;
+    font = 0;
+    fontHeight = 0;
+    fontWidth = 0;
+    hexEscape = 0;
+    blockWidth = 0;
+    barcode = null;
+    barcodeParams = null;
+    data = null;
+  }
+
+  private int getMode() {
+    return reverse || reverseAll ? MonoRaster.REVERSE : MonoRaster.BLACK;
+  }
+
+  /* ----- Graficos ----- */
+
+  /* ^GBancho,alto,grosor,color: el ancho y el alto son al menos el grosor. */
+  private void drawBox(String[] p) {
+    final int thickness = Math.max(1, toInt(p, 2, 1));
+    final int w = Math.max(thickness, toInt(p, 0, thickness));
+    final int h = Math.max(thickness, toInt(p, 1, thickness));
+    final boolean white = p.length > 3 && p[3].trim().toUpperCase(Locale.US).startsWith("W");
+    final int mode = reverse || reverseAll ? MonoRaster.REVERSE : white ? MonoRaster.WHITE : MonoRaster.BLACK;
+    final int x = fieldX;
+    final int y = typeset ? fieldY - h : fieldY;
+
+    if (thickness * 2 >= w || thickness * 2 >= h) {
+      raster.fillRect(x, y, w, h, mode);
+      return;
+    }
+    // Cuatro lados sin encimarse (con ^FR se invertirian dos veces).
+    raster.fillRect(x, y, w, thickness, mode);
+    raster.fillRect(x, y + h - thickness, w, thickness, mode);
+    raster.fillRect(x, y + thickness, thickness, h - 2 * thickness, mode);
+    raster.fillRect(x + w - thickness, y + thickness, thickness, h - 2 * thickness, mode);
+  }
+
+  /* ^GFformato,bytes,total,bytesPorFila,datos: las filas son total / bytesPorFila. */
+  private void drawGraphicField(String[] p) {
+    if (p.length < 5) {
+      return;
+    }
+    final char format = p[0].isEmpty() ? 'A' : Character.toUpperCase(p[0].charAt(0));
+    final int bytesPerRow = toInt(p, 3, 0);
+    final int total = toInt(p, 2, 0);
+    if (bytesPerRow <= 0 || total < bytesPerRow || (format != 'A' && format != 'B')) {
+      return;
+    }
+
+    final int rows = total / bytesPerRow;
+    final byte[] bits = decodeGraphic(p[4], bytesPerRow * rows, bytesPerRow, format == 'B');
+    raster.drawRaster(bits, bytesPerRow, bytesPerRow * 8, rows,
+      fieldX, typeset ? fieldY - rows : fieldY, 1, 1, getMode());
+  }
+
+  /* ^XGR:NOMBRE.GRF,mx,my */
+  private void drawStoredGraphic(String[] p) {
+    final Graphic graphic = graphics.get(getGraphicPath(p[0]));
+    if (graphic == null) {
+      return;
+    }
+    final int scaleX = Math.max(1, toInt(p, 1, 1));
+    final int scaleY = Math.max(1, toInt(p, 2, 1));
+    final int rows = graphic.bits.length / graphic.bytesPerRow;
+    raster.drawRaster(graphic.bits, graphic.bytesPerRow, graphic.bytesPerRow * 8, rows,
+      fieldX, typeset ? fieldY - rows * scaleY : fieldY, scaleX, scaleY, getMode());
+  }
+
+  /**
+   * ~DGR:NOMBRE.GRF,total,bytesPorFila,datos
+   * ~DYR:NOMBRE,formato,extension,total,bytesPorFila,datos
+   * @param skip parametros entre el nombre y el total (formato y extension de ~DY)
+   */
+  private void storeGraphic(String[] p, int skip) {
+    if (p.length < 4 + skip) {
+      return;
+    }
+    String path = p[0];
+    boolean binary = false;
+    if (skip > 0) {
+      // ~DY: solo graficos (extension G), los datos en hex/Z64/B64 (A) o binarios (B).
+      if (!p[2].trim().toUpperCase(Locale.US).startsWith("G")) {
+        return;
+      }
+      binary = p[1].trim().toUpperCase(Locale.US).startsWith("B");
+      path += ".GRF";
+    }
+
+    final int total = toInt(p, 1 + skip, 0);
+    final int bytesPerRow = toInt(p, 2 + skip, 0);
+    if (bytesPerRow <= 0 || total < bytesPerRow) {
+      return;
+    }
+    final int length = total / bytesPerRow * bytesPerRow;
+    graphics.put(getGraphicPath(path),
+      new Graphic(decodeGraphic(p[3 + skip], length, bytesPerRow, binary), bytesPerRow));
+  }
+
+  /* R:NOMBRE.GRF en mayusculas, con R: y .GRF si faltan. */
+  private static String getGraphicPath(String name) {
+    String path = name.trim().toUpperCase(Locale.US);
+    if (path.indexOf(':') < 0) {
+      path = "R:" + path;
+    }
+    if (path.indexOf('.') < 0) {
+      path += ".GRF";
+    }
+    return path;
+  }
+
+  private static final class Graphic {
+    final byte[] bits;
+    final int bytesPerRow;
+
+    Graphic(byte[] bits, int bytesPerRow) {
+      this.bits = bits;
+      this.bytesPerRow = bytesPerRow;
+    }
+  }
+
+  /**
+   * Raster de los datos de un ^GF/~DG. Lo que falta queda en blanco y lo que
+   * sobra se ignora, como en la impresora.
+   * @param length bytes del raster
+   */
+  public static byte[] decodeGraphic(String data, int length, int bytesPerRow, boolean binary) {
+    final byte[] bits = new byte[length];
+    if (binary) {
+      for (int i = 0; i < length && i < data.length(); i++) {
+        bits[i] = (byte) data.charAt(i);
+      }
+    } else if (data.startsWith(":Z64:") || data.startsWith(":B64:")) {
+      // :Z64:datos:crc, la CRC es sobre el texto en Base64.
+      final int end = data.indexOf(':', 5);
+      final String encoded = end < 0 ? data.substring(5) : data.substring(5, end);
+      final String crc = end < 0 ? "" : data.substring(end + 1).trim();
+      if (!crc.isEmpty() && !checkCrc(encoded, toInt(crc, 16, -1))) {
+        throw new IllegalArgumentException("CRC mismatch in " + data.substring(0, 5) + " data");
+      }
+
+      final byte[] decoded = decodeBase64(encoded);
+      if (data.startsWith(":Z64:")) {
+        inflate(decoded, bits);
+      } else {
+        System.arraycopy(decoded, 0, bits, 0, Math.min(decoded.length, length));
+      }
+    } else {
+      decodeHex(data, bits, bytesPerRow);
+    }
+    return bits;
+  }
+
+  /**
+   * La CRC se acepta sobre el texto sin saltos de linea o con las lineas de
+   * 76 caracteres de Base64OutputStream (los saltos ya se quitaron).
+   */
+  private static boolean checkCrc(String encoded, int expected) {
+    final Crc16 crc = new Crc16();
+    crc.update(encoded);
+    if (crc.getValue() == expected) {
+      return true;
+    }
+
+    crc.reset();
+    for (int i = 0; i < encoded.length(); i += 76) {
+      crc.update(encoded.subSequence(i, Math.min(encoded.length(), i + 76)));
+      crc.update('\n');
+    }
+    return crc.getValue() == expected;
+  }
+
+  /**
+   * Hex con la compresion ACS (la inversa de AsciiHexOutputStream): ':'
+   * repite la fila anterior, ',' y '!' llenan el resto de la fila con 0 o F
+   * y G..Y / g..z son cuentas de repeticion del siguiente digito.
+   */
+  private static void decodeHex(String data, byte[] bits, int bytesPerRow) {
+    final int rows = bits.length / bytesPerRow;
+    final int nibbles = bytesPerRow * 2;
+    int row = 0;
+    int nibble = 0;
+    int count = 0;
+
+    for (int i = 0; i < data.length() && row < rows; i++) {
+      final char c = data.charAt(i);
+      if (c >= 'G' && c <= 'Y') {
+        count += c - 'G' + 1;
+        continue;
+      } else if (c >= 'g' && c <= 'z') {
+        count += (c - 'g' + 1) * 20;
+        continue;
+      } else if (c == ':') {
+        if (row > 0) {
+          System.arraycopy(bits, (row - 1) * bytesPerRow, bits, row * bytesPerRow, bytesPerRow);
+        }
+        row++;
+        nibble = 0;
+        count = 0;
+        continue;
+      } else if (c == ',' || c == '!') {
+        if (c == '!') {
+          for (; nibble < nibbles; nibble++) {
+            setNibble(bits, row * bytesPerRow, nibble, 0xF);
+          }
+        }
+        row++;
+        nibble = 0;
+        count = 0;
+        continue;
+      }
+
+      final int value = Character.digit(c, 16);
+      if (value < 0) {
+        // Espacios u otros separadores.
+        continue;
+      }
+      for (int n = Math.max(1, count); n > 0 && row < rows; n--) {
+        setNibble(bits, row * bytesPerRow, nibble, value);
+        if (++nibble == nibbles) {
+          row++;
+          nibble = 0;
+        }
+      }
+      count = 0;
+    }
+  }
+
+  private static void setNibble(byte[] bits, int offset, int nibble, int value) {
+    bits[offset + (nibble >> 1)] |= (nibble & 1) == 0 ? value << 4 : value;
+  }
+
+  /* Base64 estandar; ignora los caracteres fuera del alfabeto y para en '='. */
+  public static byte[] decodeBase64(String text) {
+    final byte[] out = new byte[text.length() * 3 / 4 + 3];
+    int length = 0;
+    int buffer = 0;
+    int bits = 0;
+    for (int i = 0; i < text.length(); i++) {
+      final char c = text.charAt(i);
+      if (c == '=') {
+        break;
+      }
+      final int value = c < 128 ? BASE64[c] : -1;
+      if (value < 0) {
+        continue;
+      }
+      buffer = (buffer << 6) | value;
+      bits += 6;
+      if (bits >= 8) {
+        bits -= 8;
+        out[length++] = (byte) (buffer >> bits);
+        buffer &= (1 << bits) - 1;
+      }
+    }
+    return Arrays.copyOf(out, length);
+  }
+
+  private static void inflate(byte[] compressed, byte[] bits) {
+    final Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(compressed);
+      int length = 0;
+      while (length < bits.length && !inflater.finished()) {
+        final int n = inflater.inflate(bits, length, bits.length - length);
+        if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        length += n;
+      }
+    } catch (DataFormatException e) {
+      throw new IllegalArgumentException("Bad :Z64: data", e);
+    } finally {
+      inflater.end();
+    }
+  }
+
+  /* ----- Campos ----- */
+
+  /* ^FD con los escapes de ^FH (escape + 2 digitos hex) ya resueltos. */
+  private String decodeField(String text) {
+    if (hexEscape == 0 || text.indexOf(hexEscape) < 0) {
+      return text;
+    }
+    final StringBuilder decoded = new StringBuilder(text.length());
+    for (int i = 0; i < text.length(); i++) {
+      final char c = text.charAt(i);
+      if (c == hexEscape && i + 2 < text.length()
+        && Character.digit(text.charAt(i + 1), 16) >= 0
+        && Character.digit(text.charAt(i + 2), 16) >= 0) {
+        decoded.append((char) Integer.parseInt(text.substring(i + 1, i + 3), 16));
+        i += 2;
+      } else {
+        decoded.append(c);
+      }
+    }
+    return decoded.toString();
+  }
+
+  private void drawField() {
+    if (data == null) {
+      return;
+    }
+    if ("BC".equals(barcode)) {
+      drawCode128();
+    } else if ("BQ".equals(barcode)) {
+      drawQrCode();
+    } else if (barcode == null) {
+      drawText();
+    }
+  }
+
+  private char getFont() {
+    return font != 0 ? font : defaultFont;
+  }
+
+  private int getFontHeight() {
+    return font != 0 ? fontHeight : defaultFontHeight;
+  }
+
+  private int getFontWidth() {
+    return font != 0 ? fontWidth : defaultFontWidth;
+  }
+
+  /* Ancho cuando solo se da el alto: la fuente 0 es cuadrada, las demas 9x5. */
+  private static int getProportionalWidth(char font, int height) {
+    return font == '0' ? height : Math.max(1, height * DEFAULT_FONT_WIDTH / DEFAULT_FONT_HEIGHT);
+  }
+
+  private void drawText() {
+    final int h = getFontHeight();
+    final int advance = BitmapFont.getAdvance(getFont(), getFontWidth());
+    final int mode = getMode();
+
+    if (blockWidth <= 0) {
+      BitmapFont.drawText(raster, data, fieldX, typeset ? fieldY - h : fieldY, advance, h, mode);
+      return;
+    }
+
+    final List<String> lines = wrap(data, Math.max(1, blockWidth / advance), blockLines);
+    final int lineHeight = h + blockSpacing;
+    int y = typeset ? fieldY - lines.size() * lineHeight + blockSpacing : fieldY;
+    for (String line : lines) {
+      final int free = blockWidth - BitmapFont.getTextWidth(line, advance);
+      final int x = blockJustification == 'C' ? fieldX + free / 2
+        : blockJustification == 'R' ? fieldX + free
+        : fieldX;
+      BitmapFont.drawText(raster, line, x, y, advance, h, mode);
+      y += lineHeight;
+    }
+  }
+
+  /**
+   * Lineas de un ^FB: corta por palabras (o dentro de la palabra si no cabe)
+   * y en \&. Lo que no cabe en maxLines no se pinta.
+   */
+  private static List<String> wrap(String text, int columns, int maxLines) {
+    final List<String> lines = new ArrayList<>();
+    for (String paragraph : text.split("\\\\&", -1)) {
+      final StringBuilder line = new StringBuilder();
+      for (String word : paragraph.split(" ", -1)) {
+        if (line.length() > 0 && line.length() + 1 + word.length() > columns) {
+          lines.add(line.toString());
+          line.setLength(0);
+        } else if (line.length() > 0) {
+          line.append(' ');
+        }
+        while (word.length() > columns) {
+          lines.add(word.substring(0, columns));
+          word = word.substring(columns);
+        }
+        line.append(word);
+      }
+      lines.add(line.toString());
+    }
+    return lines.size() > maxLines ? lines.subList(0, maxLines) : lines;
+  }
+
+  /* ^BCo,alto,linea,arriba,verificador,modo */
+  private void drawCode128() {
+    final String[] p = barcodeParams;
+    final int h = toInt(p, 1, barHeight);
+    final boolean line = p.length <= 2 || !p[2].trim().toUpperCase(Locale.US).startsWith("N");
+    final boolean above = p.length > 3 && p[3].trim().toUpperCase(Locale.US).startsWith("Y");
+    final char mode = p.length > 5 && !p[5].trim().isEmpty()
+      ? Character.toUpperCase(p[5].trim().charAt(0))
+      : 'N';
+
+    final int[] codes = Code128.encode(data, mode);
+    final int top = typeset ? fieldY - h : fieldY;
+    Code128.draw(raster, codes, fieldX, top, moduleWidth, h, getMode());
+
+    if (line) {
+      // La linea de interpretacion centrada bajo (o sobre) las barras.
+      final String text = Code128.getText(data, mode);
+      final int textHeight = getFontHeight();
+      final int advance = BitmapFont.getAdvance(getFont(), getFontWidth());
+      final int gap = Math.max(1, textHeight / 4);
+      final int x = fieldX + (Code128.getWidth(codes) * moduleWidth - BitmapFont.getTextWidth(text, advance)) / 2;
+      final int y = above ? top - gap - textHeight : top + h + gap;
+      BitmapFont.drawText(raster, text, x, y, advance, textHeight, getMode());
+    }
+  }
+
+  /* ^BQo,modelo,magnificacion con ^FD{nivel}{A|M},{texto} */
+  private void drawQrCode() {
+    final int magnification = Math.max(1, toInt(barcodeParams, 2, DEFAULT_QR_MAGNIFICATION));
+    char level = QrCode.QUARTILE;
+    String text = data;
+
+    final int comma = data.indexOf(',');
+    if (comma >= 0 && comma <= 2) {
+      if (comma > 0 && "HQML".indexOf(Character.toUpperCase(data.charAt(0))) >= 0) {
+        level = data.charAt(0);
+      }
+      final boolean manual = comma == 2 && Character.toUpperCase(data.charAt(1)) == 'M';
+      text = data.substring(comma + 1);
+      // Manual: el primer caracter es el modo (N, A, B + 4 digitos de largo).
+      if (manual && !text.isEmpty()) {
+        final boolean bytes = Character.toUpperCase(text.charAt(0)) == 'B';
+        text = text.substring(Math.min(text.length(), bytes ? 5 : 1));
+      }
+    }
+
+    final QrCode qr = QrCode.encode(text, level);
+    final int top = typeset ? fieldY - qr.size * magnification : fieldY;
+    qr.draw(raster, fieldX, top, magnification, getMode());
+  }
+
+  /* ----- Parametros ----- */
+
+  private static int toInt(String[] p, int index, int fallback) {
+    return index < p.length ? toInt(p[index], fallback) : fallback;
+  }
+
+  private static int toInt(String value, int fallback) {
+    return toInt(value, 10, fallback);
+  }
+
+  private static int toInt(String value, int radix, int fallback) {
+    final String trimmed = value.trim();
+    if (trimmed.isEmpty()) {
+      return fallback;
+    }
+    try {
+      return Integer.parseInt(trimmed, radix);
+    } catch (NumberFormatException e) {
+      return fallback;
+    }
+  }
+}
@@ -0,0 +1,211 @@
+package com.zplcode;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class AdaptiveThresholdTest {
+
+  /* Gris de un pixel como lo ve la ventana: alfa menor a 128 es blanco. */
+  static int gray(int argb) {
+    if ((argb >>> 24) < 128) {
+      return 255;
+    }
+    return Pixel.red(GrayScale.DEFAULT.pixel(argb));
+  }
+
+  /*
+   * Promedio y desviacion de la ventana recortada a la imagen, recorriendo
+   * todos sus pixeles. Devuelve 0 o 255 con las formulas sin transformar; los
+   * casi empates (punto fijo de Bradley, redondeo de Sauvola) dan -1.
+   */
+  static int bruteForce(AdaptiveThreshold threshold, int[] grays, int width, int height, int x, int y) {
+    final int radius = threshold.getRadius(width, height);
+    double sum = 0;
+    double squares = 0;
+    int count = 0;
+    for (int j = Math.max(0, y - radius); j <= Math.min(height - 1, y + radius); j++) {
+      for (int i = Math.max(0, x - radius); i <= Math.min(width - 1, x + radius); i++) {
+        final int v = grays[j * width + i];
+        sum += v;
+        squares += (double) v * v;
+        count++;
+      }
+    }
+    final double mean = sum / count;
+    final double limit;
+    if (AdaptiveThreshold.SAUVOLA.equals(threshold.method)) {
+      final double deviation = Math.sqrt(Math.max(0, squares / count - mean * mean));
+      limit = mean * (1 + threshold.sensitivity * (deviation / 128 - 1));
+    } else {
+      limit = mean * (1 - threshold.sensitivity);
+    }
+    final int v = grays[y * width + x];
+    if (Math.abs(v - limit) < 1e-3) {
+      return -1;
+    }
+    return v <= limit ? 0 : 255;
+  }
+
+  static PixelImage image(Random random, int width, int height) {
+    final int[] argb = new int[width * height];
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        // Iluminacion desigual, texto oscuro y algunos transparentes.
+        final int light = 90 + 150 * x / width;
+        final int value = random.nextInt(7) == 0 ? random.nextInt(60) : light - random.nextInt(30);
+        final int alpha = random.nextInt(25) == 0 ? random.nextInt(256) : 255;
+        argb[y * width + x] = (alpha << 24) | (value * 0x10101);
+      }
+    }
+    return new PixelImage(width, height, argb);
+  }
+
+  static void assertMatchesBruteForce(AdaptiveThreshold threshold, PixelImage image) {
+    final int width = image.getWidth();
+    final int height = image.getHeight();
+    final int[] grays = new int[width * height];
+    for (int i = 0; i < grays.length; i++) {
+      grays[i] = gray(image.getPixels()[i]);
+    }
+
+    final AdaptiveThreshold.Window window = threshold.newWindow(image, GrayScale.DEFAULT);
+    final int[] row = new int[width];
+    for (int y = 0; y < height; y++) {
+      window.nextRow(row);
+      for (int x = 0; x < width; x++) {
+        final int expected = bruteForce(threshold, grays, width, height, x, y);
+        if (expected >= 0 && expected != row[x]) {
+          fail(threshold.method + " window " + threshold.windowSize + " " + width + "x" + height
+            + " at " + x + "," + y + ": " + row[x] + " != " + expected);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void bradleyMatchesBruteForce() {
+    final Random random = new Random(31);
+    for (int windowSize : new int[] { 0, 1, 2, 3, 8, 15, 40, 200 }) {
+      for (int n = 0; n < 6; n++) {
+        final PixelImage image = image(random, 1 + random.nextInt(90), 1 + random.nextInt(60));
+        assertMatchesBruteForce(new AdaptiveThreshold(AdaptiveThreshold.BRADLEY, windowSize), image);
+        assertMatchesBruteForce(new AdaptiveThreshold(AdaptiveThreshold.BRADLEY, windowSize, 0.4), image);
+      }
+    }
+  }
+
+  @Test
+  public void sauvolaMatchesBruteForce() {
+    final Random random = new Random(37);
+    for (int windowSize : new int[] { 0, 1, 2, 3, 8, 15, 40, 200 }) {
+      for (int n = 0; n < 6; n++) {
+        final PixelImage image = image(random, 1 + random.nextInt(90), 1 + random.nextInt(60));
+        assertMatchesBruteForce(new AdaptiveThreshold(AdaptiveThreshold.SAUVOLA, windowSize), image);
+        assertMatchesBruteForce(new AdaptiveThreshold(AdaptiveThreshold.SAUVOLA, windowSize, 0.05), image);
+        assertMatchesBruteForce(new AdaptiveThreshold(AdaptiveThreshold.SAUVOLA, windowSize, 0.9), image);
+      }
+    }
+  }
+
+  @Test
+  public void windowLargerThanTheImage() {
+    // Ventana que cubre toda la imagen desde cualquier pixel, y una sola fila o columna.
+    final Random random = new Random(41);
+    for (String method : new String[] { AdaptiveThreshold.BRADLEY, AdaptiveThreshold.SAUVOLA }) {
+      assertMatchesBruteForce(new AdaptiveThreshold(method, 500), image(random, 7, 5));
+      assertMatchesBruteForce(new AdaptiveThreshold(method, 9), image(random, 300, 1));
+      assertMatchesBruteForce(new AdaptiveThreshold(method, 9), image(random, 1, 300));
+      assertMatchesBruteForce(new AdaptiveThreshold(method, 9), image(random, 1, 1));
+    }
+  }
+
+  @Test
+  public void sauvolaSquaredInequality() {
+    final AdaptiveThreshold sauvola = new AdaptiveThreshold(AdaptiveThreshold.SAUVOLA, 3);
+
+    // Sin desviacion el limite es m * (1 - k): el propio promedio queda blanco.
+    final int[] flat = new int[9 * 9];
+    Arrays.fill(flat, TestImages.gray(120));
+    final int[] row = new int[9];
+    final AdaptiveThreshold.Window uniform = sauvola.newWindow(new PixelImage(9, 9, flat.clone()), GrayScale.DEFAULT);
+    for (int y = 0; y < 9; y++) {
+      uniform.nextRow(row);
+      for (int v : row) {
+        assertEquals(255, v);
+      }
+    }
+
+    // Bajo m * (1 - k) es negro aunque a sea negativo: el cuadrado no lo da vuelta.
+    final int[] dark = flat.clone();
+    dark[4 * 9 + 4] = TestImages.gray(10);
+    assertEquals(0, centerOf(sauvola, dark));
+
+    // Alta desviacion: el limite queda cerca del promedio (~119), muy arriba
+    // de m * (1 - k) (~13); un gris de 110 es negro.
+    final int[] contrast = new int[9 * 9];
+    for (int i = 0; i < contrast.length; i++) {
+      contrast[i] = TestImages.gray(i % 2 == 0 ? 0 : 255);
+    }
+    contrast[4 * 9 + 4] = TestImages.gray(110);
+    final AdaptiveThreshold strong = new AdaptiveThreshold(AdaptiveThreshold.SAUVOLA, 3, 0.9);
+    assertEquals(0, centerOf(strong, contrast));
+    assertMatchesBruteForce(strong, new PixelImage(9, 9, contrast));
+  }
+
+  static int centerOf(AdaptiveThreshold threshold, int[] argb) {
+    final AdaptiveThreshold.Window window = threshold.newWindow(new PixelImage(9, 9, argb), GrayScale.DEFAULT);
+    final int[] row = new int[9];
+    for (int y = 0; y <= 4; y++) {
+      window.nextRow(row);
+    }
+    return row[4];
+  }
+
+  @Test
+  public void applyWritesTheWindowRows() {
+    final Random random = new Random(43);
+    for (String method : new String[] { AdaptiveThreshold.BRADLEY, AdaptiveThreshold.SAUVOLA }) {
+      final PixelImage source = image(random, 61, 29);
+      final AdaptiveThreshold threshold = new AdaptiveThreshold(method, 0);
+      final int[] expected = new int[61 * 29];
+      final AdaptiveThreshold.Window window = threshold.newWindow(source, GrayScale.DEFAULT);
+      final int[] row = new int[61];
+      for (int y = 0; y < 29; y++) {
+        window.nextRow(row);
+        for (int x = 0; x < 61; x++) {
+          expected[y * 61 + x] = Pixel.toRGB(row[x], row[x], row[x], 255);
+        }
+      }
+      assertArrayEquals(expected, threshold.apply(TestImages.copy(source)).getPixels());
+    }
+  }
+
+  @Test
+  public void radiusAndNames() {
+    assertEquals(1, new AdaptiveThreshold(AdaptiveThreshold.BRADLEY, 1).getRadius(100, 100));
+    assertEquals(7, new AdaptiveThreshold(AdaptiveThreshold.BRADLEY, 15).getRadius(100, 100));
+    assertEquals(400 / AdaptiveThreshold.WINDOW_DIVISOR / 2,
+      new AdaptiveThreshold(AdaptiveThreshold.SAUVOLA, 0).getRadius(400, 30));
+    assertEquals(1, new AdaptiveThreshold(AdaptiveThreshold.SAUVOLA, 0).getRadius(5, 5));
+
+    assertEquals(AdaptiveThreshold.SAUVOLA_SENSITIVITY,
+      AdaptiveThreshold.forName("sauvola", 0).sensitivity, 0);
+    assertEquals(AdaptiveThreshold.BRADLEY_SENSITIVITY,
+      AdaptiveThreshold.forName("bradley", 0).sensitivity, 0);
+    assertNull(AdaptiveThreshold.forName("auto", 0));
+    try {
+      new AdaptiveThreshold(AdaptiveThreshold.BRADLEY, 0, 1);
+      fail();
+    } catch (IllegalArgumentException expected) {
+      assertTrue(expected.getMessage().contains("sensitivity"));
+    }
+  }
+}
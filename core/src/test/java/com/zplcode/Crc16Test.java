@@ -0,0 +1,88 @@
+package com.zplcode;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+
+/* Crc16 (tablas slice-by-4) contra la CRC bit a bit original. */
+public class Crc16Test {
+
+  /* getCRCHexString de la version original, bit por bit. */
+  static String bitwiseCrc(byte[] bytes) {
+    int crc = 0x0000;
+    final int polynomial = 0x1021;
+    for (byte b : bytes) {
+      for (int i = 0; i < 8; i++) {
+        final boolean bit = ((b >> (7 - i) & 1) == 1);
+        final boolean c15 = ((crc >> 15 & 1) == 1);
+        crc <<= 1;
+        if (c15 ^ bit) {
+          crc ^= polynomial;
+        }
+      }
+    }
+    crc &= 0xffff;
+    return Integer.toHexString(crc);
+  }
+
+  @Test
+  public void knownValue() {
+    // CRC-16/XMODEM de "123456789"
+    final Crc16 crc = new Crc16();
+    crc.update("123456789");
+    assertEquals(0x31C3, crc.getValue());
+    assertEquals("0", new Crc16().toHexString());
+  }
+
+  @Test
+  public void wholeUpdateMatchesBitwise() {
+    final Random random = new Random(1);
+    for (int n = 0; n < 500; n++) {
+      final byte[] data = new byte[random.nextInt(300)];
+      random.nextBytes(data);
+
+      final Crc16 crc = new Crc16();
+      crc.update(data, 0, data.length);
+      assertEquals(bitwiseCrc(data), crc.toHexString());
+    }
+  }
+
+  @Test
+  public void chunkedUpdateMatchesBitwise() {
+    final Random random = new Random(2);
+    for (int n = 0; n < 500; n++) {
+      final byte[] data = new byte[random.nextInt(1000)];
+      random.nextBytes(data);
+
+      // Pedazos de largo al azar, mezclando las tres formas de update.
+      final Crc16 crc = new Crc16();
+      int off = 0;
+      while (off < data.length) {
+        final int len = Math.min(data.length - off, random.nextInt(9));
+        switch (random.nextInt(3)) {
+          case 0:
+            crc.update(data, off, len);
+            break;
+          case 1:
+            crc.update(ByteBuffer.wrap(data, off, len));
+            break;
+          default:
+            for (int i = off; i < off + len; i++) {
+              crc.update(data[i]);
+            }
+        }
+        off += len;
+      }
+      assertEquals(bitwiseCrc(data), crc.toHexString());
+    }
+  }
+
+  @Test
+  public void stringMatchesBitwise() {
+    final String text = "eJztwTEBAAAAwqD1T20ND6AAAAAAAAAAAAAAAAAA4N8AHQAAAQ==\n";
+    assertEquals(bitwiseCrc(text.getBytes()), ZplLibGraphics.getCRCHexString(text));
+  }
+}
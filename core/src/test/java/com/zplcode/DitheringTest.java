@@ -0,0 +1,240 @@
+package com.zplcode;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/*
+ * Tablas de difusion y matrices de Bayer contra los valores publicados, y
+ * la salida de cada dither sobre un gradiente contra una version directa en
+ * punto flotante.
+ */
+public class DitheringTest {
+
+  // {divisor, dx, dy, peso...} como en las referencias de cada algoritmo.
+  private static final Object[][] KERNELS = {
+    { ErrorDiffusionDithering.FLOYD_STEINBERG, 16, new int[][]{
+      {1, 0, 7}, {-1, 1, 3}, {0, 1, 5}, {1, 1, 1} } },
+    { ErrorDiffusionDithering.ATKINSON, 8, new int[][]{
+      {1, 0, 1}, {2, 0, 1}, {-1, 1, 1}, {0, 1, 1}, {1, 1, 1}, {0, 2, 1} } },
+    { ErrorDiffusionDithering.JARVIS_JUDICE_NINKE, 48, new int[][]{
+      {1, 0, 7}, {2, 0, 5},
+      {-2, 1, 3}, {-1, 1, 5}, {0, 1, 7}, {1, 1, 5}, {2, 1, 3},
+      {-2, 2, 1}, {-1, 2, 3}, {0, 2, 5}, {1, 2, 3}, {2, 2, 1} } },
+    { ErrorDiffusionDithering.STUCKI, 42, new int[][]{
+      {1, 0, 8}, {2, 0, 4},
+      {-2, 1, 2}, {-1, 1, 4}, {0, 1, 8}, {1, 1, 4}, {2, 1, 2},
+      {-2, 2, 1}, {-1, 2, 2}, {0, 2, 4}, {1, 2, 2}, {2, 2, 1} } },
+    { ErrorDiffusionDithering.SIERRA, 32, new int[][]{
+      {1, 0, 5}, {2, 0, 3},
+      {-2, 1, 2}, {-1, 1, 4}, {0, 1, 5}, {1, 1, 4}, {2, 1, 2},
+      {-1, 2, 2}, {0, 2, 3}, {1, 2, 2} } },
+    { ErrorDiffusionDithering.SIERRA_LITE, 4, new int[][]{
+      {1, 0, 2}, {-1, 1, 1}, {0, 1, 1} } },
+  };
+
+  private static final int[][] BAYER2 = {
+    {0, 2},
+    {3, 1},
+  };
+
+  private static final int[][] BAYER4 = {
+    {0, 8, 2, 10},
+    {12, 4, 14, 6},
+    {3, 11, 1, 9},
+    {15, 7, 13, 5},
+  };
+
+  private static final int[][] BAYER8 = {
+    {0, 32, 8, 40, 2, 34, 10, 42},
+    {48, 16, 56, 24, 50, 18, 58, 26},
+    {12, 44, 4, 36, 14, 46, 6, 38},
+    {60, 28, 52, 20, 62, 30, 54, 22},
+    {3, 35, 11, 43, 1, 33, 9, 41},
+    {51, 19, 59, 27, 49, 17, 57, 25},
+    {15, 47, 7, 39, 13, 45, 5, 37},
+    {63, 31, 55, 23, 61, 29, 53, 21},
+  };
+
+  /* Gradiente en diagonal con algo de ruido fijo, para que haya error en todas direcciones. */
+  static PixelImage gradient(int width, int height) {
+    final int[] argb = new int[width * height];
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        final int v = (x * 255 / (width - 1) + y * 255 / (height - 1)) / 2;
+        argb[y * width + x] = TestImages.gray(Math.min(255, v + ((x * 7 + y * 13) % 5)));
+      }
+    }
+    return new PixelImage(width, height, argb);
+  }
+
+  /* Luminancia como la lee Dithering.apply. */
+  static double[][] plane(PixelImage image) {
+    final double[][] plane = new double[image.getHeight()][image.getWidth()];
+    for (int y = 0; y < image.getHeight(); y++) {
+      for (int x = 0; x < image.getWidth(); x++) {
+        plane[y][x] = Pixel.red(GrayScale.DEFAULT.pixel(image.getArgb(x, y)));
+      }
+    }
+    return plane;
+  }
+
+  /*
+   * Difusion de error directa sobre toda la imagen en double: cada vecino
+   * suma floor(error * peso / divisor) y se recorta a 0..255.
+   */
+  static int[] referenceDiffusion(PixelImage image, int divisor, int[][] taps, boolean serpentine) {
+    final int width = image.getWidth();
+    final int height = image.getHeight();
+    final double[][] plane = plane(image);
+    final int[] out = new int[width * height];
+
+    for (int y = 0; y < height; y++) {
+      final boolean reverse = serpentine && y % 2 == 1;
+      for (int i = 0; i < width; i++) {
+        final int x = reverse ? width - 1 - i : i;
+        final double oldValue = plane[y][x];
+        final double newValue = oldValue < 128 ? 0 : 255;
+        out[y * width + x] = (int) newValue;
+        final double error = oldValue - newValue;
+
+        for (int[] tap : taps) {
+          final int nx = x + (reverse ? -tap[0] : tap[0]);
+          final int ny = y + tap[1];
+          if (nx < 0 || nx >= width || ny >= height) {
+            continue;
+          }
+          final double value = plane[ny][nx] + Math.floor(error * tap[2] / divisor);
+          plane[ny][nx] = Math.max(0, Math.min(255, value));
+        }
+      }
+    }
+    return out;
+  }
+
+  static int[] dither(Transform transform, PixelImage image) {
+    final PixelImage result = transform.apply(TestImages.copy(image));
+    final int[] out = new int[image.getWidth() * image.getHeight()];
+    for (int i = 0; i < out.length; i++) {
+      out[i] = Pixel.red(result.getPixels()[i]);
+    }
+    return out;
+  }
+
+  @Test
+  public void kernelTablesMatchPublishedWeights() {
+    for (Object[] entry : KERNELS) {
+      final ErrorDiffusionDithering.Kernel kernel = (ErrorDiffusionDithering.Kernel) entry[0];
+      final int divisor = (Integer) entry[1];
+      final int[][] taps = (int[][]) entry[2];
+
+      assertEquals(kernel.name, divisor, kernel.divisor);
+      assertEquals(kernel.name, taps.length, kernel.dx.length);
+      int sum = 0;
+      for (int t = 0; t < taps.length; t++) {
+        assertEquals(kernel.name, taps[t][0], kernel.dx[t]);
+        assertEquals(kernel.name, taps[t][1], kernel.dy[t]);
+        // share[t][error + 128] con error = divisor es el peso.
+        assertEquals(kernel.name, taps[t][2], kernel.share[t][divisor + 128]);
+        sum += taps[t][2];
+      }
+      // Atkinson difunde solo 6/8 del error a proposito.
+      assertEquals(kernel.name + " diffused error", kernel == ErrorDiffusionDithering.ATKINSON ? 6 : divisor, sum);
+    }
+  }
+
+  @Test
+  public void errorDiffusionMatchesFloatReference() {
+    final PixelImage image = gradient(37, 23);
+    for (Object[] entry : KERNELS) {
+      final ErrorDiffusionDithering.Kernel kernel = (ErrorDiffusionDithering.Kernel) entry[0];
+      final int divisor = (Integer) entry[1];
+      final int[][] taps = (int[][]) entry[2];
+      for (boolean serpentine : new boolean[] { false, true }) {
+        assertArrayEquals(kernel.name + (serpentine ? " serpentine" : ""),
+          referenceDiffusion(image, divisor, taps, serpentine),
+          dither(new ErrorDiffusionDithering(kernel, serpentine), image));
+      }
+    }
+  }
+
+  @Test
+  public void floydSteinbergLuminanceMatchesFloatReference() {
+    final PixelImage image = gradient(41, 19);
+    assertArrayEquals(referenceDiffusion(image, 16, (int[][]) KERNELS[0][2], false),
+      dither(new FloydSteinbergDithering(true), image));
+  }
+
+  @Test
+  public void bayerMatricesMatchPublishedTables() {
+    final int[][][] matrices = { BAYER2, BAYER4, BAYER8 };
+    for (int[][] matrix : matrices) {
+      final int size = matrix.length;
+      final int cells = size * size;
+      // Dos repeticiones y media de la matriz en cada direccion.
+      final int width = size * 2 + size / 2 + 1;
+      for (int v = 0; v < 256; v += 3) {
+        final int[] argb = new int[width * width];
+        Arrays.fill(argb, TestImages.gray(v));
+        final int[] out = dither(new OrderedDithering(size), new PixelImage(width, width, argb));
+
+        for (int y = 0; y < width; y++) {
+          for (int x = 0; x < width; x++) {
+            final double threshold = Math.floor((2 * matrix[y % size][x % size] + 1) * 255.0 / (2 * cells));
+            assertEquals("bayer" + size + " v=" + v + " at " + x + "," + y,
+              v > threshold ? 255 : 0, out[y * width + x]);
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void forNameResolvesEveryDither() {
+    assertTrue(Dithering.forName(Dithering.FLOYD_STEINBERG) instanceof FloydSteinbergDithering);
+    assertSame(ErrorDiffusionDithering.FLOYD_STEINBERG,
+      ((ErrorDiffusionDithering) Dithering.forName(Dithering.FLOYD_STEINBERG_SERPENTINE)).kernel);
+    assertTrue(((ErrorDiffusionDithering) Dithering.forName(Dithering.FLOYD_STEINBERG_SERPENTINE)).serpentine);
+    assertSame(ErrorDiffusionDithering.ATKINSON, ((ErrorDiffusionDithering) Dithering.forName(Dithering.ATKINSON)).kernel);
+    assertSame(ErrorDiffusionDithering.JARVIS_JUDICE_NINKE,
+      ((ErrorDiffusionDithering) Dithering.forName(Dithering.JARVIS_JUDICE_NINKE)).kernel);
+    assertSame(ErrorDiffusionDithering.STUCKI, ((ErrorDiffusionDithering) Dithering.forName(Dithering.STUCKI)).kernel);
+    assertSame(ErrorDiffusionDithering.SIERRA, ((ErrorDiffusionDithering) Dithering.forName(Dithering.SIERRA)).kernel);
+    assertSame(ErrorDiffusionDithering.SIERRA_LITE,
+      ((ErrorDiffusionDithering) Dithering.forName(Dithering.SIERRA_LITE)).kernel);
+    assertEquals(2, ((OrderedDithering) Dithering.forName(Dithering.BAYER2)).size);
+    assertEquals(4, ((OrderedDithering) Dithering.forName(Dithering.BAYER4)).size);
+    assertEquals(8, ((OrderedDithering) Dithering.forName(Dithering.BAYER8)).size);
+  }
+
+  @Test
+  public void forNameRejectsUnknownNames() {
+    for (String name : new String[] { "", "floyd", "Floyd-Steinberg", "bayer16", "true" }) {
+      try {
+        Dithering.forName(name);
+        fail("accepted '" + name + "'");
+      } catch (IllegalArgumentException e) {
+        assertTrue(e.getMessage().contains(name));
+      }
+    }
+  }
+
+  @Test
+  public void booleanDitherIsFloydSteinberg() {
+    final RowDither dither = Dithering.forFlag(true);
+    assertTrue(dither instanceof FloydSteinbergDithering);
+    assertTrue(((FloydSteinbergDithering) dither).luminance);
+    assertNull(Dithering.forFlag(false));
+
+    // Mismo resultado que el Floyd-Steinberg original sobre una imagen gris.
+    final PixelImage image = gradient(29, 17);
+    assertArrayEquals(dither(new FloydSteinbergDithering(), image), dither((Transform) dither, image));
+  }
+}
@@ -0,0 +1,159 @@
+package com.zplcode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+public class GraphicRegistryTest {
+
+  private static final String PRINTER = "10.0.0.7";
+
+  static String cached(PixelImage image, GraphicRegistry.Downloads downloads) throws Exception {
+    final ZplLibGraphics graphics = new ZplLibGraphics(TestImages.copy(image), 127);
+    graphics.setPoint(10, 20);
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    graphics.writeCachedZplCode(out, downloads, PRINTER, false);
+    return out.toString("US-ASCII");
+  }
+
+  static String path(PixelImage image) {
+    final byte[] raster = TestImages.copy(image).getRasterBytes(127);
+    return "R:" + ZplLibGraphics.getGraphicName(raster, image.getBytesPerRow()) + ".GRF";
+  }
+
+  static long fingerprint(PixelImage image) {
+    final byte[] raster = TestImages.copy(image).getRasterBytes(127);
+    return ZplLibGraphics.getGraphicFingerprint(raster, raster.length);
+  }
+
+  @Test
+  public void markSentComparesFingerprints() {
+    final GraphicRegistry registry = new GraphicRegistry();
+    assertFalse(registry.isSent(PRINTER, "R:A.GRF", 1));
+
+    assertTrue(registry.markSent(PRINTER, "R:A.GRF", 1));
+    assertFalse(registry.markSent(PRINTER, "R:A.GRF", 1));
+    assertTrue(registry.isSent(PRINTER, "R:A.GRF", 1));
+
+    // Mismo nombre, otro raster: no cuenta como enviado.
+    assertFalse(registry.isSent(PRINTER, "R:A.GRF", 2));
+    assertTrue(registry.markSent(PRINTER, "R:A.GRF", 2));
+    assertFalse(registry.isSent(PRINTER, "R:A.GRF", 1));
+
+    assertFalse(registry.isSent("10.0.0.8", "R:A.GRF", 2));
+
+    registry.unmark(PRINTER, "R:A.GRF");
+    assertFalse(registry.isSent(PRINTER, "R:A.GRF", 2));
+
+    registry.markSent(PRINTER, "R:B.GRF", 3);
+    registry.markSent("10.0.0.8", "R:B.GRF", 3);
+    registry.forget(PRINTER);
+    assertFalse(registry.isSent(PRINTER, "R:B.GRF", 3));
+    assertTrue(registry.isSent("10.0.0.8", "R:B.GRF", 3));
+    registry.clear();
+    assertFalse(registry.isSent("10.0.0.8", "R:B.GRF", 3));
+  }
+
+  @Test
+  public void fingerprintSeesChangesInsideTheRaster() {
+    final byte[] raster = new byte[4096];
+    new Random(3).nextBytes(raster);
+    final long fingerprint = ZplLibGraphics.getGraphicFingerprint(raster, raster.length);
+
+    final byte[] changed = raster.clone();
+    changed[2000] ^= 1;
+    assertNotEquals(fingerprint, ZplLibGraphics.getGraphicFingerprint(changed, changed.length));
+    // Solo cuentan los primeros length bytes (arreglos de un ArrayPool).
+    assertEquals(ZplLibGraphics.getGraphicFingerprint(raster, 1000),
+      ZplLibGraphics.getGraphicFingerprint(Arrays.copyOf(raster, 1000), 1000));
+    assertNotEquals(ZplLibGraphics.getGraphicFingerprint(raster, 1000),
+      ZplLibGraphics.getGraphicFingerprint(raster, 1001));
+  }
+
+  @Test
+  public void downloadsMarkOnlyWhenSent() throws Exception {
+    final GraphicRegistry registry = new GraphicRegistry();
+    final PixelImage image = TestImages.random(new Random(5), 90, 40);
+    final String path = path(image);
+
+    final GraphicRegistry.Downloads downloads = registry.newDownloads();
+    final String first = cached(image, downloads);
+    assertTrue(first, first.startsWith("~DG" + path + ","));
+    assertTrue(first, first.endsWith("^XA^FO10,20^XG" + path + ",1,1^FS^XZ"));
+    assertFalse(downloads.isEmpty());
+    assertFalse(registry.isSent(PRINTER, path, fingerprint(image)));
+
+    // Hasta que el envio termine se sigue descargando.
+    assertTrue(cached(image, registry.newDownloads()).startsWith("~DG"));
+
+    downloads.sent();
+    assertTrue(downloads.isEmpty());
+    assertTrue(registry.isSent(PRINTER, path, fingerprint(image)));
+
+    final GraphicRegistry.Downloads reused = registry.newDownloads();
+    assertEquals("^XA^FO10,20^XG" + path + ",1,1^FS^XZ", cached(image, reused));
+    assertTrue(reused.isEmpty());
+  }
+
+  @Test
+  public void failedDownloadsUnmark() throws Exception {
+    final GraphicRegistry registry = new GraphicRegistry();
+    final PixelImage image = TestImages.random(new Random(6), 64, 30);
+    final String path = path(image);
+    registry.markSent(PRINTER, path, fingerprint(image));
+
+    // Un ~DG cortado deja a medias un grafico que ya estaba marcado.
+    final GraphicRegistry.Downloads downloads = registry.newDownloads();
+    downloads.add(PRINTER, path, fingerprint(image));
+    downloads.failed();
+    assertTrue(downloads.isEmpty());
+    assertFalse(registry.isSent(PRINTER, path, fingerprint(image)));
+    assertTrue(cached(image, registry.newDownloads()).startsWith("~DG" + path + ","));
+  }
+
+  @Test
+  public void returnedTextStaysPendingUntilMarked() throws Exception {
+    final GraphicRegistry registry = new GraphicRegistry();
+    final PixelImage image = TestImages.random(new Random(8), 75, 33);
+    final String path = path(image);
+
+    final ZplLibGraphics graphics = new ZplLibGraphics(TestImages.copy(image), 127);
+    final String zpl = graphics.getCachedZplCode(registry, PRINTER, false);
+    assertTrue(zpl, zpl.startsWith("~DG" + path + ","));
+    assertFalse(registry.isSent(PRINTER, path, fingerprint(image)));
+
+    assertEquals(0, registry.markPendingSent("10.0.0.8", Collections.singletonList(path)));
+    assertEquals(0, registry.markPendingSent(PRINTER, Collections.singletonList("R:00000000.GRF")));
+    assertEquals(1, registry.markPendingSent(PRINTER, Collections.singletonList(path)));
+    assertTrue(registry.isSent(PRINTER, path, fingerprint(image)));
+    assertEquals(0, registry.markPendingSent(PRINTER, Collections.singletonList(path)));
+
+    final String again = new ZplLibGraphics(TestImages.copy(image), 127).getCachedZplCode(registry, PRINTER, false);
+    assertEquals("^XA^XG" + path + ",1,1^FS^XZ", again);
+
+    registry.forget(PRINTER);
+    new ZplLibGraphics(TestImages.copy(image), 127).getCachedZplCode(registry, PRINTER, false);
+    registry.forget(PRINTER);
+    assertEquals(0, registry.markPendingSent(PRINTER, Collections.singletonList(path)));
+  }
+
+  @Test
+  public void pendingKeepsTheNewestPerPrinter() {
+    final GraphicRegistry registry = new GraphicRegistry();
+    for (int i = 0; i <= GraphicRegistry.MAX_PENDING; i++) {
+      registry.addPending(PRINTER, "R:" + i + ".GRF", i);
+    }
+    assertEquals(0, registry.markPendingSent(PRINTER, Collections.singletonList("R:0.GRF")));
+    assertEquals(2, registry.markPendingSent(PRINTER,
+      Arrays.asList("R:1.GRF", "R:" + GraphicRegistry.MAX_PENDING + ".GRF")));
+    assertTrue(registry.isSent(PRINTER, "R:1.GRF", 1));
+  }
+}
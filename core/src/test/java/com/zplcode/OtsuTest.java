@@ -0,0 +1,161 @@
+package com.zplcode;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class OtsuTest {
+
+  private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+  @AfterClass
+  public static void shutdown() {
+    POOL.shutdown();
+  }
+
+  /* Dos modos con ruido gaussiano: fondo claro y manchas oscuras. */
+  static PixelImage bimodal(Random random, int width, int height, int dark, int light) {
+    final int[] argb = new int[width * height];
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        final boolean ink = (x / 23 + y / 17) % 3 == 0;
+        final double value = (ink ? dark : light) + random.nextGaussian() * 12;
+        argb[y * width + x] = TestImages.gray((int) Math.max(0, Math.min(255, Math.round(value))));
+      }
+    }
+    return new PixelImage(width, height, argb);
+  }
+
+  static int[] fullHistogram(PixelImage image) {
+    final int[] histogram = new int[256];
+    for (int argb : image.getPixels()) {
+      histogram[Pixel.gray(argb)]++;
+    }
+    return histogram;
+  }
+
+  /* Varianza entre clases con el umbral t (t y menos es fondo). */
+  static double betweenVariance(int[] histogram, int t) {
+    double n0 = 0, n1 = 0, s0 = 0, s1 = 0;
+    for (int i = 0; i < 256; i++) {
+      if (i <= t) {
+        n0 += histogram[i];
+        s0 += (double) i * histogram[i];
+      } else {
+        n1 += histogram[i];
+        s1 += (double) i * histogram[i];
+      }
+    }
+    if (n0 == 0 || n1 == 0) {
+      return 0;
+    }
+    final double total = n0 + n1;
+    return n0 / total * n1 / total * Math.pow(s0 / n0 - s1 / n1, 2);
+  }
+
+  static double maxVariance(int[] histogram) {
+    double max = 0;
+    for (int t = 0; t < 256; t++) {
+      max = Math.max(max, betweenVariance(histogram, t));
+    }
+    return max;
+  }
+
+  @Test
+  public void fullHistogramMatchesBruteForce() {
+    final Random random = new Random(17);
+    for (int n = 0; n < 20; n++) {
+      final PixelImage image = TestImages.random(random, 1 + random.nextInt(200), 1 + random.nextInt(150));
+      final int[] histogram = fullHistogram(image);
+      assertArrayEquals(histogram, image.getHistogram(1, null));
+      assertArrayEquals(histogram, image.getHistogram(1, POOL));
+
+      final int threshold = image.calculeThreshold(1, null);
+      assertEquals(threshold, image.calculeThreshold(1, POOL));
+      assertEquals(maxVariance(histogram), betweenVariance(histogram, threshold), 1e-9);
+    }
+  }
+
+  @Test
+  public void sampledThresholdIsCloseToFullOtsu() {
+    final Random random = new Random(19);
+    for (int n = 0; n < 10; n++) {
+      final int dark = 30 + random.nextInt(60);
+      // Modos cercanos: con un valle vacio cualquier umbral dentro es optimo.
+      final int light = dark + 50 + random.nextInt(40);
+      final PixelImage image = bimodal(random, 300 + random.nextInt(500), 200 + random.nextInt(300), dark, light);
+      final int[] histogram = fullHistogram(image);
+
+      final int full = image.calculeThreshold(1, null);
+      final int sampled = image.calculeThreshold(PixelImage.THRESHOLD_SAMPLE_STEP, null);
+      assertEquals(sampled, image.calculeThreshold(PixelImage.THRESHOLD_SAMPLE_STEP, POOL));
+      assertTrue(full + " vs " + sampled, Math.abs(full - sampled) <= 6);
+      assertTrue(full > dark && full < light);
+      // La varianza entre clases es casi plana entre los dos modos.
+      assertTrue(betweenVariance(histogram, sampled) >= 0.99 * maxVariance(histogram));
+    }
+  }
+
+  @Test
+  public void sampleCountsOnePixelPerStepSquared() {
+    final PixelImage image = TestImages.random(new Random(23), 401, 203);
+    final int step = PixelImage.THRESHOLD_SAMPLE_STEP;
+    int counted = 0;
+    for (int count : image.getHistogram(step, POOL)) {
+      counted += count;
+    }
+    final int rows = (203 - step / 2 + step - 1) / step;
+    assertTrue(counted >= rows * (401 / step) && counted <= rows * (401 / step + 1));
+
+    // Imagen mas chica que el paso: queda al menos una muestra.
+    int tiny = 0;
+    for (int count : new PixelImage(2, 2, new int[] { 0, 0, 0, 0 }).getHistogram(16, null)) {
+      tiny += count;
+    }
+    assertTrue(tiny >= 1);
+  }
+
+  @Test
+  public void uniformImageHasThresholdZero() {
+    for (int value : new int[] { 0, 1, 128, 254, 255 }) {
+      final int[] argb = new int[64 * 8];
+      Arrays.fill(argb, TestImages.gray(value));
+      final PixelImage image = new PixelImage(64, 8, argb);
+      // Sin dos clases no hay varianza entre clases: el umbral queda en 0.
+      assertEquals(0, image.calculeThreshold(1, null));
+      assertEquals(0, image.calculeThreshold(PixelImage.THRESHOLD_SAMPLE_STEP, POOL));
+    }
+    assertEquals(0, PixelImage.calculeThreshold(new int[256], 0));
+  }
+
+  @Test
+  public void thresholdCoversTheWholeByteRange() {
+    // Modos claros: el umbral pasa de 127, que como (byte) del original era negativo.
+    final int[] histogram = new int[256];
+    histogram[200] = 500;
+    histogram[250] = 500;
+    final int high = PixelImage.calculeThreshold(histogram, 1000);
+    assertTrue(String.valueOf(high), high >= 200 && high < 250);
+
+    final PixelImage image = bimodal(new Random(29), 320, 240, 170, 235);
+    final int threshold = image.calculeThreshold(PixelImage.THRESHOLD_SAMPLE_STEP, null);
+    assertTrue(String.valueOf(threshold), threshold > 170 && threshold < 235);
+
+    final int[] extremes = new int[256];
+    extremes[0] = 10;
+    extremes[255] = 10;
+    assertEquals(0, PixelImage.calculeThreshold(extremes, 20));
+    for (int i = 0; i < 256; i++) {
+      extremes[i] = 1;
+    }
+    final int spread = PixelImage.calculeThreshold(extremes, 256);
+    assertTrue(spread >= 0 && spread <= 255);
+  }
+}
@@ -0,0 +1,544 @@
+package com.zplcode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+public class PrintQueueTest {
+
+  private static final String PRINTER = "stand-in";
+
+  /* Impresora de prueba: acepta conexiones y lee todo lo que llega. */
+  static final class StandInPrinter extends Thread {
+    final ServerSocket server;
+    final AtomicInteger connections = new AtomicInteger();
+    private final StringBuilder text = new StringBuilder();
+    // Lo recibido por cada conexion, en orden.
+    private final List<StringBuilder> received = new ArrayList<>();
+    private final CRC32 crc = new CRC32();
+    private long count;
+    private int closed;
+    private boolean paused;
+
+    StandInPrinter() throws IOException {
+      server = new ServerSocket(0);
+      // Buffers chicos: si no lee, la ventana TCP se llena enseguida.
+      server.setReceiveBufferSize(4096);
+      setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+      try {
+        for (;;) {
+          final Socket socket = server.accept();
+          connections.incrementAndGet();
+          final StringBuilder connection = new StringBuilder();
+          synchronized (this) {
+            received.add(connection);
+          }
+          final Thread reader = new Thread() {
+            @Override
+            public void run() {
+              read(socket, connection);
+            }
+          };
+          reader.setDaemon(true);
+          reader.start();
+        }
+      } catch (IOException closed) {
+        // Fin del test.
+      }
+    }
+
+    private void read(Socket socket, StringBuilder connection) {
+      final byte[] buffer = new byte[1024];
+      try (InputStream in = socket.getInputStream()) {
+        for (;;) {
+          synchronized (this) {
+            while (paused) {
+              wait();
+            }
+          }
+          final int n = in.read(buffer);
+          if (n == -1) {
+            return;
+          }
+          synchronized (this) {
+            crc.update(buffer, 0, n);
+            count += n;
+            if (text.length() < (1 << 20)) {
+              text.append(new String(buffer, 0, n, "ISO-8859-1"));
+              connection.append(new String(buffer, 0, n, "ISO-8859-1"));
+            }
+            notifyAll();
+          }
+        }
+      } catch (IOException | InterruptedException e) {
+        // Conexion cerrada.
+      } finally {
+        synchronized (this) {
+          closed++;
+          notifyAll();
+        }
+      }
+    }
+
+    synchronized void setPaused(boolean paused) {
+      this.paused = paused;
+      notifyAll();
+    }
+
+    synchronized String getText() {
+      return text.toString();
+    }
+
+    synchronized List<String> getConnectionTexts() {
+      final List<String> texts = new ArrayList<>();
+      for (StringBuilder connection : received) {
+        texts.add(connection.toString());
+      }
+      return texts;
+    }
+
+    synchronized long getCount() {
+      return count;
+    }
+
+    synchronized long getCrc() {
+      return crc.getValue();
+    }
+
+    synchronized void awaitCount(long expected) throws InterruptedException {
+      while (count < expected) {
+        wait();
+      }
+    }
+
+    /* Hasta que la ultima conexion reciba suffix y las anteriores se cierren. */
+    synchronized void awaitLastConnection(String suffix) throws InterruptedException {
+      for (;;) {
+        final StringBuilder last = received.isEmpty() ? null : received.get(received.size() - 1);
+        if (last != null && last.toString().endsWith(suffix) && closed >= received.size() - 1) {
+          return;
+        }
+        wait();
+      }
+    }
+  }
+
+  /* Etiqueta de texto; la conversion puede esperar un latch. */
+  static class TextLabel implements PrintQueue.Label {
+    final String name;
+    final CountDownLatch gate;
+    final List<Boolean> sent = Collections.synchronizedList(new ArrayList<Boolean>());
+
+    TextLabel(String name, CountDownLatch gate) {
+      this.name = name;
+      this.gate = gate;
+    }
+
+    TextLabel(String name) {
+      this(name, null);
+    }
+
+    @Override
+    public void writeTo(PrinterOutputStream out) throws IOException {
+      if (gate != null) {
+        try {
+          gate.await();
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+      }
+      out.write("^XA^FD" + name + "^FS^XZ");
+    }
+
+    @Override
+    public void onSent(boolean ok) {
+      sent.add(ok);
+    }
+  }
+
+  /* Etiqueta de size bytes con un patron, para ver que llega entera. */
+  static final class BigLabel implements PrintQueue.Label {
+    final long size;
+    final long failAt;
+    final AtomicLong written = new AtomicLong();
+    final CRC32 crc = new CRC32();
+    final List<Boolean> sent = Collections.synchronizedList(new ArrayList<Boolean>());
+
+    BigLabel(long size, long failAt) {
+      this.size = size;
+      this.failAt = failAt;
+    }
+
+    @Override
+    public void writeTo(PrinterOutputStream out) throws IOException {
+      final byte[] piece = new byte[8 * 1024];
+      for (int i = 0; i < piece.length; i++) {
+        piece[i] = (byte) ('A' + i % 26);
+      }
+      crc.reset();
+      written.set(0);
+      for (long n = 0; n < size; n += piece.length) {
+        if (n >= failAt) {
+          throw new IOException("conversion failed");
+        }
+        final int length = (int) Math.min(piece.length, size - n);
+        out.write(piece, 0, length);
+        crc.update(piece, 0, length);
+        written.addAndGet(length);
+      }
+    }
+
+    @Override
+    public void onSent(boolean ok) {
+      sent.add(ok);
+    }
+  }
+
+  /* Eventos del listener en orden, y el error de cada trabajo terminado. */
+  static final class Recorder implements PrintQueue.Listener {
+    final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+    final Map<Long, Exception> errors = Collections.synchronizedMap(new HashMap<Long, Exception>());
+    private int finished;
+    volatile boolean failNextStart;
+
+    @Override
+    public void onJobStarted(PrintQueue.Job job) {
+      events.add("started " + job.id);
+      if (failNextStart) {
+        failNextStart = false;
+        throw new OutOfMemoryError("fake");
+      }
+    }
+
+    @Override
+    public void onLabelSent(PrintQueue.Job job) {
+      events.add("sent " + job.id);
+    }
+
+    @Override
+    public void onJobFinished(PrintQueue.Job job, Exception error) {
+      events.add("finished " + job.id);
+      synchronized (this) {
+        errors.put(job.id, error);
+        finished++;
+        notifyAll();
+      }
+    }
+
+    synchronized void awaitFinished(int jobs) throws InterruptedException {
+      final long end = System.currentTimeMillis() + 20000;
+      while (finished < jobs && System.currentTimeMillis() < end) {
+        wait(end - System.currentTimeMillis());
+      }
+      assertEquals(events.toString(), jobs, finished);
+    }
+  }
+
+  private StandInPrinter printer;
+  private ExecutorService converters;
+  private Recorder recorder;
+  private PrintQueue queue;
+
+  @Before
+  public void start() throws IOException {
+    printer = new StandInPrinter();
+    printer.start();
+    converters = Executors.newFixedThreadPool(4);
+    recorder = new Recorder();
+    queue = new PrintQueue(converters, recorder);
+  }
+
+  @After
+  public void stop() throws IOException {
+    printer.setPaused(false);
+    printer.server.close();
+    converters.shutdownNow();
+  }
+
+  private PrintQueue.Connector connector() {
+    return new PrintQueue.Connector() {
+      @Override
+      public PrinterConnection open() throws IOException {
+        return new TcpPrinterConnection("127.0.0.1", printer.server.getLocalPort(), 10000);
+      }
+
+      @Override
+      public int getChunkSize() {
+        return 1000;
+      }
+    };
+  }
+
+  private PrintQueue.Job submit(int priority, PrintQueue.Label... labels) {
+    return queue.submit(PRINTER, connector(), Arrays.asList(labels), priority);
+  }
+
+  private static String zpl(String... names) {
+    final StringBuilder text = new StringBuilder();
+    for (String name : names) {
+      text.append("^XA^FD").append(name).append("^FS^XZ");
+    }
+    return text.toString();
+  }
+
+  private void awaitText(String expected) throws InterruptedException {
+    printer.awaitCount(expected.length());
+    assertEquals(expected, printer.getText());
+  }
+
+  @Test(timeout = 30000)
+  public void jobsArriveInOrderOverOneConnection() throws Exception {
+    final CountDownLatch gate = new CountDownLatch(1);
+    final List<String> expected = new ArrayList<>();
+    final List<TextLabel> labels = new ArrayList<>();
+    for (int j = 0; j < 3; j++) {
+      final TextLabel[] job = new TextLabel[5];
+      for (int i = 0; i < job.length; i++) {
+        job[i] = new TextLabel("job" + j + "-" + i, j == 0 && i == 0 ? gate : null);
+        expected.add(job[i].name);
+        labels.add(job[i]);
+      }
+      submit(0, job);
+    }
+    assertEquals(3, queue.getJobCount());
+    gate.countDown();
+
+    recorder.awaitFinished(3);
+    awaitText(zpl(expected.toArray(new String[0])));
+    assertEquals(1, printer.connections.get());
+    for (TextLabel label : labels) {
+      assertEquals(label.name, Collections.singletonList(true), label.sent);
+    }
+    assertEquals(Arrays.asList(null, null, null), new ArrayList<>(recorder.errors.values()));
+    assertEquals(0, queue.getJobCount());
+  }
+
+  @Test(timeout = 30000)
+  public void higherPriorityJumpsAheadOfWaitingJobs() throws Exception {
+    final CountDownLatch gate = new CountDownLatch(1);
+    // Tres etiquetas: la ventana (prefetch 2) queda llena con las del primer trabajo.
+    submit(0, new TextLabel("a0", gate), new TextLabel("a1"), new TextLabel("a2"));
+    submit(0, new TextLabel("b0"));
+    submit(5, new TextLabel("c0"));
+    submit(0, new TextLabel("d0"));
+    assertEquals(3, queue.getPendingCount(PRINTER));
+    gate.countDown();
+
+    recorder.awaitFinished(4);
+    awaitText(zpl("a0", "a1", "a2", "c0", "b0", "d0"));
+  }
+
+  @Test(timeout = 30000)
+  public void cancelDropsWaitingAndRunningJobs() throws Exception {
+    final CountDownLatch gate = new CountDownLatch(1);
+    final TextLabel a0 = new TextLabel("a0", gate);
+    final TextLabel a1 = new TextLabel("a1");
+    final PrintQueue.Job a = submit(0, a0, a1, new TextLabel("a2"));
+    final PrintQueue.Job b = submit(0, new TextLabel("b0"));
+
+    // En espera: sale de la cola y termina enseguida.
+    assertTrue(queue.cancel(b.id));
+    assertFalse(queue.cancel(b.id));
+    assertTrue(b.isCancelled());
+    assertTrue(recorder.errors.containsKey(b.id));
+    assertNull(recorder.errors.get(b.id));
+
+    // Imprimiendose: la etiqueta que espera la conversion se descarta.
+    assertTrue(queue.cancel(a.id));
+    gate.countDown();
+    recorder.awaitFinished(2);
+    assertNull(recorder.errors.get(a.id));
+    assertEquals(Collections.singletonList(false), a0.sent);
+    assertEquals(Collections.singletonList(false), a1.sent);
+    assertEquals(0, a.getSentCount());
+
+    // La cola sigue andando.
+    submit(0, new TextLabel("c0"));
+    recorder.awaitFinished(3);
+    awaitText(zpl("c0"));
+    assertFalse(queue.cancel(12345));
+  }
+
+  @Test(timeout = 30000)
+  public void deadSenderFailsItsJobsAndTheNextSubmitPrints() throws Exception {
+    final CountDownLatch gate = new CountDownLatch(1);
+    recorder.failNextStart = true;
+    final TextLabel a0 = new TextLabel("a0", gate);
+    final PrintQueue.Job a = submit(0, a0, new TextLabel("a1"));
+    final PrintQueue.Job b = submit(0, new TextLabel("b0"));
+
+    // El hilo de la impresora muere con un Error en onJobStarted.
+    final Thread.UncaughtExceptionHandler handler = Thread.getDefaultUncaughtExceptionHandler();
+    Thread.setDefaultUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+      @Override
+      public void uncaughtException(Thread t, Throwable e) {
+        // Esperado.
+      }
+    });
+    try {
+      gate.countDown();
+      recorder.awaitFinished(2);
+    } finally {
+      Thread.setDefaultUncaughtExceptionHandler(handler);
+    }
+    for (PrintQueue.Job job : new PrintQueue.Job[] { a, b }) {
+      final Exception error = recorder.errors.get(job.id);
+      assertTrue(String.valueOf(error), error instanceof IllegalStateException);
+      assertTrue(error.getCause() instanceof OutOfMemoryError);
+    }
+    assertTrue(a0.sent.contains(false));
+    assertEquals(0, queue.getJobCount());
+
+    // Antes del arreglo la impresora quedaba marcada como corriendo y esto no terminaba.
+    submit(0, new TextLabel("c0"));
+    recorder.awaitFinished(3);
+    awaitText(zpl("c0"));
+  }
+
+  @Test(timeout = 30000)
+  public void fullQueueRejectsThroughTheListener() throws Exception {
+    queue.setMaxJobs(1);
+    final CountDownLatch gate = new CountDownLatch(1);
+    final PrintQueue.Job a = submit(0, new TextLabel("a0", gate));
+    final PrintQueue.Job b = submit(0, new TextLabel("b0"));
+    assertFalse(a.id == b.id);
+
+    recorder.awaitFinished(1);
+    assertTrue(recorder.errors.get(b.id) instanceof RejectedExecutionException);
+    assertEquals(1, queue.getJobCount());
+
+    gate.countDown();
+    recorder.awaitFinished(2);
+    awaitText(zpl("a0"));
+  }
+
+  @Test(timeout = 30000)
+  public void largeLabelStreamsWithBackpressure() throws Exception {
+    queue.setMaxBufferSize(64 * 1024);
+    final BigLabel big = new BigLabel(64L << 20, Long.MAX_VALUE);
+    printer.setPaused(true);
+    final PrintQueue.Job job = submit(0, big);
+
+    // Con la impresora sin leer la conversion se frena: no junta la etiqueta en memoria.
+    long before;
+    long after;
+    do {
+      before = big.written.get();
+      Thread.sleep(300);
+      after = big.written.get();
+    } while (after != before);
+    assertTrue(String.valueOf(after), after > 64 * 1024 && after < big.size / 2);
+
+    printer.setPaused(false);
+    recorder.awaitFinished(1);
+    assertNull(recorder.errors.get(job.id));
+    printer.awaitCount(big.size);
+    assertEquals(big.size, printer.getCount());
+    assertEquals(big.crc.getValue(), printer.getCrc());
+    assertEquals(big.size, job.getBytes());
+    assertEquals(Collections.singletonList(true), big.sent);
+  }
+
+  @Test(timeout = 30000)
+  public void prefetchZeroWritesStraightToThePrinter() throws Exception {
+    queue.setPrefetch(0);
+    final BigLabel first = new BigLabel(16L << 20, Long.MAX_VALUE);
+    final BigLabel second = new BigLabel(1000, Long.MAX_VALUE);
+    printer.setPaused(true);
+    submit(0, first, second);
+
+    long before;
+    do {
+      before = first.written.get();
+      Thread.sleep(300);
+    } while (first.written.get() != before);
+    // Ni la etiqueta en curso ni la siguiente se juntan enteras.
+    assertTrue(before < first.size / 2);
+    assertEquals(0, second.written.get());
+
+    printer.setPaused(false);
+    recorder.awaitFinished(1);
+    printer.awaitCount(first.size + second.size);
+    final CRC32 expected = new CRC32();
+    final byte[] piece = new byte[8 * 1024];
+    for (int i = 0; i < piece.length; i++) {
+      piece[i] = (byte) ('A' + i % 26);
+    }
+    for (long n = 0; n < first.size; n += piece.length) {
+      expected.update(piece, 0, (int) Math.min(piece.length, first.size - n));
+    }
+    expected.update(piece, 0, 1000);
+    assertEquals(expected.getValue(), printer.getCrc());
+  }
+
+  @Test(timeout = 30000)
+  public void conversionErrorsFailTheJobOnly() throws Exception {
+    queue.setMaxBufferSize(64 * 1024);
+    // Falla antes de llenar el buffer: no llega nada y la conexion sigue.
+    final PrintQueue.Job buffered = submit(0, new BigLabel(10000, 5000));
+    final PrintQueue.Job ok = submit(0, new TextLabel("ok"));
+    recorder.awaitFinished(2);
+    assertEquals("conversion failed", recorder.errors.get(buffered.id).getMessage());
+    assertNull(recorder.errors.get(ok.id));
+    awaitText(zpl("ok"));
+    assertEquals(Collections.singletonList(zpl("ok")), printer.getConnectionTexts());
+
+    // Falla mientras se manda directo: a la impresora llega parte de la etiqueta
+    // (menos lo que quedo en los buffers) y el siguiente trabajo abre otra conexion.
+    final BigLabel partial = new BigLabel(1 << 20, 512 * 1024);
+    final PrintQueue.Job streamed = submit(0, partial);
+    final PrintQueue.Job after = submit(0, new TextLabel("after"));
+    recorder.awaitFinished(4);
+    assertEquals("conversion failed", recorder.errors.get(streamed.id).getMessage());
+    assertEquals(Collections.singletonList(false), partial.sent);
+    assertNull(recorder.errors.get(after.id));
+    printer.awaitLastConnection(zpl("after"));
+    final int received = printer.getText().length() - zpl("ok").length() - zpl("after").length();
+    assertTrue(String.valueOf(received), received > 0 && received <= 512 * 1024);
+    final List<String> texts = printer.getConnectionTexts();
+    assertEquals(zpl("after"), texts.get(texts.size() - 1));
+    // La etiqueta cortada quedo en la conexion anterior, que se cerro.
+    final String broken = texts.get(texts.size() - 2);
+    assertTrue(broken.endsWith(zpl("ok")) || broken.length() >= received);
+    assertFalse(broken.contains("after"));
+  }
+
+  @Test(timeout = 30000)
+  public void rejectsEmptyJobs() {
+    try {
+      queue.submit(PRINTER, connector(), Collections.<PrintQueue.Label>emptyList(), 0);
+    } catch (IllegalArgumentException expected) {
+      assertSame(IllegalArgumentException.class, expected.getClass());
+      return;
+    }
+    throw new AssertionError("empty job accepted");
+  }
+}
@@ -0,0 +1,81 @@
+package com.zplcode;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+/*
+ * La pasada unica de RasterPipeline contra el proceso original en varias
+ * pasadas: apply(GrayScale) + FloydSteinbergDithering + getRasterBytes.
+ */
+public class RasterPipelineTest {
+
+  private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+  @AfterClass
+  public static void shutdown() {
+    POOL.shutdown();
+  }
+
+  @Test
+  public void thresholdMatchesGetRasterBytes() {
+    final Random random = new Random(3);
+    for (int n = 0; n < 50; n++) {
+      final PixelImage image = TestImages.random(random, 1 + random.nextInt(200), 1 + random.nextInt(100));
+      final int threshold = random.nextInt(256);
+
+      final byte[] expected = TestImages.copy(image).getRasterBytes(threshold);
+      final RasterPipeline pipeline = new RasterPipeline(threshold);
+      assertArrayEquals(expected, pipeline.getRasterBytes(image));
+      assertArrayEquals(expected, pipeline.getRasterBytes(image, POOL));
+    }
+  }
+
+  @Test
+  public void grayScaleMatchesMultipass() {
+    final Random random = new Random(4);
+    for (int n = 0; n < 50; n++) {
+      final PixelImage image = TestImages.random(random, 1 + random.nextInt(200), 1 + random.nextInt(100));
+
+      final PixelImage multipass = TestImages.copy(image);
+      multipass.apply(GrayScale.DEFAULT);
+      final byte[] expected = multipass.getRasterBytes(127);
+
+      final RasterPipeline pipeline = new RasterPipeline(GrayScale.DEFAULT, false, 127);
+      assertArrayEquals(expected, pipeline.getRasterBytes(image));
+      assertArrayEquals(expected, pipeline.getRasterBytes(image, POOL));
+    }
+  }
+
+  @Test
+  public void floydSteinbergMatchesMultipass() {
+    final Random random = new Random(5);
+    for (int n = 0; n < 50; n++) {
+      final PixelImage image = TestImages.random(random, 1 + random.nextInt(200), 1 + random.nextInt(100));
+
+      final PixelImage multipass = TestImages.copy(image);
+      multipass.apply(GrayScale.DEFAULT);
+      final byte[] expected = multipass.newTransform(new FloydSteinbergDithering()).getRasterBytes(127);
+
+      final RasterPipeline pipeline = new RasterPipeline(GrayScale.DEFAULT, true, 127);
+      assertArrayEquals(expected, pipeline.getRasterBytes(image));
+      assertArrayEquals(expected, pipeline.getRasterBytes(image, POOL));
+    }
+  }
+
+  @Test
+  public void writeRasterMatchesGetRasterBytes() throws Exception {
+    final Random random = new Random(6);
+    final PixelImage image = TestImages.random(random, 333, 77);
+    final RasterPipeline pipeline = new RasterPipeline(GrayScale.DEFAULT, true, 127);
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    pipeline.writeRaster(image, out);
+    assertArrayEquals(pipeline.getRasterBytes(image), out.toByteArray());
+  }
+}
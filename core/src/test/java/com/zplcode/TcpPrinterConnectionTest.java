@@ -0,0 +1,221 @@
+package com.zplcode;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class TcpPrinterConnectionTest {
+
+  private ServerSocket server;
+
+  @Before
+  public void listen() throws IOException {
+    server = new ServerSocket(0);
+    // Buffers chicos: una impresora que no lee llena la ventana enseguida.
+    server.setReceiveBufferSize(4096);
+  }
+
+  @After
+  public void stop() throws IOException {
+    server.close();
+  }
+
+  /* Impresora de prueba: lee todo lo que llega hasta el cierre. */
+  static final class Reader extends Thread {
+    private final Socket socket;
+    final ByteArrayOutputStream received = new ByteArrayOutputStream();
+    volatile IOException error;
+
+    Reader(Socket socket) {
+      this.socket = socket;
+      setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+      try (InputStream in = socket.getInputStream()) {
+        final byte[] buffer = new byte[1000];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+          received.write(buffer, 0, n);
+        }
+      } catch (IOException e) {
+        error = e;
+      }
+    }
+  }
+
+  /* Largos de cada write que llega al stream de la impresora. */
+  static final class RecordingOutputStream extends OutputStream {
+    private final OutputStream out;
+    final List<Integer> writes = new ArrayList<>();
+
+    RecordingOutputStream(OutputStream out) {
+      this.out = out;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      writes.add(1);
+      out.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      writes.add(len);
+      out.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.close();
+    }
+  }
+
+  @Test(timeout = 20000)
+  public void bytesArriveIntact() throws Exception {
+    final TcpPrinterConnection connection = new TcpPrinterConnection("127.0.0.1", server.getLocalPort(), 5000);
+    final Reader reader = new Reader(server.accept());
+    reader.start();
+    assertEquals("127.0.0.1:" + server.getLocalPort(), connection.getName());
+
+    final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    final Random random = new Random(67);
+    final PrinterOutputStream out = new PrinterOutputStream(connection.getOutputStream(), 1000);
+    for (int n = 0; n < 300; n++) {
+      switch (n % 3) {
+        case 0: {
+          final byte[] data = new byte[random.nextInt(5000)];
+          random.nextBytes(data);
+          out.write(data, 0, data.length);
+          expected.write(data);
+          break;
+        }
+        case 1:
+          out.write(n);
+          expected.write(n);
+          break;
+        default: {
+          final String text = "^FD" + n + " \u00f1and\u00fa \ud83d\ude00^FS";
+          out.write(text);
+          expected.write(text.getBytes("UTF-8"));
+        }
+      }
+    }
+    out.flush();
+    assertEquals(expected.size(), out.getCount());
+    connection.close();
+    reader.join();
+
+    assertEquals(null, reader.error);
+    assertArrayEquals(expected.toByteArray(), reader.received.toByteArray());
+  }
+
+  @Test(timeout = 20000)
+  public void chunksHaveTheConfiguredSize() throws Exception {
+    final TcpPrinterConnection connection = new TcpPrinterConnection("127.0.0.1", server.getLocalPort(), 5000);
+    final Reader reader = new Reader(server.accept());
+    reader.start();
+
+    final int chunkSize = 777;
+    final RecordingOutputStream recording = new RecordingOutputStream(connection.getOutputStream());
+    final PrinterOutputStream out = new PrinterOutputStream(recording, chunkSize);
+    final Random random = new Random(71);
+    int total = 0;
+    for (int n = 0; n < 200; n++) {
+      final byte[] data = new byte[random.nextInt(3 * chunkSize)];
+      out.write(data, 0, data.length);
+      out.write('\n');
+      total += data.length + 1;
+    }
+    // Hasta el flush lo que no llena un bloque queda en el buffer.
+    assertEquals(total / chunkSize * chunkSize, out.getCount());
+    out.close();
+    reader.join();
+
+    assertEquals(total, reader.received.size());
+    assertEquals((total + chunkSize - 1) / chunkSize, recording.writes.size());
+    for (int i = 0; i < recording.writes.size() - 1; i++) {
+      assertEquals(chunkSize, (int) recording.writes.get(i));
+    }
+    assertEquals(total - (recording.writes.size() - 1) * chunkSize,
+      (int) recording.writes.get(recording.writes.size() - 1));
+  }
+
+  @Test(timeout = 20000)
+  public void stalledPrinterTimesOutAndClosesTheSocket() throws Exception {
+    final int timeout = 300;
+    final TcpPrinterConnection connection = new TcpPrinterConnection("127.0.0.1", server.getLocalPort(), timeout);
+    // Acepta y nunca lee.
+    final Socket accepted = server.accept();
+
+    final PrinterOutputStream out = new PrinterOutputStream(connection.getOutputStream(), 16 * 1024);
+    final byte[] data = new byte[64 * 1024];
+    long start = 0;
+    try {
+      for (int n = 0; n < 10000; n++) {
+        start = System.nanoTime();
+        out.write(data, 0, data.length);
+      }
+      fail("the printer never read but the writes did not time out");
+    } catch (SocketTimeoutException e) {
+      final long elapsed = (System.nanoTime() - start) / 1000000;
+      assertTrue(e.getMessage(), e.getMessage().contains("timed out after " + timeout + " ms"));
+      assertTrue(String.valueOf(elapsed), elapsed >= timeout - 50 && elapsed < 10 * timeout);
+    }
+
+    // El socket quedo cerrado: no se puede seguir escribiendo y la impresora ve el cierre.
+    try {
+      connection.getOutputStream().write(data, 0, 100);
+      fail();
+    } catch (IOException expected) {
+      // Socket closed.
+    }
+    accepted.setSoTimeout(5000);
+    try (InputStream in = accepted.getInputStream()) {
+      final byte[] buffer = new byte[8192];
+      while (in.read(buffer) != -1) {
+        // Lo que alcanzo a llegar antes del cierre.
+      }
+    } catch (SocketTimeoutException e) {
+      fail("the socket was not closed");
+    } catch (IOException reset) {
+      // Cierre con datos sin leer: connection reset.
+    }
+    connection.close();
+    accepted.close();
+  }
+
+  @Test(timeout = 20000)
+  public void refusedConnectionFails() throws Exception {
+    final int port = server.getLocalPort();
+    server.close();
+    try {
+      new TcpPrinterConnection("127.0.0.1", port, 1000);
+      fail();
+    } catch (IOException expected) {
+      // Connection refused.
+    }
+  }
+}
@@ -0,0 +1,37 @@
+package com.zplcode;
+
+import java.util.Random;
+
+/* Imagenes de prueba compartidas por los tests. */
+final class TestImages {
+
+  private TestImages() {
+  }
+
+  /* Opacos al azar, con algunos transparentes y gradientes. */
+  static PixelImage random(Random random, int width, int height) {
+    final int[] argb = new int[width * height];
+    for (int i = 0; i < argb.length; i++) {
+      switch (random.nextInt(4)) {
+        case 0:
+          argb[i] = 0;
+          break;
+        case 1:
+          argb[i] = 0xFF000000 | random.nextInt(0x1000000);
+          break;
+        default:
+          argb[i] = 0xFF000000 | (((i % width) * 255 / width) * 0x10101);
+      }
+    }
+    return new PixelImage(width, height, argb);
+  }
+
+  static PixelImage copy(PixelImage image) {
+    return new PixelImage(image.getWidth(), image.getHeight(), image.getPixels().clone());
+  }
+
+  /* Gris opaco. */
+  static int gray(int value) {
+    return 0xFF000000 | value * 0x10101;
+  }
+}
@@ -0,0 +1,174 @@
+package com.zplcode;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class TiledZplGraphicsTest {
+
+  /* Fondo de plantilla: gradiente con marcos, y una zona en blanco abajo. */
+  static PixelImage template(int width, int height) {
+    final int[] argb = new int[width * height];
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        final int value = y >= height * 3 / 4 ? 255
+          : x % 40 < 3 || y % 30 < 2 ? 0
+          : (x * 7 + y * 3) % 256;
+        argb[y * width + x] = TestImages.gray(value);
+      }
+    }
+    return new PixelImage(width, height, argb);
+  }
+
+  static String tiled(TiledZplGraphics graphics) throws Exception {
+    graphics.setPoint(16, 24);
+    return graphics.getZplCode(false);
+  }
+
+  /* Lo que imprime el ZPL, recortado a la imagen en 16,24. */
+  static byte[] printed(String zpl, int width, int height) {
+    final MonoRaster label = new ZplRenderer(16 + width, 24 + height).render(zpl);
+    final MonoRaster image = new MonoRaster(width, height);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        if (label.isBlack(16 + x, 24 + y)) {
+          image.fillRect(x, y, 1, 1, MonoRaster.BLACK);
+        }
+      }
+    }
+    return image.getRasterBytes();
+  }
+
+  static void assertPrintsLikeUntiled(PixelImage image, RasterPipeline pipeline, String zpl) throws Exception {
+    final byte[] raster = pipeline.getRasterBytes(TestImages.copy(image));
+    final ZplLibGraphics untiled = new ZplLibGraphics(TestImages.copy(image), pipeline);
+    untiled.setPoint(16, 24);
+    final byte[] expected = printed(untiled.getZplCode(false), image.getWidth(), image.getHeight());
+    assertArrayEquals(raster, expected);
+    assertArrayEquals(expected, printed(zpl, image.getWidth(), image.getHeight()));
+  }
+
+  @Test
+  public void thresholdReusesUnchangedTiles() throws Exception {
+    final ZplCache cache = new ZplCache();
+    final RasterPipeline pipeline = new RasterPipeline(GrayScale.DEFAULT, false, 127);
+    final PixelImage image = template(203, 150);
+
+    final TiledZplGraphics first = new TiledZplGraphics(TestImages.copy(image), pipeline, 64, 64, cache);
+    final String zpl = tiled(first);
+    // 4 x 3 cuadros; la fila de abajo esta casi toda en la zona blanca.
+    final int written = first.getEncodedTileCount();
+    assertTrue(written > 0);
+    assertEquals(0, first.getReusedTileCount());
+    assertEquals(12, written + first.getBlankTileCount());
+    assertPrintsLikeUntiled(image, pipeline, zpl);
+
+    final TiledZplGraphics same = new TiledZplGraphics(TestImages.copy(image), pipeline, 64, 64, cache);
+    assertEquals(zpl, tiled(same));
+    assertEquals(0, same.getEncodedTileCount());
+    assertEquals(written, same.getReusedTileCount());
+
+    // Un numero de serie en el cuadro (1, 1): solo ese se vuelve a codificar.
+    final PixelImage serial = TestImages.copy(image);
+    for (int y = 70; y < 80; y++) {
+      for (int x = 70; x < 90; x++) {
+        serial.getPixels()[y * 203 + x] = TestImages.gray(0);
+      }
+    }
+    final TiledZplGraphics changed = new TiledZplGraphics(TestImages.copy(serial), pipeline, 64, 64, cache);
+    final String serialZpl = tiled(changed);
+    assertEquals(1, changed.getEncodedTileCount());
+    assertEquals(written - 1, changed.getReusedTileCount());
+    assertFalse(zpl.equals(serialZpl));
+    assertPrintsLikeUntiled(serial, pipeline, serialZpl);
+
+    // Otro umbral no toma los cuadros del anterior.
+    final RasterPipeline darker = new RasterPipeline(GrayScale.DEFAULT, false, 60);
+    final TiledZplGraphics other = new TiledZplGraphics(TestImages.copy(image), darker, 64, 64, cache);
+    assertPrintsLikeUntiled(image, darker, tiled(other));
+    assertEquals(0, other.getReusedTileCount());
+  }
+
+  @Test
+  public void ditherReusesTilesByRaster() throws Exception {
+    final ZplCache cache = new ZplCache();
+    final RasterPipeline pipeline = new RasterPipeline(GrayScale.DEFAULT, Dithering.forName("atkinson"), 127);
+    final PixelImage image = template(150, 130);
+
+    final TiledZplGraphics first = new TiledZplGraphics(TestImages.copy(image), pipeline, 32, 32, cache);
+    final String zpl = tiled(first);
+    final int written = first.getEncodedTileCount();
+    assertEquals(0, first.getReusedTileCount());
+    assertPrintsLikeUntiled(image, pipeline, zpl);
+
+    final TiledZplGraphics same = new TiledZplGraphics(TestImages.copy(image), pipeline, 32, 32, cache);
+    assertEquals(zpl, tiled(same));
+    assertEquals(0, same.getEncodedTileCount());
+    assertEquals(written, same.getReusedTileCount());
+
+    // El error del cambio se reparte hacia la derecha y abajo, no a los cuadros de antes.
+    final PixelImage serial = TestImages.copy(image);
+    for (int y = 100; y < 110; y++) {
+      for (int x = 120; x < 140; x++) {
+        serial.getPixels()[y * 150 + x] = TestImages.gray(0);
+      }
+    }
+    final TiledZplGraphics changed = new TiledZplGraphics(TestImages.copy(serial), pipeline, 32, 32, cache);
+    final String serialZpl = tiled(changed);
+    assertTrue(changed.getEncodedTileCount() >= 1);
+    assertTrue(changed.getReusedTileCount() > written / 2);
+    assertPrintsLikeUntiled(serial, pipeline, serialZpl);
+  }
+
+  @Test
+  public void blankTilesAreNotWritten() throws Exception {
+    final int[] argb = new int[130 * 70];
+    Arrays.fill(argb, TestImages.gray(255));
+    argb[5 * 130 + 100] = TestImages.gray(0);
+    final PixelImage image = new PixelImage(130, 70, argb);
+
+    for (RasterPipeline pipeline : new RasterPipeline[] {
+      new RasterPipeline(GrayScale.DEFAULT, false, 127), new RasterPipeline(GrayScale.DEFAULT, true, 127) }) {
+      final TiledZplGraphics graphics = new TiledZplGraphics(TestImages.copy(image), pipeline, 64, 64,
+        new ZplCache());
+      final String zpl = tiled(graphics);
+      assertEquals(zpl, 1, zpl.split("\\^GFA").length - 1);
+      assertTrue(zpl, zpl.startsWith("^XA^FO80,24^GFA,"));
+      assertEquals(5, graphics.getBlankTileCount());
+      assertPrintsLikeUntiled(image, pipeline, zpl);
+    }
+  }
+
+  @Test
+  public void oddSizesPrintLikeUntiled() throws Exception {
+    final Random random = new Random(47);
+    for (int n = 0; n < 12; n++) {
+      final PixelImage image = TestImages.random(random, 1 + random.nextInt(180), 1 + random.nextInt(120));
+      final int tile = 8 * (1 + random.nextInt(6));
+      final RasterPipeline pipeline = n % 2 == 0
+        ? new RasterPipeline(GrayScale.DEFAULT, false, 127)
+        : new RasterPipeline(GrayScale.DEFAULT, true, 127);
+      final TiledZplGraphics graphics = new TiledZplGraphics(TestImages.copy(image), pipeline, tile,
+        1 + random.nextInt(50), new ZplCache());
+      graphics.setEncoding(n % 3 == 0 ? ZplLibGraphics.ENCODING_ACS : ZplLibGraphics.ENCODING_AUTO);
+      assertPrintsLikeUntiled(image, pipeline, tiled(graphics));
+    }
+  }
+
+  @Test
+  public void tileWidthMustBeWholeBytes() {
+    try {
+      new TiledZplGraphics(template(10, 10), new RasterPipeline(127), 12, 8, new ZplCache());
+      fail();
+    } catch (IllegalArgumentException expected) {
+      assertTrue(expected.getMessage().contains("tileWidth"));
+    }
+  }
+}
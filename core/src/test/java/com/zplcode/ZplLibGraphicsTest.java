@@ -0,0 +1,317 @@
+package com.zplcode;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+/*
+ * Lo que escribe getZplCode se decodifica con las reglas de ZPL y se
+ * compara con el raster de la imagen, para cada formato y con anchos que
+ * no son multiplo de 8.
+ */
+public class ZplLibGraphicsTest {
+
+  private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+  @AfterClass
+  public static void shutdown() {
+    POOL.shutdown();
+  }
+
+  /* ^GFA de un solo grafico decodificado. */
+  static final class Gfa {
+    int total;
+    int fieldCount;
+    int bytesPerRow;
+    String format;
+    byte[] raster;
+  }
+
+  /* Decodifica el primer ^GFA de zpl con las reglas del manual de ZPL. */
+  static Gfa decodeGfa(String zpl) throws Exception {
+    final int start = zpl.indexOf("^GFA,");
+    final String[] header = zpl.substring(start + 5).split(",", 4);
+    final Gfa gfa = new Gfa();
+    gfa.total = Integer.parseInt(header[0]);
+    gfa.fieldCount = Integer.parseInt(header[1]);
+    gfa.bytesPerRow = Integer.parseInt(header[2]);
+
+    String data = header[3];
+    final int end = data.indexOf('^');
+    data = end >= 0 ? data.substring(0, end) : data;
+
+    if (data.startsWith(":Z64:") || data.startsWith(":B64:")) {
+      gfa.format = data.substring(1, 4);
+      final int colon = data.lastIndexOf(':');
+      final String encoded = data.substring(5, colon);
+      assertEquals("CRC", Integer.toHexString(bitwiseCrc(encoded)), data.substring(colon + 1));
+      byte[] bytes = Base64.getMimeDecoder().decode(encoded);
+      if (gfa.format.equals("Z64")) {
+        bytes = inflate(bytes, gfa.total);
+      }
+      gfa.raster = bytes;
+    } else {
+      gfa.format = "ACS";
+      gfa.raster = decodeAcs(data, gfa.total, gfa.bytesPerRow);
+    }
+    return gfa;
+  }
+
+  static int bitwiseCrc(String text) {
+    return Integer.parseInt(Crc16Test.bitwiseCrc(text.getBytes()), 16);
+  }
+
+  static byte[] inflate(byte[] compressed, int total) throws Exception {
+    final Inflater inflater = new Inflater();
+    inflater.setInput(compressed);
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final byte[] buffer = new byte[4096];
+    while (!inflater.finished()) {
+      final int n = inflater.inflate(buffer);
+      if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+        break;
+      }
+      out.write(buffer, 0, n);
+    }
+    inflater.end();
+    return out.toByteArray();
+  }
+
+  /*
+   * Hex comprimido: G..Y repiten 1..19 veces, g..z 20..400 (se suman) el
+   * siguiente digito; ',' completa la fila con 0, '!' con F y ':' repite la
+   * fila anterior.
+   */
+  static byte[] decodeAcs(String data, int total, int bytesPerRow) {
+    final int digitsPerRow = bytesPerRow * 2;
+    final StringBuilder all = new StringBuilder();
+    StringBuilder row = new StringBuilder();
+    String previous = null;
+    int count = 0;
+
+    for (int i = 0; i < data.length(); i++) {
+      final char c = data.charAt(i);
+      if (c >= 'G' && c <= 'Y') {
+        count += c - 'G' + 1;
+      } else if (c >= 'g' && c <= 'z') {
+        count += (c - 'g' + 1) * 20;
+      } else if (c == ',' || c == '!') {
+        while (row.length() < digitsPerRow) {
+          row.append(c == ',' ? '0' : 'F');
+        }
+      } else if (c == ':') {
+        assertEquals("':' at the start of a row", 0, row.length());
+        row.append(previous);
+      } else if (Character.digit(c, 16) >= 0) {
+        for (int n = Math.max(1, count); n > 0; n--) {
+          row.append(c);
+        }
+        count = 0;
+      } else if (c != '\n' && c != '\r') {
+        throw new AssertionError("unexpected '" + c + "'");
+      }
+
+      assertTrue("row overflow", row.length() <= digitsPerRow);
+      if (row.length() == digitsPerRow) {
+        previous = row.toString();
+        all.append(previous);
+        row = new StringBuilder();
+      }
+    }
+    assertEquals("partial row", 0, row.length());
+
+    final byte[] raster = new byte[all.length() / 2];
+    for (int i = 0; i < raster.length; i++) {
+      raster[i] = (byte) Integer.parseInt(all.substring(i * 2, i * 2 + 2), 16);
+    }
+    assertEquals("rows", total, raster.length);
+    return raster;
+  }
+
+  /* Filas lisas, repetidas, con ruido y llenas, para pasar por todas las reglas de ACS. */
+  static PixelImage rowsImage(Random random, int width, int height) {
+    final int[] argb = new int[width * height];
+    for (int y = 0; y < height; y++) {
+      final int kind = random.nextInt(5);
+      for (int x = 0; x < width; x++) {
+        final boolean black = kind == 0 || (kind == 1 && x < width / 3)
+          || (kind == 2 && random.nextInt(50) == 0) || (kind == 4 && x >= width / 2);
+        argb[y * width + x] = black ? 0xFF000000 : 0xFFFFFFFF;
+      }
+      if (kind == 3 && y > 0) {
+        System.arraycopy(argb, (y - 1) * width, argb, y * width, width);
+      }
+    }
+    return new PixelImage(width, height, argb);
+  }
+
+  static String zpl(PixelImage image, int threshold, String encoding, ForkJoinPool pool) throws Exception {
+    final ZplLibGraphics graphics = new ZplLibGraphics(image, threshold);
+    graphics.setPoint(10, 20);
+    graphics.setEncoding(encoding);
+    graphics.setPool(pool);
+    return graphics.getZplCode(false);
+  }
+
+  /* Decodifica el ^GFA y lo compara con el raster; devuelve el formato usado. */
+  static String assertRoundTrip(PixelImage image, String encoding, ForkJoinPool pool) throws Exception {
+    final String zpl = zpl(image, 127, encoding, pool);
+    assertTrue(zpl, zpl.startsWith("^XA^FO10,20^GFA,") && zpl.endsWith("^XZ"));
+
+    final Gfa gfa = decodeGfa(zpl);
+    final byte[] expected = TestImages.copy(image).getRasterBytes(127);
+    final String name = encoding + " " + image.getWidth() + "x" + image.getHeight();
+    assertEquals(name, image.getBytesPerRow(), gfa.bytesPerRow);
+    assertEquals(name, expected.length, gfa.total);
+    assertEquals(name, expected.length, gfa.fieldCount);
+    assertArrayEquals(name, expected, gfa.raster);
+    return gfa.format;
+  }
+
+  /* Base64.DEFAULT de Android: lineas de 76 terminadas en '\n', incluida la ultima. */
+  static String androidBase64(byte[] data) {
+    final String encoded = Base64.getEncoder().encodeToString(data);
+    final StringBuilder result = new StringBuilder();
+    for (int i = 0; i < encoded.length(); i += 76) {
+      result.append(encoded, i, Math.min(encoded.length(), i + 76)).append('\n');
+    }
+    return result.toString();
+  }
+
+  /*
+   * getZplCode de la version original: getRasterBytes, deflate en memoria,
+   * Base64.DEFAULT y la CRC bit a bit; con el total ya corregido.
+   */
+  static String baselineZ64(PixelImage image, int threshold) throws Exception {
+    final byte[] raster = TestImages.copy(image).getRasterBytes(threshold);
+    final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    final DeflaterOutputStream deflater = new DeflaterOutputStream(compressed);
+    deflater.write(raster);
+    deflater.close();
+
+    final String z64 = androidBase64(compressed.toByteArray());
+    return "^XA^FO10,20^GFA," + raster.length + "," + raster.length + "," + image.getBytesPerRow() + ","
+      + ":Z64:" + z64 + ":" + Crc16Test.bitwiseCrc(z64.getBytes()) + "^XZ";
+  }
+
+  @Test
+  public void z64MatchesBaseline() throws Exception {
+    final Random random = new Random(7);
+    for (int n = 0; n < 40; n++) {
+      final PixelImage image = TestImages.random(random, 1 + random.nextInt(300), 1 + random.nextInt(120));
+      final String expected = baselineZ64(image, 127);
+      assertEquals(expected, zpl(image, 127, ZplLibGraphics.ENCODING_Z64, null));
+      assertEquals(expected, zpl(image, 127, ZplLibGraphics.ENCODING_Z64, POOL));
+      assertEquals("Z64", assertRoundTrip(image, ZplLibGraphics.ENCODING_Z64, null));
+    }
+  }
+
+  @Test
+  public void streamedOutputMatchesString() throws Exception {
+    final Random random = new Random(13);
+    for (String encoding : new String[] { ZplLibGraphics.ENCODING_Z64, ZplLibGraphics.ENCODING_B64,
+      ZplLibGraphics.ENCODING_ACS, ZplLibGraphics.ENCODING_AUTO }) {
+      final PixelImage image = TestImages.random(random, 1 + random.nextInt(500), 1 + random.nextInt(200));
+      final ZplLibGraphics graphics = new ZplLibGraphics(image, new RasterPipeline(GrayScale.DEFAULT, true, 127));
+      graphics.setEncoding(encoding);
+      final String expected = graphics.getZplCode(true);
+
+      final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+      graphics.writeZplCode(stream, true);
+      assertEquals(encoding, expected, stream.toString("US-ASCII"));
+
+      final ByteArrayOutputStream channel = new ByteArrayOutputStream();
+      graphics.writeZplCode(Channels.newChannel(channel), true);
+      assertEquals(encoding, expected, channel.toString("US-ASCII"));
+    }
+  }
+
+  @Test
+  public void byteCountsCoverPaddedRows() throws Exception {
+    // 13 pixeles son 2 bytes por fila: 13 * 10 / 8 = 16 dejaria afuera 4 filas.
+    final PixelImage image = TestImages.random(new Random(1), 13, 10);
+    for (String encoding : new String[] { ZplLibGraphics.ENCODING_Z64, ZplLibGraphics.ENCODING_B64,
+      ZplLibGraphics.ENCODING_ACS, ZplLibGraphics.ENCODING_AUTO }) {
+      assertTrue(zpl(image, 127, encoding, null).startsWith("^XA^FO10,20^GFA,20,20,2,"));
+    }
+  }
+
+  @Test
+  public void b64RoundTrip() throws Exception {
+    final Random random = new Random(8);
+    for (int n = 0; n < 40; n++) {
+      final PixelImage image = TestImages.random(random, 1 + random.nextInt(300), 1 + random.nextInt(120));
+      assertEquals("B64", assertRoundTrip(image, ZplLibGraphics.ENCODING_B64, null));
+      assertRoundTrip(image, ZplLibGraphics.ENCODING_B64, POOL);
+    }
+  }
+
+  @Test
+  public void acsRoundTrip() throws Exception {
+    final Random random = new Random(9);
+    for (int n = 0; n < 60; n++) {
+      // Hasta 3000 pixeles: filas de mas de 419 digitos iguales.
+      final int width = 1 + random.nextInt(n % 2 == 0 ? 3000 : 64);
+      final PixelImage image = rowsImage(random, width, 1 + random.nextInt(40));
+      assertEquals("ACS", assertRoundTrip(image, ZplLibGraphics.ENCODING_ACS, null));
+      assertRoundTrip(image, ZplLibGraphics.ENCODING_ACS, POOL);
+    }
+  }
+
+  @Test
+  public void acsUsesRowFillsRepeatsAndCounts() throws Exception {
+    // Multiplo de 8 (con relleno la fila nunca termina en F y no hay '!'), y
+    // un tercio negro de 500 digitos: mas que una cuenta z (400) + Y (19).
+    final PixelImage image = rowsImage(new Random(12), 6000, 40);
+    final String zpl = zpl(image, 127, ZplLibGraphics.ENCODING_ACS, null);
+    final String data = zpl.substring(zpl.indexOf("^GFA,")).split(",", 5)[4];
+    for (char c : new char[] { ',', '!', ':', 'z', 'G' }) {
+      assertTrue("no '" + c + "' in " + data, data.indexOf(c) >= 0);
+    }
+    assertRoundTrip(image, ZplLibGraphics.ENCODING_ACS, null);
+  }
+
+  @Test
+  public void autoRoundTripPicksShortest() throws Exception {
+    final Random random = new Random(10);
+    for (int n = 0; n < 20; n++) {
+      final PixelImage image = n % 2 == 0
+        ? TestImages.random(random, 1 + random.nextInt(300), 1 + random.nextInt(80))
+        : rowsImage(random, 1 + random.nextInt(300), 1 + random.nextInt(80));
+      assertRoundTrip(image, ZplLibGraphics.ENCODING_AUTO, null);
+
+      final int auto = zpl(image, 127, ZplLibGraphics.ENCODING_AUTO, null).length();
+      for (String encoding : new String[] { ZplLibGraphics.ENCODING_Z64, ZplLibGraphics.ENCODING_B64,
+        ZplLibGraphics.ENCODING_ACS }) {
+        assertTrue(encoding + " is shorter than auto", zpl(image, 127, encoding, null).length() >= auto);
+      }
+    }
+  }
+
+  @Test
+  public void downloadGraphicRoundTrip() throws Exception {
+    final PixelImage image = rowsImage(new Random(11), 203, 31);
+    final ZplLibGraphics graphics = new ZplLibGraphics(image, 127);
+    graphics.setEncoding(ZplLibGraphics.ENCODING_ACS);
+    final byte[] raster = TestImages.copy(image).getRasterBytes(127);
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    graphics.writeDownloadGraphic(out, "TEST", raster);
+    final String dg = out.toString("US-ASCII");
+    final String prefix = "~DGR:TEST.GRF," + raster.length + "," + image.getBytesPerRow() + ",";
+    assertTrue(dg, dg.startsWith(prefix));
+    assertArrayEquals(raster, decodeAcs(dg.substring(prefix.length()).trim(), raster.length,
+      image.getBytesPerRow()));
+  }
+}
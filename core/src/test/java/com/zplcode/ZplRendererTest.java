@@ -0,0 +1,149 @@
+package com.zplcode;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+public class ZplRendererTest {
+
+  private static final int LEFT = 10;
+  private static final int TOP = 20;
+
+  static final String[] ENCODINGS = {
+    ZplLibGraphics.ENCODING_Z64, ZplLibGraphics.ENCODING_B64, ZplLibGraphics.ENCODING_ACS,
+    ZplLibGraphics.ENCODING_AUTO
+  };
+
+  /* La imagen impresa en LEFT,TOP, pixel por pixel, como raster con filas enteras. */
+  static byte[] printed(MonoRaster label, int width, int height) {
+    final int bytesPerRow = (width + 7) / 8;
+    final byte[] raster = new byte[bytesPerRow * height];
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        if (label.isBlack(LEFT + x, TOP + y)) {
+          raster[y * bytesPerRow + x / 8] |= (byte) (0x80 >>> (x % 8));
+        }
+      }
+    }
+    return raster;
+  }
+
+  static void assertPrintsRaster(String message, byte[] expected, String zpl, int width, int height) {
+    final MonoRaster label = new ZplRenderer(LEFT + width + 5, TOP + height + 5).render(zpl);
+    assertArrayEquals(message, expected, printed(label, width, height));
+    // Nada fuera de la imagen.
+    for (int x = 0; x < label.getWidth(); x++) {
+      assertFalse(label.isBlack(x, TOP + height));
+    }
+  }
+
+  static ZplLibGraphics graphics(PixelImage image, String encoding) {
+    final ZplLibGraphics graphics = new ZplLibGraphics(TestImages.copy(image), 127);
+    graphics.setPoint(LEFT, TOP);
+    graphics.setEncoding(encoding);
+    return graphics;
+  }
+
+  @Test
+  public void graphicFieldPrintsTheSourceRaster() throws Exception {
+    final Random random = new Random(53);
+    for (int n = 0; n < 40; n++) {
+      // Sobre todo anchos que no son multiplo de 8.
+      final int width = n < 8 ? 1 + n : 1 + random.nextInt(250);
+      final int height = 1 + random.nextInt(90);
+      final PixelImage image = TestImages.random(random, width, height);
+      final byte[] raster = TestImages.copy(image).getRasterBytes(127);
+
+      for (String encoding : ENCODINGS) {
+        final String zpl = graphics(image, encoding).getZplCode(false);
+        assertPrintsRaster(encoding + " " + width + "x" + height, raster, zpl, width, height);
+      }
+    }
+  }
+
+  @Test
+  public void downloadedGraphicPrintsTheSourceRaster() throws Exception {
+    final Random random = new Random(59);
+    for (int n = 0; n < 12; n++) {
+      final int width = 1 + random.nextInt(200);
+      final int height = 1 + random.nextInt(60);
+      final PixelImage image = TestImages.random(random, width, height);
+      final byte[] raster = TestImages.copy(image).getRasterBytes(127);
+
+      for (String command : new String[] { ZplLibGraphics.DOWNLOAD_DG, ZplLibGraphics.DOWNLOAD_DY }) {
+        final ZplLibGraphics graphics = graphics(image, ENCODINGS[n % ENCODINGS.length]);
+        graphics.setStorage('R', command);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        graphics.writeCachedZplCode(out, new GraphicRegistry().newDownloads(), "printer", false);
+        final String zpl = out.toString("US-ASCII");
+        assertTrue(zpl, zpl.startsWith("~" + command));
+        assertPrintsRaster(command + " " + width + "x" + height, raster, zpl, width, height);
+
+        // El ^XG solo, con el grafico que quedo en el renderer de antes.
+        final ZplRenderer renderer = new ZplRenderer(LEFT + width, TOP + height);
+        renderer.render(zpl);
+        final String recall = zpl.substring(zpl.indexOf("^XA"));
+        assertArrayEquals(raster, printed(renderer.render(recall), width, height));
+        renderer.clearGraphics();
+        assertArrayEquals(new byte[raster.length], printed(renderer.render(recall), width, height));
+      }
+    }
+  }
+
+  @Test
+  public void shortByteCountDropsTheLastRows() throws Exception {
+    // El total viejo (ancho * alto / 8) con un ancho de 13: faltan filas.
+    final int width = 13;
+    final int height = 24;
+    final int[] argb = new int[width * height];
+    for (int i = 0; i < argb.length; i++) {
+      argb[i] = TestImages.gray(0);
+    }
+    final PixelImage image = new PixelImage(width, height, argb);
+    final byte[] raster = TestImages.copy(image).getRasterBytes(127);
+
+    final String zpl = graphics(image, ZplLibGraphics.ENCODING_B64).getZplCode(false);
+    assertPrintsRaster("fixed header", raster, zpl, width, height);
+
+    final int total = 2 * height;
+    final String shortHeader = zpl.replace("^GFA," + total + "," + total + ",",
+      "^GFA," + width * height / 8 + "," + width * height / 8 + ",");
+    final MonoRaster label = new ZplRenderer(LEFT + width, TOP + height).render(shortHeader);
+    assertTrue(label.isBlack(LEFT, TOP + width * height / 8 / 2 - 1));
+    assertFalse(label.isBlack(LEFT, TOP + height - 1));
+  }
+
+  @Test
+  public void corruptedCrcIsRejected() throws Exception {
+    final PixelImage image = TestImages.random(new Random(61), 40, 20);
+    final String zpl = graphics(image, ZplLibGraphics.ENCODING_Z64).getZplCode(false);
+    final int crc = zpl.lastIndexOf(':') + 1;
+    final char digit = zpl.charAt(crc) == '0' ? '1' : '0';
+    try {
+      new ZplRenderer(100, 100).render(zpl.substring(0, crc) + digit + zpl.substring(crc + 1));
+      fail();
+    } catch (IllegalArgumentException expected) {
+      assertTrue(expected.getMessage().contains("CRC"));
+    }
+  }
+
+  @Test
+  public void boxesAndReverse() {
+    final MonoRaster label = new ZplRenderer(60, 40).render(
+      "^XA^FO5,5^GB20,10,10^FS^FO10,5^FR^GB10,10,10^FS^XZ");
+    assertTrue(label.isBlack(5, 5));
+    assertTrue(label.isBlack(9, 14));
+    assertFalse(label.isBlack(10, 5));
+    assertFalse(label.isBlack(19, 14));
+    assertTrue(label.isBlack(20, 5));
+    assertFalse(label.isBlack(25, 5));
+    assertEquals(60, label.getWidth());
+  }
+}
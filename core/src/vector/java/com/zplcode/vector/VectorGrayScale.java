@@ -0,0 +1,81 @@
+package com.zplcode.vector;
+
+import com.zplcode.GrayScale;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * GrayScale.applyRange con la Vector API (jdk.incubator.vector), solo para
+ * la JVM 17+ con --add-modules jdk.incubator.vector.
+ *
+ * Da exactamente lo mismo que GrayScale.pixel; el resto de cada rango que no
+ * llena un vector se hace con GrayScale.applyRange.
+ */
+public final class VectorGrayScale {
+
+  private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+  // Mismo numero de lanes que INTS, en bytes.
+  private static final VectorSpecies<Byte> BYTES =
+    VectorSpecies.of(byte.class, VectorShape.forBitSize(INTS.vectorBitSize() / 4));
+
+  // Ver GrayScale: x / 100 == (x * 5243) >>> 19 para 0 <= x <= 25600.
+  private static final int MAX_SUM = 25600;
+  private static final int DIV_100 = 5243;
+  private static final int DIV_SHIFT = 19;
+
+  private VectorGrayScale() {
+  }
+
+  /* Igual que GrayScale.applyRange(int[], int[], int, int). */
+  public static void applyRange(GrayScale filter, int[] src, int[] dst, int off, int len) {
+    final int end = off + len;
+    final int bound = off + INTS.loopBound(len);
+
+    int i = off;
+    for (; i < bound; i += INTS.length()) {
+      final IntVector argb = IntVector.fromArray(INTS, src, i);
+      final IntVector gray = gray(filter, argb);
+      final IntVector alpha = argb.and(0xFF000000);
+      final VectorMask<Integer> transparent = argb.lanewise(VectorOperators.LSHR, 24).eq(0);
+
+      alpha.or(gray.mul(0x010101))
+        .blend(-1, transparent)
+        .intoArray(dst, i);
+    }
+
+    filter.applyRange(src, dst, i, end - i);
+  }
+
+  /* Igual que GrayScale.applyRange(int[], byte[], int, int). */
+  public static void applyRange(GrayScale filter, int[] src, byte[] dst, int off, int len) {
+    final int end = off + len;
+    final int bound = off + INTS.loopBound(len);
+
+    int i = off;
+    for (; i < bound; i += INTS.length()) {
+      final IntVector argb = IntVector.fromArray(INTS, src, i);
+      final VectorMask<Integer> transparent = argb.lanewise(VectorOperators.LSHR, 24).eq(0);
+
+      ((ByteVector) gray(filter, argb).blend(255, transparent).castShape(BYTES, 0))
+        .intoArray(dst, i);
+    }
+
+    filter.applyRange(src, dst, i, end - i);
+  }
+
+  private static IntVector gray(GrayScale filter, IntVector argb) {
+    final IntVector sum = argb.lanewise(VectorOperators.LSHR, 16).and(0xFF).mul(filter.r)
+      .add(argb.lanewise(VectorOperators.LSHR, 8).and(0xFF).mul(filter.g))
+      .add(argb.and(0xFF).mul(filter.b));
+
+    return sum.max(0).min(MAX_SUM)
+      .mul(DIV_100)
+      .lanewise(VectorOperators.LSHR, DIV_SHIFT)
+      .min(255);
+  }
+}
@@ -96,12 +96,11 @@ class ZplLibGraphics
   {
     Utils.log("[ZplLibGraphics]", "getZplCode -> x:\(x) y:\(y) prefixAndSuffix:\(prefixAndSuffix)")
     
-    let width: Int = pixels.getWidth();
     let height: Int = pixels.getHeight();
     
     var data: [UInt8] = pixels.getRasterBytes(threshold: threshold);
     let bytesPerRow: Int = data.count / height;
-    let binaryByteCount: Int = (width * height) / 8;
+    let binaryByteCount: Int = data.count;
     
     // LZ77 compression
     //data = dataStatic()
@@ -1,5 +1,6 @@
 import { NativeModules, Platform } from 'react-native';
 import Element from './Element';
+import { getDownloadedGraphics } from './Utils';
 
 const LINKING_ERROR =
   `The package 'react-native-zpl-code' doesn't seem to be linked. Make sure: \n\n` +
@@ -7,7 +8,7 @@ const LINKING_ERROR =
   '- You rebuilt the app after installing the package\n' +
   '- You are not using Expo Go\n';
 
-const ZplCode = NativeModules.ZplCode
+export const ZplCode = NativeModules.ZplCode
   ? NativeModules.ZplCode
   : new Proxy(
       {},
@@ -18,6 +19,52 @@ const ZplCode = NativeModules.ZplCode
       }
     );
 
+export type DitherType =
+  | 'floyd-steinberg'
+  | 'floyd-steinberg-serpentine'
+  | 'atkinson'
+  | 'jarvis-judice-ninke'
+  | 'stucki'
+  | 'sierra'
+  | 'sierra-lite'
+  | 'bayer2'
+  | 'bayer4'
+  | 'bayer8';
+
+/**
+ * Z64: zlib + Base64, B64: Base64, ACS: compressed ASCII hex,
+ * auto: the smallest of them
+ */
+export type EncodingType = 'Z64' | 'B64' | 'ACS' | 'auto';
+
+/**
+ * auto: Otsu over the whole image, bradley / sauvola: compares each pixel with
+ * the mean of the pixels around it, for uneven lighting (camera photos)
+ */
+export type ThresholdType = 'auto' | 'bradley' | 'sauvola';
+
+export type CompressionStrategyType = 'default' | 'filtered' | 'huffman-only';
+
+/**
+ * The graphic is marked as downloaded only when a label printed with print or
+ * enqueuePrint reaches the printer. ZPL returned by toZpl includes the
+ * download until it is passed to Image.markGraphicsSent.
+ */
+export interface DownloadProps {
+  /**
+   * Identifies the printer (ip, mac...)
+   */
+  printer: string
+  /**
+   * R (RAM), E (flash), B or A. Default R
+   */
+  device?: 'R' | 'E' | 'B' | 'A'
+  /**
+   * Default DG
+   */
+  command?: 'DG' | 'DY'
+}
+
 export interface ImageProps {
   /**
    * file://var/..
@@ -29,7 +76,180 @@ export interface ImageProps {
   y?: number
   width: number
   height?: number
-  dither?: boolean
+  /**
+   * true = 'floyd-steinberg'
+   */
+  dither?: boolean | DitherType
+  /**
+   * Gray level (0..255) at or below which a pixel prints black, 'auto' to
+   * pick it with Otsu's method, or an adaptive (local) threshold (Android).
+   * Default 127
+   */
+  threshold?: number | ThresholdType
+  /**
+   * 'auto' threshold samples one of every N x N pixels (Android). Default 4,
+   * 1 uses every pixel
+   */
+  thresholdSampling?: number
+  /**
+   * Window side in pixels of the 'bradley' and 'sauvola' thresholds (Android).
+   * Default 1/8 of the image
+   */
+  thresholdWindow?: number
+  /**
+   * Process large images on several cores (Android). Default true.
+   */
+  parallel?: boolean
+  /**
+   * Sends the graphic once with ~DG/~DY and then recalls it with ^XG (Android).
+   */
+  download?: DownloadProps
+  /**
+   * Format of the graphic data (Android). Default Z64
+   */
+  encoding?: EncodingType
+  /**
+   * zlib level for Z64: 1 fastest ... 9 smallest (Android). Default 6
+   */
+  compressionLevel?: number
+  /**
+   * zlib strategy for Z64 (Android). Default 'default'
+   */
+  compressionStrategy?: CompressionStrategyType
+  /**
+   * Splits the graphic in tiles of this size (a multiple of 8), each in its own
+   * ^GFA. Only the tiles that changed since a previous image are encoded again,
+   * for templates with a small variable part (Android). Not used with download
+   */
+  tileSize?: number
+  /**
+   * Reuse the ZPL of an image already converted with the same props (Android).
+   * Default true.
+   */
+  cache?: boolean
+  /**
+   * Return the metrics of this image in toZplBatch (Android)
+   */
+  metrics?: boolean
+}
+
+export interface CacheOptions {
+  /**
+   * Memory limit in bytes. Default 8 MB
+   */
+  maxBytes?: number
+  /**
+   * Also keep the entries in the app cache directory
+   */
+  disk?: boolean
+  /**
+   * Disk limit in bytes. Default 32 MB
+   */
+  diskMaxBytes?: number
+}
+
+export interface CacheStats {
+  hits: number
+  diskHits: number
+  misses: number
+  evictions: number
+  entries: number
+  bytes: number
+  maxBytes: number
+}
+
+export type ConversionStage =
+  | 'decode'
+  | 'scale'
+  | 'pixels'
+  | 'threshold'
+  | 'grayScale'
+  | 'dither'
+  | 'pack'
+  | 'deflate'
+  | 'base64'
+  | 'crc'
+  | 'hex'
+  | 'write';
+
+/**
+ * Time of each stage in nanoseconds (stages inside another one are not
+ * counted twice; parallel stripes are added up) and sizes of one conversion.
+ */
+export interface ConversionMetrics {
+  totalNanos: number
+  stageNanos: Record<ConversionStage, number>
+  /**
+   * 1 bit raster that was encoded
+   */
+  rasterBytes: number
+  /**
+   * zlib output (Z64)
+   */
+  compressedBytes: number
+  /**
+   * Graphic data written (Z64, B64 or hex)
+   */
+  outputBytes: number
+  /**
+   * rasterBytes / outputBytes
+   */
+  compressionRatio: number
+  /**
+   * Estimate of the bitmaps and buffers that could not be reused from the pools
+   */
+  allocatedBytes: number
+  cacheHit: boolean
+  /**
+   * With download, the graphic was already on the printer
+   */
+  graphicReused: boolean
+  encodedTiles: number
+  reusedTiles: number
+}
+
+/**
+ * Percentiles of the last conversions (1024 by default)
+ */
+export interface Percentiles {
+  samples: number
+  p50: number
+  p95: number
+  p99: number
+}
+
+export interface MetricsSnapshot {
+  conversions: number
+  cacheHits: number
+  graphicReuses: number
+  encodedTiles: number
+  reusedTiles: number
+  rasterBytes: number
+  outputBytes: number
+  allocatedBytes: number
+  compressionRatio: number
+  totalNanos: Percentiles
+  stageNanos: Record<ConversionStage, Percentiles>
+  outputBytesPerConversion: Percentiles
+  allocatedBytesPerConversion: Percentiles
+}
+
+export interface MetricsOptions {
+  /**
+   * Measure every conversion for getMetrics(). Default false: only images
+   * with metrics: true (or toZplWithMetrics) are measured
+   */
+  enabled?: boolean
+  /**
+   * Emit android.os.Trace sections for each stage (Perfetto). Default false
+   */
+  trace?: boolean
+}
+
+export interface ImageZplResult {
+  zpl?: string
+  error?: string
+  metrics?: ConversionMetrics
 }
 
 export default class Image extends Element {
@@ -40,7 +260,83 @@ export default class Image extends Element {
     this.props = props
   }
 
+  /**
+   * Like toZpl, with the time of each stage of this conversion (Android).
+   */
+  toZplWithMetrics(): Promise<{ zpl: string; metrics: ConversionMetrics }> {
+    return ZplCode.imageToZplWithMetrics(this.props);
+  }
+
   toZpl(): string {
     return ZplCode.imageToZpl(this.props);
   }
+
+  /**
+   * Converts many images in one call, in parallel (Android).
+   * The results keep the input order; a failed image gets `error`
+   * instead of `zpl` and does not fail the rest.
+   */
+  static toZplBatch(images: ImageProps[]): Promise<ImageZplResult[]> {
+    return ZplCode.imagesToZpl(images);
+  }
+
+  /**
+   * Forgets the graphics downloaded to a printer (for example after it
+   * restarts), so the next label downloads them again.
+   * @param printer all printers when not specified
+   */
+  static forgetDownloadedGraphics(printer?: string): void {
+    ZplCode.forgetDownloadedGraphics(printer ?? null);
+  }
+
+  /**
+   * Marks the graphics downloaded in ZPL returned by toZpl (with download)
+   * as sent, once that ZPL reached the printer. Later conversions for that
+   * printer only emit ^XG (Android).
+   * @param zpl the text that was sent
+   * @returns how many graphics were marked
+   */
+  static markGraphicsSent(printer: string, zpl: string): Promise<number> {
+    return Platform.OS === 'android'
+      ? ZplCode.markGraphicsSent(printer, getDownloadedGraphics(zpl))
+      : Promise.resolve(0);
+  }
+
+  static configureCache(options: CacheOptions): Promise<void> {
+    return ZplCode.configureCache(options);
+  }
+
+  static getCacheStats(): Promise<CacheStats> {
+    return ZplCode.getCacheStats();
+  }
+
+  static clearCache(): Promise<void> {
+    return ZplCode.clearCache();
+  }
+
+  /**
+   * p50/p95/p99 of each stage over the last conversions and totals since the
+   * start or resetMetrics() (Android).
+   */
+  static getMetrics(): Promise<MetricsSnapshot> {
+    return ZplCode.getMetrics();
+  }
+
+  static resetMetrics(): Promise<void> {
+    return ZplCode.resetMetrics();
+  }
+
+  static configureMetrics(options: MetricsOptions): Promise<void> {
+    return ZplCode.configureMetrics(options);
+  }
+
+  /**
+   * Releases the bitmaps and buffers reused between conversions (Android).
+   * It also happens on its own when the app goes to the background.
+   * Decoded bitmaps are only pooled for BitmapFactory decodes: urls, base64
+   * and, before Android 9, files and content:// uris.
+   */
+  static releaseMemory(): Promise<void> {
+    return Platform.OS === 'android' ? ZplCode.releaseMemory() : Promise.resolve();
+  }
 }
\ No newline at end of file
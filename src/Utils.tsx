@@ -29,4 +29,20 @@ export function formatField(text: string): string {
   }
   
   return sb.join("");
-}
\ No newline at end of file
+}
+/**
+ * R:NOMBRE.GRF de cada grafico que descarga el texto (~DG o ~DY con
+ * nombres de la libreria, 8 caracteres hex)
+ */
+export function getDownloadedGraphics(zpl: string): string[] {
+  const paths: string[] = []
+  const regex = /~D[GY]([RBEA]):([0-9A-F]{8})[.,]/g
+  let match: RegExpExecArray | null
+  while ((match = regex.exec(zpl)) !== null) {
+    const path = `${match[1]}:${match[2]}.GRF`
+    if (paths.indexOf(path) < 0) {
+      paths.push(path)
+    }
+  }
+  return paths
+}
@@ -1,5 +1,6 @@
+import { NativeEventEmitter, Platform, type EmitterSubscription } from "react-native";
 import Element from "./Element";
-import Image, { type ImageProps } from "./Image";
+import Image, { type ImageProps, ZplCode } from "./Image";
 import { formatField } from "./Utils";
 
 module Zpl {
@@ -14,6 +15,227 @@ module Zpl {
   export type QRCodeModelType = '1' | '2';
   export type QRErrorCorrectionLevelType = 'H' | 'Q' | 'M' | 'L';
 
+  export interface PreviewOptions {
+    /**
+     * Label size when the ZPL has no ^PW / ^LL. Default 812 x 1218 (4x6 at 203 dpi)
+     */
+    widthDots?: number
+    heightDots?: number
+  }
+
+  /**
+   * Renders ZPL to a PNG data URI without a printer (Android). Graphics and
+   * barcodes are exact; text uses an approximate font.
+   */
+  export function preview(zpl: string, options: PreviewOptions = {}): Promise<string> {
+    return ZplCode.renderZpl(zpl, options);
+  }
+
+  export interface PrinterOptions {
+    /**
+     * Default 'tcp'
+     */
+    type?: 'tcp' | 'bluetooth'
+    /**
+     * IP or host name of a network printer
+     */
+    host?: string
+    /**
+     * Default 9100
+     */
+    port?: number
+    /**
+     * MAC address of a paired Bluetooth (SPP) printer
+     */
+    address?: string
+    /**
+     * Connect timeout in ms of a network printer, and limit for each chunk
+     * written to it (a printer that stops reading fails the job). Default 10000
+     */
+    timeout?: number
+    /**
+     * Bytes written to the printer at a time. Default 16384 (tcp), 4096 (bluetooth)
+     */
+    chunkSize?: number
+  }
+
+  export interface PrintResult {
+    /**
+     * Time in the queue behind other jobs for the same printer
+     */
+    waitMs: number
+    connectMs: number
+    /**
+     * Time building the ZPL and converting images
+     */
+    convertMs: number
+    /**
+     * Time waiting for the printer to take the data
+     */
+    sendMs: number
+    totalMs: number
+    bytes: number
+    labels: number
+  }
+
+  export interface PrintJobOptions {
+    /**
+     * Jobs with a higher priority are sent first. Default 0
+     */
+    priority?: number
+  }
+
+  export interface PrintJobEvent extends Partial<PrintResult> {
+    id: number
+    state: 'started' | 'progress' | 'done' | 'failed' | 'cancelled'
+    /**
+     * Labels sent so far
+     */
+    sent: number
+    total: number
+    error?: string
+  }
+
+  export interface PrintQueueOptions {
+    /**
+     * Jobs queued or printing. More fail right away like any failed job:
+     * print rejects and enqueue's job gets a 'failed' event. Default 100
+     */
+    maxJobs?: number
+    /**
+     * Labels converted ahead while the printer receives the current one.
+     * 0 converts each label as it is sent, writing straight to the printer. Default 2
+     */
+    prefetch?: number
+    /**
+     * Bytes of ZPL kept in memory for a label converted ahead. Bigger labels
+     * wait for their turn and are sent while they are converted. Default 1 MB
+     */
+    maxBufferSize?: number
+  }
+
+  async function serializeLabels(labels: string | Builder | Builder[]): Promise<[any[], boolean]> {
+    if (typeof labels === 'string') {
+      return [[[labels]], false];
+    }
+
+    const builders = Array.isArray(labels) ? labels : [labels];
+    const serialized: any[] = [];
+    for (const builder of builders) {
+      serialized.push(await builder.serialize());
+    }
+    return [serialized, true];
+  }
+
+  /**
+   * Sends ZPL or labels straight to the printer from native code (Android).
+   * Images are converted and streamed to the socket without going back to JS.
+   */
+  export async function print(printer: PrinterOptions, labels: string | Builder | Builder[]): Promise<PrintResult> {
+    const [serialized, prefixAndSufix] = await serializeLabels(labels);
+    return ZplCode.print(printer, serialized, prefixAndSufix);
+  }
+
+  /**
+   * Queues a print job and returns its id right away (Android). Each printer
+   * gets the jobs in order, while the next labels are already being converted.
+   * Follow the job with onPrintJob.
+   */
+  export async function enqueue(printer: PrinterOptions, labels: string | Builder | Builder[], options: PrintJobOptions = {}): Promise<number> {
+    const [serialized, prefixAndSufix] = await serializeLabels(labels);
+    return ZplCode.enqueuePrint(printer, serialized, prefixAndSufix, options);
+  }
+
+  /**
+   * A queued job is removed; a printing job finishes the current label.
+   * Resolves false if the job already finished.
+   */
+  export function cancelPrintJob(id: number): Promise<boolean> {
+    return ZplCode.cancelPrintJob(id);
+  }
+
+  export function configurePrintQueue(options: PrintQueueOptions): Promise<void> {
+    return ZplCode.configurePrintQueue(options);
+  }
+
+  let printEvents: NativeEventEmitter | undefined;
+
+  export function onPrintJob(listener: (event: PrintJobEvent) => void): EmitterSubscription {
+    printEvents = printEvents ?? new NativeEventEmitter(ZplCode);
+    return printEvents.addListener('ZplCodePrintJob', listener);
+  }
+
+  /**
+   * Builds many labels in one native call (Android), one after another
+   * separated by a line break. Faster than building them one by one for
+   * long manifests.
+   */
+  export async function buildBatch(builders: Builder[], prefixAndSufix = true): Promise<string> {
+    if (Platform.OS === 'android') {
+      const labels: any[] = [];
+      for (const builder of builders) {
+        labels.push(await builder.serialize());
+      }
+      return ZplCode.buildZplBatch(labels, prefixAndSufix);
+    }
+
+    const result: string[] = [];
+    for (const builder of builders) {
+      result.push(await builder.build(prefixAndSufix));
+    }
+    return result.join("\n");
+  }
+
+  /**
+   * Comandos de un elemento con campo. Los elementos se guardan como
+   * [tipo, ...valores ya en ZPL] para armarlos en nativo (ZplDocument) o
+   * aca cuando no esta disponible.
+   */
+  function fieldCommands(element: any[]): string[] {
+    switch (element[0]) {
+      case 'T': {
+        const [, x, y, justification, font, h, w, text] = element
+        const commands = [justification ? `^FO${x},${y},${justification}` : `^FO${x},${y}`]
+        if (font) {
+          commands.push(`^A${font}N,${h},${w}`)
+        }
+        commands.push(`^FH\\^FD${formatField(text)}^FS`)
+        return commands
+      }
+      case 'B': {
+        const [, x, y, font, h, w, width, numLines, alignment, text] = element
+        const commands = [`^FO${x},${y}`]
+        if (font) {
+          commands.push(`^A${font}N,${h},${w}`)
+        }
+        commands.push(`^FB${width},${numLines},1,${alignment},0`)
+        commands.push(`^FH\\^FD${formatField(text)}^FS`)
+        return commands
+      }
+      case 'C': {
+        const [, x, y, width, rotation, height, barcodeTxt, text] = element
+        return [
+          `^FO${x},${y}`,
+          `^BY${width}`,
+          `^BC${rotation},${height},${barcodeTxt},N,N`,
+          `^FH\\^FD${formatField(text)}^FS`
+        ]
+      }
+      case 'Q': {
+        const [, x, y, model, size, errorLevel, characterMode, text] = element
+        return [
+          `^FO${x},${y}^BQN,${model},${size}`,
+          `^FH\\^FD${errorLevel}${characterMode},${formatField(text)}^FS`
+        ]
+      }
+      case 'R': {
+        const [, x, y, w, h, line] = element
+        return [`^FO${x},${y}`, `^GB${w},${h},${line}^FS`]
+      }
+    }
+    return [`${element}`]
+  }
+
   const fontValues: Record<FontType, string> = {
     'ZERO': '0',
     'A': 'A',
@@ -186,18 +408,16 @@ module Zpl {
 
       const { font } = props
 
-      this.point({
-        x: props.x,
-        y: props.y,
-        justification: props.justification
-      })
-
-      if (font) {
-        this.push(`^A${fontValues[font.type]}N,${font.h},${font.w}`);
-      }
-
-      this.push(`^FH\\^FD${formatField(props.text)}^FS`);
-      return this
+      return this.push([
+        'T',
+        props.x,
+        props.y,
+        props.justification ? justificationValues[props.justification] : '',
+        font ? fontValues[font.type] : '',
+        font?.h ?? 0,
+        font?.w ?? 0,
+        props.text
+      ])
     }
 
     /**
@@ -222,15 +442,18 @@ module Zpl {
       const { font } = props
       const textJustification: AlignmentType = props.textJustification ?? 'LEFT'
 
-      this.push(`^FO${props.x},${props.y}`)
-
-      if (font) {
-        this.push(`^A${fontValues[font.type]}N,${font.h},${font.w}`);
-      }
-
-      this.push(`^FB${props.width},${props.numLines},1,${alignmentValues[textJustification]},0`);
-      this.push(`^FH\\^FD${formatField(props.text)}^FS`);
-      return this
+      return this.push([
+        'B',
+        props.x,
+        props.y,
+        font ? fontValues[font.type] : '',
+        font?.h ?? 0,
+        font?.w ?? 0,
+        props.width,
+        props.numLines,
+        alignmentValues[textJustification],
+        props.text
+      ])
     }
 
     /**
@@ -248,11 +471,16 @@ module Zpl {
       text: string;
     }): this {
 
-      this.push(`^FO${props.x},${props.y}`)
-      this.push(`^BY${props.width}`)
-      this.push(`^BC${rotationValues[props.rotation]},${props.height},${barcodeTxtValues[props.barcodeTxt]},N,N`)
-      this.push(`^FH\\^FD${formatField(props.text)}^FS`);
-      return this;
+      return this.push([
+        'C',
+        props.x,
+        props.y,
+        props.width,
+        rotationValues[props.rotation],
+        props.height,
+        barcodeTxtValues[props.barcodeTxt],
+        props.text
+      ]);
     }
 
     /**
@@ -274,9 +502,16 @@ module Zpl {
       const errorLevel: QRErrorCorrectionLevelType = props.errorLevel ??'M'
       const characterMode = props.characterMode ?? "A"
 
-      this.push(`^FO${props.x},${props.y}^BQN,${qrCodeModelValues[model]},${props.size}`);
-      this.push(`^FH\\^FD${qrErrorCorrectionLevelValues[errorLevel]}${characterMode},${formatField(props.text)}^FS`);
-      return this;
+      return this.push([
+        'Q',
+        props.x,
+        props.y,
+        qrCodeModelValues[model],
+        props.size,
+        qrErrorCorrectionLevelValues[errorLevel],
+        characterMode,
+        props.text
+      ]);
     }
 
     /**
@@ -291,9 +526,7 @@ module Zpl {
       h: number;
       line: number;
     }): this {
-      this.push(`^FO${props.x},${props.y}`)
-      this.push(`^GB${props.w},${props.h},${props.line}^FS`)
-      return this
+      return this.push(['R', props.x, props.y, props.w, props.h, props.line])
     }
 
     /**
@@ -338,17 +571,57 @@ module Zpl {
      * @returns 
      */
     async build(prefixAndSufix = true): Promise<string> {
+      if (Platform.OS === 'android') {
+        return ZplCode.buildZpl(await this.serialize(), prefixAndSufix);
+      }
+
       const result: any[] = [];
 
       for (const element of this.elements) {
-        const zpl = element instanceof Element ? await element.toZpl() : element;
-        result.push(zpl);
+        if (Array.isArray(element)) {
+          result.push(...fieldCommands(element));
+        } else {
+          const zpl = element instanceof Element ? await element.toZpl() : element;
+          result.push(zpl);
+        }
       }
 
       const zplString = result.join("\n");
 
       return prefixAndSufix ? `^XA\n${zplString}\n^XZ` : zplString;
     }
+
+    /**
+     * Elementos para ZplDocument: las imagenes van como ['I', props] y se
+     * convierten en la misma llamada, otros Element se convierten aca.
+     */
+    async serialize(): Promise<any[]> {
+      const result: any[] = [];
+
+      for (const element of this.elements) {
+        if (element instanceof Image) {
+          result.push(['I', element.props]);
+        } else {
+          result.push(element instanceof Element ? await element.toZpl() : element);
+        }
+      }
+
+      return result;
+    }
+
+    /**
+     * Converts and sends the label to the printer (Android)
+     */
+    print(printer: PrinterOptions): Promise<PrintResult> {
+      return print(printer, this);
+    }
+
+    /**
+     * Builds the label and renders it to a PNG data URI (Android)
+     */
+    async preview(options: PreviewOptions = {}): Promise<string> {
+      return preview(await this.build(), options);
+    }
   }
 
 }
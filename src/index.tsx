@@ -1,9 +1,22 @@
 import Zpl from "./Zpl"
 
-import Image, { type ImageProps } from "./Image"
+import Image, { type ImageProps, type DitherType, type ThresholdType, type EncodingType, type CompressionStrategyType, type DownloadProps, type CacheOptions, type CacheStats, type ImageZplResult, type ConversionStage, type ConversionMetrics, type Percentiles, type MetricsSnapshot, type MetricsOptions } from "./Image"
 
 export type {
-  ImageProps
+  ImageProps,
+  DitherType,
+  ThresholdType,
+  EncodingType,
+  CompressionStrategyType,
+  DownloadProps,
+  CacheOptions,
+  CacheStats,
+  ImageZplResult,
+  ConversionStage,
+  ConversionMetrics,
+  Percentiles,
+  MetricsSnapshot,
+  MetricsOptions
 }
 
 export {